@@ -16,6 +16,7 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.OpenableColumns;
 import android.util.Log;
 
@@ -27,18 +28,25 @@ import androidx.core.content.ContextCompat;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import androidx.core.app.NotificationCompat; // ADDED IMPORT
 
+import com.example.mybasicapp.logging.AppLog;
+import com.example.mybasicapp.logging.EventRing;
+import com.example.mybasicapp.logging.RotatingLogWriter;
+import com.example.mybasicapp.metrics.RequestMetrics;
+import com.example.mybasicapp.model.AlertRule;
+import com.example.mybasicapp.model.SensorReading;
+import com.example.mybasicapp.network.CallTimingListener;
+import com.example.mybasicapp.network.HandlerPollTimer;
+import com.example.mybasicapp.network.LocalHostnameDns;
+import com.example.mybasicapp.network.MetricsInterceptor;
+import com.example.mybasicapp.network.PollScheduler;
 
 import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.Locale;
 import java.util.Objects; // Added for Objects.equals
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.Call;
@@ -63,15 +71,17 @@ public class HttpPollingService extends Service {
     public static final String EXTRA_DATA_JSON_STRING = "EXTRA_DATA_JSON_STRING";
 
     private static final String NOTIFICATION_CHANNEL_ID_SERVICE = "http_polling_service_status_channel";
-    private static final String NOTIFICATION_CHANNEL_ID_MESSAGES = "esp32_http_notifications"; // For actual alerts from ESP data
+    static final String NOTIFICATION_CHANNEL_ID_MESSAGES = "esp32_http_notifications"; // For actual alerts from ESP data
     private static final int SERVICE_NOTIFICATION_ID = 2; // For the foreground service itself
     private static final int MESSAGE_NOTIFICATION_ID_OFFSET = 1000; // Base for data alert notifications to allow multiple
 
     private OkHttpClient httpClient;
     private final Handler pollingHandler = new Handler(Looper.getMainLooper());
+    private PollScheduler pollScheduler; // Decides when currentTargetBaseUrl is polled next; see PollScheduler
     private boolean isServiceRunningAsForeground = false;
     private boolean isCurrentlyPolling = false;
     private String currentTargetBaseUrl; // The ESP address this service instance is currently targeting
+    private final AlertRule appAlertRule = new AlertRule(APP_ALERT_COOLDOWN_MS); // For currentTargetBaseUrl; same rule as the collector
 
     // Polling interval - could be configurable
     // For the ESP code provided, it seems to respond to /get_config or a similar data endpoint
@@ -81,7 +91,15 @@ public class HttpPollingService extends Service {
     private static final String DATA_ENDPOINT = "/"; // Or "/get_mic_data" or "/get_config" if that's where mic data is
     private static final String DATA_TYPE_MIC = "mic_data"; // Identifier for this data type
 
-    private static final long POLLING_INTERVAL_MS = 2500; // Default polling interval
+    static final long POLLING_INTERVAL_MS = 2500; // Default polling interval
+    static final long POLLING_MAX_BACKOFF_MS = 15_000; // Slowest polling rate while the ESP keeps failing
+    private static final int POLLING_MAX_IN_FLIGHT = 4; // Below OkHttp's 5 requests per host
+
+    // Per-poll events for bug reports, kept in the binary EventRing (exported with the activity log)
+    private static final EventRing.Type EVENT_POLL_OK = EventRing.define("poll_ok", "http", "bytes");
+    private static final EventRing.Type EVENT_POLL_HTTP_ERROR = EventRing.define("poll_http_error", "http", null);
+    private static final EventRing.Type EVENT_POLL_FAILED = EventRing.define("poll_failed", null, null);
+    private static final EventRing.Type EVENT_APP_ALERT = EventRing.define("app_alert", "db_x10", "threshold_db");
 
     // SharedPreferences keys (must match what HomeFragment and MainActivity use/set for service)
     private static final String PREFS_NAME = "MrCooperESP_Prefs"; // Name of the shared prefs file
@@ -91,11 +109,12 @@ public class HttpPollingService extends Service {
     private static final String PREF_CUSTOM_ALERT_SOUND_ENABLED = "custom_alert_sound_enabled";
 
     // App-side alert threshold (read from different prefs, set by HomeFragment)
-    private static final String PREFS_HOME_FRAGMENT = "HomeFragmentPrefs_v2";
-    private static final String PREF_APP_ALERT_LEVEL_DB = "app_alert_level_db";
-    private static final String PREF_APP_ALERTS_ENABLED = "app_alerts_enabled"; // ADDED CONSTANT
+    static final String PREFS_HOME_FRAGMENT = "HomeFragmentPrefs_v2";
+    static final String PREF_APP_ALERT_LEVEL_DB = "app_alert_level_db";
+    static final String PREF_APP_ALERTS_ENABLED = "app_alerts_enabled"; // ADDED CONSTANT
     // Default values if not found in prefs
     private static final int DEFAULT_APP_ALERT_THRESHOLD_DB = 70; // Default if not set in HomeFragment prefs
+    static final long APP_ALERT_COOLDOWN_MS = 60_000; // While it stays loud, at most one alert per minute
     private static final boolean DEFAULT_NOTIFICATIONS_ENABLED = false;
     private static final boolean DEFAULT_CUSTOM_SOUND_ENABLED = true;
 
@@ -104,22 +123,35 @@ public class HttpPollingService extends Service {
 
     // For logging sensor triggers
     private static final String SENSOR_TRIGGER_LOG_FILE_NAME_KEY = "log_sensor_trigger_file_name";
+    private static final long SENSOR_TRIGGER_LOG_MAX_BYTES = 256 * 1024; // Rotate after ~256 KB
+    private static final int SENSOR_TRIGGER_LOG_MAX_ROTATED = 4; // Keep 4 gzipped segments
+    private RotatingLogWriter sensorTriggerLogWriter; // Background writer, opened once per service instance
+    private LocalHostnameDns localHostnameDns; // Shared with EspConfigClient, so both see the same cache
 
 
     @Override
     public void onCreate() {
         super.onCreate();
         Log.i(TAG, "onCreate: Service Creating");
+        localHostnameDns = LocalHostnameDns.getInstance(this);
         httpClient = new OkHttpClient.Builder()
+                .dns(localHostnameDns) // *.local hosts resolve from discovery results or our own mDNS query, then stay cached
                 .connectTimeout(5, TimeUnit.SECONDS) // Shorter timeout for local network
                 .readTimeout(10, TimeUnit.SECONDS)
                 .writeTimeout(10, TimeUnit.SECONDS)
+                .addInterceptor(new MetricsInterceptor(RequestMetrics.getInstance())) // Per-device latency/errors for the Diagnostics tab
+                .eventListenerFactory(new CallTimingListener.Factory(RequestMetrics.getInstance())) // DNS/connect/server/read split
                 .build();
+        pollScheduler = new PollScheduler(new HandlerPollTimer(pollingHandler),
+                (baseUrl, completion) -> fetchDataFromServer(baseUrl, DATA_ENDPOINT, DATA_TYPE_MIC, completion),
+                POLLING_MAX_IN_FLIGHT, POLLING_MAX_BACKOFF_MS, new Random());
         createNotificationChannel(NOTIFICATION_CHANNEL_ID_SERVICE, getString(R.string.http_polling_service_channel_name), NotificationManager.IMPORTANCE_LOW);
         createNotificationChannel(NOTIFICATION_CHANNEL_ID_MESSAGES, getString(R.string.channel_name_http_alerts), NotificationManager.IMPORTANCE_HIGH);
 
         serviceControlPrefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         appAlertSettingsPrefs = getSharedPreferences(PREFS_HOME_FRAGMENT, Context.MODE_PRIVATE);
+        sensorTriggerLogWriter = new RotatingLogWriter(new File(getFilesDir(), getString(R.string.log_sensor_trigger_file_name)),
+                SENSOR_TRIGGER_LOG_MAX_BYTES, SENSOR_TRIGGER_LOG_MAX_ROTATED, true);
 
         Log.d(TAG, "onCreate: Service Created");
     }
@@ -174,6 +206,7 @@ public class HttpPollingService extends Service {
                     Log.i(TAG, "Target URL changed from " + currentTargetBaseUrl + " to " + newTargetUrl + ". Stopping old poll.");
                     stopPollingData(); // Stop polling the old URL
                 }
+                if (!Objects.equals(currentTargetBaseUrl, newTargetUrl)) appAlertRule.reset(); // Loud history belonged to the old ESP
                 currentTargetBaseUrl = newTargetUrl; // Set the new target
 
                 if (!isServiceRunningAsForeground) {
@@ -231,7 +264,7 @@ public class HttpPollingService extends Service {
         }
         if (!isCurrentlyPolling) {
             isCurrentlyPolling = true;
-            pollingHandler.post(pollingRunnable); // Start immediately
+            pollScheduler.add(currentTargetBaseUrl, POLLING_INTERVAL_MS, 0); // Start immediately
             Log.i(TAG, "startPollingData: Polling started for " + currentTargetBaseUrl);
             sendBroadcastStatus("Polling started for " + getHostFromUrl(currentTargetBaseUrl));
             if(isServiceRunningAsForeground) { // Update notification if already foreground
@@ -249,68 +282,69 @@ public class HttpPollingService extends Service {
     private void stopPollingData() {
         if (isCurrentlyPolling) {
             isCurrentlyPolling = false;
-            pollingHandler.removeCallbacks(pollingRunnable);
+            pollScheduler.removeAll(); // A poll already in flight still completes, but is not followed by another
             Log.i(TAG, "stopPollingData: Polling stopped for " + currentTargetBaseUrl);
             sendBroadcastStatus("Polling stopped for " + getHostFromUrl(currentTargetBaseUrl));
         }
     }
 
-    private final Runnable pollingRunnable = new Runnable() {
-        @Override
-        public void run() {
-            if (isCurrentlyPolling && currentTargetBaseUrl != null && !currentTargetBaseUrl.isEmpty()) {
-                fetchDataFromServer(currentTargetBaseUrl, DATA_ENDPOINT, DATA_TYPE_MIC);
-                pollingHandler.postDelayed(this, POLLING_INTERVAL_MS);
-            } else {
-                // If polling is stopped or URL becomes null, ensure this runnable doesn't reschedule
-                isCurrentlyPolling = false;
-                Log.d(TAG, "PollingRunnable: Stopping as isCurrentlyPolling is false or currentTargetBaseUrl is null.");
-            }
-        }
-    };
-
-    private void fetchDataFromServer(String baseUrl, String endpoint, final String dataType) {
+    /** @param completion Told whether the poll succeeded, so the scheduler can back off an unreachable ESP. */
+    private void fetchDataFromServer(String baseUrl, String endpoint, final String dataType, final PollScheduler.Completion completion) {
         String url = baseUrl + (endpoint.equals("/") && baseUrl.endsWith("/") ? "" : endpoint);
-        Log.d(TAG, "HTTP Polling: GET " + url + " for dataType: " + dataType);
+        if (AppLog.VERBOSE) AppLog.v(TAG, "HTTP Polling: GET {} for dataType: {}", url, dataType);
 
         Request request = new Request.Builder().url(url).build();
 
         httpClient.newCall(request).enqueue(new Callback() {
             @Override
             public void onFailure(@NonNull Call call, @NonNull IOException e) {
-                Log.e(TAG, "HTTP poll " + url + " onFailure: " + e.getMessage());
+                AppLog.e(TAG, "HTTP poll {} onFailure: {}", url, e);
+                AppLog.event(TAG, EVENT_POLL_FAILED, call.request().url().host(), 0, 0);
+                completion.finish(false);
+                // The device may have a new IP; make the next poll resolve its hostname again
+                localHostnameDns.onRequestFailed(call.request().url().host(), e);
                 sendBroadcastStatus("Error polling " + getHostFromUrl(baseUrl) + ": " + e.getMessage().substring(0, Math.min(e.getMessage().length(), 50)));
-                // Consider if polling should stop on repeated failures
             }
 
             @Override
             public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
-                final String responseBodyString = response.body() != null ? response.body().string() : null;
+                final String responseBodyString;
+                try {
+                    responseBodyString = response.body() != null ? response.body().string() : null;
+                } catch (IOException e) {
+                    completion.finish(false);
+                    throw e;
+                }
                 final int responseCode = response.code();
+                completion.finish(response.isSuccessful() && responseBodyString != null);
                 // Ensure response body is closed to prevent resource leaks
                 // OkHttp's try-with-resources on Response object handles this in modern versions,
                 // but explicit close after reading body is safest. Here, string() consumes and closes.
                 // response.close(); // Not needed if response.body().string() is called
 
                 if (response.isSuccessful() && responseBodyString != null) {
-                    Log.d(TAG, "HTTP poll " + url + " onResponse (" + responseCode + "): " + responseBodyString.substring(0, Math.min(responseBodyString.length(), 100)));
+                    AppLog.d(TAG, "HTTP poll {} onResponse ({}): {}", url, responseCode, responseBodyString); // Body is cut when formatted
+                    AppLog.event(TAG, EVENT_POLL_OK, call.request().url().host(), responseCode, responseBodyString.length());
                     sendBroadcastData(dataType, responseBodyString); // Broadcast raw JSON data
 
                     if (DATA_TYPE_MIC.equals(dataType)) {
                         try {
-                            JSONObject json = new JSONObject(responseBodyString);
-                            // ESP sends "db_calibrated", "rms", "status", "error"
-                            double dbCalibrated = json.optDouble("db_calibrated", -999.0);
-                            String espError = json.optString("error", null);
+                            // ESP sends "db_calibrated", "rms", "status", "error"; same parsing as the headless collector
+                            SensorReading reading = SensorReading.parse(responseBodyString);
+                            double dbCalibrated = reading.dbCalibrated;
 
                             // App-side notification/alert logic (from HomeFragment settings)
                             boolean appNotificationsEnabled = appAlertSettingsPrefs.getBoolean(PREF_APP_ALERTS_ENABLED, DEFAULT_NOTIFICATIONS_ENABLED);
                             int appAlertThresholdDb = appAlertSettingsPrefs.getInt(PREF_APP_ALERT_LEVEL_DB, DEFAULT_APP_ALERT_THRESHOLD_DB);
 
-                            Log.v(TAG, "Data check: dbCal=" + dbCalibrated + ", AppNotifEnabled=" + appNotificationsEnabled +
-                                       ", AppAlertThreshold=" + appAlertThresholdDb + "dB");
+                            if (AppLog.VERBOSE) {
+                                AppLog.v(TAG, "Data check: dbCal={}, AppNotifEnabled={}, AppAlertThreshold={}dB",
+                                        dbCalibrated, appNotificationsEnabled, appAlertThresholdDb);
+                            }
 
-                            if (appNotificationsEnabled && (espError == null || espError.isEmpty() || "null".equalsIgnoreCase(espError)) && dbCalibrated >= appAlertThresholdDb && dbCalibrated != -999.0) {
+                            // Alerts on crossing the threshold, then at most once per cooldown while it stays loud
+                            if (appNotificationsEnabled && appAlertRule.shouldAlert(reading, appAlertThresholdDb, SystemClock.elapsedRealtime())) {
+                                AppLog.event(TAG, EVENT_APP_ALERT, call.request().url().host(), Math.round(dbCalibrated * 10), appAlertThresholdDb);
                                 String notificationMsg = String.format(Locale.getDefault(),
                                         "Loud Noise: %.1f dB detected on %s (App Alert >= %d dB)",
                                         dbCalibrated, getHostFromUrl(baseUrl), appAlertThresholdDb);
@@ -346,13 +380,19 @@ public class HttpPollingService extends Service {
                     }
 
                 } else {
-                    Log.e(TAG, "HTTP poll " + url + " onResponse Error: " + responseCode + " - " + response.message());
+                    AppLog.e(TAG, "HTTP poll {} onResponse Error: {} - {}", url, responseCode, response.message());
+                    AppLog.event(TAG, EVENT_POLL_HTTP_ERROR, call.request().url().host(), responseCode, 0);
                     sendBroadcastStatus("Error polling " + getHostFromUrl(baseUrl) + ": " + responseCode);
                 }
             }
         });
     }
 
+    /** Scheduler counters for this instance; package-private for HttpPollingServiceTest. */
+    PollScheduler.Stats getPollStats() {
+        return pollScheduler.getStats();
+    }
+
     private String getFileNameFromContentUri(Uri uri) {
         if (uri == null) return "Unknown URI";
         String result = null;
@@ -383,17 +423,9 @@ public class HttpPollingService extends Service {
     }
 
     private void logSensorTriggerToFile(String message) {
-        File logFile = new File(getFilesDir(), getString(R.string.log_sensor_trigger_file_name));
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
-        String timestamp = sdf.format(new Date());
-        String logEntry = "[" + timestamp + "] " + message + "\n";
-
-        try (FileOutputStream fos = new FileOutputStream(logFile, true); // true for append mode
-             OutputStreamWriter osw = new OutputStreamWriter(fos)) {
-            osw.write(logEntry);
-            Log.i(TAG, "Logged to sensor trigger file: " + message.substring(0, Math.min(message.length(),100)));
-        } catch (IOException e) {
-            Log.e(TAG, "Error writing to sensor trigger log file: " + logFile.getAbsolutePath(), e);
+        // Called from OkHttp callback threads; the writer only enqueues, file I/O happens on its own thread
+        if (sensorTriggerLogWriter != null && sensorTriggerLogWriter.log(message)) {
+            Log.i(TAG, "Queued for sensor trigger file: " + message.substring(0, Math.min(message.length(),100)));
         }
     }
 
@@ -478,7 +510,7 @@ public class HttpPollingService extends Service {
         Intent intent = new Intent(ACTION_STATUS_UPDATE);
         intent.putExtra(EXTRA_STATUS, status);
         LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
-        Log.v(TAG, "sendBroadcastStatus >> UI: " + status);
+        if (AppLog.VERBOSE) AppLog.v(TAG, "sendBroadcastStatus >> UI: {}", status);
     }
 
     private void sendBroadcastData(String dataType, String jsonString) {
@@ -486,7 +518,7 @@ public class HttpPollingService extends Service {
         intent.putExtra(EXTRA_DATA_TYPE, dataType);
         intent.putExtra(EXTRA_DATA_JSON_STRING, jsonString);
         LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
-        Log.v(TAG, "sendBroadcastData (" + dataType + ") >> UI: " + jsonString.substring(0, Math.min(jsonString.length(),100)));
+        if (AppLog.VERBOSE) AppLog.v(TAG, "sendBroadcastData ({}) >> UI: {}", dataType, jsonString);
     }
 
     private void createNotificationChannel(String channelId, String channelName, int importance) {
@@ -564,6 +596,10 @@ public class HttpPollingService extends Service {
                 Log.e(TAG, "Error closing OkHttp cache during onDestroy", e);
             }
         }
+        if (sensorTriggerLogWriter != null) {
+            sensorTriggerLogWriter.close(); // Flushes queued entries
+            sensorTriggerLogWriter = null;
+        }
         sendBroadcastStatus("Service destroyed.");
         Log.i(TAG, "onDestroy: Service fully destroyed.");
         super.onDestroy();
@@ -26,6 +26,9 @@ import android.widget.Button;
 import android.widget.Toast;
 
 import com.example.mybasicapp.adapters.PageAdapter;
+import com.example.mybasicapp.logging.ActivityLogRing;
+import com.example.mybasicapp.logging.AppLog;
+import com.example.mybasicapp.logging.EventRing;
 import com.example.mybasicapp.viewmodels.AppViewModel;
 import com.google.android.material.tabs.TabLayout;
 import com.google.android.material.tabs.TabLayoutMediator;
@@ -37,9 +40,12 @@ import com.google.android.material.tabs.TabLayoutMediator;
 
 
 // For log saving (original code, slightly adapted)
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -55,10 +61,13 @@ public class MainActivity extends AppCompatActivity { // Removed NsdHelper.NsdHe
     private PageAdapter pageAdapter;
     private TabLayout tabLayout;
     private Toolbar toolbar; // Added Toolbar
-    private final String[] tabTitles = new String[]{"Home", "Noise Config", "ESP System", "Devices"};
+    private final String[] tabTitles = new String[]{"Home", "Noise Config", "ESP System", "Devices", "Diagnostics"};
 
     // For log saving - this log will now be more high-level activity log
-    private final StringBuilder activityLog = new StringBuilder();
+    // Bounded ring of records; the oldest entries spill to a file in the cache dir instead of growing memory
+    private static final int ACTIVITY_LOG_CAPACITY = 2000;
+    private static final String ACTIVITY_LOG_SPILL_FILE_NAME = "activity_log_spill.log";
+    private ActivityLogRing activityLog;
     private ActivityResultLauncher<String> createFileLauncher;
     private Button buttonSaveLogGlobal;
 
@@ -74,14 +83,12 @@ public class MainActivity extends AppCompatActivity { // Removed NsdHelper.NsdHe
         @Override
         public void onReceive(Context context, Intent intent) {
             String action = intent.getAction();
-            String timestamp = getCurrentTimestamp();
-            Log.d(TAG, "MainActivity.serviceUpdateReceiver: Action: " + action);
+            AppLog.d(TAG, "MainActivity.serviceUpdateReceiver: Action: {}", action);
 
             if (HttpPollingService.ACTION_STATUS_UPDATE.equals(action)) {
                 String statusMessage = intent.getStringExtra(HttpPollingService.EXTRA_STATUS);
                 if (statusMessage == null) statusMessage = "Unknown status from service";
-                String logEntry = timestamp + " HTTP_Service_Status_RCV: " + statusMessage + "\n";
-                activityLog.append(logEntry);
+                activityLog.add("HTTP_Service_Status_RCV", statusMessage);
                 Log.i(TAG, "MainActivity << HTTP_Status: " + statusMessage);
                 if (appViewModel != null) {
                     appViewModel.setLastServiceStatus(statusMessage);
@@ -91,9 +98,8 @@ public class MainActivity extends AppCompatActivity { // Removed NsdHelper.NsdHe
                 String dataType = intent.getStringExtra(HttpPollingService.EXTRA_DATA_TYPE);
                 String jsonData = intent.getStringExtra(HttpPollingService.EXTRA_DATA_JSON_STRING);
                 String logMessage = (jsonData != null ? jsonData.substring(0, Math.min(jsonData.length(), 200)) + (jsonData.length() > 200 ? "..." : "") : "null data");
-                String logEntry = timestamp + " HTTP_Data_RCV ("+dataType+"): " + logMessage + "\n";
-                activityLog.append(logEntry);
-                Log.i(TAG, "MainActivity << HTTP_Data (" + dataType + "): " + logMessage);
+                activityLog.add("HTTP_Data_RCV (" + dataType + ")", logMessage);
+                AppLog.d(TAG, "MainActivity << HTTP_Data ({}): {}", dataType, logMessage); // Per sample; not in release logcat
 
                 if (appViewModel != null && jsonData != null) {
                     // Assuming all polled data is relevant for the "last sensor data" display in HomeFragment
@@ -109,6 +115,7 @@ public class MainActivity extends AppCompatActivity { // Removed NsdHelper.NsdHe
         super.onCreate(savedInstanceState);
         Log.d(TAG, "onCreate: Activity Creating");
         setContentView(R.layout.activity_main);
+        activityLog = new ActivityLogRing(ACTIVITY_LOG_CAPACITY, new File(getCacheDir(), ACTIVITY_LOG_SPILL_FILE_NAME));
 
         // Initialize ViewModel
         appViewModel = new ViewModelProvider(this).get(AppViewModel.class);
@@ -136,10 +143,10 @@ public class MainActivity extends AppCompatActivity { // Removed NsdHelper.NsdHe
                 Log.d(TAG, "POST_NOTIFICATIONS permission result: " + isGranted);
                 if (isGranted) {
                     Toast.makeText(this, "Notifications permission granted.", Toast.LENGTH_SHORT).show();
-                    activityLog.append(getCurrentTimestamp()).append(" Permission: POST_NOTIFICATIONS Granted\n");
+                    activityLog.add("Permission", "POST_NOTIFICATIONS Granted");
                 } else {
                     Toast.makeText(this, "Notifications permission denied. App may not show alerts.", Toast.LENGTH_LONG).show();
-                    activityLog.append(getCurrentTimestamp()).append(" Permission: POST_NOTIFICATIONS Denied\n");
+                    activityLog.add("Permission", "POST_NOTIFICATIONS Denied");
                 }
             });
 
@@ -148,7 +155,7 @@ public class MainActivity extends AppCompatActivity { // Removed NsdHelper.NsdHe
         // Observe active ESP address changes from ViewModel
         appViewModel.getActiveEspAddressLiveData().observe(this, activeAddress -> {
             Log.i(TAG, "MainActivity Observer: Active ESP Address changed to: " + activeAddress);
-            activityLog.append(getCurrentTimestamp()).append(" Active ESP changed to: ").append(activeAddress == null ? "None" : activeAddress).append("\n");
+            activityLog.add("Active_ESP", "Changed to: " + (activeAddress == null ? "None" : activeAddress));
 
             // If the active address becomes null, ensure HttpPollingService is stopped.
             // If it changes to a new address, fragments (like HomeFragment) will be responsible
@@ -186,7 +193,7 @@ public class MainActivity extends AppCompatActivity { // Removed NsdHelper.NsdHe
         });
 
         registerServiceUpdateReceiver(); // Register receiver for service updates
-        activityLog.append(getCurrentTimestamp()).append(" MainActivity onCreate: Setup complete.\n");
+        activityLog.add("Lifecycle", "MainActivity onCreate: Setup complete.");
         Log.d(TAG, "onCreate: Activity Created and UI Initialized");
     }
 
@@ -196,11 +203,11 @@ public class MainActivity extends AppCompatActivity { // Removed NsdHelper.NsdHe
             if (ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS) !=
                     PackageManager.PERMISSION_GRANTED) {
                 Log.i(TAG, "askNotificationPermission: Requesting POST_NOTIFICATIONS permission.");
-                activityLog.append(getCurrentTimestamp()).append(" Permission: Requesting POST_NOTIFICATIONS\n");
+                activityLog.add("Permission", "Requesting POST_NOTIFICATIONS");
                 requestPostNotificationPermissionLauncher.launch(Manifest.permission.POST_NOTIFICATIONS);
             } else {
                 Log.d(TAG, "askNotificationPermission: POST_NOTIFICATIONS permission already granted.");
-                activityLog.append(getCurrentTimestamp()).append(" Permission: POST_NOTIFICATIONS already granted\n");
+                activityLog.add("Permission", "POST_NOTIFICATIONS already granted");
             }
         }
     }
@@ -212,24 +219,37 @@ public class MainActivity extends AppCompatActivity { // Removed NsdHelper.NsdHe
     private void saveLog() {
         String fileName = "MrCoopersESP32_App_Log_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date()) + ".txt";
         Log.d(TAG, "saveLog: Requesting to save log as " + fileName);
-        activityLog.append(getCurrentTimestamp()).append(" UI_Action: Log Save Requested to file: ").append(fileName).append("\n");
+        activityLog.add("UI_Action", "Log Save Requested to file: " + fileName);
         createFileLauncher.launch(fileName);
     }
 
     private void saveLogToFile(Uri uri) {
         Log.d(TAG, "saveLogToFile: Attempting to write log to URI: " + uri);
-        try (OutputStream outputStream = getContentResolver().openOutputStream(uri);
-             OutputStreamWriter writer = new OutputStreamWriter(Objects.requireNonNull(outputStream))) {
-            writer.write("--- MrCooperESP32 App General Log ---\n");
-            writer.write("Log Start: " + getCurrentTimestamp() + "\n\n");
-            writer.write(activityLog.toString());
-            writer.flush();
-            Toast.makeText(this, "Log saved successfully!", Toast.LENGTH_LONG).show();
-            Log.i(TAG, "saveLogToFile: Log saved successfully to " + uri.getPath());
-        } catch (IOException | NullPointerException e) {
-            Log.e(TAG, "saveLogToFile: Error: " + e.getMessage(), e);
-            Toast.makeText(this, "Error saving log: " + e.getMessage(), Toast.LENGTH_LONG).show();
-        }
+        // Records are streamed straight into the SAF stream on a background thread (spill files may need reading)
+        new Thread(() -> {
+            String error = null;
+            try (OutputStream outputStream = getContentResolver().openOutputStream(uri);
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Objects.requireNonNull(outputStream), StandardCharsets.UTF_8))) {
+                writer.write("--- MrCooperESP32 App General Log ---\n");
+                writer.write("Log Start: " + getCurrentTimestamp() + "\n\n");
+                activityLog.writeTo(writer);
+                writer.write("\n--- Recent events ---\n");
+                EventRing.getInstance().writeTo(writer);
+                writer.flush();
+                Log.i(TAG, "saveLogToFile: Log saved successfully to " + uri.getPath());
+            } catch (IOException | NullPointerException | SecurityException e) {
+                Log.e(TAG, "saveLogToFile: Error: " + e.getMessage(), e);
+                error = e.getMessage();
+            }
+            final String finalError = error;
+            runOnUiThread(() -> {
+                if (finalError == null) {
+                    Toast.makeText(this, "Log saved successfully!", Toast.LENGTH_LONG).show();
+                } else {
+                    Toast.makeText(this, "Error saving log: " + finalError, Toast.LENGTH_LONG).show();
+                }
+            });
+        }, "ActivityLogExport").start();
     }
 
 
@@ -257,7 +277,7 @@ public class MainActivity extends AppCompatActivity { // Removed NsdHelper.NsdHe
     protected void onResume() {
         super.onResume();
         Log.d(TAG, "onResume: Activity Resumed.");
-        activityLog.append(getCurrentTimestamp()).append(" MainActivity onResume\n");
+        activityLog.add("Lifecycle", "MainActivity onResume");
         registerServiceUpdateReceiver(); // Ensure receiver is registered
         // Refresh subtitle based on current active ESP from ViewModel
         if (getSupportActionBar() != null && appViewModel != null) {
@@ -274,7 +294,7 @@ public class MainActivity extends AppCompatActivity { // Removed NsdHelper.NsdHe
     protected void onPause() {
         super.onPause();
         Log.d(TAG, "onPause: Activity Paused.");
-        activityLog.append(getCurrentTimestamp()).append(" MainActivity onPause\n");
+        activityLog.add("Lifecycle", "MainActivity onPause");
         // Keeping receiver registered to log service updates even if paused.
         // If this causes issues or is not desired, unregister here.
     }
@@ -283,7 +303,7 @@ public class MainActivity extends AppCompatActivity { // Removed NsdHelper.NsdHe
     protected void onStop() {
         super.onStop();
         Log.d(TAG, "onStop: Activity Stopped.");
-        activityLog.append(getCurrentTimestamp()).append(" MainActivity onStop\n");
+        activityLog.add("Lifecycle", "MainActivity onStop");
         // Any cleanup related to discovery if it were managed here would go here
         // But NSD is now in DeviceManagementFragment.
     }
@@ -291,8 +311,9 @@ public class MainActivity extends AppCompatActivity { // Removed NsdHelper.NsdHe
     @Override
     protected void onDestroy() {
         Log.d(TAG, "onDestroy: Activity Destroying.");
-        activityLog.append(getCurrentTimestamp()).append(" MainActivity onDestroy. Final log dump before clear:\n").append(activityLog.toString());
+        activityLog.add("Lifecycle", "MainActivity onDestroy");
         unregisterServiceUpdateReceiver(); // Clean up receiver
+        activityLog.close(); // Stop the spill writer thread
         // NsdHelper tearDown will be handled by DeviceManagementFragment.
         super.onDestroy(); // Call super.onDestroy() last
     }
@@ -3,6 +3,7 @@ package com.example.mybasicapp.adapters;
 import android.content.Context;
 import android.graphics.Color; // For highlighting active item
 import android.graphics.Typeface; // For styling text
+import android.text.format.DateUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -11,24 +12,48 @@ import android.widget.ImageButton; // For edit/delete buttons
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat; // For colors
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.mybasicapp.R;
+import com.example.mybasicapp.model.DeviceStatus;
 import com.example.mybasicapp.model.EspDevice;
 import com.example.mybasicapp.viewmodels.AppViewModel; // To observe active ESP for highlighting
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
-public class EspDeviceAdapter extends RecyclerView.Adapter<EspDeviceAdapter.EspDeviceViewHolder> {
+/**
+ * Lists {@link EspDevice}s. New lists are diffed on a background thread (via {@link ListAdapter}'s
+ * AsyncListDiffer) and only the rows that changed are rebound. Field-level changes are delivered as
+ * payloads so a row only updates the affected views. Live health results are applied the same way
+ * (see {@link #setDeviceStatuses}), so a once-per-second refresh touches only the status lines.
+ * <p>
+ * The adapter keeps its own copy of the list, which {@link #addDevice} and {@link #removeDevice}
+ * change before submitting a copy; {@link #getCurrentList()} lags behind until a diff commits, so
+ * bursts of discovery results must not be built from it. Main thread only.
+ */
+public class EspDeviceAdapter extends ListAdapter<EspDevice, EspDeviceAdapter.EspDeviceViewHolder> {
 
     private static final String TAG = "EspDeviceAdapter_DBG";
-    private List<EspDevice> espDeviceList;
+    private static final String STATUS_SEPARATOR = " \u00b7 ";
+
+    // Partial-bind payloads
+    static final String PAYLOAD_NAME = "payload_name";
+    static final String PAYLOAD_ADDRESS = "payload_address";
+    static final String PAYLOAD_ACTIVE = "payload_active";
+    static final String PAYLOAD_STATUS = "payload_status";
+
     private final OnEspDeviceInteractionListener listener;
+    private final List<EspDevice> devices = new ArrayList<>(); // Latest list, including changes still being diffed
     private String activeEspAddress; // To know which item to highlight
-    private Context context; // To get resources like colors
+    @Nullable
+    private Map<String, DeviceStatus> deviceStatuses; // Null hides the status line (e.g. discovered services list)
 
     public interface OnEspDeviceInteractionListener {
         void onSetActive(EspDevice device);
@@ -36,40 +61,150 @@ public class EspDeviceAdapter extends RecyclerView.Adapter<EspDeviceAdapter.EspD
         void onDeleteDevice(EspDevice device, int position);
     }
 
+    private static final DiffUtil.ItemCallback<EspDevice> DIFF_CALLBACK = new DiffUtil.ItemCallback<EspDevice>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull EspDevice oldItem, @NonNull EspDevice newItem) {
+            return oldItem.getAddressKey().equals(newItem.getAddressKey());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull EspDevice oldItem, @NonNull EspDevice newItem) {
+            return Objects.equals(oldItem.getName(), newItem.getName())
+                    && oldItem.getAddress().equals(newItem.getAddress()); // Display case may differ from key
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(@NonNull EspDevice oldItem, @NonNull EspDevice newItem) {
+            List<String> payloads = new ArrayList<>(2);
+            if (!Objects.equals(oldItem.getName(), newItem.getName())) payloads.add(PAYLOAD_NAME);
+            if (!oldItem.getAddress().equals(newItem.getAddress())) payloads.add(PAYLOAD_ADDRESS);
+            return payloads;
+        }
+    };
+
     public EspDeviceAdapter(List<EspDevice> deviceList, OnEspDeviceInteractionListener listener, AppViewModel appViewModel) {
-        this.espDeviceList = new ArrayList<>(deviceList); // Work with a copy
+        super(DIFF_CALLBACK);
+        setHasStableIds(true);
         this.listener = listener;
         if (appViewModel != null && appViewModel.getActiveEspAddressLiveData().getValue() != null) {
             this.activeEspAddress = appViewModel.getActiveEspAddressLiveData().getValue();
         }
+        updateDevices(deviceList);
     }
-    
+
     // Constructor for the discovered services list which might not need all interactions
     public EspDeviceAdapter(List<EspDevice> deviceList, OnEspDeviceInteractionListener listener) {
-        this.espDeviceList = new ArrayList<>(deviceList);
-        this.listener = listener;
-        this.activeEspAddress = null; // No active highlighting by default for discovered list
+        this(deviceList, listener, null); // No active highlighting by default for discovered list
     }
 
 
     @NonNull
     @Override
     public EspDeviceViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        this.context = parent.getContext(); // Get context here
         View itemView = LayoutInflater.from(parent.getContext())
-                .inflate(R.layout.list_item_esp_device, parent, false); // We'll create this layout
-        return new EspDeviceViewHolder(itemView);
+                .inflate(R.layout.list_item_esp_device, parent, false);
+        EspDeviceViewHolder holder = new EspDeviceViewHolder(itemView);
+
+        // Click listeners are set once per holder and resolve the device at click time
+        itemView.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (listener != null && position != RecyclerView.NO_POSITION) {
+                listener.onSetActive(getItem(position));
+            }
+        });
+        // These buttons might not exist in the layout used for discovered services,
+        // so check for null if you use a different layout for that.
+        if (holder.buttonEditDevice != null) {
+            holder.buttonEditDevice.setOnClickListener(v -> {
+                int position = holder.getBindingAdapterPosition();
+                if (listener != null && position != RecyclerView.NO_POSITION) {
+                    listener.onEditDevice(getItem(position), position);
+                }
+            });
+        }
+        if (holder.buttonDeleteDevice != null) {
+            holder.buttonDeleteDevice.setOnClickListener(v -> {
+                int position = holder.getBindingAdapterPosition();
+                if (listener != null && position != RecyclerView.NO_POSITION) {
+                    listener.onDeleteDevice(getItem(position), position);
+                }
+            });
+        }
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull EspDeviceViewHolder holder, int position) {
-        EspDevice device = espDeviceList.get(position);
+        EspDevice device = getItem(position);
         holder.textViewDeviceName.setText(device.getName());
         holder.textViewDeviceAddress.setText(device.getAddress());
+        bindActiveState(holder, device);
+        bindStatus(holder, device);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull EspDeviceViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        EspDevice device = getItem(position);
+        for (Object payload : payloads) {
+            if (payload instanceof List) {
+                for (Object field : (List<?>) payload) applyPayload(holder, device, field);
+            } else {
+                applyPayload(holder, device, payload);
+            }
+        }
+    }
+
+    private void applyPayload(EspDeviceViewHolder holder, EspDevice device, Object payload) {
+        if (PAYLOAD_NAME.equals(payload)) {
+            holder.textViewDeviceName.setText(device.getName());
+        } else if (PAYLOAD_ADDRESS.equals(payload)) {
+            holder.textViewDeviceAddress.setText(device.getAddress());
+        } else if (PAYLOAD_ACTIVE.equals(payload)) {
+            bindActiveState(holder, device);
+        } else if (PAYLOAD_STATUS.equals(payload)) {
+            bindStatus(holder, device);
+        }
+    }
+
+    private void bindStatus(EspDeviceViewHolder holder, EspDevice device) {
+        if (holder.textViewDeviceStatus == null) return;
+        if (deviceStatuses == null) {
+            holder.textViewDeviceStatus.setVisibility(View.GONE);
+            return;
+        }
+        holder.textViewDeviceStatus.setVisibility(View.VISIBLE);
+        Context context = holder.itemView.getContext();
+        DeviceStatus status = deviceStatuses.get(device.getAddressKey());
+        if (status == null) {
+            holder.textViewDeviceStatus.setText(R.string.device_status_checking);
+            holder.textViewDeviceStatus.setTextColor(ContextCompat.getColor(context, R.color.device_status_unknown));
+            return;
+        }
+        StringBuilder text = new StringBuilder(context.getString(status.online ? R.string.device_status_online : R.string.device_status_offline));
+        if (status.hasDb()) {
+            text.append(STATUS_SEPARATOR).append(context.getString(R.string.device_status_db, status.lastDb));
+        }
+        if (status.hasBeenSeen()) {
+            CharSequence age = DateUtils.getRelativeTimeSpanString(status.lastSeenMs, System.currentTimeMillis(), DateUtils.SECOND_IN_MILLIS);
+            text.append(STATUS_SEPARATOR).append(context.getString(R.string.device_status_seen, age));
+        }
+        if (status.online && status.rollingLatencyMs >= 0) {
+            text.append(STATUS_SEPARATOR).append(context.getString(R.string.device_status_latency, status.rollingLatencyMs));
+        }
+        holder.textViewDeviceStatus.setText(text);
+        holder.textViewDeviceStatus.setTextColor(ContextCompat.getColor(context,
+                status.online ? R.color.device_status_online : R.color.device_status_offline));
+    }
 
+    private void bindActiveState(EspDeviceViewHolder holder, EspDevice device) {
         // Highlight if this device is the active one
-        if (activeEspAddress != null && device.getAddress().equalsIgnoreCase(activeEspAddress)) {
-            holder.itemView.setBackgroundColor(ContextCompat.getColor(context, R.color.active_esp_background)); // Define this color
+        if (isActive(device)) {
+            holder.itemView.setBackgroundColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.active_esp_background));
             holder.textViewDeviceName.setTypeface(null, Typeface.BOLD_ITALIC);
             holder.textViewDeviceAddress.setTypeface(null, Typeface.BOLD_ITALIC);
         } else {
@@ -77,83 +212,106 @@ public class EspDeviceAdapter extends RecyclerView.Adapter<EspDeviceAdapter.EspD
             holder.textViewDeviceName.setTypeface(null, Typeface.NORMAL);
             holder.textViewDeviceAddress.setTypeface(null, Typeface.NORMAL);
         }
+    }
 
-        // Set click listener for the whole item to set active
-        holder.itemView.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onSetActive(device);
-            }
-        });
-
-        // Set click listeners for edit and delete buttons
-        // These buttons might not exist in the layout used for discovered services,
-        // so check for null if you use a different layout for that.
-        if (holder.buttonEditDevice != null) {
-            holder.buttonEditDevice.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onEditDevice(device, holder.getAdapterPosition());
-                }
-            });
-        }
-
-        if (holder.buttonDeleteDevice != null) {
-            holder.buttonDeleteDevice.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onDeleteDevice(device, holder.getAdapterPosition());
-                }
-            });
-        }
+    private boolean isActive(EspDevice device) {
+        return activeEspAddress != null && device.getAddressKey().equals(EspDevice.canonicalAddress(activeEspAddress));
     }
 
+    /** Stable id derived from the canonical address, so rows keep their identity across list updates. */
     @Override
-    public int getItemCount() {
-        return espDeviceList.size();
+    public long getItemId(int position) {
+        return stableIdFor(getItem(position).getAddressKey());
     }
 
-    public void updateDevices(List<EspDevice> newDeviceList) {
-        this.espDeviceList.clear();
-        if (newDeviceList != null) {
-            this.espDeviceList.addAll(newDeviceList);
+    // 64-bit FNV-1a; String.hashCode()'s 32 bits collide too easily for large fleets
+    private static long stableIdFor(String addressKey) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < addressKey.length(); i++) {
+            hash ^= addressKey.charAt(i);
+            hash *= 0x100000001b3L;
         }
-        Log.d(TAG, "Adapter device list updated. New count: " + this.espDeviceList.size());
-        notifyDataSetChanged(); // Simple refresh; for performance, use DiffUtil
+        return hash;
+    }
+
+    /** Submits a new list; the diff is computed off the main thread. */
+    public void updateDevices(List<EspDevice> newDeviceList) {
+        devices.clear();
+        if (newDeviceList != null) devices.addAll(newDeviceList);
+        submitList(new ArrayList<>(devices));
+        Log.d(TAG, "Adapter device list submitted. New count: " + devices.size());
     }
 
     public void addDevice(EspDevice device) {
-        if (!espDeviceList.contains(device)) { // EspDevice.equals checks address
-            espDeviceList.add(device);
-            notifyItemInserted(espDeviceList.size() - 1);
-        } else {
-            // Optionally update if it exists (e.g., name changed during discovery)
-            int index = espDeviceList.indexOf(device);
-            if (index != -1) {
-                 EspDevice existing = espDeviceList.get(index);
-                 if (!Objects.equals(existing.getName(), device.getName())) { // if name is different
-                     existing.setName(device.getName());
-                     notifyItemChanged(index);
-                 }
-            }
+        int index = devices.indexOf(device); // EspDevice.equals checks address
+        if (index == -1) {
+            devices.add(device);
+            submitList(new ArrayList<>(devices));
+        } else if (!Objects.equals(devices.get(index).getName(), device.getName())) {
+            // Update if it exists with a different name (e.g., name changed during discovery)
+            devices.set(index, device);
+            submitList(new ArrayList<>(devices));
         }
     }
-    
+
     public void removeDevice(EspDevice device) {
-        int index = espDeviceList.indexOf(device); // Uses EspDevice.equals()
+        int index = devices.indexOf(device); // Uses EspDevice.equals()
         if (index != -1) {
-            espDeviceList.remove(index);
-            notifyItemRemoved(index);
+            devices.remove(index);
+            submitList(new ArrayList<>(devices));
         }
     }
 
 
+    /** Devices including changes not yet committed; {@link #getItemCount()} lags until the diff is applied. */
+    public int getDeviceCount() {
+        return devices.size();
+    }
+
     public void clearDevices() {
-        espDeviceList.clear();
-        notifyDataSetChanged();
+        devices.clear();
+        submitList(new ArrayList<>());
+    }
+
+    /**
+     * Applies a batch of health results (see {@link com.example.mybasicapp.network.DeviceHealthProber}).
+     * Only rows whose status actually changed are rebound, and only their status line.
+     */
+    public void setDeviceStatuses(@NonNull Map<String, DeviceStatus> statuses) {
+        Map<String, DeviceStatus> previous = this.deviceStatuses;
+        this.deviceStatuses = statuses;
+        // Notifications address rows as displayed; a pending diff is dispatched relative to this list
+        List<EspDevice> current = getCurrentList();
+        if (previous == null) {
+            if (!current.isEmpty()) notifyItemRangeChanged(0, current.size(), PAYLOAD_STATUS);
+            return;
+        }
+        for (int i = 0; i < current.size(); i++) {
+            String key = current.get(i).getAddressKey();
+            if (!Objects.equals(previous.get(key), statuses.get(key))) {
+                notifyItemChanged(i, PAYLOAD_STATUS);
+            }
+        }
     }
 
     public void setActiveEspAddress(String address) {
-        if (!Objects.equals(this.activeEspAddress, address)) {
-            this.activeEspAddress = address;
-            notifyDataSetChanged(); // Re-bind all items to update highlighting
+        if (Objects.equals(this.activeEspAddress, address)) return;
+        String previous = this.activeEspAddress;
+        this.activeEspAddress = address;
+        // Only the old and new active rows need their highlight rebound
+        notifyActiveChanged(previous);
+        notifyActiveChanged(address);
+    }
+
+    private void notifyActiveChanged(@Nullable String address) {
+        String key = EspDevice.canonicalAddress(address);
+        if (key == null) return;
+        List<EspDevice> current = getCurrentList(); // Displayed rows, as in setDeviceStatuses
+        for (int i = 0; i < current.size(); i++) {
+            if (current.get(i).getAddressKey().equals(key)) {
+                notifyItemChanged(i, PAYLOAD_ACTIVE);
+                return;
+            }
         }
     }
 
@@ -161,6 +319,7 @@ public class EspDeviceAdapter extends RecyclerView.Adapter<EspDeviceAdapter.EspD
     static class EspDeviceViewHolder extends RecyclerView.ViewHolder {
         TextView textViewDeviceName;
         TextView textViewDeviceAddress;
+        TextView textViewDeviceStatus;
         ImageButton buttonEditDevice;   // Optional: For managed list
         ImageButton buttonDeleteDevice; // Optional: For managed list
 
@@ -168,9 +327,10 @@ public class EspDeviceAdapter extends RecyclerView.Adapter<EspDeviceAdapter.EspD
             super(itemView);
             textViewDeviceName = itemView.findViewById(R.id.textViewItemEspName);
             textViewDeviceAddress = itemView.findViewById(R.id.textViewItemEspAddress);
+            textViewDeviceStatus = itemView.findViewById(R.id.textViewItemEspStatus);
             // These buttons might not be in every layout that uses this adapter (e.g., discovered services list)
             buttonEditDevice = itemView.findViewById(R.id.buttonItemEditEsp);
             buttonDeleteDevice = itemView.findViewById(R.id.buttonItemDeleteEsp);
         }
     }
-}
\ No newline at end of file
+}
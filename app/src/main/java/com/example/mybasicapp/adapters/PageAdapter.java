@@ -6,6 +6,7 @@ import androidx.fragment.app.FragmentActivity;
 import androidx.viewpager2.adapter.FragmentStateAdapter;
 
 import com.example.mybasicapp.fragments.DeviceManagementFragment;
+import com.example.mybasicapp.fragments.DiagnosticsFragment;
 import com.example.mybasicapp.fragments.EspConfigFragment;
 import com.example.mybasicapp.fragments.HomeFragment;
 import com.example.mybasicapp.fragments.NoiseSettingsFragment;
@@ -16,7 +17,7 @@ import com.example.mybasicapp.fragments.NoiseSettingsFragment;
 public class PageAdapter extends FragmentStateAdapter {
 
     // Define the number of pages/tabs
-    private static final int NUM_PAGES = 4;
+    private static final int NUM_PAGES = 5;
 
     public PageAdapter(@NonNull FragmentActivity fragmentActivity) {
         super(fragmentActivity);
@@ -39,6 +40,9 @@ public class PageAdapter extends FragmentStateAdapter {
             case 3:
                 // Page to manage list of ESPs, select active, and discover
                 return new DeviceManagementFragment();
+            case 4:
+                // Per-device request latency and error rates
+                return new DiagnosticsFragment();
             default:
                 // Fallback, should not happen if NUM_PAGES is correct
                 return new HomeFragment();
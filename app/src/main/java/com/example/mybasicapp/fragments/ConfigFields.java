@@ -0,0 +1,22 @@
+package com.example.mybasicapp.fragments;
+
+import android.widget.EditText;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/** Filling the config screens' input fields from the config the repository delivers. */
+final class ConfigFields {
+    private ConfigFields() {}
+
+    /**
+     * Puts {@code value} in {@code field} unless the user has changed the field since {@code filled}
+     * was put there. With {@code filled} null the field is always replaced. Every revalidation
+     * delivers a new config object, so this keeps a value the user is typing.
+     */
+    static void refillUnlessEdited(@NonNull EditText field, @Nullable String filled, @NonNull String value) {
+        String current = field.getText() != null ? field.getText().toString() : "";
+        if (filled != null && !filled.equals(current)) return; // Edited; keep what the user is typing
+        if (!value.equals(current)) field.setText(value);
+    }
+}
@@ -13,6 +13,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.text.InputType;
 import android.text.TextUtils;
 import android.util.Log;
@@ -33,7 +34,11 @@ import com.example.mybasicapp.adapters.EspDeviceAdapter;
 // CORRECTED IMPORTS to match actual package locations
 import com.example.mybasicapp.model.DiscoveredService;
 import com.example.mybasicapp.model.EspDevice;
+import com.example.mybasicapp.network.DiscoveryBackend;
+import com.example.mybasicapp.network.FallbackDiscoveryBackend;
 import com.example.mybasicapp.network.NsdHelper;
+import com.example.mybasicapp.network.SubnetScanner;
+import com.example.mybasicapp.persistence.DiscoveryCache;
 import com.example.mybasicapp.viewmodels.AppViewModel;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
@@ -49,7 +54,7 @@ public class DeviceManagementFragment extends Fragment implements NsdHelper.NsdH
     private AppViewModel appViewModel;
     private EspDeviceAdapter espDeviceAdapter;
     private RecyclerView recyclerViewManagedEsps;
-    private Button buttonScanNetwork, buttonAddEspManual, buttonSaveDynamicList;
+    private Button buttonScanNetwork, buttonSweepSubnet, buttonAddEspManual, buttonSaveDynamicList;
     private TextInputEditText editTextNewEspAddressManual; // For single manual add
     private TextView textViewCurrentActiveEspDisplay, textViewNsdStatus;
 
@@ -60,13 +65,21 @@ public class DeviceManagementFragment extends Fragment implements NsdHelper.NsdH
 
 
     // NSD (Network Service Discovery)
-    private NsdHelper nsdHelper;
+    // The built-in querier resolves all instances from one query burst; NsdManager where it can't work
+    private DiscoveryBackend discoveryBackend;
     private EspDeviceAdapter discoveredServicesAdapter; // Separate adapter for discovered services
     private RecyclerView recyclerViewDiscoveredNsdServices;
     private static final String ESP_HTTP_SERVICE_TYPE = "_http._tcp"; // Or your specific ESP service type
     private static final String ESP_SERVICE_NAME_FILTER = "mrcoopersesp"; // Optional filter
     private static final long NSD_DISCOVERY_TIMEOUT_MS = 15000; // 15 seconds
     private Handler discoveryTimeoutHandler = new Handler(Looper.getMainLooper());
+    // Previously resolved services, shown immediately and revalidated by a background scan
+    private DiscoveryCache discoveryCache;
+    private static final long CACHE_REVALIDATE_MIN_INTERVAL_MS = 60000;
+    private long lastCacheRevalidationMs = 0;
+    private long discoveryStartedAtMs = 0; // Wall clock, for DiscoveryCache.removeNotSeenSince
+    // Fallback for sensors that don't advertise over mDNS: probes every host of the local subnet
+    private SubnetScanner subnetScanner;
 
 
     public DeviceManagementFragment() {
@@ -77,7 +90,9 @@ public class DeviceManagementFragment extends Fragment implements NsdHelper.NsdH
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         appViewModel = new ViewModelProvider(requireActivity()).get(AppViewModel.class);
-        nsdHelper = new NsdHelper(requireContext(), this);
+        discoveryBackend = new FallbackDiscoveryBackend(requireContext(), this);
+        discoveryCache = DiscoveryCache.getInstance(requireContext());
+        subnetScanner = new SubnetScanner(requireContext(), SubnetScanner.DEFAULT_CONCURRENCY);
     }
 
     @Nullable
@@ -99,6 +114,7 @@ public class DeviceManagementFragment extends Fragment implements NsdHelper.NsdH
 
         // NSD UI
         buttonScanNetwork = view.findViewById(R.id.buttonScanNetwork);
+        buttonSweepSubnet = view.findViewById(R.id.buttonSweepSubnet);
         textViewNsdStatus = view.findViewById(R.id.textViewNsdStatus);
         recyclerViewDiscoveredNsdServices = view.findViewById(R.id.recyclerViewDiscoveredNsdServices);
         recyclerViewDiscoveredNsdServices.setLayoutManager(new LinearLayoutManager(getContext()));
@@ -109,7 +125,7 @@ public class DeviceManagementFragment extends Fragment implements NsdHelper.NsdH
                 appViewModel.addEspDevice(new EspDevice(device.getName(), device.getAddress())); // Use name from discovery
                 appViewModel.setActiveEspAddress(device.getAddress());
                 Toast.makeText(getContext(), device.getName() + " added and set active.", Toast.LENGTH_SHORT).show();
-                if (nsdHelper.isDiscoveryActive()) nsdHelper.stopDiscovery(); // Stop discovery after selection
+                if (discoveryBackend.isDiscoveryActive()) discoveryBackend.stopDiscovery(); // Stop discovery after selection
                 discoveredServicesAdapter.clearDevices(); // Clear discovered list after selection
             }
             @Override public void onEditDevice(EspDevice device, int position) { /* Not used for discovered list */ }
@@ -126,6 +142,7 @@ public class DeviceManagementFragment extends Fragment implements NsdHelper.NsdH
 
         buttonAddEspManual.setOnClickListener(v -> addManualEspDevice());
         buttonScanNetwork.setOnClickListener(v -> toggleNsdDiscovery());
+        buttonSweepSubnet.setOnClickListener(v -> toggleSubnetSweep());
         buttonSaveDynamicList.setOnClickListener(v -> saveDynamicEspList());
 
         return view;
@@ -137,7 +154,7 @@ public class DeviceManagementFragment extends Fragment implements NsdHelper.NsdH
 
         appViewModel.getEspDevicesLiveData().observe(getViewLifecycleOwner(), devices -> {
             Log.d(TAG, "Managed ESPs list updated. Count: " + (devices != null ? devices.size() : 0));
-            espDeviceAdapter.updateDevices(devices != null ? new ArrayList<>(devices) : new ArrayList<>());
+            espDeviceAdapter.updateDevices(devices); // Immutable registry snapshot, diffed off the main thread
             // Update dynamic inputs if the number of devices from ViewModel matches spinner and inputs are empty
             // This is to prefill if app restarts and data was loaded
              if (devices != null && spinnerNumEsps.getSelectedItemPosition() == devices.size() && allDynamicInputsEmpty()) {
@@ -155,6 +172,13 @@ public class DeviceManagementFragment extends Fragment implements NsdHelper.NsdH
             espDeviceAdapter.setActiveEspAddress(activeAddress); // Notify adapter to re-bind for highlight
             discoveredServicesAdapter.setActiveEspAddress(activeAddress); // Also for discovered list
         });
+
+        showCachedDiscoveries();
+
+        // Live health rows; the prober batches results to about one update per second
+        appViewModel.getDeviceStatusesLiveData().observe(getViewLifecycleOwner(), statuses -> {
+            if (statuses != null) espDeviceAdapter.setDeviceStatuses(statuses);
+        });
     }
     
     private boolean allDynamicInputsEmpty() {
@@ -288,23 +312,116 @@ public class DeviceManagementFragment extends Fragment implements NsdHelper.NsdH
     }
 
     private void toggleNsdDiscovery() {
-        if (nsdHelper.isDiscoveryActive()) {
-            nsdHelper.stopDiscovery();
+        if (discoveryBackend.isDiscoveryActive()) {
+            discoveryBackend.stopDiscovery();
             // UI update (button text, status) is handled by onNsdDiscoveryLifecycleChange
         } else {
             discoveredServicesAdapter.clearDevices(); // Clear previous scan results
+            startNsdDiscovery();
             textViewNsdStatus.setText(R.string.nsd_status_scanning);
-            nsdHelper.discoverServices(ESP_SERVICE_NAME_FILTER, ESP_HTTP_SERVICE_TYPE);
-            buttonScanNetwork.setText(R.string.stop_network_scan_button);
-            // Start timeout for discovery
-            discoveryTimeoutHandler.postDelayed(discoveryTimeoutRunnable, NSD_DISCOVERY_TIMEOUT_MS);
         }
     }
 
+    private void startNsdDiscovery() {
+        discoveryStartedAtMs = System.currentTimeMillis();
+        discoveryBackend.discoverServices(ESP_SERVICE_NAME_FILTER, ESP_HTTP_SERVICE_TYPE);
+        buttonScanNetwork.setText(R.string.stop_network_scan_button);
+        // Start timeout for discovery
+        discoveryTimeoutHandler.postDelayed(discoveryTimeoutRunnable, NSD_DISCOVERY_TIMEOUT_MS);
+    }
+
+    private void toggleSubnetSweep() {
+        if (subnetScanner.isScanning()) {
+            subnetScanner.cancel();
+            buttonSweepSubnet.setText(R.string.start_subnet_sweep_button);
+            textViewNsdStatus.setText(getString(R.string.sweep_status_finished, discoveredServicesAdapter.getDeviceCount()));
+            return;
+        }
+        buttonSweepSubnet.setText(R.string.stop_subnet_sweep_button);
+        textViewNsdStatus.setText(getString(R.string.sweep_status_progress, 0, 0, 0));
+        // Results are merged into the discovered list, so mDNS and sweep results can be combined
+        subnetScanner.start(subnetSweepListener);
+    }
+
+    private final SubnetScanner.Listener subnetSweepListener = new SubnetScanner.Listener() {
+        // Callbacks arrive on the scanner's worker threads
+        @Override
+        public void onSensorFound(@NonNull DiscoveredService service) {
+            discoveryCache.put(service);
+            if (getActivity() == null) return;
+            getActivity().runOnUiThread(() -> {
+                if (getView() == null) return;
+                Log.i(TAG, "Subnet sweep found ESP at " + service.getHostAddress());
+                discoveredServicesAdapter.addDevice(new EspDevice(service.getServiceName(), service.getHostAddress()));
+            });
+        }
+
+        @Override
+        public void onScanProgress(int scannedHosts, int totalHosts, int sensorsFound) {
+            if (getActivity() == null) return;
+            getActivity().runOnUiThread(() -> {
+                if (getView() == null) return;
+                textViewNsdStatus.setText(getString(R.string.sweep_status_progress, scannedHosts, totalHosts, sensorsFound));
+            });
+        }
+
+        @Override
+        public void onScanFinished(int found) {
+            if (getActivity() == null) return;
+            getActivity().runOnUiThread(() -> {
+                if (getView() == null) return;
+                buttonSweepSubnet.setText(R.string.start_subnet_sweep_button);
+                textViewNsdStatus.setText(getString(R.string.sweep_status_finished, found));
+            });
+        }
+
+        @Override
+        public void onScanFailed(@NonNull String reason) {
+            if (getActivity() == null) return;
+            getActivity().runOnUiThread(() -> {
+                if (getView() == null) return;
+                Log.e(TAG, "Subnet sweep failed: " + reason);
+                buttonSweepSubnet.setText(R.string.start_subnet_sweep_button);
+                textViewNsdStatus.setText(getString(R.string.sweep_status_failed, reason));
+            });
+        }
+    };
+
+    /** Fills the discovered list from the cache so it is populated before any scan answers. */
+    private void showCachedDiscoveries() {
+        List<DiscoveryCache.Entry> cached = discoveryCache.getFreshEntries();
+        if (cached.isEmpty()) return;
+        List<EspDevice> cachedDevices = new ArrayList<>(cached.size());
+        for (DiscoveryCache.Entry entry : cached) {
+            cachedDevices.add(new EspDevice(entry.service.getServiceName(), entry.service.getHostAddress()));
+        }
+        discoveredServicesAdapter.updateDevices(cachedDevices);
+        textViewNsdStatus.setText(getString(R.string.nsd_status_cached_found, cachedDevices.size()));
+    }
+
+    /**
+     * Rescans in the background when cached results are shown. Entries the scan finds are refreshed;
+     * if it runs to its timeout, those it didn't find are dropped (see discoveryTimeoutRunnable).
+     */
+    private void revalidateCachedDiscoveries() {
+        long now = SystemClock.elapsedRealtime();
+        if (discoveryBackend.isDiscoveryActive() || discoveryCache.getFreshEntries().isEmpty()
+                || (lastCacheRevalidationMs != 0 && now - lastCacheRevalidationMs < CACHE_REVALIDATE_MIN_INTERVAL_MS)) {
+            return;
+        }
+        lastCacheRevalidationMs = now;
+        Log.d(TAG, "Revalidating cached discoveries in the background.");
+        startNsdDiscovery();
+    }
+
     private final Runnable discoveryTimeoutRunnable = () -> {
-        if (nsdHelper.isDiscoveryActive()) {
+        if (discoveryBackend.isDiscoveryActive()) {
             Log.w(TAG, "NSD Discovery timed out.");
-            nsdHelper.stopDiscovery(); // This will trigger onNsdDiscoveryLifecycleChange
+            discoveryBackend.stopDiscovery(); // This will trigger onNsdDiscoveryLifecycleChange
+            // The scan ran its full length, so cached services that didn't answer are gone
+            for (DiscoveryCache.Entry gone : discoveryCache.removeNotSeenSince(ESP_HTTP_SERVICE_TYPE, discoveryStartedAtMs)) {
+                discoveredServicesAdapter.removeDevice(new EspDevice(gone.service.getServiceName(), gone.service.getHostAddress()));
+            }
             Toast.makeText(getContext(), R.string.nsd_scan_timed_out, Toast.LENGTH_SHORT).show();
         }
     };
@@ -362,6 +479,7 @@ public class DeviceManagementFragment extends Fragment implements NsdHelper.NsdH
     public void onNsdServiceResolved(DiscoveredService service) {
         // NsdServiceInfo comes from NSD, DiscoveredService is our model wrapper
         // The NsdHelper has already converted NsdServiceInfo to DiscoveredService
+        discoveryCache.put(service); // Refresh last-seen even if the UI is gone
         if (getActivity() == null) return;
         getActivity().runOnUiThread(() -> {
             Log.i(TAG, "NSD Service Resolved: Name='" + service.getServiceName() + "', Host='" + service.getHostAddress() + ":" + service.getPort() + "'");
@@ -370,7 +488,7 @@ public class DeviceManagementFragment extends Fragment implements NsdHelper.NsdH
             // If service.getServiceName() is more user-friendly, use that for name.
             EspDevice discoveredEsp = new EspDevice(service.getServiceName(), service.getHostAddress()); // Assume port 80 or client handles port
             discoveredServicesAdapter.addDevice(discoveredEsp);
-            textViewNsdStatus.setText(getString(R.string.nsd_status_resolved_found, discoveredServicesAdapter.getItemCount()));
+            textViewNsdStatus.setText(getString(R.string.nsd_status_resolved_found, discoveredServicesAdapter.getDeviceCount()));
         });
     }
 
@@ -380,9 +498,9 @@ public class DeviceManagementFragment extends Fragment implements NsdHelper.NsdH
         getActivity().runOnUiThread(() -> {
             Log.w(TAG, "NSD Service Lost: " + service.getServiceName());
             EspDevice lostEsp = new EspDevice(service.getServiceName(), service.getHostAddress());
-            discoveredServicesAdapter.removeDevice(lostEsp);
             Toast.makeText(getContext(), getString(R.string.nsd_service_lost_toast, service.getServiceName()), Toast.LENGTH_SHORT).show();
-            if (discoveredServicesAdapter.getItemCount() == 0 && !nsdHelper.isDiscoveryActive()) {
+            discoveredServicesAdapter.removeDevice(lostEsp);
+            if (discoveredServicesAdapter.getDeviceCount() == 0 && !discoveryBackend.isDiscoveryActive()) {
                  textViewNsdStatus.setText(R.string.nsd_status_idle_no_services);
             }
         });
@@ -421,31 +539,43 @@ public class DeviceManagementFragment extends Fragment implements NsdHelper.NsdH
             } else {
                 buttonScanNetwork.setText(R.string.start_network_scan_button);
                 discoveryTimeoutHandler.removeCallbacks(discoveryTimeoutRunnable); // Stop timeout
-                if (discoveredServicesAdapter.getItemCount() == 0) {
+                if (discoveredServicesAdapter.getDeviceCount() == 0) {
                     textViewNsdStatus.setText(R.string.nsd_status_stopped_no_services);
                 } else {
-                    textViewNsdStatus.setText(getString(R.string.nsd_status_stopped_found, discoveredServicesAdapter.getItemCount()));
+                    textViewNsdStatus.setText(getString(R.string.nsd_status_stopped_found, discoveredServicesAdapter.getDeviceCount()));
                 }
             }
         });
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        appViewModel.startDeviceHealthProbing(); // Only while the Devices tab is visible
+        revalidateCachedDiscoveries();
+    }
+
     @Override
     public void onPause() {
         super.onPause();
+        appViewModel.stopDeviceHealthProbing();
         Log.d(TAG, "onPause: Stopping NSD discovery if active.");
-        if (nsdHelper.isDiscoveryActive()) {
-            nsdHelper.stopDiscovery();
+        if (discoveryBackend.isDiscoveryActive()) {
+            discoveryBackend.stopDiscovery();
         }
         discoveryTimeoutHandler.removeCallbacks(discoveryTimeoutRunnable); // Clear timeout
+        if (subnetScanner.isScanning()) {
+            subnetScanner.cancel();
+            buttonSweepSubnet.setText(R.string.start_subnet_sweep_button);
+        }
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
         Log.d(TAG, "onDestroy: Tearing down NsdHelper.");
-        if (nsdHelper != null) {
-            nsdHelper.tearDown(); // Properly release NSD resources
+        if (discoveryBackend != null) {
+            discoveryBackend.tearDown(); // Properly release NSD resources
         }
         discoveryTimeoutHandler.removeCallbacksAndMessages(null); // Clean up handler
     }
@@ -0,0 +1,237 @@
+package com.example.mybasicapp.fragments;
+
+import android.content.ContentResolver;
+import android.graphics.Typeface;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.StyleSpan;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
+
+import com.example.mybasicapp.R;
+import com.example.mybasicapp.metrics.CallPhase;
+import com.example.mybasicapp.metrics.CallPhaseStats;
+import com.example.mybasicapp.metrics.CallTrace;
+import com.example.mybasicapp.metrics.EndpointStats;
+import com.example.mybasicapp.metrics.RequestMetrics;
+import com.example.mybasicapp.model.EspDevice;
+import com.example.mybasicapp.viewmodels.AppViewModel;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Per-device request latency (p50/p95/p99), error rates and phase split (DNS, connect, ESP
+ * processing, ...) from {@link RequestMetrics}, slowest devices first, followed by the most recent
+ * slow or sampled call traces. Refreshed while visible; the numbers can be exported as CSV.
+ */
+public class DiagnosticsFragment extends Fragment {
+    private static final String TAG = "DiagnosticsFrag_DBG";
+
+    private static final long REFRESH_INTERVAL_MS = 2000;
+    private static final long SLOW_P95_MS = 1000;      // Flagged as slow above this
+    private static final double HIGH_ERROR_RATE = 0.05; // Flagged as unreliable above this
+    private static final int TRACES_SHOWN = 5;
+
+    private AppViewModel appViewModel;
+    private final RequestMetrics metrics = RequestMetrics.getInstance();
+    private final Handler refreshHandler = new Handler(Looper.getMainLooper());
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            render();
+            refreshHandler.postDelayed(this, REFRESH_INTERVAL_MS);
+        }
+    };
+    private final Map<String, String> deviceNamesByKey = new HashMap<>(); // Address key -> user-given name
+
+    private TextView textViewSummary, textViewDevices;
+    private ActivityResultLauncher<String> exportLauncher;
+
+    public DiagnosticsFragment() {
+        // Required empty public constructor
+    }
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        appViewModel = new ViewModelProvider(requireActivity()).get(AppViewModel.class);
+        exportLauncher = registerForActivityResult(new ActivityResultContracts.CreateDocument("text/csv"), uri -> {
+            if (uri != null) exportTo(uri);
+        });
+    }
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        View view = inflater.inflate(R.layout.fragment_diagnostics, container, false);
+        textViewSummary = view.findViewById(R.id.textViewDiagnosticsSummary);
+        textViewDevices = view.findViewById(R.id.textViewDiagnosticsDevices);
+        Button buttonExport = view.findViewById(R.id.buttonExportDiagnostics);
+        Button buttonReset = view.findViewById(R.id.buttonResetDiagnostics);
+
+        buttonExport.setOnClickListener(v -> exportLauncher.launch("MrCoopersESP32_Diagnostics_"
+                + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date()) + ".csv"));
+        buttonReset.setOnClickListener(v -> {
+            metrics.reset();
+            render();
+        });
+        return view;
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        appViewModel.getEspDevicesLiveData().observe(getViewLifecycleOwner(), devices -> {
+            deviceNamesByKey.clear();
+            if (devices != null) {
+                for (EspDevice device : devices) deviceNamesByKey.put(device.getAddressKey(), device.getName());
+            }
+            render();
+        });
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        refreshHandler.post(refreshRunnable);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        refreshHandler.removeCallbacks(refreshRunnable);
+    }
+
+    private void render() {
+        if (textViewDevices == null) return;
+        List<EndpointStats.Snapshot> devices = new ArrayList<>(metrics.getDeviceSnapshots());
+        if (devices.isEmpty()) {
+            textViewSummary.setText(R.string.diagnostics_no_requests);
+            textViewDevices.setText("");
+            return;
+        }
+        Map<String, List<EndpointStats.Snapshot>> endpointsByDevice = new HashMap<>();
+        for (EndpointStats.Snapshot endpoint : metrics.getEndpointSnapshots()) {
+            List<EndpointStats.Snapshot> list = endpointsByDevice.get(endpoint.device);
+            if (list == null) {
+                list = new ArrayList<>();
+                endpointsByDevice.put(endpoint.device, list);
+            }
+            list.add(endpoint);
+        }
+        Map<String, CallPhaseStats.Snapshot> phasesByDevice = new HashMap<>();
+        for (CallPhaseStats.Snapshot phases : metrics.getPhaseSnapshots()) phasesByDevice.put(phases.device, phases);
+        Collections.sort(devices, (a, b) -> Long.compare(b.p95Ms(), a.p95Ms())); // Slowest first
+
+        long requests = 0, failures = 0;
+        SpannableStringBuilder text = new SpannableStringBuilder();
+        for (EndpointStats.Snapshot device : devices) {
+            requests += device.getRequests();
+            failures += device.getRequests() - device.successes;
+            appendDevice(text, device, endpointsByDevice.get(device.device), phasesByDevice.get(device.device));
+        }
+        appendTraces(text, metrics.getRecentTraces());
+        double errorPercent = requests == 0 ? 0 : 100.0 * failures / requests;
+        textViewSummary.setText(getString(R.string.diagnostics_summary, devices.size(), requests, errorPercent));
+        textViewDevices.setText(text);
+    }
+
+    private void appendDevice(SpannableStringBuilder text, EndpointStats.Snapshot device, @Nullable List<EndpointStats.Snapshot> endpoints,
+                              @Nullable CallPhaseStats.Snapshot phases) {
+        boolean flagged = device.p95Ms() > SLOW_P95_MS || device.getErrorRate() > HIGH_ERROR_RATE;
+        String name = deviceNamesByKey.get(device.device);
+        String title = (flagged ? "\u26A0 " : "") + (name != null && !name.equalsIgnoreCase(device.device) ? name + " (" + device.device + ")" : device.device);
+        int start = text.length();
+        text.append(title);
+        text.setSpan(new StyleSpan(Typeface.BOLD), start, text.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        text.append("\n  ").append(getString(R.string.diagnostics_device_row, device.p50Ms(), device.p95Ms(), device.p99Ms(),
+                100 * device.getErrorRate(), device.getRequests()));
+        if (device.getRequests() > device.successes) {
+            text.append("\n  ").append(getString(R.string.diagnostics_device_failures, device.timeouts, device.networkErrors, device.httpErrors));
+        }
+        if (phases != null && phases.calls > 0) {
+            text.append("\n  ").append(getString(R.string.diagnostics_phase_row, phasesText(phases), 100 * phases.getReuseRate()));
+        }
+        if (endpoints != null && endpoints.size() > 1) {
+            for (EndpointStats.Snapshot endpoint : endpoints) {
+                text.append("\n    ").append(getString(R.string.diagnostics_endpoint_row, endpoint.endpoint, endpoint.p95Ms(), endpoint.getRequests()));
+            }
+        }
+        text.append("\n\n");
+    }
+
+    /** p95 per phase that was measured, e.g. "dns 2, connect 14, request 0, server 40, response 1". */
+    private static String phasesText(CallPhaseStats.Snapshot phases) {
+        StringBuilder builder = new StringBuilder();
+        for (CallPhase phase : CallPhase.values()) {
+            long p95 = phases.p95Ms(phase);
+            if (p95 < 0) continue;
+            if (builder.length() > 0) builder.append(", ");
+            builder.append(phase.label).append(' ').append(p95);
+        }
+        return builder.toString();
+    }
+
+    private void appendTraces(SpannableStringBuilder text, List<CallTrace> traces) {
+        if (traces.isEmpty()) return;
+        int start = text.length();
+        text.append(getString(R.string.diagnostics_traces_header));
+        text.setSpan(new StyleSpan(Typeface.BOLD), start, text.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        for (CallTrace trace : traces.subList(0, Math.min(TRACES_SHOWN, traces.size()))) {
+            text.append("\n").append(trace.toString()).append('\n');
+        }
+    }
+
+    private void exportTo(Uri uri) {
+        // Snapshots are cheap, but the SAF stream may be slow; write off the main thread like the activity log export
+        final ContentResolver resolver = requireContext().getContentResolver();
+        new Thread(() -> {
+            String error = null;
+            try (OutputStream outputStream = resolver.openOutputStream(uri);
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Objects.requireNonNull(outputStream), StandardCharsets.UTF_8))) {
+                metrics.writeCsv(writer);
+            } catch (IOException | NullPointerException | SecurityException e) {
+                Log.e(TAG, "exportTo: " + e.getMessage(), e);
+                error = e.getMessage();
+            }
+            final String finalError = error;
+            refreshHandler.post(() -> {
+                if (getContext() == null) return;
+                if (finalError == null) {
+                    Toast.makeText(getContext(), R.string.diagnostics_exported, Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(getContext(), getString(R.string.diagnostics_export_failed, finalError), Toast.LENGTH_LONG).show();
+                }
+            });
+        }, "DiagnosticsExport").start();
+    }
+}
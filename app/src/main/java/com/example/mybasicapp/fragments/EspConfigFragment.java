@@ -15,16 +15,18 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.example.mybasicapp.R;
+import com.example.mybasicapp.network.ConfigTransaction;
+import com.example.mybasicapp.network.DeviceConfigRepository;
 import com.example.mybasicapp.network.EspConfigClient;
 import com.example.mybasicapp.viewmodels.AppViewModel;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 
-import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.IOException;
+import java.util.Collections;
 import java.util.Locale;
+import java.util.Set;
 
 public class EspConfigFragment extends Fragment {
     private static final String TAG = "EspConfigFragment_DBG";
@@ -34,14 +36,16 @@ public class EspConfigFragment extends Fragment {
 
     private TextInputEditText editTextCalibrationOffset, editTextWifiSsid, editTextWifiPassword;
     private TextInputLayout textInputLayoutCalibration, textInputLayoutSsid, textInputLayoutPassword;
-    private Button buttonFetchEspConfig, buttonSetCalibration, buttonSetWifi;
+    private Button buttonFetchEspConfig, buttonSetCalibration, buttonSetWifi, buttonApplyAllConfig;
     private TextView textViewEspConfigStatus;
 
     private String currentActiveEspIpForFragment = null;
     private boolean isOperating = false; // To prevent multiple simultaneous operations
 
-    // To store fetched config to avoid re-parsing unless fetched again
+    // Config currently shown in the fields (from DeviceConfigRepository); baseline for ConfigTransaction diffs
     private JSONObject currentEspConfig = null;
+    // What the config last put in each field; a field whose text differs has been edited. Null refills it.
+    private String calibrationTextFromConfig = null, ssidTextFromConfig = null, passwordTextFromConfig = null;
 
     public EspConfigFragment() {
         // Required empty public constructor
@@ -51,7 +55,7 @@ public class EspConfigFragment extends Fragment {
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         appViewModel = new ViewModelProvider(requireActivity()).get(AppViewModel.class);
-        espConfigClient = new EspConfigClient();
+        espConfigClient = new EspConfigClient(requireContext());
     }
 
     @Nullable
@@ -70,17 +74,19 @@ public class EspConfigFragment extends Fragment {
         buttonFetchEspConfig = view.findViewById(R.id.buttonFetchEspConfig);
         buttonSetCalibration = view.findViewById(R.id.buttonSetCalibration);
         buttonSetWifi = view.findViewById(R.id.buttonSetWifi);
+        buttonApplyAllConfig = view.findViewById(R.id.buttonApplyAllConfig);
         textViewEspConfigStatus = view.findViewById(R.id.textViewEspConfigStatus);
 
         buttonFetchEspConfig.setOnClickListener(v -> {
             if (currentActiveEspIpForFragment != null && !currentActiveEspIpForFragment.isEmpty()) {
-                fetchFullEspConfig(currentActiveEspIpForFragment);
+                appViewModel.refreshActiveDeviceConfig(true);
             } else {
                 Toast.makeText(getContext(), R.string.no_active_esp_for_action, Toast.LENGTH_SHORT).show();
             }
         });
         buttonSetCalibration.setOnClickListener(v -> setEspCalibrationOffset());
         buttonSetWifi.setOnClickListener(v -> setEspWifiConfig());
+        buttonApplyAllConfig.setOnClickListener(v -> applyAllConfigChanges());
 
         return view;
     }
@@ -91,14 +97,17 @@ public class EspConfigFragment extends Fragment {
 
         appViewModel.getActiveEspAddressLiveData().observe(getViewLifecycleOwner(), address -> {
             currentActiveEspIpForFragment = address;
+            currentEspConfig = null; // Belongs to the previous ESP, as do any edits in the fields
+            calibrationTextFromConfig = null;
+            ssidTextFromConfig = null;
+            passwordTextFromConfig = null;
             updateUiBasedOnActiveEsp();
-            if (address != null && !address.isEmpty()) {
-                fetchFullEspConfig(address); // Auto-fetch on active ESP change or view creation
-            } else {
+            if (address == null || address.isEmpty()) {
                 clearConfigFields();
                 textViewEspConfigStatus.setText(R.string.select_active_esp_prompt);
             }
         });
+        appViewModel.getActiveDeviceConfigLiveData().observe(getViewLifecycleOwner(), this::renderConfigState);
     }
 
     private void updateUiBasedOnActiveEsp() {
@@ -114,6 +123,7 @@ public class EspConfigFragment extends Fragment {
         textInputLayoutPassword.setEnabled(isActiveEspSelected);
         editTextWifiPassword.setEnabled(isActiveEspSelected);
         buttonSetWifi.setEnabled(isActiveEspSelected);
+        buttonApplyAllConfig.setEnabled(isActiveEspSelected);
 
         if (!isActiveEspSelected) {
             clearConfigFields();
@@ -123,6 +133,9 @@ public class EspConfigFragment extends Fragment {
     }
 
     private void clearConfigFields() {
+        calibrationTextFromConfig = null;
+        ssidTextFromConfig = null;
+        passwordTextFromConfig = null;
         editTextCalibrationOffset.setText("");
         editTextWifiSsid.setText("");
         editTextWifiPassword.setText("");
@@ -135,12 +148,17 @@ public class EspConfigFragment extends Fragment {
         }
         currentEspConfig = config; // Cache the fetched config
 
-        editTextCalibrationOffset.setText(String.format(Locale.US, "%.1f", config.optDouble("calibration_offset", 0.0)));
-        editTextWifiSsid.setText(config.optString("wifi_ssid", ""));
+        String calibrationText = String.format(Locale.US, "%.1f", config.optDouble("calibration_offset", 0.0));
+        ConfigFields.refillUnlessEdited(editTextCalibrationOffset, calibrationTextFromConfig, calibrationText);
+        calibrationTextFromConfig = calibrationText;
+        String ssidText = config.optString("wifi_ssid", "");
+        ConfigFields.refillUnlessEdited(editTextWifiSsid, ssidTextFromConfig, ssidText);
+        ssidTextFromConfig = ssidText;
         // For security, don't pre-fill password from config unless explicitly desired for "show current"
         // editTextWifiPassword.setText(config.optString("wifi_password", ""));
         // Better to leave password blank for user to input if changing.
-        editTextWifiPassword.setText(""); // Keep password field blank for new input
+        ConfigFields.refillUnlessEdited(editTextWifiPassword, passwordTextFromConfig, ""); // Keep password field blank for new input
+        passwordTextFromConfig = "";
         // If you *want* to show the password (not recommended for actual passwords):
         // String storedPassword = config.optString("wifi_password", "");
         // editTextWifiPassword.setText(storedPassword.equals(DEFAULT_WIFI_PASSWORD_PLACEHOLDER) ? "" : storedPassword);
@@ -149,103 +167,142 @@ public class EspConfigFragment extends Fragment {
         textViewEspConfigStatus.setText(getString(R.string.status_config_loaded_at, System.currentTimeMillis()));
     }
 
-    private void fetchFullEspConfig(String espIp) {
-        if (espIp == null || espIp.isEmpty() || isOperating) {
-            if(isOperating) Log.d(TAG, "Operation in progress, skipping fetch request.");
+    /** Shows the active ESP's config from the shared repository: cached value first, then revalidated. */
+    private void renderConfigState(DeviceConfigRepository.ConfigState state) {
+        if (currentActiveEspIpForFragment == null || currentActiveEspIpForFragment.isEmpty()) return;
+        if (state.config != null && state.config != currentEspConfig) {
+            populateFieldsFromConfig(state.config);
+        }
+        if (isOperating) return; // A write is reporting its own status
+        if (state.refreshing) {
+            textViewEspConfigStatus.setText(R.string.status_fetching_config);
+        } else if (state.error != null) {
+            textViewEspConfigStatus.setText(state.errorCode != 0
+                    ? getString(R.string.status_fetch_failed_server, state.errorCode, state.error)
+                    : getString(R.string.status_fetch_failed_network, state.error));
+        } else if (state.config != null) {
+            textViewEspConfigStatus.setText(R.string.status_config_fetched_ok);
+        }
+    }
+
+    private void setEspCalibrationOffset() {
+        if (!checkCanOperate()) return;
+        Float offsetValue = readCalibrationOffset();
+        if (offsetValue == null) return;
+        commitConfigTransaction(newTransaction().setCalibrationOffset(offsetValue));
+    }
+
+    private void setEspWifiConfig() {
+        if (!checkCanOperate()) return;
+        String ssid = editTextWifiSsid.getText() != null ? editTextWifiSsid.getText().toString().trim() : "";
+        String password = editTextWifiPassword.getText() != null ? editTextWifiPassword.getText().toString() : ""; // Password can be empty
+
+        if (TextUtils.isEmpty(ssid)) {
+            // Some ESPs might treat empty SSID as "disconnect" or "use saved default".
+            // For explicit setting, usually requires a non-empty SSID.
+            Toast.makeText(getContext(), R.string.enter_wifi_ssid_prompt, Toast.LENGTH_SHORT).show();
             return;
         }
-        isOperating = true;
-        textViewEspConfigStatus.setText(R.string.status_fetching_config);
-        clearConfigFields(); // Clear fields while fetching
+        commitConfigTransaction(newTransaction().setWifiConfig(ssid, password));
+    }
 
-        String baseUrl = "http://" + espIp; // EspConfigClient needs full URL
-        espConfigClient.getConfig(baseUrl, new EspConfigClient.ConfigCallback() {
-            @Override
-            public void onSuccess(String responseBody) {
-                if (getActivity() == null) { isOperating = false; return; }
-                getActivity().runOnUiThread(() -> {
-                    isOperating = false;
-                    try {
-                        JSONObject config = new JSONObject(responseBody);
-                        populateFieldsFromConfig(config);
-                        textViewEspConfigStatus.setText(R.string.status_config_fetched_ok);
-                    } catch (JSONException e) {
-                        Log.e(TAG, "Error parsing full ESP config JSON: " + responseBody, e);
-                        textViewEspConfigStatus.setText(R.string.status_config_parse_error);
-                        currentEspConfig = null;
-                    }
-                });
-            }
-            @Override
-            public void onFailure(IOException e) {
-                handleOperationError(getString(R.string.status_fetch_failed_network, e.getMessage()));
-            }
-            @Override
-            public void onError(String message, int code) {
-                handleOperationError(getString(R.string.status_fetch_failed_server, code, message));
-            }
-        });
+    /** Calibration and Wi-Fi together; only the fields that changed since the last fetch are sent. */
+    private void applyAllConfigChanges() {
+        if (!checkCanOperate()) return;
+        Float offsetValue = readCalibrationOffset();
+        if (offsetValue == null) return;
+        ConfigTransaction transaction = newTransaction().setCalibrationOffset(offsetValue);
+        String ssid = editTextWifiSsid.getText() != null ? editTextWifiSsid.getText().toString().trim() : "";
+        if (!TextUtils.isEmpty(ssid)) { // An empty SSID means "leave Wi-Fi alone" here
+            String password = editTextWifiPassword.getText() != null ? editTextWifiPassword.getText().toString() : "";
+            transaction.setWifiConfig(ssid, password);
+        }
+        commitConfigTransaction(transaction);
     }
 
-    private void setEspCalibrationOffset() {
+    private boolean checkCanOperate() {
         if (currentActiveEspIpForFragment == null || currentActiveEspIpForFragment.isEmpty() || isOperating) {
             if (isOperating) Toast.makeText(getContext(), R.string.operation_in_progress, Toast.LENGTH_SHORT).show();
             else Toast.makeText(getContext(), R.string.no_active_esp_for_action, Toast.LENGTH_SHORT).show();
-            return;
+            return false;
         }
+        return true;
+    }
+
+    @Nullable
+    private Float readCalibrationOffset() {
         String offsetStr = editTextCalibrationOffset.getText() != null ? editTextCalibrationOffset.getText().toString().trim() : "";
         if (TextUtils.isEmpty(offsetStr)) {
             Toast.makeText(getContext(), R.string.enter_calibration_offset_prompt, Toast.LENGTH_SHORT).show();
-            return;
+            return null;
         }
         try {
-            float offsetValue = Float.parseFloat(offsetStr);
-            isOperating = true;
-            textViewEspConfigStatus.setText(R.string.status_setting_calibration);
-            String baseUrl = "http://" + currentActiveEspIpForFragment;
-            espConfigClient.setCalibration(baseUrl, offsetValue, new EspConfigClient.ConfigCallback() {
-                @Override public void onSuccess(String responseBody) {
-                    handleOperationError(getString(R.string.status_calibration_set_success));
-                    fetchFullEspConfig(currentActiveEspIpForFragment); // Re-fetch to confirm
-                }
-                @Override public void onFailure(IOException e) { handleOperationError(getString(R.string.status_set_failed_network, e.getMessage()));}
-                @Override public void onError(String message, int code) { handleOperationError(getString(R.string.status_set_failed_server, code, message));}
-            });
+            return Float.parseFloat(offsetStr);
         } catch (NumberFormatException e) {
             Toast.makeText(getContext(), R.string.invalid_offset_format_prompt, Toast.LENGTH_SHORT).show();
             textViewEspConfigStatus.setText(R.string.status_invalid_format);
+            return null;
         }
     }
 
-    private void setEspWifiConfig() {
-        if (currentActiveEspIpForFragment == null || currentActiveEspIpForFragment.isEmpty() || isOperating) {
-             if (isOperating) Toast.makeText(getContext(), R.string.operation_in_progress, Toast.LENGTH_SHORT).show();
-            else Toast.makeText(getContext(), R.string.no_active_esp_for_action, Toast.LENGTH_SHORT).show();
-            return;
-        }
-        String ssid = editTextWifiSsid.getText() != null ? editTextWifiSsid.getText().toString().trim() : "";
-        String password = editTextWifiPassword.getText() != null ? editTextWifiPassword.getText().toString() : ""; // Password can be empty
+    private ConfigTransaction newTransaction() {
+        // Diffed against the last fetched config; with none cached every field is sent
+        return new ConfigTransaction(espConfigClient, "http://" + currentActiveEspIpForFragment, currentEspConfig);
+    }
 
-        if (TextUtils.isEmpty(ssid)) {
-            // Some ESPs might treat empty SSID as "disconnect" or "use saved default".
-            // For explicit setting, usually requires a non-empty SSID.
-            Toast.makeText(getContext(), R.string.enter_wifi_ssid_prompt, Toast.LENGTH_SHORT).show();
-            return;
-        }
+    private void commitConfigTransaction(ConfigTransaction transaction) {
         isOperating = true;
-        textViewEspConfigStatus.setText(R.string.status_setting_wifi);
-        String baseUrl = "http://" + currentActiveEspIpForFragment;
-        espConfigClient.setWifiConfig(baseUrl, ssid, password, new EspConfigClient.ConfigCallback() {
-            @Override public void onSuccess(String responseBody) {
-                handleOperationError(getString(R.string.status_wifi_set_success));
-                Toast.makeText(getContext(), R.string.esp_reboot_may_be_needed_wifi, Toast.LENGTH_LONG).show();
-                // Don't auto-fetch immediately as ESP might be rebooting or changing IP
-                // User should re-scan or re-select if ESP address changes.
-                // Or, if IP is static, can try fetching after a delay.
-                // For now, just inform user.
+        String address = currentActiveEspIpForFragment;
+        textViewEspConfigStatus.setText(R.string.status_applying_config);
+        transaction.commit(new ConfigTransaction.Callback() {
+            @Override
+            public void onCommitted(@NonNull Set<String> changedFields, boolean batched) {
+                appViewModel.onConfigWritten(address, changedFields); // Older queued values must not overwrite these
+                if (getActivity() == null) { isOperating = false; return; }
+                getActivity().runOnUiThread(() -> {
+                    isOperating = false;
+                    if (changedFields.isEmpty()) {
+                        textViewEspConfigStatus.setText(R.string.status_config_no_changes);
+                        return;
+                    }
+                    String fields = TextUtils.join(", ", changedFields);
+                    textViewEspConfigStatus.setText(getString(batched ? R.string.status_config_applied_batched
+                            : R.string.status_config_applied_per_field, fields));
+                    if (changedFields.contains(ConfigTransaction.FIELD_WIFI_SSID)) {
+                        // Don't auto-fetch as the ESP might be rebooting or changing IP
+                        Toast.makeText(getContext(), R.string.esp_reboot_may_be_needed_wifi, Toast.LENGTH_LONG).show();
+                    } else {
+                        appViewModel.invalidateDeviceConfig(address); // Re-fetch to confirm
+                    }
+                });
             }
-            @Override public void onFailure(IOException e) { handleOperationError(getString(R.string.status_set_failed_network, e.getMessage()));}
-            @Override public void onError(String message, int code) { handleOperationError(getString(R.string.status_set_failed_server, code, message));}
+
+            @Override
+            public void onFailed(@NonNull String message, int code, @NonNull Set<String> appliedFields) {
+                appViewModel.onConfigWritten(address, appliedFields);
+                if (code == 0 && !transaction.isCancelled()) {
+                    // Unreachable: threshold/calibration are written once the health check sees the ESP again
+                    appViewModel.queueUnappliedConfig(address, transaction, appliedFields,
+                            queued -> showTransactionFailure(message, code, appliedFields, queued));
+                } else {
+                    showTransactionFailure(message, code, appliedFields, Collections.emptySet());
+                }
+            }
+        });
+    }
+
+    private void showTransactionFailure(String message, int code, Set<String> appliedFields, Set<String> queued) {
+        if (getActivity() == null) { isOperating = false; return; }
+        getActivity().runOnUiThread(() -> {
+            String error = code != 0 ? getString(R.string.status_set_failed_server, code, message)
+                    : getString(R.string.status_set_failed_network, message);
+            if (!queued.isEmpty()) {
+                error = getString(R.string.status_config_queued_offline, TextUtils.join(", ", queued), error);
+            }
+            if (!appliedFields.isEmpty()) {
+                error = getString(R.string.status_config_partially_applied, TextUtils.join(", ", appliedFields), error);
+            }
+            handleOperationError(error);
         });
     }
 
@@ -263,10 +320,7 @@ public class EspConfigFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        // Refresh data if an ESP is active when fragment becomes visible
-        if (currentActiveEspIpForFragment != null && !currentActiveEspIpForFragment.isEmpty()) {
-            fetchFullEspConfig(currentActiveEspIpForFragment);
-        }
+        appViewModel.refreshActiveDeviceConfig(false);
         updateUiBasedOnActiveEsp();
     }
 }
\ No newline at end of file
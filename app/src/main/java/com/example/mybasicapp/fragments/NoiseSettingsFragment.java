@@ -15,16 +15,22 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.example.mybasicapp.R;
+import com.example.mybasicapp.model.EspDevice;
+import com.example.mybasicapp.network.ConfigTransaction;
+import com.example.mybasicapp.network.DeviceConfigRepository;
 import com.example.mybasicapp.network.EspConfigClient;
+import com.example.mybasicapp.network.FleetConfigOperation;
 import com.example.mybasicapp.viewmodels.AppViewModel;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout; // If you need to access the TextInputLayout
 
-import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 public class NoiseSettingsFragment extends Fragment {
     private static final String TAG = "NoiseSettingsFrag_DBG";
@@ -34,11 +40,14 @@ public class NoiseSettingsFragment extends Fragment {
 
     private TextInputEditText editTextEspThreshold;
     private Button buttonSetEspThreshold, buttonRefreshEspThreshold; // Added refresh button
+    private Button buttonSetThresholdAllEsps;
     private TextView textViewCurrentEspThresholdValue, textViewNoiseSettingsStatus;
     private TextInputLayout textInputLayoutEspThreshold; // For enabling/disabling
 
     private String currentActiveEspIpForFragment = null;
-    private boolean isFetchingThreshold = false; // To prevent multiple simultaneous fetches
+    private JSONObject lastFetchedConfig = null; // Baseline for ConfigTransaction diffs, from DeviceConfigRepository
+    private String thresholdTextFromConfig = null; // What the config last put in the threshold field; null refills it
+    private FleetConfigOperation fleetOperation; // Threshold rollout to every managed ESP, null when idle
 
     public NoiseSettingsFragment() {
         // Required empty public constructor
@@ -48,7 +57,7 @@ public class NoiseSettingsFragment extends Fragment {
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         appViewModel = new ViewModelProvider(requireActivity()).get(AppViewModel.class);
-        espConfigClient = new EspConfigClient(); // Initialize your network client
+        espConfigClient = new EspConfigClient(requireContext()); // Initialize your network client
     }
 
     @Nullable
@@ -60,13 +69,15 @@ public class NoiseSettingsFragment extends Fragment {
         textInputLayoutEspThreshold = view.findViewById(R.id.textInputLayoutEspThreshold); // Get the layout
         buttonSetEspThreshold = view.findViewById(R.id.buttonSetEspThreshold);
         buttonRefreshEspThreshold = view.findViewById(R.id.buttonRefreshEspThreshold);
+        buttonSetThresholdAllEsps = view.findViewById(R.id.buttonSetThresholdAllEsps);
         textViewCurrentEspThresholdValue = view.findViewById(R.id.textViewCurrentEspThresholdValue);
         textViewNoiseSettingsStatus = view.findViewById(R.id.textViewNoiseSettingsStatus);
 
         buttonSetEspThreshold.setOnClickListener(v -> setEspThresholdValue());
+        buttonSetThresholdAllEsps.setOnClickListener(v -> toggleFleetThresholdRollout());
         buttonRefreshEspThreshold.setOnClickListener(v -> {
             if (currentActiveEspIpForFragment != null && !currentActiveEspIpForFragment.isEmpty()) {
-                fetchCurrentThresholdFromEsp(currentActiveEspIpForFragment);
+                appViewModel.refreshActiveDeviceConfig(true);
             } else {
                 Toast.makeText(getContext(), R.string.no_active_esp_for_action, Toast.LENGTH_SHORT).show();
             }
@@ -81,16 +92,16 @@ public class NoiseSettingsFragment extends Fragment {
 
         appViewModel.getActiveEspAddressLiveData().observe(getViewLifecycleOwner(), address -> {
             currentActiveEspIpForFragment = address;
+            lastFetchedConfig = null; // Belongs to the previous ESP
+            thresholdTextFromConfig = null;
             updateUiBasedOnActiveEsp();
-            if (address != null && !address.isEmpty()) {
-                // Automatically fetch when the fragment becomes visible with an active ESP
-                fetchCurrentThresholdFromEsp(address);
-            } else {
+            if (address == null || address.isEmpty()) {
                  textViewCurrentEspThresholdValue.setText(R.string.status_not_available_no_esp);
                  editTextEspThreshold.setText("");
                  textViewNoiseSettingsStatus.setText("");
             }
         });
+        appViewModel.getActiveDeviceConfigLiveData().observe(getViewLifecycleOwner(), this::renderConfigState);
     }
 
     private void updateUiBasedOnActiveEsp() {
@@ -107,53 +118,44 @@ public class NoiseSettingsFragment extends Fragment {
         }
     }
 
-    private void fetchCurrentThresholdFromEsp(String espIp) {
-        if (espIp == null || espIp.isEmpty() || isFetchingThreshold) {
-            if(isFetchingThreshold) Log.d(TAG, "Already fetching threshold, skipping duplicate request.");
+    /** Shows the active ESP's config from the shared repository: cached value first, then revalidated. */
+    private void renderConfigState(DeviceConfigRepository.ConfigState state) {
+        if (currentActiveEspIpForFragment == null || currentActiveEspIpForFragment.isEmpty()) return;
+        JSONObject config = state.config;
+        if (config == null) {
+            if (state.refreshing || state.error == null) {
+                textViewCurrentEspThresholdValue.setText(R.string.status_fetching_ellipsis);
+                textViewNoiseSettingsStatus.setText(R.string.status_fetching_config);
+            } else {
+                textViewCurrentEspThresholdValue.setText(R.string.status_fetch_error_short);
+                textViewNoiseSettingsStatus.setText(fetchErrorText(state));
+            }
             return;
         }
-        isFetchingThreshold = true;
-        textViewNoiseSettingsStatus.setText(R.string.status_fetching_config);
-        textViewCurrentEspThresholdValue.setText(R.string.status_fetching_ellipsis);
-
-        // EspConfigClient expects full base URL, AppViewModel stores normalized address
-        String baseUrl = "http://" + espIp;
-
-        espConfigClient.getConfig(baseUrl, new EspConfigClient.ConfigCallback() {
-            @Override
-            public void onSuccess(String responseBody) {
-                if (getActivity() == null) return; // Fragment not attached
-                getActivity().runOnUiThread(() -> {
-                    isFetchingThreshold = false;
-                    try {
-                        JSONObject config = new JSONObject(responseBody);
-                        if (config.has("threshold_db_calibrated")) {
-                            double threshold = config.getDouble("threshold_db_calibrated");
-                            textViewCurrentEspThresholdValue.setText(getString(R.string.decibel_format_precise, threshold));
-                            editTextEspThreshold.setText(String.format(Locale.US, "%.1f", threshold)); // US Locale for dot decimal
-                            textViewNoiseSettingsStatus.setText(R.string.status_fetched_successfully);
-                        } else {
-                            textViewCurrentEspThresholdValue.setText(R.string.status_key_not_found);
-                            textViewNoiseSettingsStatus.setText(R.string.status_config_key_missing_threshold);
-                        }
-                    } catch (JSONException e) {
-                        Log.e(TAG, "Error parsing threshold from ESP config: " + responseBody, e);
-                        textViewCurrentEspThresholdValue.setText(R.string.status_parse_error);
-                        textViewNoiseSettingsStatus.setText(R.string.status_config_parse_error);
-                    }
-                });
-            }
-
-            @Override
-            public void onFailure(IOException e) {
-                handleFetchOrSetError(getString(R.string.status_fetch_failed_network, e.getMessage()), true);
-            }
+        lastFetchedConfig = config;
+        if (!config.has("threshold_db_calibrated")) {
+            textViewCurrentEspThresholdValue.setText(R.string.status_key_not_found);
+            textViewNoiseSettingsStatus.setText(R.string.status_config_key_missing_threshold);
+            return;
+        }
+        double threshold = config.optDouble("threshold_db_calibrated");
+        textViewCurrentEspThresholdValue.setText(getString(R.string.decibel_format_precise, threshold));
+        String thresholdText = String.format(Locale.US, "%.1f", threshold); // US Locale for dot decimal
+        ConfigFields.refillUnlessEdited(editTextEspThreshold, thresholdTextFromConfig, thresholdText);
+        thresholdTextFromConfig = thresholdText;
+        if (state.refreshing) {
+            textViewNoiseSettingsStatus.setText(R.string.status_fetching_config);
+        } else if (state.error != null) {
+            textViewNoiseSettingsStatus.setText(fetchErrorText(state)); // Value shown is the last good one
+        } else {
+            textViewNoiseSettingsStatus.setText(R.string.status_fetched_successfully);
+        }
+    }
 
-            @Override
-            public void onError(String message, int code) {
-                 handleFetchOrSetError(getString(R.string.status_fetch_failed_server, code, message), true);
-            }
-        });
+    private String fetchErrorText(DeviceConfigRepository.ConfigState state) {
+        return state.errorCode != 0
+                ? getString(R.string.status_fetch_failed_server, state.errorCode, state.error)
+                : getString(R.string.status_fetch_failed_network, state.error);
     }
 
     private void setEspThresholdValue() {
@@ -174,22 +176,40 @@ public class NoiseSettingsFragment extends Fragment {
             // EspConfigClient expects full base URL
             String baseUrl = "http://" + currentActiveEspIpForFragment;
 
-            espConfigClient.setThreshold(baseUrl, thresholdValue, new EspConfigClient.ConfigCallback() {
-                @Override
-                public void onSuccess(String responseBody) {
-                    handleFetchOrSetError(getString(R.string.status_threshold_set_success), false);
-                    // Re-fetch to confirm the change and update the displayed "current" value
-                    fetchCurrentThresholdFromEsp(currentActiveEspIpForFragment);
-                }
+            String address = currentActiveEspIpForFragment;
 
+            // Only written if it differs from the last fetched config
+            ConfigTransaction transaction = new ConfigTransaction(espConfigClient, baseUrl, lastFetchedConfig)
+                    .setThreshold(thresholdValue);
+            transaction.commit(new ConfigTransaction.Callback() {
                 @Override
-                public void onFailure(IOException e) {
-                    handleFetchOrSetError(getString(R.string.status_set_failed_network, e.getMessage()), true);
+                public void onCommitted(@NonNull Set<String> changedFields, boolean batched) {
+                    // The device now holds this value; a queued older one must not overwrite it
+                    appViewModel.onConfigWritten(address, Collections.singleton(ConfigTransaction.FIELD_THRESHOLD));
+                    if (changedFields.isEmpty()) {
+                        handleFetchOrSetError(getString(R.string.status_config_no_changes), false);
+                        return;
+                    }
+                    handleFetchOrSetError(getString(R.string.status_threshold_set_success), false);
+                    // Re-fetch to confirm the change; every screen observing this ESP gets the new value
+                    appViewModel.invalidateDeviceConfig(address);
                 }
 
                 @Override
-                public void onError(String message, int code) {
-                    handleFetchOrSetError(getString(R.string.status_set_failed_server, code, message), true);
+                public void onFailed(@NonNull String message, int code, @NonNull Set<String> appliedFields) {
+                    if (code == 0 && !transaction.isCancelled()) {
+                        // Unreachable: written automatically once the health check sees the ESP again
+                        appViewModel.queueUnappliedConfig(address, transaction, appliedFields, queued -> {
+                            if (!queued.isEmpty()) {
+                                handleFetchOrSetError(getString(R.string.status_set_queued_offline, message), false);
+                            } else {
+                                handleFetchOrSetError(getString(R.string.status_set_failed_network, message), true);
+                            }
+                        });
+                        return;
+                    }
+                    handleFetchOrSetError(code != 0 ? getString(R.string.status_set_failed_server, code, message)
+                            : getString(R.string.status_set_failed_network, message), true);
                 }
             });
         } catch (NumberFormatException e) {
@@ -198,11 +218,102 @@ public class NoiseSettingsFragment extends Fragment {
         }
     }
 
+    private void toggleFleetThresholdRollout() {
+        if (fleetOperation != null && fleetOperation.isRunning()) {
+            fleetOperation.cancel(); // onFinished resets the button
+            return;
+        }
+        List<EspDevice> devices = appViewModel.getEspDevicesLiveData().getValue();
+        if (devices == null || devices.isEmpty()) {
+            Toast.makeText(getContext(), R.string.no_esps_for_fleet_rollout, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        String thresholdStr = editTextEspThreshold.getText() != null ? editTextEspThreshold.getText().toString().trim() : "";
+        if (TextUtils.isEmpty(thresholdStr)) {
+            Toast.makeText(getContext(), R.string.enter_threshold_value_prompt, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        float thresholdValue;
+        try {
+            thresholdValue = Float.parseFloat(thresholdStr);
+        } catch (NumberFormatException e) {
+            Toast.makeText(getContext(), R.string.invalid_threshold_format_prompt, Toast.LENGTH_SHORT).show();
+            textViewNoiseSettingsStatus.setText(R.string.status_invalid_format);
+            return;
+        }
+
+        fleetOperation = new FleetConfigOperation(espConfigClient, devices,
+                FleetConfigOperation.setThreshold(thresholdValue), FleetConfigOperation.DEFAULT_MAX_PARALLEL);
+        buttonSetThresholdAllEsps.setText(R.string.cancel_fleet_rollout_button);
+        textViewNoiseSettingsStatus.setText(getString(R.string.status_fleet_rollout_started, devices.size()));
+        fleetOperation.start(new FleetConfigOperation.Listener() {
+            private int failed = 0; // Callbacks are serialized by the operation
+
+            @Override
+            public void onDeviceResult(@NonNull FleetConfigOperation.DeviceResult result, int completed, int total) {
+                if (!result.success) failed++;
+                int failedSoFar = failed;
+                if (getActivity() == null) return;
+                getActivity().runOnUiThread(() -> {
+                    if (getView() == null) return;
+                    textViewNoiseSettingsStatus.setText(getString(R.string.status_fleet_rollout_progress, completed, total, failedSoFar));
+                });
+            }
+
+            @Override
+            public void onFinished(@NonNull List<FleetConfigOperation.DeviceResult> results, boolean cancelled) {
+                recordFleetResults(results, thresholdValue);
+                if (getActivity() == null) return;
+                getActivity().runOnUiThread(() -> {
+                    if (getView() == null) return;
+                    buttonSetThresholdAllEsps.setText(R.string.set_threshold_all_esps_button);
+                    showFleetRolloutSummary(results, cancelled, devices.size());
+                });
+            }
+        });
+    }
+
+    /**
+     * Any thread; the view model queues and journals in the background. A cancelled rollout's
+     * cancelled writes are not in {@code results}, so a code of 0 here means the device was unreachable.
+     */
+    private void recordFleetResults(List<FleetConfigOperation.DeviceResult> results, float thresholdValue) {
+        for (FleetConfigOperation.DeviceResult result : results) {
+            String address = result.device.getAddress();
+            if (result.success) {
+                appViewModel.onConfigWritten(address, Collections.singleton(ConfigTransaction.FIELD_THRESHOLD));
+                appViewModel.invalidateDeviceConfig(address);
+            } else if (result.httpCode == 0) {
+                // Unreachable devices get the value when they come back instead of holding up the rollout
+                appViewModel.queueConfigChange(address, ConfigTransaction.FIELD_THRESHOLD, thresholdValue);
+            }
+        }
+    }
+
+    private void showFleetRolloutSummary(List<FleetConfigOperation.DeviceResult> results, boolean cancelled, int total) {
+        List<String> failedNames = new ArrayList<>();
+        int queued = 0;
+        for (FleetConfigOperation.DeviceResult result : results) {
+            if (!result.success) failedNames.add(result.device.getName());
+            if (!result.success && result.httpCode == 0) queued++;
+        }
+        String summary = cancelled
+                ? getString(R.string.status_fleet_rollout_cancelled, results.size(), total)
+                : getString(R.string.status_fleet_rollout_finished, results.size() - failedNames.size(), failedNames.size());
+        if (!failedNames.isEmpty()) {
+            summary += "\n" + getString(R.string.status_fleet_rollout_failed_devices, TextUtils.join(", ", failedNames));
+        }
+        if (queued > 0) {
+            summary += "\n" + getString(R.string.status_fleet_rollout_queued, queued);
+        }
+        textViewNoiseSettingsStatus.setText(summary);
+        Log.i(TAG, "Fleet threshold rollout: " + summary);
+    }
+
     private void handleFetchOrSetError(String message, boolean isFetchError) {
         if (getActivity() == null) return; // Fragment not attached
         getActivity().runOnUiThread(() -> {
-            if(isFetchError) { // Only set isFetchingThreshold to false if it was a fetch operation
-                isFetchingThreshold = false;
+            if(isFetchError) {
                 textViewCurrentEspThresholdValue.setText(R.string.status_fetch_error_short);
             }
             textViewNoiseSettingsStatus.setText(message.substring(0, Math.min(message.length(),150))); // Show truncated message
@@ -214,10 +325,13 @@ public class NoiseSettingsFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        // Refresh data if an ESP is active when fragment becomes visible
-        if (currentActiveEspIpForFragment != null && !currentActiveEspIpForFragment.isEmpty()) {
-            fetchCurrentThresholdFromEsp(currentActiveEspIpForFragment);
-        }
+        appViewModel.refreshActiveDeviceConfig(false);
         updateUiBasedOnActiveEsp(); // Ensure UI state is correct
     }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (fleetOperation != null) fleetOperation.cancel(); // No-op if it already finished
+    }
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+package com.example.mybasicapp.logging;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Fixed-capacity, in-memory activity log. Once full, the oldest record is evicted for each new
+ * one. Evicted records are optionally handed to a {@link RotatingLogWriter} ("spill" file) so
+ * an export reaches further back than memory does. The spill is bounded as well, to about
+ * {@link #SPILL_RETAINED_BYTES} of text; when a long session outgrows it, the export starts with a
+ * line saying that older entries were discarded.
+ */
+public class ActivityLogRing {
+    private static final String TAG = "ActivityLogRing_DBG";
+
+    private static final long SPILL_MAX_BYTES = 512 * 1024;
+    private static final int SPILL_MAX_ROTATED = 2;
+    private static final long SPILL_PAUSE_TIMEOUT_MS = 3000;
+    /** Active spill file plus rotated segments, uncompressed. */
+    static final long SPILL_RETAINED_BYTES = SPILL_MAX_BYTES * (SPILL_MAX_ROTATED + 1);
+
+    /** One structured log entry. Formatting is deferred until the record is exported or spilled. */
+    public static final class Record {
+        public final long timestampMs;
+        public final String category;
+        public final String message;
+
+        Record(long timestampMs, String category, String message) {
+            this.timestampMs = timestampMs;
+            this.category = category;
+            this.message = message;
+        }
+    }
+
+    private final Record[] records;
+    private int head = 0; // Index of the oldest record
+    private int size = 0;
+    private long evictedCount = 0;
+
+    @Nullable
+    private final RotatingLogWriter spillWriter;
+
+    /**
+     * @param capacity  Maximum number of records kept in memory.
+     * @param spillFile File that receives evicted records, or null to simply drop them.
+     *                  Any spill left over from a previous session is deleted, on the writer's thread.
+     */
+    public ActivityLogRing(int capacity, @Nullable File spillFile) {
+        this.records = new Record[Math.max(1, capacity)];
+        this.spillWriter = spillFile != null
+                ? new RotatingLogWriter(spillFile, SPILL_MAX_BYTES, SPILL_MAX_ROTATED, true,
+                        RotatingLogWriter.DEFAULT_QUEUE_CAPACITY, true)
+                : null;
+    }
+
+    public void add(@NonNull String category, @NonNull String message) {
+        Record record = new Record(System.currentTimeMillis(), category, message);
+        synchronized (this) {
+            int tail = (head + size) % records.length;
+            if (size == records.length) {
+                Record evicted = records[head];
+                head = (head + 1) % records.length;
+                evictedCount++;
+                // Under the lock, so spill order matches eviction order (log() never blocks)
+                if (spillWriter != null) spillWriter.log(evicted.timestampMs, formatBody(evicted));
+            } else {
+                size++;
+            }
+            records[tail] = record;
+        }
+    }
+
+    /**
+     * Streams the spilled records (oldest segment first) followed by the in-memory records.
+     * The spill writer is paused at the moment the in-memory snapshot is taken, so every record
+     * is exported exactly once. Performs file I/O and blocks; call from a background thread.
+     */
+    public void writeTo(@NonNull Writer out) throws IOException {
+        Record[] snapshot;
+        long evictedAtSnapshot;
+        RotatingLogWriter.Pause pause = null;
+        synchronized (this) {
+            snapshot = new Record[size];
+            for (int i = 0; i < size; i++) {
+                snapshot[i] = records[(head + i) % records.length];
+            }
+            evictedAtSnapshot = evictedCount;
+            // Queued right behind the last record evicted before the snapshot
+            if (spillWriter != null && evictedAtSnapshot > 0) pause = spillWriter.pause();
+        }
+
+        if (pause != null && pause.await(SPILL_PAUSE_TIMEOUT_MS)) {
+            try {
+                // No writes or rotations until closed, so the segments can't move while copied
+                if (spillWriter.getDiscardedSegmentCount() > 0) {
+                    out.write("... older entries were discarded; the log keeps about "
+                            + SPILL_RETAINED_BYTES / 1024 + " KB beyond the last " + records.length + " entries ...\n");
+                }
+                for (File file : pause.getFiles()) {
+                    copySpillFile(file, file.getName().endsWith(".gz"), out);
+                }
+            } finally {
+                pause.close();
+            }
+        } else if (evictedAtSnapshot > 0) {
+            if (spillWriter != null) Log.w(TAG, "writeTo: Spill writer could not be paused, exporting without older entries.");
+            out.write("... " + evictedAtSnapshot + " older entries were dropped ...\n");
+        }
+
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
+        Date date = new Date();
+        for (Record record : snapshot) {
+            date.setTime(record.timestampMs);
+            out.write('[');
+            out.write(format.format(date));
+            out.write("] ");
+            out.write(formatBody(record));
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Stops the spill writer without waiting for it, so it can be called on the main thread.
+     * Records added afterwards are still kept in memory.
+     */
+    public void close() {
+        if (spillWriter != null) spillWriter.closeInBackground();
+    }
+
+    private static String formatBody(Record record) {
+        return record.category + ": " + record.message;
+    }
+
+    private static void copySpillFile(File file, boolean gzipped, Writer out) throws IOException {
+        if (!file.exists()) return;
+        try (InputStream raw = new FileInputStream(file);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     gzipped ? new GZIPInputStream(raw) : raw, StandardCharsets.UTF_8))) {
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.mybasicapp.logging;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.mybasicapp.BuildConfig;
+
+/**
+ * Logcat facade for code that runs per poll or per sample. Messages are templates with {@code {}}
+ * placeholders; the level is checked before anything is formatted, and arguments are only turned
+ * into text if the message is logged. Fixed-arity overloads avoid a varargs array per call.
+ * <ul>
+ *   <li>Text arguments longer than {@link #MAX_ARG_CHARS} are cut when formatted, so call sites
+ *   pass a whole response body instead of building a {@code substring} up front.</li>
+ *   <li>A {@link Lazy} argument is only evaluated when the message is logged.</li>
+ *   <li>{@link #VERBOSE} is a compile-time constant ({@code BuildConfig.LOG_VERBOSE}, false in
+ *   release builds). Wrap hot verbose call sites in {@code if (AppLog.VERBOSE)}: javac drops the
+ *   whole block, including argument boxing, from release builds.</li>
+ *   <li>{@link #event} records into the binary {@link EventRing}, which is exported with the
+ *   activity log for bug reports. It is cheap enough to stay on in release builds.</li>
+ * </ul>
+ * Release builds log from {@link Log#INFO} up; debug builds log everything.
+ */
+public final class AppLog {
+    public static final boolean VERBOSE = BuildConfig.LOG_VERBOSE;
+    static final int MAX_ARG_CHARS = 100;
+
+    /** Argument computed only if the message is actually logged. */
+    public interface Lazy {
+        @Nullable
+        Object get();
+    }
+
+    private static volatile int minLevel = VERBOSE ? Log.VERBOSE : Log.INFO;
+
+    private AppLog() {
+    }
+
+    /** Cheaper than {@link Log#isLoggable}, which reads a system property on every call. */
+    public static boolean isLoggable(int level) {
+        return level >= minLevel;
+    }
+
+    public static void setMinLevel(int level) {
+        minLevel = level;
+    }
+
+    public static void v(@NonNull String tag, @NonNull String template, @Nullable Object a) {
+        if (VERBOSE && isLoggable(Log.VERBOSE)) Log.v(tag, format(template, a, null, null, 1));
+    }
+
+    public static void v(@NonNull String tag, @NonNull String template, @Nullable Object a, @Nullable Object b) {
+        if (VERBOSE && isLoggable(Log.VERBOSE)) Log.v(tag, format(template, a, b, null, 2));
+    }
+
+    public static void v(@NonNull String tag, @NonNull String template, @Nullable Object a, @Nullable Object b, @Nullable Object c) {
+        if (VERBOSE && isLoggable(Log.VERBOSE)) Log.v(tag, format(template, a, b, c, 3));
+    }
+
+    public static void d(@NonNull String tag, @NonNull String message) {
+        if (isLoggable(Log.DEBUG)) Log.d(tag, message);
+    }
+
+    public static void d(@NonNull String tag, @NonNull String template, @Nullable Object a) {
+        if (isLoggable(Log.DEBUG)) Log.d(tag, format(template, a, null, null, 1));
+    }
+
+    public static void d(@NonNull String tag, @NonNull String template, @Nullable Object a, @Nullable Object b) {
+        if (isLoggable(Log.DEBUG)) Log.d(tag, format(template, a, b, null, 2));
+    }
+
+    public static void d(@NonNull String tag, @NonNull String template, @Nullable Object a, @Nullable Object b, @Nullable Object c) {
+        if (isLoggable(Log.DEBUG)) Log.d(tag, format(template, a, b, c, 3));
+    }
+
+    public static void i(@NonNull String tag, @NonNull String template, @Nullable Object a) {
+        if (isLoggable(Log.INFO)) Log.i(tag, format(template, a, null, null, 1));
+    }
+
+    public static void i(@NonNull String tag, @NonNull String template, @Nullable Object a, @Nullable Object b) {
+        if (isLoggable(Log.INFO)) Log.i(tag, format(template, a, b, null, 2));
+    }
+
+    public static void w(@NonNull String tag, @NonNull String template, @Nullable Object a, @Nullable Object b) {
+        if (isLoggable(Log.WARN)) Log.w(tag, format(template, a, b, null, 2));
+    }
+
+    public static void e(@NonNull String tag, @NonNull String template, @Nullable Object a, @Nullable Object b) {
+        if (isLoggable(Log.ERROR)) Log.e(tag, format(template, a, b, null, 2));
+    }
+
+    public static void e(@NonNull String tag, @NonNull String template, @Nullable Object a, @Nullable Object b, @Nullable Object c) {
+        if (isLoggable(Log.ERROR)) Log.e(tag, format(template, a, b, c, 3));
+    }
+
+    /**
+     * Records a structured event in {@link EventRing#getInstance()}, and in debug builds also
+     * logs it at verbose level under {@code tag}.
+     */
+    public static void event(@NonNull String tag, @NonNull EventRing.Type type, @Nullable String key, long a, long b) {
+        EventRing.getInstance().record(type, key, a, b);
+        if (VERBOSE && isLoggable(Log.VERBOSE)) Log.v(tag, type.format(key, a, b));
+    }
+
+    /** Replaces up to {@code count} {@code {}} placeholders in order; extra placeholders stay as they are. */
+    @NonNull
+    static String format(@NonNull String template, @Nullable Object a, @Nullable Object b, @Nullable Object c, int count) {
+        StringBuilder sb = new StringBuilder(template.length() + 32);
+        int from = 0;
+        for (int arg = 0; arg < count; arg++) {
+            int at = template.indexOf("{}", from);
+            if (at < 0) break;
+            sb.append(template, from, at);
+            appendArg(sb, arg == 0 ? a : arg == 1 ? b : c);
+            from = at + 2;
+        }
+        return sb.append(template, from, template.length()).toString();
+    }
+
+    private static void appendArg(StringBuilder sb, @Nullable Object arg) {
+        Object value = arg instanceof Lazy ? ((Lazy) arg).get() : arg;
+        if (value instanceof Throwable) value = ((Throwable) value).getMessage();
+        String text = String.valueOf(value);
+        if (text.length() > MAX_ARG_CHARS) {
+            sb.append(text, 0, MAX_ARG_CHARS).append("...(").append(text.length()).append(" chars)");
+        } else {
+            sb.append(text);
+        }
+    }
+}
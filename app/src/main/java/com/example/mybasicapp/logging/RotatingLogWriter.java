@@ -0,0 +1,427 @@
+package com.example.mybasicapp.logging;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Appends timestamped lines to a log file from a single background thread.
+ * <p>
+ * Callers only enqueue into a bounded queue (never blocking, entries are dropped and counted
+ * when the queue is full). The writer thread keeps one buffered stream open for the lifetime
+ * of the writer, flushes in groups (every {@link #FLUSH_EVERY_ENTRIES} entries or
+ * {@link #FLUSH_INTERVAL_MS} ms, whichever comes first) and rotates the file once it grows
+ * past {@code maxFileBytes}. Rotated segments are named {@code <file>.1}, {@code <file>.2}, ...
+ * (oldest has the highest number) and optionally gzipped to {@code <file>.N.gz}.
+ * <p>
+ * To read the files while the writer is running, {@link #pause} it: it then writes and rotates
+ * nothing until the {@link Pause} is closed.
+ * <p>
+ * A new writer on a file that an earlier writer is still closing (see {@link #closeInBackground})
+ * waits for that one to finish before touching the file.
+ */
+public class RotatingLogWriter {
+    private static final String TAG = "RotatingLogWriter_DBG";
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 512;
+    public static final int FLUSH_EVERY_ENTRIES = 32;
+    public static final long FLUSH_INTERVAL_MS = 1000;
+    private static final long CLOSE_TIMEOUT_MS = 2000;
+    private static final long MAX_PAUSE_MS = 30_000; // Resumes on its own if a reader never closes its Pause
+
+    private static final Entry POISON = new Entry(0, null, null);
+
+    // Latest writer thread per file path, guarded by the map itself
+    private static final Map<String, Thread> writerThreadsByPath = new HashMap<>();
+
+    private final File logFile;
+    private final long maxFileBytes;
+    private final int maxRotatedFiles;
+    private final boolean gzipRotated;
+    private final boolean deleteExisting;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writerThread;
+    @Nullable private final Thread previousWriterThread; // Earlier writer on the same file, maybe still closing
+    private final AtomicLong droppedEntries = new AtomicLong(); // For the rate-limited warning only
+    private final AtomicInteger discardedSegments = new AtomicInteger(); // Deleted by rotation
+    private volatile boolean closed = false;
+
+    // Only touched on the writer thread
+    private final SimpleDateFormat timestampFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
+    private final Date reusableDate = new Date();
+    private final StringBuilder lineBuilder = new StringBuilder(256);
+    private final List<Entry> drainBuffer = new ArrayList<>(FLUSH_EVERY_ENTRIES);
+    private BufferedWriter writer;
+    private long activeFileBytes = 0; // Approximate (chars written), avoids stat-ing the file per line
+    private int entriesSinceFlush = 0;
+    private long lastFlushAtMs = 0;
+
+    private static final class Entry {
+        final long timestampMs;
+        final String message;
+        final Pause pause; // Non-null for pause markers
+
+        Entry(long timestampMs, String message, Pause pause) {
+            this.timestampMs = timestampMs;
+            this.message = message;
+            this.pause = pause;
+        }
+    }
+
+    /**
+     * Holds the writer thread while the log files are read; see {@link #pause}. Close it when done,
+     * e.g. with try-with-resources.
+     */
+    public final class Pause implements Closeable {
+        private final CountDownLatch reached = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        private Pause() {
+        }
+
+        /**
+         * Waits until everything logged before the pause is flushed and the writer has stopped.
+         * Must not be called on the main thread.
+         * @return False on timeout; the pause is then already released.
+         */
+        public boolean await(long timeoutMs) {
+            try {
+                if (reached.await(timeoutMs, TimeUnit.MILLISECONDS)) return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            close(); // The writer must not stop for a reader that gave up
+            return false;
+        }
+
+        /** The rotated segments (oldest first, gzipped if the writer compresses them) and then the active file. Only once reached. */
+        @NonNull
+        public List<File> getFiles() {
+            List<File> files = new ArrayList<>();
+            for (int i = maxRotatedFiles; i >= 1; i--) {
+                File segment = segmentFile(i);
+                if (segment.exists()) files.add(segment);
+            }
+            if (logFile.exists()) files.add(logFile);
+            return files;
+        }
+
+        /** Lets the writer continue. Idempotent. */
+        @Override
+        public void close() {
+            released.countDown();
+        }
+    }
+
+    /**
+     * @param logFile         The active log file. Parent directory must exist.
+     * @param maxFileBytes    Size at which the active file is rotated.
+     * @param maxRotatedFiles How many rotated segments to keep (older ones are deleted).
+     * @param gzipRotated     Whether rotated segments are gzip-compressed.
+     */
+    public RotatingLogWriter(@NonNull File logFile, long maxFileBytes, int maxRotatedFiles, boolean gzipRotated) {
+        this(logFile, maxFileBytes, maxRotatedFiles, gzipRotated, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public RotatingLogWriter(@NonNull File logFile, long maxFileBytes, int maxRotatedFiles, boolean gzipRotated, int queueCapacity) {
+        this(logFile, maxFileBytes, maxRotatedFiles, gzipRotated, queueCapacity, false);
+    }
+
+    /**
+     * @param deleteExisting Whether the writer thread first deletes the file and its segments left by
+     *                       a previous run, so the caller's thread does no file I/O.
+     */
+    public RotatingLogWriter(@NonNull File logFile, long maxFileBytes, int maxRotatedFiles, boolean gzipRotated,
+                             int queueCapacity, boolean deleteExisting) {
+        this.logFile = logFile;
+        this.maxFileBytes = maxFileBytes;
+        this.maxRotatedFiles = Math.max(0, maxRotatedFiles);
+        this.gzipRotated = gzipRotated;
+        this.deleteExisting = deleteExisting;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writerThread = new Thread(this::runWriterLoop, "LogWriter-" + logFile.getName());
+        this.writerThread.setDaemon(true);
+        this.writerThread.setPriority(Thread.MIN_PRIORITY);
+        synchronized (writerThreadsByPath) {
+            this.previousWriterThread = writerThreadsByPath.put(logFile.getAbsolutePath(), writerThread);
+        }
+        this.writerThread.start();
+    }
+
+    /**
+     * Enqueues a line for writing. Safe to call from any thread; never blocks.
+     * @return false if the entry was dropped because the queue is full or the writer is closed.
+     */
+    public boolean log(@NonNull String message) {
+        return log(System.currentTimeMillis(), message);
+    }
+
+    /**
+     * Same as {@link #log(String)} but stamps the line with the given time instead of "now",
+     * for callers that hand over records captured earlier.
+     */
+    public boolean log(long timestampMs, @NonNull String message) {
+        if (closed) return false;
+        if (!queue.offer(new Entry(timestampMs, message, null))) {
+            long dropped = droppedEntries.incrementAndGet();
+            if (dropped == 1 || dropped % 100 == 0) {
+                Log.w(TAG, "Queue full for " + logFile.getName() + ", dropped " + dropped + " entries so far.");
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Asks the writer to stop once it has written and flushed everything logged before this call,
+     * and to neither write nor rotate until the returned pause is closed. Entries logged meanwhile
+     * wait in the queue (and are dropped if it fills up). Never blocks, so it can be called while
+     * holding the lock that orders the caller's {@link #log} calls; then {@link Pause#await} it.
+     * @return Null if the queue is full or the writer is closed.
+     */
+    @Nullable
+    public Pause pause() {
+        if (closed) return null;
+        Pause pause = new Pause();
+        return queue.offer(new Entry(0, null, pause)) ? pause : null;
+    }
+
+    /**
+     * How many times rotation deleted the oldest segment (or, without segments, the active file),
+     * i.e. whether the files no longer hold everything logged.
+     */
+    public int getDiscardedSegmentCount() {
+        return discardedSegments.get();
+    }
+
+    /**
+     * Deletes a log file and its rotated segments. Only call this while no writer is open on the file.
+     */
+    public static void deleteLogFiles(@NonNull File logFile, int maxRotatedFiles, boolean gzipRotated) {
+        if (logFile.exists() && !logFile.delete()) Log.w(TAG, "deleteLogFiles: Could not delete " + logFile.getName());
+        for (int i = 1; i <= maxRotatedFiles; i++) {
+            File segment = segmentFile(logFile, i, gzipRotated);
+            if (segment.exists() && !segment.delete()) Log.w(TAG, "deleteLogFiles: Could not delete " + segment.getName());
+        }
+    }
+
+    /**
+     * Stops accepting entries, writes out everything already queued and closes the file.
+     * Waits up to {@link #CLOSE_TIMEOUT_MS} for the writer thread to finish.
+     */
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            if (!queue.offer(POISON, CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                writerThread.interrupt();
+            }
+            writerThread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Like {@link #close()}, but returns at once; the writer thread writes out what is queued and
+     * closes the file on its own. For the main thread.
+     */
+    public void closeInBackground() {
+        if (closed) return;
+        closed = true;
+        if (!queue.offer(POISON)) writerThread.interrupt(); // Queue full; the writer drains it and stops
+    }
+
+    private void runWriterLoop() {
+        Log.d(TAG, "Writer thread started for " + logFile.getAbsolutePath());
+        if (previousWriterThread != null) {
+            try {
+                previousWriterThread.join(CLOSE_TIMEOUT_MS); // Entries logged meanwhile wait in the queue
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // Closed already; the loop below stops at once
+            }
+        }
+        if (deleteExisting) deleteLogFiles(logFile, maxRotatedFiles, gzipRotated); // Before the first entry is written
+        boolean running = true;
+        while (running) {
+            try {
+                Entry first = queue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    drainBuffer.add(first);
+                    queue.drainTo(drainBuffer, FLUSH_EVERY_ENTRIES - 1);
+                    try {
+                        for (int i = 0; i < drainBuffer.size(); i++) {
+                            Entry entry = drainBuffer.get(i);
+                            if (entry == POISON) {
+                                running = false;
+                                break;
+                            }
+                            if (entry.pause != null) {
+                                holdForReader(entry.pause);
+                                continue;
+                            }
+                            writeEntry(entry);
+                        }
+                    } finally {
+                        drainBuffer.clear();
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (entriesSinceFlush > 0 && (!running || entriesSinceFlush >= FLUSH_EVERY_ENTRIES || now - lastFlushAtMs >= FLUSH_INTERVAL_MS)) {
+                    flushWriter(now);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (IOException e) {
+                Log.e(TAG, "Error writing to log file: " + logFile.getAbsolutePath(), e);
+                closeWriterQuietly(); // Reopened on the next entry
+            }
+        }
+        // Write whatever is still queued (e.g. after an interrupt) before closing
+        Entry leftover;
+        while ((leftover = queue.poll()) != null) {
+            if (leftover == POISON) continue;
+            if (leftover.pause != null) {
+                try {
+                    holdForReader(leftover.pause);
+                } catch (InterruptedException e) {
+                    // Interrupted by close(); the reader still got a flushed snapshot
+                }
+                continue;
+            }
+            try {
+                writeEntry(leftover);
+            } catch (IOException e) {
+                Log.e(TAG, "Error writing leftover entries to: " + logFile.getAbsolutePath(), e);
+                break;
+            }
+        }
+        closeWriterQuietly();
+        Log.d(TAG, "Writer thread stopped for " + logFile.getName());
+    }
+
+    /** Flushes, tells the reader the files are consistent and waits until it is done with them. */
+    private void holdForReader(Pause pause) throws InterruptedException {
+        try {
+            flushWriter(System.currentTimeMillis());
+        } catch (IOException e) {
+            Log.e(TAG, "Error flushing before pause: " + logFile.getAbsolutePath(), e);
+            closeWriterQuietly(); // Reopened on the next entry
+        }
+        pause.reached.countDown();
+        pause.released.await(MAX_PAUSE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void writeEntry(Entry entry) throws IOException {
+        reusableDate.setTime(entry.timestampMs);
+        lineBuilder.setLength(0);
+        lineBuilder.append('[').append(timestampFormat.format(reusableDate)).append("] ")
+                .append(entry.message).append('\n');
+
+        if (writer == null) {
+            openWriter();
+        } else if (activeFileBytes + lineBuilder.length() > maxFileBytes) {
+            rotate();
+        }
+        writer.append(lineBuilder);
+        activeFileBytes += lineBuilder.length();
+        entriesSinceFlush++;
+    }
+
+    private void flushWriter(long now) throws IOException {
+        if (writer != null) writer.flush();
+        entriesSinceFlush = 0;
+        lastFlushAtMs = now;
+    }
+
+    private void openWriter() throws IOException {
+        activeFileBytes = logFile.length();
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(logFile, true), StandardCharsets.UTF_8), 8192);
+        lastFlushAtMs = System.currentTimeMillis();
+    }
+
+    private void closeWriterQuietly() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error closing log writer: " + e.getMessage());
+            }
+        }
+        writer = null;
+        entriesSinceFlush = 0;
+    }
+
+    private void rotate() throws IOException {
+        closeWriterQuietly();
+        if (maxRotatedFiles == 0) {
+            if (!logFile.delete()) Log.w(TAG, "rotate: Could not truncate " + logFile.getName());
+            discardedSegments.incrementAndGet();
+        } else {
+            File oldest = segmentFile(maxRotatedFiles);
+            if (oldest.exists()) {
+                if (!oldest.delete()) Log.w(TAG, "rotate: Could not delete " + oldest.getName());
+                discardedSegments.incrementAndGet();
+            }
+            for (int i = maxRotatedFiles - 1; i >= 1; i--) {
+                File segment = segmentFile(i);
+                if (segment.exists() && !segment.renameTo(segmentFile(i + 1))) {
+                    Log.w(TAG, "rotate: Could not shift " + segment.getName());
+                }
+            }
+            if (gzipRotated) {
+                gzipTo(logFile, segmentFile(1));
+            } else if (!logFile.renameTo(segmentFile(1))) {
+                Log.w(TAG, "rotate: Could not rename " + logFile.getName());
+            }
+        }
+        Log.i(TAG, "Rotated log file " + logFile.getName());
+        openWriter();
+    }
+
+    private void gzipTo(File source, File target) throws IOException {
+        byte[] buffer = new byte[8192];
+        try (InputStream in = new FileInputStream(source);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(target))) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        if (!source.delete()) Log.w(TAG, "gzipTo: Could not delete " + source.getName() + " after compressing.");
+    }
+
+    private File segmentFile(int index) {
+        return segmentFile(logFile, index, gzipRotated);
+    }
+
+    private static File segmentFile(File logFile, int index, boolean gzipRotated) {
+        return new File(logFile.getParentFile(), logFile.getName() + "." + index + (gzipRotated ? ".gz" : ""));
+    }
+}
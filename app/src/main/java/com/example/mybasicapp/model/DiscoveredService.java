@@ -1,6 +1,11 @@
 package com.example.mybasicapp.model; // CORRECTED PACKAGE DECLARATION
 
 import android.net.nsd.NsdServiceInfo;
+import android.os.Build;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.List;
 import java.util.Objects; // Import for Objects.hash and Objects.equals if targeting lower API or for clarity
 
 public class DiscoveredService {
@@ -11,11 +16,23 @@ public class DiscoveredService {
 
     public DiscoveredService(NsdServiceInfo nsdServiceInfo) {
         this.serviceName = nsdServiceInfo.getServiceName();
-        this.hostAddress = nsdServiceInfo.getHost() != null ? nsdServiceInfo.getHost().getHostAddress() : null;
+        this.hostAddress = pickHostAddress(nsdServiceInfo);
         this.port = nsdServiceInfo.getPort();
         this.type = nsdServiceInfo.getServiceType();
     }
 
+    // On API 34+ a resolved service can carry several addresses; prefer IPv4, which works in plain http:// URLs
+    private static String pickHostAddress(NsdServiceInfo nsdServiceInfo) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+            List<InetAddress> addresses = nsdServiceInfo.getHostAddresses();
+            for (InetAddress address : addresses) {
+                if (address instanceof Inet4Address) return address.getHostAddress();
+            }
+            return addresses.isEmpty() ? null : addresses.get(0).getHostAddress();
+        }
+        return nsdServiceInfo.getHost() != null ? nsdServiceInfo.getHost().getHostAddress() : null;
+    }
+
     // Minimal constructor for manual entries or future use
     public DiscoveredService(String serviceName, String hostAddress, int port, String type) {
         this.serviceName = serviceName;
@@ -0,0 +1,210 @@
+package com.example.mybasicapp.network;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.mybasicapp.metrics.CallPhase;
+import com.example.mybasicapp.metrics.CallTrace;
+import com.example.mybasicapp.metrics.RequestMetrics;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Splits each call's time into {@link CallPhase}s (DNS, connect, request write, ESP processing,
+ * response read) and notes whether a pooled connection was reused, so a slow poll can be blamed on
+ * a {@code .local} resolution stall, a new TCP connection over weak Wi-Fi or a busy ESP web server.
+ * Phases go into {@link RequestMetrics}' per-device aggregates; sampled calls (and every call slower
+ * than {@link #SLOW_CALL_MS}) are also kept as {@link CallTrace}s.
+ * <p>
+ * One listener per call, created by {@link Factory}. OkHttp delivers a call's events sequentially,
+ * so no locking is needed. Non-sampled calls only update a few longs.
+ */
+public class CallTimingListener extends EventListener {
+    private static final String TAG = "CallTimingListener_DBG";
+
+    static final long SLOW_CALL_MS = 1000; // Always traced, and logged
+    private static final CallPhase[] PHASES = CallPhase.values();
+
+    /** Install with {@code OkHttpClient.Builder.eventListenerFactory(new CallTimingListener.Factory(...))}. */
+    public static class Factory implements EventListener.Factory {
+        private final RequestMetrics metrics;
+
+        public Factory(@NonNull RequestMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @NonNull
+        @Override
+        public EventListener create(@NonNull Call call) {
+            return new CallTimingListener(metrics, call.request(), metrics.shouldSampleTrace());
+        }
+    }
+
+    private final RequestMetrics metrics;
+    private final String device;
+    private final String endpoint;
+    @Nullable private final List<String> events; // Only for sampled calls
+
+    private final long[] phaseNanos = new long[PHASES.length]; // Summed over retries and follow-ups; -1 if never happened
+    private long callStartNanos;
+    private long callStartWallMs;
+    private long dnsStartNanos;
+    private long connectStartNanos;
+    private long requestStartNanos;
+    private long requestEndNanos;
+    private long responseStartNanos = -1; // -1 when no response is being read
+    private boolean connectStarted = false;
+    private boolean connectionAcquired = false;
+
+    CallTimingListener(RequestMetrics metrics, Request request, boolean sampled) {
+        this.metrics = metrics;
+        this.device = MetricsInterceptor.deviceKey(request.url());
+        this.endpoint = request.url().encodedPath();
+        this.events = sampled ? new ArrayList<>() : null;
+        Arrays.fill(phaseNanos, -1);
+    }
+
+    @Override
+    public void callStart(@NonNull Call call) {
+        callStartNanos = System.nanoTime();
+        callStartWallMs = System.currentTimeMillis();
+        event(callStartNanos, "callStart", null);
+    }
+
+    @Override
+    public void dnsStart(@NonNull Call call, @NonNull String domainName) {
+        dnsStartNanos = event(System.nanoTime(), "dnsStart", domainName);
+    }
+
+    @Override
+    public void dnsEnd(@NonNull Call call, @NonNull String domainName, @NonNull List<InetAddress> inetAddressList) {
+        long now = event(System.nanoTime(), "dnsEnd", events != null ? inetAddressList.toString() : null);
+        addPhase(CallPhase.DNS, now - dnsStartNanos);
+    }
+
+    @Override
+    public void connectStart(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy) {
+        connectStarted = true;
+        connectStartNanos = event(System.nanoTime(), "connectStart", events != null ? inetSocketAddress.toString() : null);
+    }
+
+    @Override
+    public void connectEnd(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy, @Nullable Protocol protocol) {
+        long now = event(System.nanoTime(), "connectEnd", null);
+        addPhase(CallPhase.CONNECT, now - connectStartNanos);
+    }
+
+    @Override
+    public void connectFailed(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy,
+                              @Nullable Protocol protocol, @NonNull IOException ioe) {
+        long now = event(System.nanoTime(), "connectFailed", events != null ? String.valueOf(ioe.getMessage()) : null);
+        addPhase(CallPhase.CONNECT, now - connectStartNanos);
+    }
+
+    @Override
+    public void connectionAcquired(@NonNull Call call, @NonNull Connection connection) {
+        connectionAcquired = true;
+        event(System.nanoTime(), "connectionAcquired", null);
+    }
+
+    @Override
+    public void requestHeadersStart(@NonNull Call call) {
+        requestStartNanos = event(System.nanoTime(), "requestHeadersStart", null);
+        requestEndNanos = requestStartNanos;
+    }
+
+    @Override
+    public void requestHeadersEnd(@NonNull Call call, @NonNull Request request) {
+        requestEndNanos = event(System.nanoTime(), "requestHeadersEnd", null);
+    }
+
+    @Override
+    public void requestBodyEnd(@NonNull Call call, long byteCount) {
+        requestEndNanos = event(System.nanoTime(), "requestBodyEnd", events != null ? byteCount + " bytes" : null);
+    }
+
+    @Override
+    public void responseHeadersStart(@NonNull Call call) {
+        long now = event(System.nanoTime(), "responseHeadersStart", null);
+        addPhase(CallPhase.REQUEST, requestEndNanos - requestStartNanos);
+        addPhase(CallPhase.SERVER, now - requestEndNanos);
+        responseStartNanos = now;
+    }
+
+    @Override
+    public void responseHeadersEnd(@NonNull Call call, @NonNull Response response) {
+        event(System.nanoTime(), "responseHeadersEnd", events != null ? "HTTP " + response.code() : null);
+    }
+
+    @Override
+    public void responseBodyEnd(@NonNull Call call, long byteCount) {
+        long now = event(System.nanoTime(), "responseBodyEnd", events != null ? byteCount + " bytes" : null);
+        endResponse(now);
+    }
+
+    @Override
+    public void callEnd(@NonNull Call call) {
+        finish(event(System.nanoTime(), "callEnd", null), null);
+    }
+
+    @Override
+    public void callFailed(@NonNull Call call, @NonNull IOException ioe) {
+        long now = event(System.nanoTime(), "callFailed", events != null ? String.valueOf(ioe.getMessage()) : null);
+        if (call.isCanceled()) return; // Not a network problem
+        finish(now, ioe.getClass().getSimpleName() + ": " + ioe.getMessage());
+    }
+
+    private void endResponse(long now) {
+        if (responseStartNanos < 0) return;
+        addPhase(CallPhase.RESPONSE, now - responseStartNanos);
+        responseStartNanos = -1;
+    }
+
+    private void finish(long now, @Nullable String failure) {
+        endResponse(now); // Response closed before its body was read to the end
+        long[] phaseMs = new long[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseMs[i] = phaseNanos[i] < 0 ? -1 : phaseNanos[i] / 1_000_000;
+        }
+        boolean reused = connectionAcquired && !connectStarted;
+        metrics.recordPhases(device, phaseMs, reused);
+
+        long totalMs = (now - callStartNanos) / 1_000_000;
+        boolean slow = totalMs >= SLOW_CALL_MS;
+        if (events != null || slow) {
+            CallTrace trace = new CallTrace(device, endpoint, callStartWallMs, totalMs, phaseMs, reused, failure, events);
+            metrics.addTrace(trace);
+            if (slow) Log.d(TAG, "Slow call " + trace);
+        }
+    }
+
+    private void addPhase(CallPhase phase, long nanos) {
+        int index = phase.ordinal();
+        phaseNanos[index] = Math.max(0, phaseNanos[index]) + Math.max(0, nanos);
+    }
+
+    /** Records the event for sampled calls. @return now, for chaining. */
+    private long event(long now, String name, @Nullable String detail) {
+        if (events != null) {
+            String line = String.format(Locale.US, "+%.3f ms %s", (now - callStartNanos) / 1e6, name);
+            events.add(detail != null ? line + " " + detail : line);
+        }
+        return now;
+    }
+}
@@ -0,0 +1,347 @@
+package com.example.mybasicapp.network;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Result of an asynchronous ESP request, in the spirit of {@code CompletableFuture} (which needs
+ * API 24; this app supports 21). Nothing here blocks: stages run when the previous one completes.
+ * <ul>
+ *   <li>Chain with {@link #thenApply}, {@link #thenCompose} and {@link #recover}; fan out with
+ *       {@link #allOf} / {@link #allSettled}.</li>
+ *   <li>{@link #withTimeout} bounds the whole chain so far; {@link #cancel()} cancels the request
+ *       behind it and fails dependent stages with a {@link CancellationException}.</li>
+ *   <li>Stages run on the completing thread (usually OkHttp's) unless an {@link Executor} is given,
+ *       e.g. {@link #mainThread()} for UI updates.</li>
+ * </ul>
+ * A future completes once; later completions are ignored.
+ */
+public final class ConfigFuture<T> {
+    private static final String TAG = "ConfigFuture_DBG";
+
+    public interface Function<A, B> {
+        B apply(A input) throws Exception;
+    }
+
+    public interface AsyncFunction<A, B> {
+        @NonNull
+        ConfigFuture<B> apply(A input) throws Exception;
+    }
+
+    public interface Listener<T> {
+        /** Exactly one of {@code value} / {@code error} is meaningful; {@code error} is null on success. */
+        void onComplete(@Nullable T value, @Nullable Exception error);
+    }
+
+    // Deadlines only schedule completions, they never block or do I/O
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ConfigFutureTimer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Executor DIRECT = Runnable::run;
+    private static volatile Executor mainThreadExecutor;
+
+    // All guarded by "this"
+    private boolean done = false;
+    @Nullable private T value;
+    @Nullable private Exception error;
+    @Nullable private List<Runnable> callbacks = new ArrayList<>();
+    @Nullable private Runnable onCancel; // Cancels whatever produces this future's result
+
+    public ConfigFuture() {
+    }
+
+    @NonNull
+    public static <T> ConfigFuture<T> completed(@Nullable T value) {
+        ConfigFuture<T> future = new ConfigFuture<>();
+        future.complete(value);
+        return future;
+    }
+
+    @NonNull
+    public static <T> ConfigFuture<T> failed(@NonNull Exception error) {
+        ConfigFuture<T> future = new ConfigFuture<>();
+        future.fail(error);
+        return future;
+    }
+
+    /** Posts to the main looper. */
+    @NonNull
+    public static Executor mainThread() {
+        Executor executor = mainThreadExecutor;
+        if (executor == null) {
+            Handler handler = new Handler(Looper.getMainLooper());
+            executor = handler::post;
+            mainThreadExecutor = executor;
+        }
+        return executor;
+    }
+
+    /** @return False if the future was already complete. */
+    public boolean complete(@Nullable T result) {
+        return finish(result, null);
+    }
+
+    /** @return False if the future was already complete. */
+    public boolean fail(@NonNull Exception failure) {
+        return finish(null, failure);
+    }
+
+    /**
+     * Fails the future with a {@link CancellationException} and cancels the work behind it
+     * (the HTTP request, or the stage currently running in a chain).
+     * @return False if the future was already complete.
+     */
+    public boolean cancel() {
+        Runnable canceller;
+        synchronized (this) {
+            canceller = onCancel;
+        }
+        boolean cancelled = finish(null, new CancellationException("Cancelled"));
+        if (cancelled && canceller != null) canceller.run();
+        return cancelled;
+    }
+
+    /** Registers what {@link #cancel()} should stop. Runs at once if the future was already cancelled. */
+    public void setCanceller(@NonNull Runnable canceller) {
+        boolean runNow;
+        synchronized (this) {
+            runNow = done && error instanceof CancellationException;
+            if (!done) onCancel = canceller;
+        }
+        if (runNow) canceller.run();
+    }
+
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    public synchronized boolean isCancelled() {
+        return done && error instanceof CancellationException;
+    }
+
+    /** The value if completed successfully, otherwise {@code fallback}. Never blocks. */
+    @Nullable
+    public synchronized T getNow(@Nullable T fallback) {
+        return done && error == null ? value : fallback;
+    }
+
+    /** The failure, or null if pending or successful. */
+    @Nullable
+    public synchronized Exception getError() {
+        return done ? error : null;
+    }
+
+    /** Calls {@code listener} when complete, on the completing thread (or right away if already done). */
+    @NonNull
+    public ConfigFuture<T> whenComplete(@NonNull Listener<? super T> listener) {
+        return whenComplete(DIRECT, listener);
+    }
+
+    @NonNull
+    public ConfigFuture<T> whenComplete(@NonNull Executor executor, @NonNull Listener<? super T> listener) {
+        addCallback(() -> executor.execute(() -> {
+            T result;
+            Exception failure;
+            synchronized (this) {
+                result = value;
+                failure = error;
+            }
+            listener.onComplete(result, failure);
+        }));
+        return this;
+    }
+
+    /** Transforms the value; an exception from {@code fn} fails the returned future. */
+    @NonNull
+    public <R> ConfigFuture<R> thenApply(@NonNull Function<? super T, ? extends R> fn) {
+        return thenApply(DIRECT, fn);
+    }
+
+    @NonNull
+    public <R> ConfigFuture<R> thenApply(@NonNull Executor executor, @NonNull Function<? super T, ? extends R> fn) {
+        ConfigFuture<R> next = new ConfigFuture<>();
+        next.setCanceller(this::cancel);
+        whenComplete(executor, (result, failure) -> {
+            if (failure != null) {
+                next.fail(failure);
+                return;
+            }
+            try {
+                next.complete(fn.apply(result));
+            } catch (Exception e) {
+                next.fail(e);
+            }
+        });
+        return next;
+    }
+
+    /** Starts another asynchronous step with the value, e.g. a second request after the first succeeded. */
+    @NonNull
+    public <R> ConfigFuture<R> thenCompose(@NonNull AsyncFunction<? super T, R> fn) {
+        return thenCompose(DIRECT, fn);
+    }
+
+    @NonNull
+    public <R> ConfigFuture<R> thenCompose(@NonNull Executor executor, @NonNull AsyncFunction<? super T, R> fn) {
+        ConfigFuture<R> next = new ConfigFuture<>();
+        next.setCanceller(this::cancel);
+        whenComplete(executor, (result, failure) -> {
+            if (failure != null) {
+                next.fail(failure);
+                return;
+            }
+            ConfigFuture<R> step;
+            try {
+                step = fn.apply(result);
+            } catch (Exception e) {
+                next.fail(e);
+                return;
+            }
+            next.setCanceller(step::cancel); // From now on, cancelling the chain stops this step
+            step.whenComplete((stepResult, stepFailure) -> {
+                if (stepFailure != null) next.fail(stepFailure);
+                else next.complete(stepResult);
+            });
+        });
+        return next;
+    }
+
+    /** Turns a failure into a value; cancellation is not recovered from. */
+    @NonNull
+    public ConfigFuture<T> recover(@NonNull Function<? super Exception, ? extends T> fn) {
+        ConfigFuture<T> next = new ConfigFuture<>();
+        next.setCanceller(this::cancel);
+        whenComplete((result, failure) -> {
+            if (failure == null) {
+                next.complete(result);
+            } else if (failure instanceof CancellationException) {
+                next.fail(failure);
+            } else {
+                try {
+                    next.complete(fn.apply(failure));
+                } catch (Exception e) {
+                    next.fail(e);
+                }
+            }
+        });
+        return next;
+    }
+
+    /**
+     * Fails with an {@link InterruptedIOException} and cancels the work if this future isn't done
+     * within {@code timeoutMs}. Applies on top of any per-request retry deadline.
+     */
+    @NonNull
+    public ConfigFuture<T> withTimeout(long timeoutMs) {
+        ConfigFuture<T> next = new ConfigFuture<>();
+        next.setCanceller(this::cancel);
+        ScheduledFuture<?> timer = TIMER.schedule(() -> {
+            if (next.fail(new InterruptedIOException("Deadline of " + timeoutMs + " ms exceeded"))) {
+                Log.w(TAG, "Deadline of " + timeoutMs + " ms exceeded, cancelling.");
+                cancel();
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        whenComplete((result, failure) -> {
+            timer.cancel(false);
+            if (failure != null) next.fail(failure);
+            else next.complete(result);
+        });
+        return next;
+    }
+
+    /**
+     * Succeeds with every value, in input order, once all succeed. The first failure fails the
+     * result and cancels the futures still running.
+     */
+    @NonNull
+    public static <T> ConfigFuture<List<T>> allOf(@NonNull List<ConfigFuture<T>> futures) {
+        ConfigFuture<List<T>> all = new ConfigFuture<>();
+        all.setCanceller(() -> cancelAll(futures));
+        if (futures.isEmpty()) {
+            all.complete(Collections.emptyList());
+            return all;
+        }
+        AtomicInteger remaining = new AtomicInteger(futures.size());
+        for (ConfigFuture<T> future : futures) {
+            future.whenComplete((result, failure) -> {
+                if (failure != null) {
+                    if (all.fail(failure)) cancelAll(futures);
+                } else if (remaining.decrementAndGet() == 0) {
+                    List<T> results = new ArrayList<>(futures.size());
+                    for (ConfigFuture<T> f : futures) results.add(f.getNow(null));
+                    all.complete(results);
+                }
+            });
+        }
+        return all;
+    }
+
+    /**
+     * Completes when every future is done, successful or not, with the futures themselves so each
+     * outcome can be inspected. Never fails, except by being cancelled.
+     */
+    @NonNull
+    public static <T> ConfigFuture<List<ConfigFuture<T>>> allSettled(@NonNull List<ConfigFuture<T>> futures) {
+        ConfigFuture<List<ConfigFuture<T>>> all = new ConfigFuture<>();
+        all.setCanceller(() -> cancelAll(futures));
+        List<ConfigFuture<T>> snapshot = Collections.unmodifiableList(new ArrayList<>(futures));
+        if (snapshot.isEmpty()) {
+            all.complete(snapshot);
+            return all;
+        }
+        AtomicInteger remaining = new AtomicInteger(snapshot.size());
+        for (ConfigFuture<T> future : snapshot) {
+            future.whenComplete((result, failure) -> {
+                if (remaining.decrementAndGet() == 0) all.complete(snapshot);
+            });
+        }
+        return all;
+    }
+
+    private static <T> void cancelAll(List<ConfigFuture<T>> futures) {
+        for (ConfigFuture<T> future : futures) future.cancel();
+    }
+
+    private boolean finish(@Nullable T result, @Nullable Exception failure) {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (done) return false;
+            done = true;
+            value = result;
+            error = failure;
+            toRun = callbacks;
+            callbacks = null;
+            onCancel = null;
+        }
+        for (Runnable callback : toRun) callback.run();
+        return true;
+    }
+
+    private void addCallback(Runnable callback) {
+        synchronized (this) {
+            if (!done) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+}
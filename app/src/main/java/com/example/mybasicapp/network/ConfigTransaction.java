@@ -0,0 +1,246 @@
+package com.example.mybasicapp.network;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A set of config changes for one ESP, written in as few requests as possible.
+ * <p>
+ * Desired values are compared against the last {@code /get_config} result; only fields that differ
+ * are sent, all in one POST to {@code /update_config_json}. Firmware without that endpoint (404/405/501)
+ * gets the changed fields as the classic per-field form posts instead, one after another, and is
+ * remembered so later transactions to the same device skip the JSON attempt. The requests are
+ * chained as {@link ConfigFuture} stages, so {@link #cancel()} stops whichever one is in flight.
+ * <p>
+ * Usage: {@code new ConfigTransaction(client, baseUrl, cachedConfig).setThreshold(75f).commit(callback)}.
+ * Callbacks arrive on OkHttp threads, or on the committing thread if no request could be built
+ * (e.g. an invalid address).
+ */
+public class ConfigTransaction {
+    private static final String TAG = "ConfigTransaction_DBG";
+
+    public static final String FIELD_THRESHOLD = "threshold_db_calibrated";
+    public static final String FIELD_CALIBRATION_OFFSET = "calibration_offset";
+    public static final String FIELD_WIFI_SSID = "wifi_ssid";
+    public static final String FIELD_WIFI_PASSWORD = "wifi_password";
+
+    private static final double FLOAT_TOLERANCE = 0.05; // Values are sent with one decimal
+
+    // Base URLs whose firmware answered 404/405/501 to the JSON endpoint; reset on app restart
+    private static final Set<String> jsonUnsupported = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    public interface Callback {
+        /**
+         * @param changedFields Fields that were written; empty if the device already had every value.
+         * @param batched       True if they went out as one JSON request.
+         */
+        void onCommitted(@NonNull Set<String> changedFields, boolean batched);
+
+        /**
+         * @param appliedFields Fields written before the failure (per-field fallback only), so the
+         *                      caller knows what the device now holds.
+         * @param code          HTTP status, or 0 for network errors and {@link #cancel() cancellation}.
+         */
+        void onFailed(@NonNull String message, int code, @NonNull Set<String> appliedFields);
+    }
+
+    private final EspConfigClient client;
+    private final String baseUrl;
+    @Nullable private final JSONObject cachedConfig;
+    private final Map<String, Object> desired = new LinkedHashMap<>();
+    private boolean committed = false;
+
+    // Guarded by "this"
+    @Nullable private ConfigFuture<Boolean> result; // Once committed and something needs writing
+    private boolean cancelled = false;
+
+    /**
+     * @param cachedConfig Last {@code /get_config} response, or null to send every field that is set.
+     */
+    public ConfigTransaction(@NonNull EspConfigClient client, @NonNull String baseUrl, @Nullable JSONObject cachedConfig) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.cachedConfig = cachedConfig;
+    }
+
+    public ConfigTransaction setThreshold(float threshold) {
+        desired.put(FIELD_THRESHOLD, roundToTenth(threshold));
+        return this;
+    }
+
+    public ConfigTransaction setCalibrationOffset(float offset) {
+        desired.put(FIELD_CALIBRATION_OFFSET, roundToTenth(offset));
+        return this;
+    }
+
+    /** The ESP only accepts SSID and password together, so they are always sent as a pair. */
+    public ConfigTransaction setWifiConfig(@NonNull String ssid, @NonNull String password) {
+        desired.put(FIELD_WIFI_SSID, ssid);
+        desired.put(FIELD_WIFI_PASSWORD, password);
+        return this;
+    }
+
+    /** Fields whose desired value differs from the cached config, in the order they were set. */
+    @NonNull
+    public Set<String> getChangedFields() {
+        Set<String> changed = new LinkedHashSet<>();
+        for (Map.Entry<String, Object> entry : desired.entrySet()) {
+            String field = entry.getKey();
+            if (FIELD_WIFI_PASSWORD.equals(field) || FIELD_WIFI_SSID.equals(field)) continue; // Handled as a pair below
+            if (differs(field, entry.getValue())) changed.add(field);
+        }
+        if (desired.containsKey(FIELD_WIFI_SSID)) {
+            // get_config never returns the password, so a non-empty one always counts as a change
+            String password = (String) desired.get(FIELD_WIFI_PASSWORD);
+            if (differs(FIELD_WIFI_SSID, desired.get(FIELD_WIFI_SSID)) || (password != null && !password.isEmpty())) {
+                changed.add(FIELD_WIFI_SSID);
+                changed.add(FIELD_WIFI_PASSWORD);
+            }
+        }
+        return changed;
+    }
+
+    /** Value set for {@code field}: a Double for numbers, a String for Wi-Fi fields; null if not set. */
+    @Nullable
+    Object getDesiredValue(@NonNull String field) {
+        return desired.get(field);
+    }
+
+    /**
+     * Cancels the request in flight and sends no further fields. The callback then gets
+     * {@code onFailed} with code 0, as for a network error; {@link #isCancelled()} tells them apart.
+     */
+    public void cancel() {
+        ConfigFuture<Boolean> toCancel;
+        synchronized (this) {
+            if (cancelled) return;
+            cancelled = true;
+            toCancel = result;
+        }
+        if (toCancel != null) toCancel.cancel();
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Sends the changed fields. A transaction can be committed once. */
+    public void commit(@NonNull Callback callback) {
+        if (committed) throw new IllegalStateException("ConfigTransaction already committed");
+        committed = true;
+        Set<String> changed = getChangedFields();
+        if (changed.isEmpty()) {
+            Log.d(TAG, "Nothing to write to " + baseUrl + "; device already has the desired config.");
+            callback.onCommitted(changed, false);
+            return;
+        }
+        JSONObject body = new JSONObject();
+        try {
+            for (String field : changed) body.put(field, desired.get(field));
+        } catch (JSONException e) {
+            callback.onFailed("Could not build config JSON: " + e.getMessage(), 0, Collections.emptySet());
+            return;
+        }
+        // Written by one step at a time; the future's completion publishes it to the callback
+        Set<String> applied = new LinkedHashSet<>();
+        ConfigFuture<Boolean> batched = jsonUnsupported.contains(baseUrl) ? ConfigFuture.completed(false) : writeJson(changed, body);
+        ConfigFuture<Boolean> sent = batched.thenCompose(wroteJson -> wroteJson
+                ? ConfigFuture.completed(true)
+                : writePerField(new ArrayList<>(changed), applied).thenApply(ignored -> false));
+        boolean cancelNow;
+        synchronized (this) {
+            result = sent;
+            cancelNow = cancelled;
+        }
+        if (cancelNow) sent.cancel();
+        sent.whenComplete((wroteJson, error) -> {
+            if (error == null) {
+                callback.onCommitted(wroteJson ? changed : applied, wroteJson);
+            } else if (error instanceof EspConfigClient.HttpStatusException) {
+                callback.onFailed(String.valueOf(error.getMessage()), ((EspConfigClient.HttpStatusException) error).code, applied);
+            } else if (error instanceof CancellationException) {
+                callback.onFailed("Canceled", 0, applied);
+            } else {
+                callback.onFailed(String.valueOf(error.getMessage()), 0, applied);
+            }
+        });
+    }
+
+    /** @return True once written, false if the firmware has no JSON endpoint and the per-field posts are needed. */
+    private ConfigFuture<Boolean> writeJson(Set<String> changed, JSONObject body) {
+        Log.d(TAG, "Writing " + changed + " to " + baseUrl + " in one request.");
+        return client.updateFullConfigViaJsonAsync(baseUrl, body)
+                .thenApply(responseBody -> true)
+                .recover(error -> {
+                    int code = error instanceof EspConfigClient.HttpStatusException ? ((EspConfigClient.HttpStatusException) error).code : 0;
+                    if (code != 404 && code != 405 && code != 501) throw error;
+                    Log.i(TAG, baseUrl + " has no JSON config endpoint (" + code + "), using per-field posts.");
+                    jsonUnsupported.add(baseUrl);
+                    return false;
+                });
+    }
+
+    /**
+     * Older firmware: one form post per field (Wi-Fi last, since the ESP may reconnect), each started
+     * when the previous one succeeded. The first failure fails the chain; cancelling it cancels the
+     * post in flight.
+     */
+    private ConfigFuture<Void> writePerField(List<String> changed, Set<String> applied) {
+        List<String> steps = new ArrayList<>();
+        for (String field : changed) {
+            if (!FIELD_WIFI_SSID.equals(field) && !FIELD_WIFI_PASSWORD.equals(field)) steps.add(field);
+        }
+        if (changed.contains(FIELD_WIFI_SSID)) steps.add(FIELD_WIFI_SSID); // Posts SSID and password together
+        ConfigFuture<Void> chain = ConfigFuture.completed(null);
+        for (String field : steps) {
+            chain = chain.thenCompose(ignored -> postField(field)).thenApply(responseBody -> {
+                applied.add(field);
+                if (FIELD_WIFI_SSID.equals(field)) applied.add(FIELD_WIFI_PASSWORD);
+                return null;
+            });
+        }
+        return chain;
+    }
+
+    private ConfigFuture<String> postField(String field) {
+        switch (field) {
+            case FIELD_THRESHOLD:
+                return client.setThresholdAsync(baseUrl, ((Double) desired.get(field)).floatValue());
+            case FIELD_CALIBRATION_OFFSET:
+                return client.setCalibrationAsync(baseUrl, ((Double) desired.get(field)).floatValue());
+            case FIELD_WIFI_SSID:
+                return client.setWifiConfigAsync(baseUrl, (String) desired.get(FIELD_WIFI_SSID), (String) desired.get(FIELD_WIFI_PASSWORD));
+            default:
+                return ConfigFuture.failed(new IOException("No form endpoint for field " + field));
+        }
+    }
+
+    private boolean differs(String field, Object value) {
+        if (cachedConfig == null || !cachedConfig.has(field)) return true;
+        if (value instanceof Double) {
+            double current = cachedConfig.optDouble(field, Double.NaN);
+            return Double.isNaN(current) || Math.abs(current - (Double) value) >= FLOAT_TOLERANCE;
+        }
+        return !String.valueOf(value).equals(cachedConfig.optString(field, null));
+    }
+
+    private static double roundToTenth(float value) {
+        return Math.round(value * 10.0) / 10.0;
+    }
+}
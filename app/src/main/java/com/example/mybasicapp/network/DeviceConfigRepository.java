@@ -0,0 +1,209 @@
+package com.example.mybasicapp.network;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.mybasicapp.model.EspDevice;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shared cache of each ESP's {@code /get_config} response, so every screen showing a device's config
+ * reads from one place instead of fetching on its own.
+ * <ul>
+ *   <li>Single-flight: while a fetch for a device is running, further refresh requests join it.</li>
+ *   <li>Stale-while-revalidate: observers get the cached config at once; if it is older than the
+ *       TTL a background fetch runs and its result is pushed to every observer.</li>
+ *   <li>{@link #invalidate} after a config write forces the next read to hit the device.</li>
+ * </ul>
+ * Thread-safe; LiveData updates are delivered on the main thread, in order.
+ */
+public class DeviceConfigRepository {
+    private static final String TAG = "DeviceConfigRepo_DBG";
+
+    public static final long DEFAULT_TTL_MS = 30_000;
+
+    /** What is known about one device's config. Immutable; treat {@link #config} as read-only. */
+    public static final class ConfigState {
+        public static final ConfigState EMPTY = new ConfigState(null, 0, false, null, 0);
+
+        @Nullable public final JSONObject config; // Last good /get_config response
+        public final long fetchedAtMs;             // Wall clock time of that response, 0 if never
+        public final boolean refreshing;           // A fetch is in flight
+        @Nullable public final String error;       // Why the last fetch failed; null after a success
+        public final int errorCode;                // HTTP status of that failure, 0 for network errors
+
+        ConfigState(@Nullable JSONObject config, long fetchedAtMs, boolean refreshing, @Nullable String error, int errorCode) {
+            this.config = config;
+            this.fetchedAtMs = fetchedAtMs;
+            this.refreshing = refreshing;
+            this.error = error;
+            this.errorCode = errorCode;
+        }
+
+        ConfigState withRefreshing(boolean newRefreshing) {
+            return new ConfigState(config, fetchedAtMs, newRefreshing, error, errorCode);
+        }
+    }
+
+    private static final class Entry {
+        final MutableLiveData<ConfigState> liveData = new MutableLiveData<>(ConfigState.EMPTY);
+        ConfigState state = ConfigState.EMPTY;
+        long fetchedAtElapsedMs = 0; // For the TTL; 0 means stale
+        int generation = 0;          // Bumped by invalidate() so an older in-flight response is dropped
+        @Nullable EspConfigClient.ConfigRequest inFlight;
+        boolean refreshing = false;
+    }
+
+    private final EspConfigClient client;
+    private final long ttlMs;
+    private final Map<String, Entry> entries = new HashMap<>(); // Keyed by canonical address; guarded by "this"
+
+    public DeviceConfigRepository(@NonNull EspConfigClient client, long ttlMs) {
+        this.client = client;
+        this.ttlMs = ttlMs;
+    }
+
+    /** Config of one device, fetched in the background if missing or older than the TTL. */
+    @NonNull
+    public LiveData<ConfigState> observe(@NonNull String address) {
+        LiveData<ConfigState> liveData;
+        synchronized (this) {
+            liveData = entryFor(address).liveData;
+        }
+        refresh(address, false);
+        return liveData;
+    }
+
+    /** Cached config, or null if the device was never fetched. Does not trigger a fetch. */
+    @Nullable
+    public synchronized JSONObject getCachedConfig(@NonNull String address) {
+        Entry entry = entries.get(EspDevice.canonicalAddress(address));
+        return entry != null ? entry.state.config : null;
+    }
+
+    /**
+     * Fetches the config unless a fetch is already running or, without {@code force}, the cached one
+     * is still within the TTL.
+     */
+    public void refresh(@NonNull String address, boolean force) {
+        Entry entry;
+        int generation;
+        synchronized (this) {
+            entry = entryFor(address);
+            if (entry.refreshing) return; // Join the running fetch
+            boolean fresh = entry.fetchedAtElapsedMs != 0 && SystemClock.elapsedRealtime() - entry.fetchedAtElapsedMs < ttlMs;
+            if (fresh && !force) return;
+            entry.refreshing = true;
+            generation = entry.generation;
+            publish(entry, entry.state.withRefreshing(true));
+        }
+        Log.d(TAG, "Fetching config of " + address + (entry.state.config != null ? " (serving cached meanwhile)" : ""));
+        EspConfigClient.ConfigRequest call = client.getConfig("http://" + address, new EspConfigClient.ConfigCallback() {
+            @Override
+            public void onSuccess(String responseBody) {
+                try {
+                    JSONObject config = new JSONObject(responseBody);
+                    complete(entry, generation, new ConfigState(config, System.currentTimeMillis(), false, null, 0), true);
+                } catch (JSONException e) {
+                    Log.e(TAG, "Unparseable config from " + address + ": " + responseBody, e);
+                    fail(entry, generation, "Invalid config JSON", 0);
+                }
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                fail(entry, generation, String.valueOf(e.getMessage()), 0);
+            }
+
+            @Override
+            public void onError(String message, int code) {
+                fail(entry, generation, message, code);
+            }
+        });
+        synchronized (this) {
+            if (entry.refreshing && entry.generation == generation) entry.inFlight = call;
+        }
+    }
+
+    /**
+     * Marks the cached config as stale, e.g. after writing to the device, and drops any fetch that
+     * started before the write. Refetches right away if someone is observing.
+     */
+    public void invalidate(@NonNull String address) {
+        EspConfigClient.ConfigRequest toCancel;
+        boolean observed;
+        synchronized (this) {
+            Entry entry = entries.get(EspDevice.canonicalAddress(address));
+            if (entry == null) return;
+            entry.generation++;
+            entry.fetchedAtElapsedMs = 0;
+            toCancel = entry.inFlight;
+            entry.inFlight = null;
+            if (entry.refreshing) {
+                entry.refreshing = false;
+                publish(entry, entry.state.withRefreshing(false));
+            }
+            observed = entry.liveData.hasObservers();
+        }
+        if (toCancel != null) toCancel.cancel();
+        if (observed) refresh(address, true);
+    }
+
+    /** Cancels running fetches. Cached configs stay. */
+    public void shutdown() {
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                entry.generation++;
+                entry.refreshing = false;
+                if (entry.inFlight != null) entry.inFlight.cancel();
+                entry.inFlight = null;
+            }
+        }
+    }
+
+    private void fail(Entry entry, int generation, String error, int code) {
+        // Keep the last good config; observers decide whether to show it as stale
+        synchronized (this) {
+            ConfigState previous = entry.state;
+            complete(entry, generation, new ConfigState(previous.config, previous.fetchedAtMs, false, error, code), false);
+        }
+    }
+
+    private void complete(Entry entry, int generation, ConfigState state, boolean success) {
+        synchronized (this) {
+            if (entry.generation != generation) return; // Invalidated or cancelled meanwhile
+            entry.refreshing = false;
+            entry.inFlight = null;
+            if (success) entry.fetchedAtElapsedMs = SystemClock.elapsedRealtime();
+            publish(entry, state);
+        }
+    }
+
+    // Caller holds the lock
+    private Entry entryFor(String address) {
+        String key = EspDevice.canonicalAddress(address);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    // Caller holds the lock. Always posted (even from the main thread) so updates can't overtake each other.
+    private static void publish(Entry entry, ConfigState state) {
+        entry.state = state;
+        entry.liveData.postValue(state);
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.mybasicapp.network;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.mybasicapp.model.DeviceStatus;
+import com.example.mybasicapp.model.EspDevice;
+import com.example.mybasicapp.model.SensorReading;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Lightweight background health check for every known device, independent of
+ * {@link com.example.mybasicapp.HttpPollingService} (which only polls the active device).
+ * <p>
+ * Every {@link #PROBE_INTERVAL_MS} each device gets one short-timeout GET of its data endpoint,
+ * unless its previous probe is still in flight. The number of concurrent probes is capped by the
+ * OkHttp dispatcher, so a large fleet is worked through as a queue. Results are collected off the
+ * main thread and published to the {@link Listener} on the main thread at most once per
+ * {@link #PUBLISH_INTERVAL_MS}, as one map, so the UI refreshes in batches.
+ */
+public class DeviceHealthProber {
+    private static final String TAG = "DeviceHealthProber_DBG";
+
+    public interface Listener {
+        /** Main thread. Immutable map of address key to latest status. */
+        void onDeviceStatusesUpdated(@NonNull Map<String, DeviceStatus> statuses);
+    }
+
+    private static final long PROBE_INTERVAL_MS = 5000;
+    private static final long PUBLISH_INTERVAL_MS = 1000;
+    private static final int MAX_CONCURRENT_PROBES = 8;
+    private static final String PROBE_ENDPOINT = "/"; // Same endpoint HttpPollingService reads mic data from
+
+    private final OkHttpClient client;
+    private final LocalHostnameDns localHostnameDns; // Shared with HttpPollingService and EspConfigClient
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, DeviceStatus> statuses = new ConcurrentHashMap<>();
+    private final Set<String> inFlight = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private volatile List<EspDevice> devices = Collections.emptyList();
+    private volatile Set<String> trackedKeys = Collections.emptySet();
+
+    @Nullable private ScheduledExecutorService scheduler;
+    @Nullable private ScheduledFuture<?> probeRound;
+    private volatile boolean running = false;
+    private final AtomicBoolean publishPending = new AtomicBoolean(false);
+
+    public DeviceHealthProber(@NonNull Context context, @NonNull Listener listener) {
+        this.listener = listener;
+        this.localHostnameDns = LocalHostnameDns.getInstance(context);
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_CONCURRENT_PROBES);
+        dispatcher.setMaxRequestsPerHost(1);
+        this.client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .dns(localHostnameDns) // *.local devices resolve like they do for polling and config writes
+                .connectTimeout(2, TimeUnit.SECONDS) // A device that can't connect this fast counts as offline
+                .readTimeout(2, TimeUnit.SECONDS)
+                .callTimeout(3, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(false)
+                .build();
+    }
+
+    /** Sets the devices to probe. Statuses of devices no longer in the list are dropped. Any thread. */
+    public void setDevices(@NonNull List<EspDevice> newDevices) {
+        Set<String> keys = new HashSet<>();
+        for (EspDevice device : newDevices) keys.add(device.getAddressKey());
+        this.trackedKeys = keys;
+        this.devices = newDevices;
+        if (statuses.keySet().retainAll(keys)) schedulePublish();
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "DeviceHealthProber");
+            thread.setDaemon(true);
+            return thread;
+        });
+        probeRound = scheduler.scheduleWithFixedDelay(this::probeAll, 0, PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Log.d(TAG, "Health probing started.");
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        if (probeRound != null) probeRound.cancel(false);
+        if (scheduler != null) scheduler.shutdownNow();
+        probeRound = null;
+        scheduler = null;
+        client.dispatcher().cancelAll();
+        inFlight.clear();
+        mainHandler.removeCallbacks(publishRunnable);
+        publishPending.set(false);
+        Log.d(TAG, "Health probing stopped.");
+    }
+
+    /** Latest statuses, e.g. to seed a new observer. */
+    @NonNull
+    public Map<String, DeviceStatus> getStatuses() {
+        return Collections.unmodifiableMap(new HashMap<>(statuses));
+    }
+
+    private void probeAll() {
+        for (EspDevice device : devices) {
+            if (!running) return;
+            String key = device.getAddressKey();
+            if (!inFlight.add(key)) continue; // Previous probe still queued or running
+            probe(device.getAddress(), key);
+        }
+    }
+
+    private void probe(String address, String key) {
+        Request request = new Request.Builder().url("http://" + address + PROBE_ENDPOINT).build();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                inFlight.remove(key);
+                if (call.isCanceled()) return;
+                Log.v(TAG, "Probe " + address + " failed: " + e.getMessage());
+                // The device may have a new IP; resolve its hostname again so it can come back online
+                localHostnameDns.onRequestFailed(call.request().url().host(), e);
+                recordFailure(key);
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful()) {
+                        recordFailure(key);
+                        return;
+                    }
+                    double db = DeviceStatus.UNKNOWN_DB;
+                    String bodyString = body != null ? body.string() : null;
+                    if (bodyString != null) {
+                        try {
+                            db = SensorReading.parse(bodyString).dbCalibrated;
+                        } catch (JSONException e) {
+                            Log.v(TAG, "Probe " + address + " returned non-JSON body.");
+                        }
+                    }
+                    recordSuccess(key, db, response.receivedResponseAtMillis() - response.sentRequestAtMillis());
+                } catch (IOException e) {
+                    recordFailure(key);
+                } finally {
+                    inFlight.remove(key);
+                }
+            }
+        });
+    }
+
+    private void recordSuccess(String key, double db, long latencyMs) {
+        putIfTracked(key, DeviceStatus.afterSuccess(key, statuses.get(key), db, latencyMs));
+    }
+
+    private void recordFailure(String key) {
+        putIfTracked(key, DeviceStatus.afterFailure(key, statuses.get(key)));
+    }
+
+    private void putIfTracked(String key, DeviceStatus status) {
+        if (!running) return;
+        if (!trackedKeys.contains(key)) return; // Removed while its probe was in flight
+        statuses.put(key, status);
+        schedulePublish();
+    }
+
+    private final Runnable publishRunnable = this::publishStatuses;
+
+    private void publishStatuses() {
+        publishPending.set(false);
+        if (running) listener.onDeviceStatusesUpdated(getStatuses());
+    }
+
+    private void schedulePublish() {
+        if (!publishPending.compareAndSet(false, true)) return;
+        mainHandler.postDelayed(publishRunnable, PUBLISH_INTERVAL_MS);
+    }
+}
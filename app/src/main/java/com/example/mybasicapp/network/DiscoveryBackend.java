@@ -0,0 +1,27 @@
+package com.example.mybasicapp.network;
+
+/**
+ * A way of discovering ESP services on the local network. Results are reported through
+ * {@link NsdHelper.NsdHelperListener}, whichever backend produced them. Callbacks may arrive on
+ * any thread.
+ * <ul>
+ *   <li>{@link NsdHelper}: Android's NsdManager.</li>
+ *   <li>{@link MdnsQuerier}: the app's own multicast DNS querier.</li>
+ *   <li>{@link FallbackDiscoveryBackend}: the querier, with NsdManager where it doesn't work.</li>
+ * </ul>
+ */
+public interface DiscoveryBackend {
+    /**
+     * Starts (or restarts) discovery.
+     * @param serviceNameFilter Only report instances with this name (case-insensitive); null or empty for all.
+     * @param serviceType       e.g. "_http._tcp", with or without trailing dot.
+     */
+    void discoverServices(String serviceNameFilter, String serviceType);
+
+    void stopDiscovery();
+
+    boolean isDiscoveryActive();
+
+    /** Stops discovery and drops the listener. The backend can't be used afterwards. */
+    void tearDown();
+}
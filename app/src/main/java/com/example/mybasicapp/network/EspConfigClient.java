@@ -1,7 +1,12 @@
 package com.example.mybasicapp.network; // Ensure this package declaration is correct
 
+import android.content.Context;
+import android.os.SystemClock;
 import android.util.Log;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.mybasicapp.metrics.RequestMetrics;
 
 import org.json.JSONObject; // For the potential updateFullConfig method
 
@@ -9,6 +14,9 @@ import java.io.IOException;
 import java.net.URLEncoder; // For encoding form data values
 import java.nio.charset.StandardCharsets;
 import java.util.Locale; // ADDED IMPORT
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.Call;
@@ -24,8 +32,16 @@ import okhttp3.ResponseBody; // For explicit handling of response body
 public class EspConfigClient {
     private static final String TAG = "EspConfigClient_DBG";
     private final OkHttpClient client;
+    private final LocalHostnameDns localHostnameDns;
     public static final MediaType JSON_MEDIA_TYPE = MediaType.get("application/json; charset=utf-8");
 
+    // Waits out retry backoffs for every client, off the UI thread; only schedules, never blocks on I/O
+    private static final ScheduledExecutorService RETRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "EspConfigRetry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     // Callback interface for asynchronous operations
     public interface ConfigCallback {
         void onSuccess(String responseBody); // Called with the response body string on success
@@ -33,11 +49,33 @@ public class EspConfigClient {
         void onError(String message, int code); // Called on HTTP error responses (e.g., 404, 500)
     }
 
-    public EspConfigClient() {
+    /** Failure of a request the ESP answered with a non-2xx status; used by the future-based API. */
+    public static final class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public final int code;
+
+        public HttpStatusException(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+    }
+
+    // Starts one of the callback-based requests; used to adapt them to ConfigFuture
+    private interface RequestStarter {
+        @Nullable
+        ConfigRequest start(ConfigCallback callback);
+    }
+
+    public EspConfigClient(@NonNull Context context) {
+        this.localHostnameDns = LocalHostnameDns.getInstance(context);
         this.client = new OkHttpClient.Builder()
+                .dns(localHostnameDns) // Cached *.local resolution, shared with HttpPollingService
                 .connectTimeout(10, TimeUnit.SECONDS) // Connection timeout
                 .readTimeout(15, TimeUnit.SECONDS)    // Read timeout
                 .writeTimeout(15, TimeUnit.SECONDS)   // Write timeout
+                .addInterceptor(new MetricsInterceptor(RequestMetrics.getInstance())) // Every attempt, for the Diagnostics tab
+                .eventListenerFactory(new CallTimingListener.Factory(RequestMetrics.getInstance()))
                 .build();
     }
 
@@ -70,16 +108,18 @@ public class EspConfigClient {
      * Fetches the current configuration from the ESP's /get_config endpoint.
      * @param espAddress The normalized address of the ESP (e.g., "192.168.1.100").
      * @param callback The callback to handle the response.
+     * @return The request, for cancelling, or null if the address is invalid (callback.onFailure has then been called).
      */
-    public void getConfig(String espAddress, ConfigCallback callback) {
+    @Nullable
+    public ConfigRequest getConfig(String espAddress, ConfigCallback callback) {
         String url = formFullUrl(espAddress, "/get_config");
         if (url == null) {
             if (callback != null) callback.onFailure(new IOException("Invalid ESP address for getConfig."));
-            return;
+            return null;
         }
         Log.d(TAG, "Requesting config from ESP: " + url);
         Request request = new Request.Builder().url(url).get().build();
-        executeCall(request, callback);
+        return executeCall(request, RetryPolicy.READ, callback);
     }
 
     /**
@@ -87,19 +127,21 @@ public class EspConfigClient {
      * @param espAddress The normalized address of the ESP.
      * @param threshold The new threshold_db_calibrated value.
      * @param callback The callback to handle the response.
+     * @return The request, for cancelling, or null if the address is invalid (callback.onFailure has then been called).
      */
-    public void setThreshold(String espAddress, float threshold, ConfigCallback callback) {
+    @Nullable
+    public ConfigRequest setThreshold(String espAddress, float threshold, ConfigCallback callback) {
         String url = formFullUrl(espAddress, "/set_threshold");
         if (url == null) {
             if (callback != null) callback.onFailure(new IOException("Invalid ESP address for setThreshold."));
-            return;
+            return null;
         }
         RequestBody body = new FormBody.Builder()
                 .add("threshold_db_calibrated", String.format(Locale.US, "%.1f", threshold))
                 .build();
         Request request = new Request.Builder().url(url).post(body).build();
         Log.d(TAG, "Setting threshold on " + url + " to " + threshold);
-        executeCall(request, callback);
+        return executeCall(request, RetryPolicy.IDEMPOTENT_WRITE, callback);
     }
 
     /**
@@ -107,19 +149,21 @@ public class EspConfigClient {
      * @param espAddress The normalized address of the ESP.
      * @param offset The new calibration_offset value.
      * @param callback The callback to handle the response.
+     * @return The request, for cancelling, or null if the address is invalid (callback.onFailure has then been called).
      */
-    public void setCalibration(String espAddress, float offset, ConfigCallback callback) {
+    @Nullable
+    public ConfigRequest setCalibration(String espAddress, float offset, ConfigCallback callback) {
         String url = formFullUrl(espAddress, "/set_calibration");
          if (url == null) {
             if (callback != null) callback.onFailure(new IOException("Invalid ESP address for setCalibration."));
-            return;
+            return null;
         }
         RequestBody body = new FormBody.Builder()
                 .add("calibration_offset", String.format(Locale.US, "%.1f", offset))
                 .build();
         Request request = new Request.Builder().url(url).post(body).build();
         Log.d(TAG, "Setting calibration offset on " + url + " to " + offset);
-        executeCall(request, callback);
+        return executeCall(request, RetryPolicy.IDEMPOTENT_WRITE, callback);
     }
 
     /**
@@ -129,12 +173,14 @@ public class EspConfigClient {
      * @param ssid The new WiFi SSID.
      * @param password The new WiFi password.
      * @param callback The callback to handle the response.
+     * @return The request, for cancelling, or null if the address is invalid (callback.onFailure has then been called).
      */
-    public void setWifiConfig(String espAddress, @NonNull String ssid, @NonNull String password, ConfigCallback callback) {
+    @Nullable
+    public ConfigRequest setWifiConfig(String espAddress, @NonNull String ssid, @NonNull String password, ConfigCallback callback) {
         String url = formFullUrl(espAddress, "/set_wifi_config");
         if (url == null) {
             if (callback != null) callback.onFailure(new IOException("Invalid ESP address for setWifiConfig."));
-            return;
+            return null;
         }
 
         // Values for SSID and password should be URL encoded when sent as form data
@@ -151,40 +197,181 @@ public class EspConfigClient {
                 .build();
         Request request = new Request.Builder().url(url).post(body).build();
         Log.d(TAG, "Setting WiFi config on " + url + " - SSID: " + ssid); // Avoid logging password directly
-        executeCall(request, callback);
+        // The ESP may drop off the network once it has the new credentials, so only resend if it never got them
+        return executeCall(request, RetryPolicy.UNSAFE_WRITE, callback);
     }
     
     /**
-     * Example: Sends a full configuration JSON object to the ESP.
-     * This assumes your ESP has an endpoint like "/update_config" that accepts JSON.
-     * This is NOT used by the current fragments but shows how to POST JSON.
+     * Sends a configuration JSON object (any subset of the /get_config fields) to the ESP in one request.
+     * Older firmware lacks this endpoint and answers 404; {@link ConfigTransaction} falls back to the
+     * per-field methods in that case. Retried like {@link #setWifiConfig} when the JSON carries Wi-Fi
+     * credentials, like the other absolute-value writes otherwise.
      * @param espAddress The normalized address of the ESP.
      * @param configJson The JSONObject containing the full configuration.
      * @param callback The callback to handle the response.
+     * @return The request, for cancelling, or null if the address is invalid (callback.onFailure has then been called).
      */
-    public void updateFullConfigViaJson(String espAddress, JSONObject configJson, ConfigCallback callback) {
+    @Nullable
+    public ConfigRequest updateFullConfigViaJson(String espAddress, JSONObject configJson, ConfigCallback callback) {
         String url = formFullUrl(espAddress, "/update_config_json"); // Example endpoint
         if (url == null) {
             if (callback != null) callback.onFailure(new IOException("Invalid ESP address for updateFullConfigViaJson."));
-            return;
+            return null;
         }
         RequestBody body = RequestBody.create(configJson.toString(), JSON_MEDIA_TYPE);
         Request request = new Request.Builder().url(url).post(body).build();
         Log.d(TAG, "Updating full config via JSON on " + url);
-        executeCall(request, callback);
+        boolean changesWifi = configJson.has("wifi_ssid") || configJson.has("wifi_password");
+        return executeCall(request, changesWifi ? RetryPolicy.UNSAFE_WRITE : RetryPolicy.IDEMPOTENT_WRITE, callback);
+    }
+
+
+    // --- Future-based API ---
+    // Same requests and retry policies as above. Failures are IOExceptions (HttpStatusException for
+    // HTTP errors); cancelling a future cancels its request. For example:
+    //   client.setThresholdAsync(address, 75f)
+    //         .thenCompose(body -> client.getConfigAsync(address)) // Read back what the ESP stored
+    //         .withTimeout(20_000)
+    //         .whenComplete(ConfigFuture.mainThread(), (config, error) -> ...);
+
+    /** Fetches /get_config and parses it; unparseable bodies fail with a JSONException. */
+    @NonNull
+    public ConfigFuture<JSONObject> getConfigAsync(String espAddress) {
+        return toFuture(callback -> getConfig(espAddress, callback)).thenApply(body -> new JSONObject(body));
+    }
+
+    /** @return The response body. */
+    @NonNull
+    public ConfigFuture<String> setThresholdAsync(String espAddress, float threshold) {
+        return toFuture(callback -> setThreshold(espAddress, threshold, callback));
     }
 
+    /** @return The response body. */
+    @NonNull
+    public ConfigFuture<String> setCalibrationAsync(String espAddress, float offset) {
+        return toFuture(callback -> setCalibration(espAddress, offset, callback));
+    }
+
+    /** @return The response body. */
+    @NonNull
+    public ConfigFuture<String> setWifiConfigAsync(String espAddress, @NonNull String ssid, @NonNull String password) {
+        return toFuture(callback -> setWifiConfig(espAddress, ssid, password, callback));
+    }
+
+    /** @return The response body. */
+    @NonNull
+    public ConfigFuture<String> updateFullConfigViaJsonAsync(String espAddress, JSONObject configJson) {
+        return toFuture(callback -> updateFullConfigViaJson(espAddress, configJson, callback));
+    }
+
+    private static ConfigFuture<String> toFuture(RequestStarter starter) {
+        ConfigFuture<String> future = new ConfigFuture<>();
+        ConfigRequest request = starter.start(new ConfigCallback() {
+            @Override
+            public void onSuccess(String responseBody) {
+                future.complete(responseBody);
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                future.fail(e); // Ignored if the future was cancelled first
+            }
+
+            @Override
+            public void onError(String message, int code) {
+                future.fail(new HttpStatusException(code, message));
+            }
+        });
+        if (request != null) future.setCanceller(request::cancel);
+        return future;
+    }
 
     /**
-     * Executes the OkHttp call asynchronously.
+     * A config request that may span several attempts. {@link #cancel()} stops the attempt in flight
+     * or a pending retry; the callback then gets {@code onFailure} with a "Canceled" IOException,
+     * as for a cancelled OkHttp call.
+     */
+    public static final class ConfigRequest {
+        private final Request request;
+        private final RetryPolicy policy;
+        private final ConfigCallback callback;
+        private final long startedAtElapsedMs = SystemClock.elapsedRealtime();
+
+        // Guarded by "this"
+        private int attempts = 0;
+        @Nullable private Call current;                  // Attempt in flight
+        @Nullable private ScheduledFuture<?> pendingRetry; // Next attempt, while backing off
+        private boolean canceled = false;
+
+        private ConfigRequest(Request request, RetryPolicy policy, ConfigCallback callback) {
+            this.request = request;
+            this.policy = policy;
+            this.callback = callback;
+        }
+
+        public void cancel() {
+            Call call;
+            boolean backingOff;
+            synchronized (this) {
+                if (canceled) return;
+                canceled = true;
+                call = current;
+                backingOff = pendingRetry != null;
+                if (backingOff) pendingRetry.cancel(false);
+                pendingRetry = null;
+            }
+            if (call != null) {
+                call.cancel(); // OkHttp reports the cancellation through onFailure
+            } else if (backingOff && callback != null) {
+                RETRY_SCHEDULER.execute(() -> callback.onFailure(new IOException("Canceled")));
+            }
+        }
+
+        public synchronized boolean isCanceled() {
+            return canceled;
+        }
+
+        private long remainingMs() {
+            return policy.deadlineMs - (SystemClock.elapsedRealtime() - startedAtElapsedMs);
+        }
+    }
+
+    /**
+     * Sends the request, retrying per {@code policy}. Backoff waits run on a shared background
+     * scheduler; callbacks arrive on OkHttp threads.
      * @param request The OkHttp Request object.
-     * @param callback The callback to handle success or failure.
+     * @param policy How transient failures are retried.
+     * @param callback The callback to handle success or failure, called once.
+     * @return The request, so callers can cancel it.
      */
-    private void executeCall(Request request, final ConfigCallback callback) {
-        client.newCall(request).enqueue(new Callback() {
+    private ConfigRequest executeCall(Request request, RetryPolicy policy, final ConfigCallback callback) {
+        ConfigRequest configRequest = new ConfigRequest(request, policy, callback);
+        attempt(configRequest);
+        return configRequest;
+    }
+
+    private void attempt(ConfigRequest configRequest) {
+        Request request = configRequest.request;
+        RetryPolicy policy = configRequest.policy;
+        Call call = client.newCall(request);
+        if (policy.deadlineMs > 0) {
+            // A single attempt can't outlive the request's total budget
+            call.timeout().timeout(Math.max(1, configRequest.remainingMs()), TimeUnit.MILLISECONDS);
+        }
+        int attempt;
+        synchronized (configRequest) {
+            if (configRequest.canceled) return; // Cancelled while this retry was due; cancel() has reported it
+            configRequest.pendingRetry = null;
+            configRequest.current = call;
+            attempt = ++configRequest.attempts;
+        }
+        final ConfigCallback callback = configRequest.callback;
+        call.enqueue(new Callback() {
             @Override
             public void onFailure(@NonNull Call call, @NonNull IOException e) {
-                Log.e(TAG, "HTTP request failed: " + request.url(), e);
+                localHostnameDns.onRequestFailed(request.url().host(), e); // Re-resolve next time if the address went stale
+                if (!call.isCanceled() && policy.isRetryable(e) && scheduleRetry(configRequest, 0, e.toString())) return;
+                Log.e(TAG, "HTTP request failed: " + request.url() + " (attempt " + attempt + ")", e);
                 if (callback != null) {
                     callback.onFailure(e);
                 }
@@ -202,11 +389,16 @@ public class EspConfigClient {
 
                     if (response.isSuccessful()) {
                         Log.d(TAG, "HTTP request successful (" + response.code() + ") to " + request.url() +
+                                   (attempt > 1 ? " on attempt " + attempt : "") +
                                    "\nResponse snippet: " + responseBodyString.substring(0, Math.min(200, responseBodyString.length())));
                         if (callback != null) {
                             callback.onSuccess(responseBodyString);
                         }
                     } else {
+                        if (policy.isRetryable(response.code())
+                                && scheduleRetry(configRequest, retryAfterMs(response), "HTTP " + response.code())) {
+                            return;
+                        }
                         String errorMessage = "HTTP error " + response.code() + " " + response.message() +
                                             " for URL: " + request.url() +
                                             "\nResponse body: " + responseBodyString;
@@ -229,4 +421,35 @@ public class EspConfigClient {
             }
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Schedules the next attempt if the policy allows one within its deadline.
+     * @param minDelayMs Lower bound from the device (Retry-After), 0 if none.
+     * @return False if the failure should be reported instead.
+     */
+    private boolean scheduleRetry(ConfigRequest configRequest, long minDelayMs, String reason) {
+        RetryPolicy policy = configRequest.policy;
+        synchronized (configRequest) {
+            if (configRequest.canceled || configRequest.attempts >= policy.maxAttempts) return false;
+            long delayMs = Math.max(policy.backoffMs(configRequest.attempts), minDelayMs);
+            if (policy.deadlineMs > 0 && delayMs >= configRequest.remainingMs()) return false; // No time left for another try
+            Log.w(TAG, "Attempt " + configRequest.attempts + "/" + policy.maxAttempts + " to " + configRequest.request.url() +
+                    " failed (" + reason + "), retrying in " + delayMs + " ms");
+            configRequest.current = null;
+            // Scheduled under the lock so the retry can't start before pendingRetry is recorded
+            configRequest.pendingRetry = RETRY_SCHEDULER.schedule(() -> attempt(configRequest), delayMs, TimeUnit.MILLISECONDS);
+            return true;
+        }
+    }
+
+    /** Retry-After in seconds, as sent with 429/503; 0 if absent or not a number. */
+    private static long retryAfterMs(Response response) {
+        String header = response.header("Retry-After");
+        if (header == null) return 0;
+        try {
+            return Math.max(0, Long.parseLong(header.trim())) * 1000;
+        } catch (NumberFormatException e) {
+            return 0; // HTTP-date form; the ESP doesn't send it
+        }
+    }
+}
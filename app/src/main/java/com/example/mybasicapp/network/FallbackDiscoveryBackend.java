@@ -0,0 +1,167 @@
+package com.example.mybasicapp.network;
+
+import android.content.Context;
+import android.net.nsd.NsdServiceInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.mybasicapp.model.DiscoveredService;
+
+/**
+ * Discovers with the built-in {@link MdnsQuerier} and falls back to {@link NsdHelper} (NsdManager)
+ * when the querier can't work, i.e. its multicast socket or Wi-Fi multicast lock can't be set up.
+ * NsdManager is then used for every later run as well. A querier that works but hears no answers
+ * keeps running: no sensor being on the network is a normal result, not a transport error.
+ * Only the backend currently in use reports to the listener, so a switch shows up as one
+ * continuous discovery run. Callbacks may arrive on any thread.
+ */
+public class FallbackDiscoveryBackend implements DiscoveryBackend {
+    private static final String TAG = "FallbackDiscovery_DBG";
+
+    private final MdnsQuerier querier;
+    private final NsdHelper nsdHelper;
+    private volatile NsdHelper.NsdHelperListener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final Object lock = new Object();
+    // Guarded by lock
+    @Nullable private DiscoveryBackend current; // The backend whose callbacks are passed on
+    private boolean running = false; // Between discoverServices and stopDiscovery
+    private boolean querierUnusable = false;
+    private String serviceNameFilter;
+    private String serviceType;
+
+    public FallbackDiscoveryBackend(@NonNull Context context, @NonNull NsdHelper.NsdHelperListener listener) {
+        this.listener = listener;
+        this.querier = new MdnsQuerier(context, new Forwarder(true));
+        this.nsdHelper = new NsdHelper(context, new Forwarder(false));
+    }
+
+    @Override
+    public void discoverServices(String serviceNameFilter, String serviceType) {
+        DiscoveryBackend previous;
+        DiscoveryBackend next;
+        synchronized (lock) {
+            previous = current;
+            this.serviceNameFilter = serviceNameFilter;
+            this.serviceType = serviceType;
+            running = true;
+            next = querierUnusable ? nsdHelper : querier;
+            current = next;
+        }
+        if (previous != null && previous != next && previous.isDiscoveryActive()) previous.stopDiscovery();
+        next.discoverServices(serviceNameFilter, serviceType);
+    }
+
+    @Override
+    public void stopDiscovery() {
+        DiscoveryBackend active;
+        synchronized (lock) {
+            active = current;
+            running = false;
+        }
+        if (active != null) active.stopDiscovery();
+    }
+
+    @Override
+    public boolean isDiscoveryActive() {
+        DiscoveryBackend active;
+        synchronized (lock) {
+            active = current;
+        }
+        return active != null && active.isDiscoveryActive();
+    }
+
+    @Override
+    public void tearDown() {
+        listener = null;
+        querier.tearDown();
+        nsdHelper.tearDown();
+    }
+
+    /** Any thread; NsdHelper is started on the main thread. */
+    private void switchToNsdHelper() {
+        String nameFilter;
+        String type;
+        synchronized (lock) {
+            if (current != querier) return;
+            current = nsdHelper; // From here on the querier's callbacks, including its stop, are dropped
+            nameFilter = serviceNameFilter;
+            type = serviceType;
+        }
+        handler.post(() -> {
+            querier.stopDiscovery();
+            synchronized (lock) {
+                if (!running || current != nsdHelper) return; // Stopped or restarted meanwhile
+            }
+            nsdHelper.discoverServices(nameFilter, type);
+        });
+    }
+
+    /** Passes on callbacks from one of the two backends while it is the current one. */
+    private final class Forwarder implements NsdHelper.NsdHelperListener {
+        private final boolean fromQuerier;
+
+        Forwarder(boolean fromQuerier) {
+            this.fromQuerier = fromQuerier;
+        }
+
+        /** @return The listener if this backend is current, else null. */
+        @Nullable
+        private NsdHelper.NsdHelperListener target() {
+            synchronized (lock) {
+                if (current != (fromQuerier ? querier : nsdHelper)) return null;
+            }
+            return listener;
+        }
+
+        @Override
+        public void onNsdServiceCandidateFound(NsdServiceInfo serviceInfo) {
+            NsdHelper.NsdHelperListener target = target();
+            if (target != null) target.onNsdServiceCandidateFound(serviceInfo);
+        }
+
+        @Override
+        public void onNsdServiceResolved(DiscoveredService discoveredService) {
+            NsdHelper.NsdHelperListener target = target();
+            if (target != null) target.onNsdServiceResolved(discoveredService);
+        }
+
+        @Override
+        public void onNsdServiceLost(DiscoveredService discoveredService) {
+            NsdHelper.NsdHelperListener target = target();
+            if (target != null) target.onNsdServiceLost(discoveredService);
+        }
+
+        @Override
+        public void onNsdDiscoveryFailed(String serviceType, int errorCode) {
+            if (fromQuerier && (errorCode == MdnsQuerier.ERROR_SOCKET || errorCode == MdnsQuerier.ERROR_MULTICAST_LOCK)) {
+                synchronized (lock) {
+                    if (current != querier) return;
+                    querierUnusable = true;
+                }
+                Log.w(TAG, "Built-in mDNS querier unavailable (error " + errorCode + "), using NsdManager from now on.");
+                switchToNsdHelper();
+                return;
+            }
+            NsdHelper.NsdHelperListener target = target();
+            if (target != null) target.onNsdDiscoveryFailed(serviceType, errorCode);
+        }
+
+        @Override
+        public void onNsdResolveFailed(NsdServiceInfo serviceInfo, int errorCode) {
+            NsdHelper.NsdHelperListener target = target();
+            if (target != null) target.onNsdResolveFailed(serviceInfo, errorCode);
+        }
+
+        @Override
+        public void onNsdDiscoveryLifecycleChange(boolean active, String serviceType) {
+            NsdHelper.NsdHelperListener target = target();
+            if (target != null) target.onNsdDiscoveryLifecycleChange(active, serviceType);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.mybasicapp.network;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.mybasicapp.model.EspDevice;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Applies one config change to a set of ESPs, with at most {@code maxParallel} requests in flight.
+ * A finished request starts the next one, so no thread is held while waiting; everything runs on
+ * OkHttp's dispatcher. Transient failures are retried per device by {@link EspConfigClient}, with
+ * jittered backoff so devices sharing an access point don't retry in lockstep.
+ * <p>
+ * Listener callbacks arrive on OkHttp threads (or the thread that cancels), one at a time and
+ * never under the operation's lock. After {@link #cancel()} no further per-device results are
+ * reported, only {@link Listener#onFinished} with {@code cancelled = true}.
+ * An operation can be started once.
+ */
+public class FleetConfigOperation {
+    private static final String TAG = "FleetConfigOp_DBG";
+
+    public static final int DEFAULT_MAX_PARALLEL = 8;
+
+    /** Sends the change to one device, e.g. {@code client.setThreshold(baseUrl, 75f, callback)}. */
+    public interface DeviceAction {
+        @Nullable
+        EspConfigClient.ConfigRequest apply(@NonNull EspConfigClient client, @NonNull String baseUrl, @NonNull EspConfigClient.ConfigCallback callback);
+    }
+
+    public interface Listener {
+        void onDeviceResult(@NonNull DeviceResult result, int completed, int total);
+        /** @param results One entry per device that completed, in completion order. */
+        void onFinished(@NonNull List<DeviceResult> results, boolean cancelled);
+    }
+
+    /** Outcome for one device. Immutable. */
+    public static final class DeviceResult {
+        @NonNull public final EspDevice device;
+        public final boolean success;
+        @Nullable public final String message; // Response body on success, error text otherwise
+        public final int httpCode;              // 0 for network failures
+
+        DeviceResult(@NonNull EspDevice device, boolean success, @Nullable String message, int httpCode) {
+            this.device = device;
+            this.success = success;
+            this.message = message;
+            this.httpCode = httpCode;
+        }
+    }
+
+    /** Request state for one device. Guarded by the operation's lock. */
+    private static final class Attempt {
+        EspConfigClient.ConfigRequest call;
+        boolean done;
+    }
+
+    private final EspConfigClient client;
+    private final List<EspDevice> devices;
+    private final DeviceAction action;
+    private final int maxParallel;
+
+    // All guarded by "this"
+    private Listener listener;
+    private int nextIndex = 0;
+    private final List<EspConfigClient.ConfigRequest> inFlight = new ArrayList<>();
+    private final List<DeviceResult> results = new ArrayList<>();
+    private boolean started = false;
+    private boolean cancelling = false; // Set before the calls are cancelled, so their "Canceled" failures are dropped
+    private boolean finished = false;
+    private final ArrayDeque<Runnable> pendingCallbacks = new ArrayDeque<>();
+    private boolean deliveringCallbacks = false;
+
+    public FleetConfigOperation(@NonNull EspConfigClient client, @NonNull List<EspDevice> devices,
+                                @NonNull DeviceAction action, int maxParallel) {
+        this.client = client;
+        this.devices = new ArrayList<>(devices);
+        this.action = action;
+        this.maxParallel = Math.max(1, maxParallel);
+    }
+
+    public static DeviceAction setThreshold(float threshold) {
+        return (client, baseUrl, callback) -> client.setThreshold(baseUrl, threshold, callback);
+    }
+
+    public static DeviceAction setCalibration(float offset) {
+        return (client, baseUrl, callback) -> client.setCalibration(baseUrl, offset, callback);
+    }
+
+    public static DeviceAction setWifiConfig(@NonNull String ssid, @NonNull String password) {
+        return (client, baseUrl, callback) -> client.setWifiConfig(baseUrl, ssid, password, callback);
+    }
+
+    public int getTotal() {
+        return devices.size();
+    }
+
+    public synchronized boolean isRunning() {
+        return started && !finished;
+    }
+
+    public void start(@NonNull Listener listener) {
+        synchronized (this) {
+            if (started) throw new IllegalStateException("FleetConfigOperation can only be started once");
+            started = true;
+            this.listener = listener;
+            Log.i(TAG, "Pushing config to " + devices.size() + " devices, " + maxParallel + " at a time.");
+        }
+        if (devices.isEmpty()) {
+            finish(false);
+            return;
+        }
+        for (int i = 0; i < maxParallel; i++) {
+            if (!launchNext()) break;
+        }
+    }
+
+    /** Cancels requests in flight and skips devices not yet started. */
+    public void cancel() {
+        List<EspConfigClient.ConfigRequest> toCancel;
+        synchronized (this) {
+            if (!started || finished || cancelling) return;
+            cancelling = true;
+            toCancel = new ArrayList<>(inFlight);
+            inFlight.clear();
+        }
+        for (EspConfigClient.ConfigRequest call : toCancel) call.cancel();
+        finish(true);
+    }
+
+    /** Starts the request for the next device. Returns false when there is none left. */
+    private boolean launchNext() {
+        EspDevice device;
+        synchronized (this) {
+            if (finished || cancelling || nextIndex >= devices.size()) return false;
+            device = devices.get(nextIndex++);
+        }
+        Attempt attempt = new Attempt();
+        EspConfigClient.ConfigCallback callback = new EspConfigClient.ConfigCallback() {
+            @Override
+            public void onSuccess(String responseBody) {
+                complete(attempt, new DeviceResult(device, true, responseBody, 200));
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                complete(attempt, new DeviceResult(device, false, e.getMessage(), 0));
+            }
+
+            @Override
+            public void onError(String message, int code) {
+                complete(attempt, new DeviceResult(device, false, message, code));
+            }
+        };
+        EspConfigClient.ConfigRequest call = action.apply(client, "http://" + device.getAddress(), callback);
+        boolean cancelNow = false;
+        synchronized (this) {
+            // The callback may already have run (or reported an invalid address, with a null call)
+            if (call != null && !attempt.done) {
+                if (finished || cancelling) {
+                    cancelNow = true;
+                } else {
+                    attempt.call = call;
+                    inFlight.add(call);
+                }
+            }
+        }
+        if (cancelNow) call.cancel();
+        return true;
+    }
+
+    private void complete(Attempt attempt, DeviceResult result) {
+        int completed;
+        synchronized (this) {
+            attempt.done = true;
+            if (finished || cancelling) return; // Cancelled; drop late results, including the cancel itself
+            if (attempt.call != null) inFlight.remove(attempt.call);
+            results.add(result);
+            completed = results.size();
+            Listener current = listener;
+            int total = devices.size();
+            pendingCallbacks.add(() -> current.onDeviceResult(result, completed, total));
+        }
+        deliverCallbacks();
+        if (!result.success) Log.w(TAG, "Config push to " + result.device.getAddress() + " failed: " + result.message);
+        if (completed == devices.size()) {
+            finish(false);
+        } else {
+            launchNext();
+        }
+    }
+
+    private void finish(boolean cancelled) {
+        List<DeviceResult> snapshot;
+        Listener current;
+        synchronized (this) {
+            if (finished) return;
+            finished = true;
+            snapshot = Collections.unmodifiableList(new ArrayList<>(results));
+            current = listener;
+            pendingCallbacks.add(() -> current.onFinished(snapshot, cancelled));
+        }
+        Log.i(TAG, "Config push " + (cancelled ? "cancelled" : "finished") + " after " + snapshot.size() + "/" + devices.size() + " devices.");
+        deliverCallbacks();
+    }
+
+    /**
+     * Runs the queued listener callbacks outside the lock, in the order they were queued. Only one
+     * thread delivers at a time; a thread that finds another one delivering leaves its callback to it.
+     */
+    private void deliverCallbacks() {
+        synchronized (this) {
+            if (deliveringCallbacks) return;
+            deliveringCallbacks = true;
+        }
+        while (true) {
+            Runnable callback;
+            synchronized (this) {
+                callback = pendingCallbacks.poll();
+                if (callback == null) {
+                    deliveringCallbacks = false;
+                    return;
+                }
+            }
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    deliveringCallbacks = false;
+                }
+                throw e;
+            }
+        }
+    }
+}
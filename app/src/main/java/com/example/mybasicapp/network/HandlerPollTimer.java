@@ -0,0 +1,32 @@
+package com.example.mybasicapp.network;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Runs a {@link PollScheduler} on an Android {@link Handler}. Uses the uptime clock, the same one
+ * {@link Handler#postDelayed} waits on, so due times and missed deadlines agree with when the
+ * callbacks actually run, including while the device is in deep sleep.
+ */
+public class HandlerPollTimer implements PollScheduler.Timer {
+    private final Handler handler;
+
+    public HandlerPollTimer(@NonNull Handler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public long nowMs() {
+        return SystemClock.uptimeMillis();
+    }
+
+    @NonNull
+    @Override
+    public PollScheduler.Cancellable schedule(@NonNull Runnable task, long delayMs) {
+        handler.postDelayed(task, delayMs);
+        // The scheduler keeps at most one pending post per device runnable, so this removes only that one
+        return () -> handler.removeCallbacks(task);
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.mybasicapp.network;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.mybasicapp.persistence.DiscoveryCache;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Dns;
+
+/**
+ * OkHttp {@link Dns} for the app's HTTP clients that resolves ".local" hostnames without going
+ * through the system resolver, which on many Android builds is slow or fails intermittently for mDNS
+ * names. Lookups for a ".local" name try, in order:
+ * <ol>
+ *   <li>An in-memory cache of earlier answers, valid for {@link #CACHE_TTL_MS}.</li>
+ *   <li>The {@link DiscoveryCache}, filled by NSD / mDNS discovery.</li>
+ *   <li>A one-shot mDNS A query of our own (about a second at most).</li>
+ *   <li>{@link Dns#SYSTEM}, as a last resort.</li>
+ * </ol>
+ * Other names go straight to {@link Dns#SYSTEM}. Clients call {@link #onRequestFailed} when a
+ * connection fails so a device that changed its IP is looked up again on the next attempt.
+ * <p>
+ * One instance is shared by all clients so they share the cache.
+ */
+public class LocalHostnameDns implements Dns {
+    private static final String TAG = "LocalHostnameDns_DBG";
+
+    /** mDNS host records are usually announced with a 120 s TTL (RFC 6762 section 10). */
+    public static final long CACHE_TTL_MS = 120_000;
+    private static final String MDNS_ADDRESS = "224.0.0.251";
+    private static final int MDNS_PORT = 5353;
+    private static final int QUERY_TIMEOUT_MS = 1000;
+    private static final int QUERY_RESEND_MS = 250; // One resend in case the first packet was dropped
+    private static final int RECEIVE_BUFFER_SIZE = 9000;
+
+    private static volatile LocalHostnameDns instance;
+
+    private static final class CachedAddresses {
+        final List<InetAddress> addresses;
+        final long expiresAtMs; // elapsedRealtime
+
+        CachedAddresses(List<InetAddress> addresses, long expiresAtMs) {
+            this.addresses = addresses;
+            this.expiresAtMs = expiresAtMs;
+        }
+    }
+
+    private final DiscoveryCache discoveryCache;
+    private final ConcurrentHashMap<String, CachedAddresses> cache = new ConcurrentHashMap<>();
+    // Concurrent lookups of the same host wait for one query instead of each sending their own
+    private final ConcurrentHashMap<String, Object> lookupLocks = new ConcurrentHashMap<>();
+
+    @NonNull
+    public static LocalHostnameDns getInstance(@NonNull Context context) {
+        if (instance == null) {
+            synchronized (LocalHostnameDns.class) {
+                if (instance == null) {
+                    instance = new LocalHostnameDns(DiscoveryCache.getInstance(context));
+                }
+            }
+        }
+        return instance;
+    }
+
+    LocalHostnameDns(@NonNull DiscoveryCache discoveryCache) {
+        this.discoveryCache = discoveryCache;
+    }
+
+    @NonNull
+    @Override
+    public List<InetAddress> lookup(@NonNull String hostname) throws UnknownHostException {
+        String host = normalize(hostname);
+        if (!host.endsWith(".local")) return Dns.SYSTEM.lookup(hostname);
+
+        List<InetAddress> cached = getCached(host);
+        if (cached != null) return cached;
+
+        Object lock = lookupLocks.computeIfAbsent(host, key -> new Object());
+        synchronized (lock) {
+            cached = getCached(host); // Another thread may have resolved it while we waited
+            if (cached != null) return cached;
+
+            List<InetAddress> addresses = lookupDiscoveryCache(host);
+            String source = "discovery cache";
+            if (addresses == null) {
+                addresses = queryMdns(host);
+                source = "mDNS query";
+            }
+            if (addresses == null) {
+                addresses = Dns.SYSTEM.lookup(hostname); // Throws if this fails too
+                source = "system resolver";
+            }
+            Log.d(TAG, "Resolved " + host + " to " + addresses + " via " + source);
+            cache.put(host, new CachedAddresses(addresses, SystemClock.elapsedRealtime() + CACHE_TTL_MS));
+            return addresses;
+        }
+    }
+
+    /** Forgets everything cached for this hostname, including the discovery cache entry. */
+    public void invalidate(@Nullable String hostname) {
+        if (hostname == null) return;
+        String host = normalize(hostname);
+        if (cache.remove(host) != null) Log.d(TAG, "Invalidated cached address for " + host);
+        discoveryCache.invalidateHost(host);
+    }
+
+    /**
+     * Invalidates the host of a failed request if the failure means its address may be stale
+     * (connection refused, no route, connect timeout). Call from OkHttp's {@code onFailure}.
+     */
+    public void onRequestFailed(@Nullable String hostname, @NonNull IOException e) {
+        if (e instanceof ConnectException || e instanceof NoRouteToHostException || e instanceof SocketTimeoutException) {
+            invalidate(hostname);
+        }
+    }
+
+    @Nullable
+    private List<InetAddress> getCached(String host) {
+        CachedAddresses entry = cache.get(host);
+        if (entry == null) return null;
+        if (SystemClock.elapsedRealtime() >= entry.expiresAtMs) {
+            cache.remove(host, entry);
+            return null;
+        }
+        return entry.addresses;
+    }
+
+    @Nullable
+    private List<InetAddress> lookupDiscoveryCache(String host) {
+        String address = discoveryCache.lookupHostAddress(host);
+        if (address == null) return null;
+        try {
+            // A literal IP, so this does not touch the network
+            return Collections.singletonList(InetAddress.getByName(address));
+        } catch (UnknownHostException e) {
+            Log.w(TAG, "Cached address '" + address + "' for " + host + " is not a valid IP literal.");
+            return null;
+        }
+    }
+
+    /**
+     * Asks for the A record of {@code host} from an ephemeral port. Responders answer such queries
+     * by unicast, so no multicast lock or port 5353 socket is needed.
+     */
+    @Nullable
+    private List<InetAddress> queryMdns(String host) {
+        List<MdnsPacketCodec.Question> questions = Collections.singletonList(
+                new MdnsPacketCodec.Question(host, MdnsPacketCodec.TYPE_A));
+        byte[] sendBuffer = new byte[512];
+        int length = MdnsPacketCodec.writeQuery(sendBuffer, questions, 0, 1, true);
+        if (length < 0) return null;
+        byte[] receiveBuffer = new byte[RECEIVE_BUFFER_SIZE];
+        List<MdnsPacketCodec.Record> records = new ArrayList<>();
+
+        try (MulticastSocket socket = new MulticastSocket(0)) {
+            socket.setTimeToLive(255);
+            DatagramPacket query = new DatagramPacket(sendBuffer, length, InetAddress.getByName(MDNS_ADDRESS), MDNS_PORT);
+            DatagramPacket response = new DatagramPacket(receiveBuffer, receiveBuffer.length);
+            long start = SystemClock.elapsedRealtime();
+            long deadline = start + QUERY_TIMEOUT_MS;
+            boolean resent = false;
+            socket.send(query);
+            while (true) {
+                long now = SystemClock.elapsedRealtime();
+                if (now >= deadline) break;
+                long wakeAt = resent ? deadline : Math.min(deadline, start + QUERY_RESEND_MS);
+                socket.setSoTimeout((int) Math.max(1, wakeAt - now));
+                try {
+                    response.setLength(receiveBuffer.length);
+                    socket.receive(response);
+                } catch (SocketTimeoutException e) {
+                    if (!resent) {
+                        resent = true;
+                        socket.send(query);
+                    }
+                    continue;
+                }
+                List<InetAddress> addresses = extractAddresses(host, response.getLength(), receiveBuffer, records);
+                if (addresses != null) return addresses;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "mDNS query for " + host + " failed: " + e.getMessage());
+        }
+        return null;
+    }
+
+    @Nullable
+    private static List<InetAddress> extractAddresses(String host, int length, byte[] buffer, List<MdnsPacketCodec.Record> records) {
+        int count;
+        try {
+            count = MdnsPacketCodec.parseResponse(buffer, length, records);
+        } catch (MdnsPacketCodec.MalformedPacketException e) {
+            return null;
+        }
+        List<InetAddress> addresses = null;
+        for (int i = 0; i < count; i++) {
+            MdnsPacketCodec.Record record = records.get(i);
+            if (record.type != MdnsPacketCodec.TYPE_A || record.ttlSeconds == 0 || !host.equals(record.name)) continue;
+            try {
+                if (addresses == null) addresses = new ArrayList<>(1);
+                addresses.add(InetAddress.getByAddress(host, record.address)); // No lookup for a raw address
+            } catch (UnknownHostException ignored) {
+                // Only thrown for addresses of illegal length; the codec only returns 4-byte ones
+            }
+        }
+        return addresses;
+    }
+
+    private static String normalize(String hostname) {
+        String host = hostname.toLowerCase(Locale.ROOT);
+        return host.endsWith(".") ? host.substring(0, host.length() - 1) : host;
+    }
+}
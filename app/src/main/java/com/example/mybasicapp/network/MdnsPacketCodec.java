@@ -0,0 +1,247 @@
+package com.example.mybasicapp.network;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Minimal encoder/decoder for the mDNS (RFC 6762) packets {@link MdnsQuerier} needs: queries with
+ * any number of questions, and responses carrying PTR, SRV and A records. Everything works on
+ * caller-supplied byte arrays so the receive buffer can be allocated once.
+ * <p>
+ * No Android dependencies, so it can be exercised on a plain JVM.
+ */
+final class MdnsPacketCodec {
+
+    static final int TYPE_A = 1;
+    static final int TYPE_PTR = 12;
+    static final int TYPE_TXT = 16;
+    static final int TYPE_SRV = 33;
+    static final int CLASS_IN = 1;
+    /** Top bit of the question class: ask for a unicast response (RFC 6762 section 5.4). */
+    static final int CLASS_UNICAST_RESPONSE = 0x8000;
+    /** Top bit of the record class in responses: cache flush, not part of the class. */
+    private static final int CLASS_MASK = 0x7fff;
+
+    private static final int HEADER_SIZE = 12;
+    private static final int FLAG_RESPONSE = 0x8000;
+    private static final int MAX_POINTER_JUMPS = 64;
+    private static final int MAX_NAME_LENGTH = 255;
+
+    private MdnsPacketCodec() {
+    }
+
+    /** A question to put in a query. */
+    static final class Question {
+        final String name; // e.g. "_http._tcp.local"
+        final int type;
+
+        Question(String name, int type) {
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    /**
+     * A parsed resource record. Names are lower-cased (DNS names compare case-insensitively),
+     * except {@link #target} of PTR records, which keeps the instance name as announced.
+     */
+    static final class Record {
+        String name;
+        int type;
+        long ttlSeconds;
+        String target;   // PTR: instance name; SRV: host name
+        int port;        // SRV only
+        byte[] address;  // A only (4 bytes)
+
+        void reset() {
+            name = null;
+            type = 0;
+            ttlSeconds = 0;
+            target = null;
+            port = 0;
+            address = null;
+        }
+    }
+
+    /** Thrown for truncated or malformed packets. */
+    static final class MalformedPacketException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        MalformedPacketException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Writes a query holding {@code questions[from..to)} into {@code buffer}.
+     * @param unicastResponse Set the QU bit so responders answer the source port directly.
+     * @return Packet length, or -1 if the questions don't fit; send fewer per packet in that case.
+     */
+    static int writeQuery(byte[] buffer, List<Question> questions, int from, int to, boolean unicastResponse) {
+        if (buffer.length < HEADER_SIZE) return -1;
+        int pos = 0;
+        pos = writeShort(buffer, pos, 0);          // ID, always 0 in mDNS
+        pos = writeShort(buffer, pos, 0);          // Flags: standard query
+        pos = writeShort(buffer, pos, to - from);  // QDCOUNT
+        pos = writeShort(buffer, pos, 0);          // ANCOUNT
+        pos = writeShort(buffer, pos, 0);          // NSCOUNT
+        pos = writeShort(buffer, pos, 0);          // ARCOUNT
+        for (int i = from; i < to; i++) {
+            Question question = questions.get(i);
+            pos = writeName(buffer, pos, question.name);
+            if (pos < 0 || pos + 4 > buffer.length) return -1;
+            pos = writeShort(buffer, pos, question.type);
+            pos = writeShort(buffer, pos, CLASS_IN | (unicastResponse ? CLASS_UNICAST_RESPONSE : 0));
+        }
+        return pos;
+    }
+
+    /**
+     * Parses the answer, authority and additional sections of a response into {@code out}.
+     * Records of other types are skipped. {@code out} entries are reused; only the first
+     * returned-count entries are valid.
+     * @return Number of records written to {@code out}, or -1 if the packet is not a response.
+     */
+    static int parseResponse(byte[] buffer, int length, List<Record> out) throws MalformedPacketException {
+        if (length < HEADER_SIZE) throw new MalformedPacketException("Packet shorter than header");
+        int flags = readShort(buffer, 2);
+        if ((flags & FLAG_RESPONSE) == 0) return -1;
+        int questionCount = readShort(buffer, 4);
+        int recordCount = readShort(buffer, 6) + readShort(buffer, 8) + readShort(buffer, 10);
+
+        int pos = HEADER_SIZE;
+        StringBuilder nameBuilder = new StringBuilder(64);
+        for (int i = 0; i < questionCount; i++) {
+            pos = skipName(buffer, length, pos) + 4; // QTYPE + QCLASS
+        }
+
+        int parsed = 0;
+        for (int i = 0; i < recordCount; i++) {
+            nameBuilder.setLength(0);
+            pos = readName(buffer, length, pos, nameBuilder);
+            if (pos + 10 > length) throw new MalformedPacketException("Truncated record header");
+            int type = readShort(buffer, pos);
+            int recordClass = readShort(buffer, pos + 2) & CLASS_MASK;
+            long ttl = readInt(buffer, pos + 4) & 0xffffffffL;
+            int dataLength = readShort(buffer, pos + 8);
+            int dataStart = pos + 10;
+            int dataEnd = dataStart + dataLength;
+            if (dataEnd > length) throw new MalformedPacketException("Truncated record data");
+            pos = dataEnd;
+            if (recordClass != CLASS_IN) continue;
+            if (type != TYPE_PTR && type != TYPE_SRV && type != TYPE_A) continue;
+
+            Record record = obtain(out, parsed);
+            record.name = nameBuilder.toString().toLowerCase(Locale.ROOT);
+            record.type = type;
+            record.ttlSeconds = ttl;
+            if (type == TYPE_PTR) {
+                StringBuilder target = new StringBuilder(64);
+                readName(buffer, length, dataStart, target);
+                record.target = target.toString();
+            } else if (type == TYPE_SRV) {
+                if (dataLength < 7) throw new MalformedPacketException("Short SRV record");
+                record.port = readShort(buffer, dataStart + 4); // After priority and weight
+                StringBuilder target = new StringBuilder(64);
+                readName(buffer, length, dataStart + 6, target);
+                record.target = target.toString().toLowerCase(Locale.ROOT);
+            } else {
+                if (dataLength != 4) continue; // Not an IPv4 address; drop it
+                record.address = new byte[4];
+                System.arraycopy(buffer, dataStart, record.address, 0, 4);
+            }
+            parsed++;
+        }
+        return parsed;
+    }
+
+    private static Record obtain(List<Record> pool, int index) {
+        if (index < pool.size()) {
+            Record record = pool.get(index);
+            record.reset();
+            return record;
+        }
+        Record record = new Record();
+        pool.add(record);
+        return record;
+    }
+
+    // --- Names ---
+
+    private static int writeName(byte[] buffer, int pos, String name) {
+        String trimmed = name.endsWith(".") ? name.substring(0, name.length() - 1) : name;
+        int start = 0;
+        while (start <= trimmed.length()) {
+            int dot = trimmed.indexOf('.', start);
+            int end = dot == -1 ? trimmed.length() : dot;
+            byte[] label = trimmed.substring(start, end).getBytes(StandardCharsets.UTF_8);
+            if (label.length == 0 || label.length > 63) return -1;
+            if (pos + 1 + label.length >= buffer.length) return -1;
+            buffer[pos++] = (byte) label.length;
+            System.arraycopy(label, 0, buffer, pos, label.length);
+            pos += label.length;
+            if (dot == -1) break;
+            start = dot + 1;
+        }
+        if (pos >= buffer.length) return -1;
+        buffer[pos++] = 0;
+        return pos;
+    }
+
+    /**
+     * Appends the dot-separated name at {@code pos} to {@code out}, following compression pointers.
+     * @return Position just after the name in the original (uncompressed) stream.
+     */
+    private static int readName(byte[] buffer, int length, int pos, StringBuilder out) throws MalformedPacketException {
+        int resumeAt = -1;
+        int jumps = 0;
+        while (true) {
+            if (pos >= length) throw new MalformedPacketException("Name runs past packet end");
+            int labelLength = buffer[pos] & 0xff;
+            if (labelLength == 0) {
+                return resumeAt != -1 ? resumeAt : pos + 1;
+            }
+            if ((labelLength & 0xc0) == 0xc0) {
+                if (pos + 1 >= length) throw new MalformedPacketException("Truncated name pointer");
+                if (++jumps > MAX_POINTER_JUMPS) throw new MalformedPacketException("Name pointer loop");
+                if (resumeAt == -1) resumeAt = pos + 2;
+                pos = ((labelLength & 0x3f) << 8) | (buffer[pos + 1] & 0xff);
+                continue;
+            }
+            if ((labelLength & 0xc0) != 0) throw new MalformedPacketException("Unsupported label type");
+            if (pos + 1 + labelLength > length) throw new MalformedPacketException("Label runs past packet end");
+            if (out.length() > 0) out.append('.');
+            out.append(new String(buffer, pos + 1, labelLength, StandardCharsets.UTF_8));
+            if (out.length() > MAX_NAME_LENGTH) throw new MalformedPacketException("Name too long");
+            pos += 1 + labelLength;
+        }
+    }
+
+    private static int skipName(byte[] buffer, int length, int pos) throws MalformedPacketException {
+        while (true) {
+            if (pos >= length) throw new MalformedPacketException("Name runs past packet end");
+            int labelLength = buffer[pos] & 0xff;
+            if (labelLength == 0) return pos + 1;
+            if ((labelLength & 0xc0) == 0xc0) return pos + 2;
+            pos += 1 + labelLength;
+        }
+    }
+
+    // --- Integers (network byte order) ---
+
+    private static int writeShort(byte[] buffer, int pos, int value) {
+        buffer[pos] = (byte) (value >> 8);
+        buffer[pos + 1] = (byte) value;
+        return pos + 2;
+    }
+
+    private static int readShort(byte[] buffer, int pos) {
+        return ((buffer[pos] & 0xff) << 8) | (buffer[pos + 1] & 0xff);
+    }
+
+    private static int readInt(byte[] buffer, int pos) {
+        return ((buffer[pos] & 0xff) << 24) | ((buffer[pos + 1] & 0xff) << 16)
+                | ((buffer[pos + 2] & 0xff) << 8) | (buffer[pos + 3] & 0xff);
+    }
+}
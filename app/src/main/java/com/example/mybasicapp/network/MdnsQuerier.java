@@ -0,0 +1,377 @@
+package com.example.mybasicapp.network;
+
+import android.content.Context;
+import android.net.nsd.NsdServiceInfo;
+import android.net.wifi.WifiManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.mybasicapp.model.DiscoveredService;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Discovery backend that speaks multicast DNS itself instead of going through NsdManager.
+ * <p>
+ * One background thread sends query bursts (PTR for every service type, plus SRV/A follow-ups for
+ * instances that are still missing data) at 0, 1, 2, 4, 8 s intervals and parses every response in
+ * a single preallocated buffer. Responders usually put SRV and A records in the additional section
+ * of their PTR answer, so most instances resolve from one round trip, all in parallel.
+ * Goodbye records (TTL 0) are reported as lost services.
+ * <p>
+ * Holds a Wi-Fi {@link WifiManager.MulticastLock} while running; many devices drop incoming
+ * multicast otherwise. If the socket or the lock can't be set up, discovery fails with
+ * {@link #ERROR_SOCKET} or {@link #ERROR_MULTICAST_LOCK}; see {@link FallbackDiscoveryBackend}.
+ */
+public class MdnsQuerier implements DiscoveryBackend {
+    private static final String TAG = "MdnsQuerier_DBG";
+
+    private static final String MDNS_ADDRESS = "224.0.0.251";
+    private static final int MDNS_PORT = 5353;
+    private static final int RECEIVE_BUFFER_SIZE = 9000; // Max mDNS packet size (RFC 6762 section 17)
+    private static final int SEND_BUFFER_SIZE = 1400;    // Keep queries within one Ethernet frame
+    private static final long FIRST_RETRY_MS = 1000;
+    private static final long MAX_QUERY_INTERVAL_MS = 8000;
+    /** Custom error code for onNsdDiscoveryFailed when the socket can't be opened (NsdHelper uses -100). */
+    public static final int ERROR_SOCKET = -101;
+    /** Custom error code for onNsdDiscoveryFailed when there is no Wi-Fi multicast lock to hold. */
+    public static final int ERROR_MULTICAST_LOCK = -102;
+
+    private final WifiManager.MulticastLock multicastLock;
+    private volatile NsdHelper.NsdHelperListener listener;
+    private final Object lock = new Object();
+    @Nullable private Session session; // Guarded by lock
+
+    public MdnsQuerier(@NonNull Context context, @NonNull NsdHelper.NsdHelperListener listener) {
+        this.listener = listener;
+        WifiManager wifiManager = (WifiManager) context.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
+        this.multicastLock = wifiManager != null ? wifiManager.createMulticastLock(TAG) : null;
+        if (multicastLock != null) multicastLock.setReferenceCounted(true); // Each session acquires and releases once
+    }
+
+    @Override
+    public void discoverServices(String serviceNameFilter, String serviceType) {
+        discoverServices(serviceNameFilter, Collections.singletonList(serviceType));
+    }
+
+    /** Discovers several service types with one query burst. */
+    public void discoverServices(String serviceNameFilter, @NonNull List<String> serviceTypes) {
+        List<String> typeNames = new ArrayList<>();
+        for (String type : serviceTypes) typeNames.add(toFullTypeName(type));
+        Session next = new Session(serviceNameFilter, typeNames);
+        synchronized (lock) {
+            if (session != null) session.stop();
+            session = next;
+        }
+        next.thread.start();
+    }
+
+    @Override
+    public void stopDiscovery() {
+        synchronized (lock) {
+            if (session != null) session.stop();
+            session = null;
+        }
+    }
+
+    @Override
+    public boolean isDiscoveryActive() {
+        synchronized (lock) {
+            return session != null && session.running;
+        }
+    }
+
+    @Override
+    public void tearDown() {
+        stopDiscovery();
+        listener = null;
+    }
+
+    /** "_http._tcp" / "_http._tcp." / "_http._tcp.local." to "_http._tcp.local", lower-case. */
+    static String toFullTypeName(String serviceType) {
+        String type = serviceType.toLowerCase(Locale.ROOT).replaceFirst("^\\.", "").replaceFirst("\\.$", "");
+        return type.endsWith(".local") ? type : type + ".local";
+    }
+
+    /** Everything NSD-style callbacks need about one announced instance. Worker thread only. */
+    private static final class Instance {
+        final String fullName;     // "<instance>.<type>.local", lower-case
+        final String instanceName; // As announced
+        final String typeName;     // "_http._tcp.local"
+        String host;               // SRV target, lower-case
+        int port;
+        boolean candidateReported;
+        String reportedAddress;
+
+        Instance(String fullName, String instanceName, String typeName) {
+            this.fullName = fullName;
+            this.instanceName = instanceName;
+            this.typeName = typeName;
+        }
+    }
+
+    /** One discovery run with its own socket and thread, so a restart never races the previous run. */
+    private final class Session implements Runnable {
+        final String nameFilter;
+        final List<String> typeNames;
+        final Thread thread;
+        volatile boolean running = true;
+        volatile MulticastSocket socket;
+
+        final Map<String, Instance> instances = new HashMap<>();
+        final Map<String, String> hostAddresses = new HashMap<>(); // host name to IPv4 literal
+        final List<MdnsPacketCodec.Record> records = new ArrayList<>();
+        final List<MdnsPacketCodec.Question> questions = new ArrayList<>();
+        final byte[] receiveBuffer = new byte[RECEIVE_BUFFER_SIZE];
+        final byte[] sendBuffer = new byte[SEND_BUFFER_SIZE];
+        boolean unicastResponses = false;
+
+        Session(String nameFilter, List<String> typeNames) {
+            this.nameFilter = nameFilter;
+            this.typeNames = typeNames;
+            this.thread = new Thread(this, "MdnsQuerier");
+            this.thread.setDaemon(true);
+        }
+
+        void stop() {
+            running = false;
+            MulticastSocket current = socket;
+            if (current != null) current.close(); // Unblocks receive()
+        }
+
+        @Override
+        public void run() {
+            String reportedType = typeNames.get(0);
+            InetAddress group;
+            try {
+                group = InetAddress.getByName(MDNS_ADDRESS);
+                socket = openSocket(group);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not open mDNS socket: " + e.getMessage(), e);
+                running = false;
+                NsdHelper.NsdHelperListener current = listener;
+                if (current != null) current.onNsdDiscoveryFailed(reportedType, ERROR_SOCKET);
+                return;
+            }
+            try {
+                if (multicastLock == null) throw new IllegalStateException("No WifiManager");
+                multicastLock.acquire();
+            } catch (RuntimeException e) { // Also SecurityException without CHANGE_WIFI_MULTICAST_STATE
+                // Without the lock many devices drop incoming multicast, and we'd wait for answers in vain
+                Log.e(TAG, "Could not acquire the multicast lock: " + e.getMessage());
+                running = false;
+                socket.close();
+                NsdHelper.NsdHelperListener current = listener;
+                if (current != null) current.onNsdDiscoveryFailed(reportedType, ERROR_MULTICAST_LOCK);
+                return;
+            }
+            NsdHelper.NsdHelperListener startListener = listener;
+            if (startListener != null) startListener.onNsdDiscoveryLifecycleChange(true, reportedType);
+            Log.i(TAG, "mDNS discovery started for " + typeNames + (unicastResponses ? " (unicast responses)" : ""));
+
+            DatagramPacket packet = new DatagramPacket(receiveBuffer, receiveBuffer.length);
+            long interval = FIRST_RETRY_MS;
+            long nextQueryAt = SystemClock.elapsedRealtime();
+            try {
+                while (running) {
+                    long now = SystemClock.elapsedRealtime();
+                    if (now >= nextQueryAt) {
+                        sendQueries(group);
+                        nextQueryAt = now + interval;
+                        interval = Math.min(interval * 2, MAX_QUERY_INTERVAL_MS);
+                    }
+                    socket.setSoTimeout((int) Math.max(1, nextQueryAt - SystemClock.elapsedRealtime()));
+                    try {
+                        packet.setLength(receiveBuffer.length);
+                        socket.receive(packet);
+                    } catch (SocketTimeoutException e) {
+                        continue;
+                    }
+                    handlePacket(packet.getLength());
+                }
+            } catch (IOException e) {
+                if (running) Log.e(TAG, "mDNS socket error: " + e.getMessage(), e);
+            } finally {
+                running = false;
+                socket.close();
+                multicastLock.release();
+                Log.i(TAG, "mDNS discovery stopped.");
+                NsdHelper.NsdHelperListener stopListener = listener;
+                if (stopListener != null) stopListener.onNsdDiscoveryLifecycleChange(false, reportedType);
+            }
+        }
+
+        private MulticastSocket openSocket(InetAddress group) throws IOException {
+            MulticastSocket multicastSocket = new MulticastSocket(null);
+            multicastSocket.setReuseAddress(true); // The system mDNS daemon may already own 5353
+            try {
+                multicastSocket.bind(new InetSocketAddress(MDNS_PORT));
+                multicastSocket.joinGroup(group);
+            } catch (IOException e) {
+                // Fall back to an ephemeral port; responders then answer us by unicast
+                Log.w(TAG, "Can't listen on " + MDNS_PORT + " (" + e.getMessage() + "), using unicast responses.");
+                multicastSocket.close();
+                multicastSocket = new MulticastSocket(0);
+                unicastResponses = true;
+            }
+            multicastSocket.setTimeToLive(255);
+            return multicastSocket;
+        }
+
+        private void sendQueries(InetAddress group) throws IOException {
+            questions.clear();
+            for (String typeName : typeNames) {
+                questions.add(new MdnsPacketCodec.Question(typeName, MdnsPacketCodec.TYPE_PTR));
+            }
+            // Follow-ups for instances whose responder didn't include everything in the additional section
+            for (Instance instance : instances.values()) {
+                if (instance.host == null) {
+                    questions.add(new MdnsPacketCodec.Question(instance.fullName, MdnsPacketCodec.TYPE_SRV));
+                } else if (!hostAddresses.containsKey(instance.host)) {
+                    questions.add(new MdnsPacketCodec.Question(instance.host, MdnsPacketCodec.TYPE_A));
+                }
+            }
+            int from = 0;
+            while (from < questions.size()) {
+                int to = questions.size();
+                int length;
+                // Shrink the batch until it fits in one packet
+                while ((length = MdnsPacketCodec.writeQuery(sendBuffer, questions, from, to, unicastResponses)) < 0 && to - from > 1) {
+                    to = from + (to - from) / 2;
+                }
+                if (length < 0) {
+                    Log.w(TAG, "Question for '" + questions.get(from).name + "' does not fit in a packet, skipped.");
+                    from++;
+                    continue;
+                }
+                socket.send(new DatagramPacket(sendBuffer, length, group, MDNS_PORT));
+                from = to;
+            }
+            Log.v(TAG, "Sent " + questions.size() + " mDNS questions.");
+        }
+
+        private void handlePacket(int length) {
+            int count;
+            try {
+                count = MdnsPacketCodec.parseResponse(receiveBuffer, length, records);
+            } catch (MdnsPacketCodec.MalformedPacketException e) {
+                Log.v(TAG, "Ignoring malformed mDNS packet: " + e.getMessage());
+                return;
+            }
+            if (count <= 0) return; // A query from someone else, or nothing we care about
+
+            // Addresses first so SRV/PTR in the same packet can resolve immediately
+            for (int i = 0; i < count; i++) {
+                MdnsPacketCodec.Record record = records.get(i);
+                if (record.type == MdnsPacketCodec.TYPE_A) {
+                    if (record.ttlSeconds == 0) {
+                        hostAddresses.remove(record.name);
+                    } else {
+                        hostAddresses.put(record.name, toLiteral(record.address));
+                    }
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                MdnsPacketCodec.Record record = records.get(i);
+                if (record.type == MdnsPacketCodec.TYPE_PTR && typeNames.contains(record.name)) {
+                    handlePtr(record);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                MdnsPacketCodec.Record record = records.get(i);
+                if (record.type == MdnsPacketCodec.TYPE_SRV) {
+                    Instance instance = instanceFor(record.name);
+                    if (instance != null) {
+                        instance.host = record.target;
+                        instance.port = record.port;
+                    }
+                }
+            }
+            reportResolved();
+        }
+
+        private void handlePtr(MdnsPacketCodec.Record record) {
+            String fullName = record.target.toLowerCase(Locale.ROOT);
+            if (record.ttlSeconds == 0) {
+                Instance lost = instances.remove(fullName);
+                if (lost != null && lost.reportedAddress != null) {
+                    Log.i(TAG, "Service lost: " + lost.instanceName);
+                    NsdHelper.NsdHelperListener current = listener;
+                    if (current != null) {
+                        current.onNsdServiceLost(new DiscoveredService(lost.instanceName, lost.reportedAddress, lost.port, lost.typeName));
+                    }
+                }
+                return;
+            }
+            instanceFor(fullName, record.target, record.name);
+        }
+
+        /** Instance for an SRV owner name; only for types we asked about. */
+        @Nullable
+        private Instance instanceFor(String fullName) {
+            Instance existing = instances.get(fullName);
+            if (existing != null) return existing;
+            for (String typeName : typeNames) {
+                if (fullName.endsWith("." + typeName)) return instanceFor(fullName, fullName, typeName);
+            }
+            return null;
+        }
+
+        @Nullable
+        private Instance instanceFor(String fullName, String announcedFullName, String typeName) {
+            Instance instance = instances.get(fullName);
+            if (instance != null) return instance;
+            if (announcedFullName.length() <= typeName.length() + 1) return null;
+            String instanceName = announcedFullName.substring(0, announcedFullName.length() - typeName.length() - 1);
+            if (nameFilter != null && !nameFilter.isEmpty() && !instanceName.equalsIgnoreCase(nameFilter)) {
+                return null;
+            }
+            instance = new Instance(fullName, instanceName, typeName);
+            instances.put(fullName, instance);
+            return instance;
+        }
+
+        private void reportResolved() {
+            NsdHelper.NsdHelperListener current = listener;
+            if (current == null) return;
+            for (Instance instance : instances.values()) {
+                if (!instance.candidateReported) {
+                    instance.candidateReported = true;
+                    NsdServiceInfo candidate = new NsdServiceInfo();
+                    candidate.setServiceName(instance.instanceName);
+                    candidate.setServiceType(instance.typeName);
+                    current.onNsdServiceCandidateFound(candidate);
+                }
+                if (instance.host == null) continue;
+                String address = hostAddresses.get(instance.host);
+                if (address == null || address.equals(instance.reportedAddress)) continue;
+                instance.reportedAddress = address;
+                Log.i(TAG, "Resolved '" + instance.instanceName + "' to " + address + ":" + instance.port);
+                current.onNsdServiceResolved(new DiscoveredService(instance.instanceName, address, instance.port, instance.typeName));
+            }
+        }
+    }
+
+    private static String toLiteral(byte[] address) {
+        try {
+            return InetAddress.getByAddress(address).getHostAddress(); // No lookup for a raw address
+        } catch (UnknownHostException e) {
+            return (address[0] & 0xff) + "." + (address[1] & 0xff) + "." + (address[2] & 0xff) + "." + (address[3] & 0xff);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.mybasicapp.network;
+
+import androidx.annotation.NonNull;
+
+import com.example.mybasicapp.metrics.EndpointStats;
+import com.example.mybasicapp.metrics.RequestMetrics;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Records every request's outcome, latency and body sizes in {@link RequestMetrics}, keyed by
+ * device (host[:port], as in {@link com.example.mybasicapp.model.EspDevice#getAddressKey()}) and
+ * URL path. Added as an application interceptor, so latency covers DNS, connect and OkHttp's own
+ * silent retries, up to the response headers. Canceled calls are not counted.
+ */
+public class MetricsInterceptor implements Interceptor {
+    private final RequestMetrics metrics;
+
+    public MetricsInterceptor(@NonNull RequestMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        String device = deviceKey(request.url());
+        String endpoint = request.url().encodedPath();
+        long bytesSent = request.body() != null ? request.body().contentLength() : 0; // -1 if unknown, ignored
+        long startNanos = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            if (!chain.call().isCanceled()) {
+                metrics.record(device, endpoint, isTimeout(e) ? EndpointStats.Outcome.TIMEOUT : EndpointStats.Outcome.NETWORK_ERROR,
+                        elapsedMs(startNanos), bytesSent, 0);
+            }
+            throw e;
+        }
+        // Content-Length of the response; -1 (ignored) for chunked bodies, which the ESP firmware doesn't send
+        long bytesReceived = response.body() != null ? response.body().contentLength() : 0;
+        metrics.record(device, endpoint, response.code() >= 400 ? EndpointStats.Outcome.HTTP_ERROR : EndpointStats.Outcome.SUCCESS,
+                elapsedMs(startNanos), bytesSent, bytesReceived);
+        return response;
+    }
+
+    static String deviceKey(HttpUrl url) {
+        // HttpUrl.host() is already lower-case
+        return url.port() == HttpUrl.defaultPort(url.scheme()) ? url.host() : url.host() + ":" + url.port();
+    }
+
+    private static boolean isTimeout(IOException e) {
+        // Connect/read timeouts throw SocketTimeoutException; OkHttp's call timeout an InterruptedIOException("timeout")
+        return e instanceof SocketTimeoutException || (e instanceof InterruptedIOException && "timeout".equals(e.getMessage()));
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -8,9 +8,8 @@ import android.util.Log;
 // Corrected import for DiscoveredService based on its new package
 import com.example.mybasicapp.model.DiscoveredService;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
 
-public class NsdHelper {
+public class NsdHelper implements DiscoveryBackend {
 
     private static final String TAG = "NsdHelper_DEBUG"; // Enhanced Tag
 
@@ -30,14 +29,40 @@ public class NsdHelper {
         void onNsdDiscoveryLifecycleChange(boolean active, String serviceType);
     }
 
-    private NsdHelperListener listener;
-    private ConcurrentLinkedQueue<NsdServiceInfo> resolveQueue = new ConcurrentLinkedQueue<>();
-    private boolean isCurrentlyResolving = false;
+    private volatile NsdHelperListener listener;
+    // Resolves several services at once, deduplicated by name and type (null if NsdManager is unavailable)
+    private NsdServiceResolver resolver;
 
     public NsdHelper(Context context, NsdHelperListener listener) {
+        this(context, listener, NsdServiceResolver.DEFAULT_MAX_CONCURRENT, NsdServiceResolver.DEFAULT_TIMEOUT_MS);
+    }
+
+    /**
+     * @param maxConcurrentResolves How many services may be resolved at the same time.
+     * @param resolveTimeoutMs      A resolve taking longer than this is reported via onNsdResolveFailed
+     *                              with {@link NsdServiceResolver#ERROR_TIMEOUT}.
+     */
+    public NsdHelper(Context context, NsdHelperListener listener, int maxConcurrentResolves, long resolveTimeoutMs) {
         Log.d(TAG, "NsdHelper Constructor called");
         this.nsdManager = (NsdManager) context.getSystemService(Context.NSD_SERVICE);
         this.listener = listener;
+        if (nsdManager != null) {
+            this.resolver = new NsdServiceResolver(nsdManager, maxConcurrentResolves, resolveTimeoutMs, new NsdServiceResolver.Callback() {
+                @Override
+                public void onServiceResolved(NsdServiceInfo serviceInfo) {
+                    NsdHelperListener currentListener = NsdHelper.this.listener;
+                    Log.i(TAG, "onServiceResolved: Name='" + serviceInfo.getServiceName() + "', Port='" + serviceInfo.getPort() + "'");
+                    if (currentListener != null) currentListener.onNsdServiceResolved(new DiscoveredService(serviceInfo)); // Uses com.example.mybasicapp.model.DiscoveredService
+                }
+
+                @Override
+                public void onResolveFailed(NsdServiceInfo serviceInfo, int errorCode) {
+                    NsdHelperListener currentListener = NsdHelper.this.listener;
+                    Log.e(TAG, "onResolveFailed: Service='" + serviceInfo.getServiceName() + "', ErrorCode=" + errorCode);
+                    if (currentListener != null) currentListener.onNsdResolveFailed(serviceInfo, errorCode);
+                }
+            });
+        }
         initializeDiscoveryListener();
     }
 
@@ -73,7 +98,9 @@ public class NsdHelper {
                     }
                     Log.i(TAG, "onServiceFound: MATCH! Name='" + service.getServiceName() + "'. Adding to resolve queue.");
                     if (listener != null) listener.onNsdServiceCandidateFound(service);
-                    addToResolveQueue(service);
+                    if (resolver != null && !resolver.enqueue(service)) {
+                        Log.d(TAG, "onServiceFound: Service '" + service.getServiceName() + "' already queued or resolved.");
+                    }
                 } else {
                     Log.d(TAG, "onServiceFound: Type MISMATCH. FoundType='" + foundServiceTypeNormalized + "', ExpectedType='" + expectedServiceTypeNormalized + "'.");
                 }
@@ -83,15 +110,14 @@ public class NsdHelper {
             public void onServiceLost(NsdServiceInfo service) {
                 Log.w(TAG, "onServiceLost: Name='" + service.getServiceName() + "', Type='" + service.getServiceType() + "'");
                 if (listener != null) listener.onNsdServiceLost(new DiscoveredService(service)); // Uses com.example.mybasicapp.model.DiscoveredService
-                resolveQueue.remove(service);
+                if (resolver != null) resolver.forget(service);
             }
 
             @Override
             public void onDiscoveryStopped(String serviceType) {
                 Log.i(TAG, "onDiscoveryStopped: type=" + serviceType);
                 discoveryActive = false;
-                resolveQueue.clear();
-                isCurrentlyResolving = false;
+                if (resolver != null) resolver.clear();
                 if (listener != null) listener.onNsdDiscoveryLifecycleChange(false, serviceType);
             }
 
@@ -106,76 +132,12 @@ public class NsdHelper {
             public void onStopDiscoveryFailed(String serviceType, int errorCode) {
                 Log.e(TAG, "onStopDiscoveryFailed: type=" + serviceType + ", errorCode=" + errorCode);
                 discoveryActive = false;
-                resolveQueue.clear();
-                isCurrentlyResolving = false;
+                if (resolver != null) resolver.clear();
                 if (listener != null) listener.onNsdDiscoveryLifecycleChange(false, serviceType);
             }
         };
     }
 
-    private void addToResolveQueue(NsdServiceInfo serviceInfo) {
-        Log.d(TAG, "addToResolveQueue: Attempting to add '" + serviceInfo.getServiceName() + "'");
-        if (!resolveQueue.contains(serviceInfo)) { // Simple contains check, NsdServiceInfo might need proper equals
-            resolveQueue.offer(serviceInfo);
-            Log.d(TAG, "addToResolveQueue: Added '" + serviceInfo.getServiceName() + "'. Queue size: " + resolveQueue.size());
-            processNextInResolveQueue();
-        } else {
-            Log.d(TAG, "addToResolveQueue: Service '" + serviceInfo.getServiceName() + "' already in queue.");
-        }
-    }
-
-    private void processNextInResolveQueue() {
-        synchronized (this) {
-            if (isCurrentlyResolving) {
-                Log.d(TAG, "processNextInResolveQueue: Already resolving. Queue size: " + resolveQueue.size());
-                return;
-            }
-            if (resolveQueue.isEmpty()) {
-                Log.d(TAG, "processNextInResolveQueue: Queue is empty.");
-                return;
-            }
-            isCurrentlyResolving = true;
-        }
-
-        NsdServiceInfo serviceToResolve = resolveQueue.poll();
-        if (serviceToResolve == null) {
-            Log.w(TAG, "processNextInResolveQueue: Polled null from non-empty queue (race condition?)");
-            synchronized (this) { isCurrentlyResolving = false; }
-            return;
-        }
-
-        Log.i(TAG, "processNextInResolveQueue: Attempting to resolve '" + serviceToResolve.getServiceName() + "'. Remaining in queue: " + resolveQueue.size());
-        if (nsdManager == null) {
-            Log.e(TAG, "processNextInResolveQueue: NsdManager is null! Cannot resolve.");
-            finishResolvingAndProcessNext();
-            return;
-        }
-        nsdManager.resolveService(serviceToResolve, new NsdManager.ResolveListener() {
-            @Override
-            public void onResolveFailed(NsdServiceInfo serviceInfo, int errorCode) {
-                Log.e(TAG, "onResolveFailed: Service='" + serviceInfo.getServiceName() + "', ErrorCode=" + errorCode);
-                if (listener != null) listener.onNsdResolveFailed(serviceInfo, errorCode);
-                finishResolvingAndProcessNext();
-            }
-
-            @Override
-            public void onServiceResolved(NsdServiceInfo serviceInfo) {
-                String hostAddress = (serviceInfo.getHost() != null) ? serviceInfo.getHost().getHostAddress() : "N/A";
-                Log.i(TAG, "onServiceResolved: Name='" + serviceInfo.getServiceName() + "', Host='" + hostAddress + "', Port='" + serviceInfo.getPort() + "'");
-                if (listener != null) listener.onNsdServiceResolved(new DiscoveredService(serviceInfo)); // Uses com.example.mybasicapp.model.DiscoveredService
-                finishResolvingAndProcessNext();
-            }
-        });
-    }
-
-    private void finishResolvingAndProcessNext() {
-        Log.d(TAG, "finishResolvingAndProcessNext()");
-        synchronized (this) {
-            isCurrentlyResolving = false;
-        }
-        processNextInResolveQueue();
-    }
-
     public void discoverServices(String targetServiceNameFilter, String serviceTypeToScan) {
         Log.i(TAG, "discoverServices: Requested. FilterName='" + targetServiceNameFilter + "', Type='" + serviceTypeToScan + "'");
         if (nsdManager == null) {
@@ -225,8 +187,7 @@ public class NsdHelper {
             } catch (IllegalArgumentException e) {
                 Log.w(TAG, "stopDiscovery: IllegalArgumentException: " + e.getMessage() + ". Already stopped or listener invalid?");
                 discoveryActive = false; // Force state update
-                resolveQueue.clear();
-                isCurrentlyResolving = false;
+                if (resolver != null) resolver.clear();
                 if (listener != null && currentServiceTypeToDiscover != null) {
                     listener.onNsdDiscoveryLifecycleChange(false, currentServiceTypeToDiscover);
                 }
@@ -247,6 +208,7 @@ public class NsdHelper {
         if (nsdManager != null) {
             stopDiscovery();
         }
+        if (resolver != null) resolver.clear();
         this.listener = null;
         // this.nsdManager = null; // Let it be GC'd if context is gone. System service.
         Log.d(TAG, "NsdHelper torn down.");
@@ -0,0 +1,250 @@
+package com.example.mybasicapp.network;
+
+import android.net.nsd.NsdManager;
+import android.net.nsd.NsdServiceInfo;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Resolves discovered NSD services with up to {@code maxConcurrent} resolves in flight.
+ * <p>
+ * Services are deduplicated by (service name, service type), so a service that is announced
+ * repeatedly is resolved once per discovery session. Each resolve has a timeout; a resolve that
+ * does not answer in time is reported as {@link #ERROR_TIMEOUT} and frees its slot for the next
+ * service. On API 34+ resolution uses {@code registerServiceInfoCallback}, which can be cancelled;
+ * older releases use {@code resolveService}, where a timed-out resolve is simply ignored. Resolves
+ * rejected because the system is busy are re-queued a few times.
+ * <p>
+ * Callbacks arrive on NsdManager's thread or the main thread.
+ */
+public class NsdServiceResolver {
+    private static final String TAG = "NsdServiceResolver_DBG";
+
+    public static final int DEFAULT_MAX_CONCURRENT = 4;
+    public static final long DEFAULT_TIMEOUT_MS = 5000;
+    /** Custom error code (like NsdHelper's -100) reported when a resolve times out. */
+    public static final int ERROR_TIMEOUT = -200;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BUSY_RETRY_DELAY_MS = 500;
+
+    public interface Callback {
+        void onServiceResolved(@NonNull NsdServiceInfo serviceInfo);
+        void onResolveFailed(@NonNull NsdServiceInfo serviceInfo, int errorCode);
+    }
+
+    private final NsdManager nsdManager;
+    private final int maxConcurrent;
+    private final long timeoutMs;
+    private final Callback callback;
+    private final Handler timeoutHandler = new Handler(Looper.getMainLooper());
+    private final Executor directExecutor = Runnable::run;
+
+    // All guarded by "this"
+    private final LinkedHashMap<String, NsdServiceInfo> pending = new LinkedHashMap<>(); // Queue + dedup
+    private final Map<String, ActiveResolve> active = new HashMap<>();
+    private final Set<String> resolved = new HashSet<>();
+    private final Map<String, Integer> attempts = new HashMap<>();
+
+    /** One in-flight resolve. Late callbacks for a resolve that already finished are ignored. */
+    private final class ActiveResolve {
+        final String key;
+        final NsdServiceInfo serviceInfo;
+        final Runnable timeoutRunnable;
+        Object serviceInfoCallback; // NsdManager.ServiceInfoCallback on API 34+
+        boolean finished = false;
+
+        ActiveResolve(String key, NsdServiceInfo serviceInfo) {
+            this.key = key;
+            this.serviceInfo = serviceInfo;
+            this.timeoutRunnable = () -> finish(this, null, ERROR_TIMEOUT);
+        }
+    }
+
+    public NsdServiceResolver(@NonNull NsdManager nsdManager, int maxConcurrent, long timeoutMs, @NonNull Callback callback) {
+        this.nsdManager = nsdManager;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.timeoutMs = timeoutMs;
+        this.callback = callback;
+    }
+
+    public static String keyOf(@NonNull NsdServiceInfo serviceInfo) {
+        String type = serviceInfo.getServiceType() != null ? serviceInfo.getServiceType() : "";
+        // Discovery reports types with and without the trailing dot and, for found services, with a leading one
+        type = type.replaceFirst("^\\.", "").replaceFirst("\\.$", "");
+        return serviceInfo.getServiceName().toLowerCase(Locale.ROOT) + "|" + type.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Queues a service for resolution.
+     * @return false if it is already queued, resolving, or resolved in this session.
+     */
+    public boolean enqueue(@NonNull NsdServiceInfo serviceInfo) {
+        String key = keyOf(serviceInfo);
+        synchronized (this) {
+            if (pending.containsKey(key) || active.containsKey(key) || resolved.contains(key)) return false;
+            pending.put(key, serviceInfo);
+            Log.d(TAG, "Queued '" + serviceInfo.getServiceName() + "'. Pending=" + pending.size() + ", active=" + active.size());
+        }
+        startNext();
+        return true;
+    }
+
+    /** Forgets a lost service so it is resolved again if it reappears. */
+    public void forget(@NonNull NsdServiceInfo serviceInfo) {
+        String key = keyOf(serviceInfo);
+        synchronized (this) {
+            pending.remove(key);
+            resolved.remove(key);
+            attempts.remove(key);
+        }
+    }
+
+    /** Drops queued work and ignores the results of in-flight resolves. */
+    public void clear() {
+        synchronized (this) {
+            for (ActiveResolve resolve : active.values()) {
+                resolve.finished = true;
+                timeoutHandler.removeCallbacks(resolve.timeoutRunnable);
+                cancelPlatformResolve(resolve);
+            }
+            active.clear();
+            pending.clear();
+            resolved.clear();
+            attempts.clear();
+        }
+    }
+
+    private void startNext() {
+        while (true) {
+            ActiveResolve resolve;
+            synchronized (this) {
+                if (active.size() >= maxConcurrent || pending.isEmpty()) return;
+                Iterator<Map.Entry<String, NsdServiceInfo>> iterator = pending.entrySet().iterator();
+                Map.Entry<String, NsdServiceInfo> next = iterator.next();
+                iterator.remove();
+                resolve = new ActiveResolve(next.getKey(), next.getValue());
+                active.put(resolve.key, resolve);
+            }
+            Log.i(TAG, "Resolving '" + resolve.serviceInfo.getServiceName() + "'");
+            timeoutHandler.postDelayed(resolve.timeoutRunnable, timeoutMs);
+            try {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+                    resolveWithServiceInfoCallback(resolve);
+                } else {
+                    resolveLegacy(resolve);
+                }
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "Resolve of '" + resolve.serviceInfo.getServiceName() + "' rejected: " + e.getMessage());
+                finish(resolve, null, NsdManager.FAILURE_BAD_PARAMETERS);
+            }
+        }
+    }
+
+    private void resolveLegacy(ActiveResolve resolve) {
+        // A fresh listener per resolve; NsdManager rejects a listener that is already in use
+        nsdManager.resolveService(resolve.serviceInfo, new NsdManager.ResolveListener() {
+            @Override
+            public void onResolveFailed(NsdServiceInfo serviceInfo, int errorCode) {
+                finish(resolve, null, errorCode);
+            }
+
+            @Override
+            public void onServiceResolved(NsdServiceInfo serviceInfo) {
+                finish(resolve, serviceInfo, 0);
+            }
+        });
+    }
+
+    @RequiresApi(Build.VERSION_CODES.UPSIDE_DOWN_CAKE)
+    private void resolveWithServiceInfoCallback(ActiveResolve resolve) {
+        NsdManager.ServiceInfoCallback serviceInfoCallback = new NsdManager.ServiceInfoCallback() {
+            @Override
+            public void onServiceInfoCallbackRegistrationFailed(int errorCode) {
+                finish(resolve, null, errorCode);
+            }
+
+            @Override
+            public void onServiceUpdated(@NonNull NsdServiceInfo serviceInfo) {
+                // The first update with addresses is all we need; further updates are not tracked here
+                if (!serviceInfo.getHostAddresses().isEmpty()) finish(resolve, serviceInfo, 0);
+            }
+
+            @Override
+            public void onServiceLost() {
+                finish(resolve, null, NsdManager.FAILURE_INTERNAL_ERROR);
+            }
+
+            @Override
+            public void onServiceInfoCallbackUnregistered() {
+            }
+        };
+        synchronized (this) {
+            resolve.serviceInfoCallback = serviceInfoCallback;
+        }
+        nsdManager.registerServiceInfoCallback(resolve.serviceInfo, directExecutor, serviceInfoCallback);
+    }
+
+    private void cancelPlatformResolve(ActiveResolve resolve) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE && resolve.serviceInfoCallback != null) {
+            try {
+                nsdManager.unregisterServiceInfoCallback((NsdManager.ServiceInfoCallback) resolve.serviceInfoCallback);
+            } catch (IllegalArgumentException e) {
+                // Registration failed or already unregistered
+            }
+        }
+        // resolveService() can't be cancelled before API 34; its late callback is ignored
+    }
+
+    private void requeue(String key, NsdServiceInfo serviceInfo) {
+        synchronized (this) {
+            // attempts is cleared by forget() and clear(); don't resurrect a service dropped meanwhile
+            if (!attempts.containsKey(key) || pending.containsKey(key) || active.containsKey(key) || resolved.contains(key)) return;
+            pending.put(key, serviceInfo);
+        }
+        startNext();
+    }
+
+    private void finish(ActiveResolve resolve, NsdServiceInfo resolvedInfo, int errorCode) {
+        boolean retry = false;
+        synchronized (this) {
+            if (resolve.finished) return;
+            resolve.finished = true;
+            timeoutHandler.removeCallbacks(resolve.timeoutRunnable);
+            cancelPlatformResolve(resolve);
+            active.remove(resolve.key);
+            if (resolvedInfo != null) {
+                resolved.add(resolve.key);
+                attempts.remove(resolve.key);
+            } else if (errorCode == NsdManager.FAILURE_ALREADY_ACTIVE || errorCode == NsdManager.FAILURE_MAX_LIMIT) {
+                // System resolver busy; try again after the others
+                int attempt = attempts.containsKey(resolve.key) ? attempts.get(resolve.key) + 1 : 1;
+                attempts.put(resolve.key, attempt);
+                retry = attempt < MAX_ATTEMPTS;
+            }
+        }
+        if (resolvedInfo != null) {
+            callback.onServiceResolved(resolvedInfo);
+        } else if (retry) {
+            Log.d(TAG, "Resolver busy for '" + resolve.serviceInfo.getServiceName() + "' (code " + errorCode + "), retrying.");
+            timeoutHandler.postDelayed(() -> requeue(resolve.key, resolve.serviceInfo), BUSY_RETRY_DELAY_MS);
+        } else {
+            Log.w(TAG, "Resolve of '" + resolve.serviceInfo.getServiceName() + "' failed, code " + errorCode);
+            callback.onResolveFailed(resolve.serviceInfo, errorCode);
+        }
+        startNext();
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.mybasicapp.network;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.mybasicapp.model.DeviceStatus;
+import com.example.mybasicapp.model.EspDevice;
+import com.example.mybasicapp.model.PendingConfigChange;
+import com.example.mybasicapp.persistence.PendingConfigJournal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Config changes for devices that could not be reached, kept until the device is back.
+ * <ul>
+ *   <li>Durable: every change goes through a {@link PendingConfigJournal} and survives restarts.</li>
+ *   <li>Coalescing: per device only the newest value of each field is kept and sent.</li>
+ *   <li>Drained automatically: when {@link #onDeviceStatuses} sees a device with queued changes come
+ *       online, they are written as one {@link ConfigTransaction}. Each device drains on its own,
+ *       so one slow device doesn't hold up the rest.</li>
+ * </ul>
+ * Only threshold and calibration offset are queued. Wi-Fi credentials are not stored on disk and
+ * changing them on a device that may have moved networks needs the user anyway.
+ * Thread-safe; listener callbacks arrive on arbitrary threads.
+ */
+public class PendingConfigQueue {
+    private static final String TAG = "PendingConfigQueue_DBG";
+
+    private static final Set<String> QUEUEABLE_FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            ConfigTransaction.FIELD_THRESHOLD, ConfigTransaction.FIELD_CALIBRATION_OFFSET)));
+
+    public interface Listener {
+        /** Total number of queued changes, across devices. */
+        void onPendingCountChanged(int pendingChanges);
+        /** A device accepted queued changes. */
+        void onChangesDelivered(@NonNull String address, @NonNull Set<String> fields);
+    }
+
+    private final EspConfigClient client;
+    private final PendingConfigJournal journal;
+    private final Listener listener;
+
+    // All guarded by "this"
+    private final Map<String, Map<String, PendingConfigChange>> pending = new HashMap<>(); // Address key -> field -> newest change
+    private final Set<String> draining = new HashSet<>();
+    private final Set<String> onlineKeys = new HashSet<>(); // Per the last health results
+    private long nextSeq = 1;
+
+    /** Starts empty; {@link #load} brings back what an earlier session queued. */
+    public PendingConfigQueue(@NonNull EspConfigClient client, @NonNull PendingConfigJournal journal, @NonNull Listener listener) {
+        this.client = client;
+        this.journal = journal;
+        this.listener = listener;
+    }
+
+    /**
+     * Replays the journal, so changes queued in an earlier session are pending again. Reads the
+     * file, so not on the main thread; call once, before anything is queued.
+     */
+    public void load() {
+        List<PendingConfigChange> loaded = journal.load();
+        List<String> alreadyOnline = new ArrayList<>();
+        int count;
+        synchronized (this) {
+            for (PendingConfigChange change : loaded) {
+                slotsFor(change.addressKey).put(change.field, change);
+                nextSeq = Math.max(nextSeq, change.seq + 1);
+            }
+            // Health results that arrived while the file was read found nothing to drain
+            for (String key : pending.keySet()) {
+                if (onlineKeys.contains(key)) alreadyOnline.add(key);
+            }
+            count = countLocked();
+        }
+        if (count > 0) listener.onPendingCountChanged(count);
+        for (String key : alreadyOnline) drain(key);
+    }
+
+    public static boolean isQueueable(@NonNull String field) {
+        return QUEUEABLE_FIELDS.contains(field);
+    }
+
+    /**
+     * Queues a value, replacing one queued earlier for the same device and field. Returns once the
+     * change is in the journal, so it survives a restart; blocks on file I/O, so not on the main thread.
+     */
+    public void enqueue(@NonNull String address, @NonNull String field, double value) {
+        if (!isQueueable(field)) throw new IllegalArgumentException("Field can't be queued: " + field);
+        PendingConfigChange change;
+        int count;
+        synchronized (this) {
+            change = new PendingConfigChange(address, field, value, nextSeq++, System.currentTimeMillis());
+            slotsFor(change.addressKey).put(field, change);
+            onlineKeys.remove(change.addressKey); // Unreachable as far as we know; the next online result drains it
+            count = countLocked();
+        }
+        if (!journal.appendQueued(change)) {
+            Log.w(TAG, "Queued " + field + " for " + address + " could not be journaled; it is lost on restart.");
+        }
+        Log.i(TAG, "Queued " + field + "=" + value + " for " + address + " until it is reachable.");
+        listener.onPendingCountChanged(count);
+    }
+
+    /**
+     * Queues what a failed transaction did not get to write, skipping fields that can't be queued.
+     * @return The fields that were queued.
+     */
+    @NonNull
+    public Set<String> enqueueUnapplied(@NonNull String address, @NonNull ConfigTransaction transaction,
+                                        @NonNull Set<String> appliedFields) {
+        Set<String> queued = new LinkedHashSet<>();
+        for (String field : transaction.getChangedFields()) {
+            if (appliedFields.contains(field) || !isQueueable(field)) continue;
+            Object value = transaction.getDesiredValue(field);
+            if (!(value instanceof Double)) continue;
+            enqueue(address, field, (Double) value);
+            queued.add(field);
+        }
+        return queued;
+    }
+
+    /**
+     * Drops queued values for fields that were just written directly, so an older queued value
+     * can't overwrite them later.
+     */
+    public void supersede(@NonNull String address, @NonNull Collection<String> writtenFields) {
+        List<PendingConfigChange> dropped = new ArrayList<>();
+        int count;
+        synchronized (this) {
+            String key = EspDevice.canonicalAddress(address);
+            Map<String, PendingConfigChange> slots = pending.get(key);
+            if (slots == null) return;
+            for (String field : writtenFields) {
+                PendingConfigChange change = slots.remove(field);
+                if (change != null) dropped.add(change);
+            }
+            if (slots.isEmpty()) pending.remove(key);
+            count = countLocked();
+        }
+        if (dropped.isEmpty()) return;
+        for (PendingConfigChange change : dropped) journal.appendDone(change);
+        listener.onPendingCountChanged(count);
+    }
+
+    /** Forgets everything queued for a device, e.g. when it is removed from the list. */
+    public void discard(@NonNull String address) {
+        Map<String, PendingConfigChange> slots;
+        synchronized (this) {
+            slots = pending.get(EspDevice.canonicalAddress(address));
+        }
+        if (slots != null) supersede(address, new ArrayList<>(slots.keySet()));
+    }
+
+    public synchronized int getPendingCount() {
+        return countLocked();
+    }
+
+    @NonNull
+    public synchronized Set<String> getPendingFields(@NonNull String address) {
+        Map<String, PendingConfigChange> slots = pending.get(EspDevice.canonicalAddress(address));
+        return slots == null ? Collections.emptySet() : new LinkedHashSet<>(slots.keySet());
+    }
+
+    /**
+     * Feeds health results in (see {@link DeviceHealthProber}). Devices that came online with
+     * changes queued are drained; a device seen for the first time counts as coming online.
+     */
+    public void onDeviceStatuses(@NonNull Map<String, DeviceStatus> statuses) {
+        List<String> cameOnline = new ArrayList<>();
+        synchronized (this) {
+            onlineKeys.retainAll(statuses.keySet());
+            for (Map.Entry<String, DeviceStatus> entry : statuses.entrySet()) {
+                String key = entry.getKey();
+                if (!entry.getValue().online) {
+                    onlineKeys.remove(key);
+                } else if (onlineKeys.add(key) && pending.containsKey(key)) {
+                    cameOnline.add(key);
+                }
+            }
+        }
+        for (String key : cameOnline) drain(key);
+    }
+
+    private void drain(String key) {
+        List<PendingConfigChange> batch;
+        synchronized (this) {
+            Map<String, PendingConfigChange> slots = pending.get(key);
+            if (slots == null || slots.isEmpty() || !draining.add(key)) return;
+            batch = new ArrayList<>(slots.values());
+        }
+        String address = batch.get(0).address;
+        // No cached config: the device's values are unknown after the outage, so send every queued field
+        ConfigTransaction transaction = new ConfigTransaction(client, "http://" + address, null);
+        Set<String> batchFields = new LinkedHashSet<>();
+        for (PendingConfigChange change : batch) {
+            batchFields.add(change.field);
+            if (ConfigTransaction.FIELD_THRESHOLD.equals(change.field)) {
+                transaction.setThreshold((float) change.value);
+            } else {
+                transaction.setCalibrationOffset((float) change.value);
+            }
+        }
+        Log.i(TAG, address + " is back, writing queued " + batchFields);
+        transaction.commit(new ConfigTransaction.Callback() {
+            @Override
+            public void onCommitted(@NonNull Set<String> changedFields, boolean batched) {
+                finishDrain(key, address, batch, batchFields, true);
+            }
+
+            @Override
+            public void onFailed(@NonNull String message, int code, @NonNull Set<String> appliedFields) {
+                // 4xx other than timeouts/throttling: the device rejects the value, retrying won't help
+                boolean rejected = code >= 400 && code < 500 && code != 408 && code != 429;
+                if (rejected) {
+                    Log.w(TAG, address + " rejected queued " + batchFields + " (" + code + " " + message + "), dropping them.");
+                } else {
+                    Log.w(TAG, "Writing queued changes to " + address + " failed (" + message + "), kept until it is back again.");
+                }
+                finishDrain(key, address, batch, rejected ? batchFields : appliedFields, !rejected);
+            }
+        });
+    }
+
+    /**
+     * @param doneFields Fields of {@code batch} that no longer need sending.
+     * @param accepted   Whether the device took them, as opposed to rejecting them.
+     */
+    private void finishDrain(String key, String address, List<PendingConfigChange> batch, Set<String> doneFields, boolean accepted) {
+        List<PendingConfigChange> done = new ArrayList<>();
+        boolean editedMeanwhile = false;
+        int count;
+        synchronized (this) {
+            draining.remove(key);
+            Map<String, PendingConfigChange> slots = pending.get(key);
+            if (slots != null) {
+                for (PendingConfigChange change : batch) {
+                    PendingConfigChange current = slots.get(change.field);
+                    if (current == null) continue; // Superseded by a direct write meanwhile
+                    if (current.seq != change.seq) {
+                        editedMeanwhile = true; // A newer value was queued while this one was in flight
+                    } else if (doneFields.contains(change.field)) {
+                        slots.remove(change.field);
+                        done.add(change);
+                    }
+                }
+                if (slots.isEmpty()) pending.remove(key);
+            }
+            editedMeanwhile &= onlineKeys.contains(key);
+            count = countLocked();
+        }
+        for (PendingConfigChange change : done) journal.appendDone(change);
+        if (!done.isEmpty()) {
+            if (accepted) {
+                Set<String> delivered = new LinkedHashSet<>();
+                for (PendingConfigChange change : done) delivered.add(change.field);
+                listener.onChangesDelivered(address, delivered);
+            }
+            listener.onPendingCountChanged(count);
+        }
+        if (editedMeanwhile) drain(key);
+    }
+
+    // Caller holds the lock
+    private Map<String, PendingConfigChange> slotsFor(String key) {
+        Map<String, PendingConfigChange> slots = pending.get(key);
+        if (slots == null) {
+            slots = new LinkedHashMap<>();
+            pending.put(key, slots);
+        }
+        return slots;
+    }
+
+    // Caller holds the lock
+    private int countLocked() {
+        int count = 0;
+        for (Map<String, PendingConfigChange> slots : pending.values()) count += slots.size();
+        return count;
+    }
+}
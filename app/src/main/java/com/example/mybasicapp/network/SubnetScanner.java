@@ -0,0 +1,235 @@
+package com.example.mybasicapp.network;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.DhcpInfo;
+import android.net.LinkAddress;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.wifi.WifiManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.mybasicapp.model.DiscoveredService;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Finds sensors whose firmware doesn't advertise over mDNS by sweeping the current subnet.
+ * <p>
+ * Every host of the local IPv4 subnet (capped to the /24 around our own address) gets a
+ * short-timeout TCP connect to port 80. Hosts that accept are then asked for the mic data endpoint,
+ * and only those answering with the sensor's JSON ("db_calibrated") are reported. Up to
+ * {@code concurrency} hosts are probed at once and results are streamed to the {@link Listener}
+ * as they arrive, on worker threads.
+ */
+public class SubnetScanner {
+    private static final String TAG = "SubnetScanner_DBG";
+
+    public static final int DEFAULT_CONCURRENCY = 32;
+    private static final int HTTP_PORT = 80;
+    private static final int CONNECT_TIMEOUT_MS = 300;   // LAN hosts answer a SYN within a few ms
+    private static final int MIN_PREFIX_LENGTH = 24;      // Never sweep more than 254 hosts
+    private static final int PROGRESS_EVERY_HOSTS = 16;
+    private static final String SIGNATURE_ENDPOINT = "/"; // Same endpoint HttpPollingService reads mic data from
+    private static final String SIGNATURE_KEY = "db_calibrated";
+    public static final String SERVICE_TYPE = "subnet-scan"; // DiscoveredService type for results of this scanner
+
+    public interface Listener {
+        void onSensorFound(@NonNull DiscoveredService service);
+        void onScanProgress(int scannedHosts, int totalHosts, int sensorsFound);
+        void onScanFinished(int sensorsFound); // Not called after cancel()
+        void onScanFailed(@NonNull String reason);
+    }
+
+    /** Hosts to probe: the usable addresses of a subnet, excluding our own. */
+    static final class Subnet {
+        final int networkAddress; // Host byte order
+        final int prefixLength;
+        final int selfAddress;
+
+        Subnet(int address, int prefixLength) {
+            this.prefixLength = Math.max(prefixLength, MIN_PREFIX_LENGTH);
+            int mask = this.prefixLength == 0 ? 0 : -1 << (32 - this.prefixLength);
+            this.networkAddress = address & mask;
+            this.selfAddress = address;
+        }
+
+        /** Number of addresses between the network and broadcast addresses. */
+        int hostCount() {
+            return Math.max(0, (1 << (32 - prefixLength)) - 2);
+        }
+
+        int hostAt(int index) {
+            return networkAddress + 1 + index;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return toDottedQuad(networkAddress) + "/" + prefixLength;
+        }
+    }
+
+    private final Context appContext;
+    private final int concurrency;
+    private final OkHttpClient client;
+    private final LocalHostnameDns localHostnameDns;
+    @Nullable private volatile ExecutorService executor;
+
+    public SubnetScanner(@NonNull Context context, int concurrency) {
+        this.appContext = context.getApplicationContext();
+        this.concurrency = Math.max(1, concurrency);
+        this.localHostnameDns = LocalHostnameDns.getInstance(appContext);
+        this.client = new OkHttpClient.Builder()
+                .dns(localHostnameDns) // Same resolver as every other client; sweeps themselves use literal IPs
+                .connectTimeout(1, TimeUnit.SECONDS)
+                .readTimeout(2, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(false)
+                .build();
+    }
+
+    public boolean isScanning() {
+        return executor != null;
+    }
+
+    /** Starts a sweep; an already running sweep is cancelled first. */
+    public synchronized void start(@NonNull Listener listener) {
+        cancel();
+        Subnet subnet = findLocalSubnet();
+        if (subnet == null) {
+            listener.onScanFailed("No IPv4 network connection");
+            return;
+        }
+        int total = subnet.hostCount();
+        Log.i(TAG, "Sweeping " + subnet + " (" + total + " hosts, concurrency " + concurrency + ")");
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread thread = new Thread(r, "SubnetScanner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor = pool;
+        AtomicInteger scanned = new AtomicInteger();
+        AtomicInteger found = new AtomicInteger();
+        for (int i = 0; i < total; i++) {
+            final int host = subnet.hostAt(i);
+            pool.execute(() -> {
+                // A shut down pool means this sweep was cancelled; a newer sweep has its own pool
+                if (!pool.isShutdown() && host != subnet.selfAddress) {
+                    DiscoveredService service = probe(toDottedQuad(host));
+                    if (service != null && !pool.isShutdown()) {
+                        found.incrementAndGet();
+                        listener.onSensorFound(service);
+                    }
+                }
+                int done = scanned.incrementAndGet();
+                if (pool.isShutdown()) return;
+                if (done % PROGRESS_EVERY_HOSTS == 0) listener.onScanProgress(done, total, found.get());
+                if (done == total) {
+                    finish(pool);
+                    Log.i(TAG, "Sweep of " + subnet + " done, " + found.get() + " sensors found.");
+                    listener.onScanFinished(found.get());
+                }
+            });
+        }
+        if (total == 0) {
+            finish(pool);
+            listener.onScanFinished(0);
+        }
+    }
+
+    /** Stops a running sweep. Probes in flight are abandoned; no further callbacks are made. */
+    public synchronized void cancel() {
+        ExecutorService pool = executor;
+        if (pool == null) return;
+        executor = null;
+        pool.shutdownNow();
+        Log.i(TAG, "Sweep cancelled.");
+    }
+
+    private synchronized void finish(ExecutorService pool) {
+        if (executor == pool) executor = null;
+        pool.shutdown();
+    }
+
+    @Nullable
+    private DiscoveredService probe(String address) {
+        // Cheap reachability check first; most addresses are empty or not listening on 80
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(address, HTTP_PORT), CONNECT_TIMEOUT_MS);
+        } catch (IOException e) {
+            return null;
+        }
+        Request request = new Request.Builder().url("http://" + address + SIGNATURE_ENDPOINT).build();
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) return null;
+            JSONObject json = new JSONObject(body.string());
+            if (!json.has(SIGNATURE_KEY)) return null;
+            Log.i(TAG, "Sensor found at " + address);
+            return new DiscoveredService(address, address, HTTP_PORT, SERVICE_TYPE);
+        } catch (IOException e) {
+            localHostnameDns.onRequestFailed(request.url().host(), e);
+            return null;
+        } catch (JSONException e) {
+            return null; // Something else listening on port 80
+        }
+    }
+
+    /**
+     * The IPv4 address and prefix of the Wi-Fi network, or null if there is none. Not the active
+     * network: when the ESPs' access point has no internet, Android makes cellular the default.
+     */
+    @Nullable
+    private Subnet findLocalSubnet() {
+        ConnectivityManager connectivityManager = (ConnectivityManager) appContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager != null) {
+            for (Network network : connectivityManager.getAllNetworks()) {
+                NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(network);
+                if (capabilities == null || !capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) continue;
+                LinkProperties linkProperties = connectivityManager.getLinkProperties(network);
+                if (linkProperties == null) continue;
+                for (LinkAddress linkAddress : linkProperties.getLinkAddresses()) {
+                    InetAddress address = linkAddress.getAddress();
+                    if (address instanceof Inet4Address && !address.isLoopbackAddress()) {
+                        return new Subnet(toInt(address.getAddress()), linkAddress.getPrefixLength());
+                    }
+                }
+            }
+        }
+        // No Wi-Fi network with link properties: Wi-Fi DHCP info (fields are little-endian ints)
+        WifiManager wifiManager = (WifiManager) appContext.getSystemService(Context.WIFI_SERVICE);
+        DhcpInfo dhcpInfo = wifiManager != null ? wifiManager.getDhcpInfo() : null;
+        if (dhcpInfo == null || dhcpInfo.ipAddress == 0) return null;
+        int address = Integer.reverseBytes(dhcpInfo.ipAddress);
+        int prefixLength = dhcpInfo.netmask != 0 ? Integer.bitCount(dhcpInfo.netmask) : MIN_PREFIX_LENGTH;
+        return new Subnet(address, prefixLength);
+    }
+
+    private static int toInt(byte[] address) {
+        return ((address[0] & 0xff) << 24) | ((address[1] & 0xff) << 16) | ((address[2] & 0xff) << 8) | (address[3] & 0xff);
+    }
+
+    static String toDottedQuad(int address) {
+        return ((address >>> 24) & 0xff) + "." + ((address >>> 16) & 0xff) + "." + ((address >>> 8) & 0xff) + "." + (address & 0xff);
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.mybasicapp.persistence;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.mybasicapp.model.DeviceRegistry;
+import com.example.mybasicapp.model.EspDevice;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Append-only journal for the {@link DeviceRegistry}. Each change appends one line instead of
+ * re-serializing the whole device list:
+ * <pre>
+ *   U&lt;TAB&gt;{"name":"...","address":"..."}   upsert
+ *   R&lt;TAB&gt;address-key                      remove
+ * </pre>
+ * Replaying the lines in order reproduces the registry. When the journal holds too many
+ * superseded lines it is compacted (rewritten from the current snapshot to a temp file and
+ * renamed over the journal). All writes happen on one background thread, in order.
+ */
+public class DeviceJournalStore implements DeviceRegistry.ChangeListener {
+    private static final String TAG = "DeviceJournalStore_DBG";
+
+    private static final char OP_UPSERT = 'U';
+    private static final char OP_REMOVE = 'R';
+    private static final int COMPACTION_SLACK_LINES = 64;
+
+    private final File journalFile;
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "DeviceJournalStore");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only touched on ioExecutor after load()
+    private int journalLineCount = 0;
+    private final Set<String> liveKeys = new HashSet<>();
+
+    public DeviceJournalStore(@NonNull File journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    public boolean exists() {
+        return journalFile.exists();
+    }
+
+    /**
+     * Replays the journal. Call once, before the store is attached to a registry.
+     * Malformed lines are skipped.
+     */
+    @NonNull
+    public List<EspDevice> load() {
+        final int[] lineCount = new int[1];
+        final List<EspDevice> devices = replay(journalFile, lineCount);
+        ioExecutor.execute(() -> resetCounters(lineCount[0], devices));
+        Log.d(TAG, "Loaded " + devices.size() + " devices from " + lineCount[0] + " journal lines.");
+        return devices;
+    }
+
+    /** Rewrites the journal from a full list. */
+    public void writeSnapshot(@NonNull List<EspDevice> devices) {
+        writeSnapshot(devices, null);
+    }
+
+    /**
+     * Rewrites the journal from a full list, e.g. when migrating from the old JSON-in-prefs format.
+     * @param onWritten Runs on the I/O thread once the snapshot is synced to disk and has replaced
+     *                  the journal; not run if writing fails. Delete the migrated source from here.
+     */
+    public void writeSnapshot(@NonNull List<EspDevice> devices, @Nullable Runnable onWritten) {
+        final List<EspDevice> copy = new ArrayList<>(devices);
+        ioExecutor.execute(() -> {
+            if (compact(copy) && onWritten != null) onWritten.run();
+        });
+    }
+
+    @Override
+    public void onDeviceUpserted(@NonNull EspDevice device) {
+        final String key = device.getAddressKey();
+        final String line = OP_UPSERT + "\t" + device.toJson().toString();
+        ioExecutor.execute(() -> {
+            liveKeys.add(key);
+            append(line);
+        });
+    }
+
+    @Override
+    public void onDeviceRemoved(@NonNull String addressKey) {
+        final String line = OP_REMOVE + "\t" + addressKey;
+        ioExecutor.execute(() -> {
+            liveKeys.remove(addressKey);
+            append(line);
+        });
+    }
+
+    @Override
+    public void onDevicesReplaced(@NonNull List<EspDevice> snapshot) {
+        writeSnapshot(snapshot);
+    }
+
+    /** Stops the I/O thread once the writes already handed to it are done. Doesn't wait for them. */
+    public void close() {
+        ioExecutor.shutdown();
+    }
+
+    private void append(String line) {
+        try (FileOutputStream fos = new FileOutputStream(journalFile, true);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+            writer.write(line);
+            writer.write('\n');
+            writer.flush();
+            fos.getFD().sync();
+            journalLineCount++;
+        } catch (IOException e) {
+            Log.e(TAG, "append: Error writing device journal " + journalFile.getAbsolutePath(), e);
+        }
+        if (journalLineCount > 2 * liveKeys.size() + COMPACTION_SLACK_LINES) {
+            Log.d(TAG, "Journal has " + journalLineCount + " lines for " + liveKeys.size() + " records, compacting.");
+            compact(replay(journalFile, new int[1]));
+        }
+    }
+
+    /** @return Whether the journal now holds exactly {@code devices}. */
+    private boolean compact(List<EspDevice> devices) {
+        File tempFile = new File(journalFile.getParentFile(), journalFile.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tempFile, false);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+            for (EspDevice device : devices) {
+                writer.write(OP_UPSERT);
+                writer.write('\t');
+                writer.write(device.toJson().toString());
+                writer.write('\n');
+            }
+            writer.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "compact: Error writing " + tempFile.getAbsolutePath(), e);
+            return false;
+        }
+        if (!tempFile.renameTo(journalFile)) {
+            Log.e(TAG, "compact: Could not replace journal with compacted file.");
+            return false;
+        }
+        resetCounters(devices.size(), devices);
+        return true;
+    }
+
+    private void resetCounters(int lineCount, List<EspDevice> devices) {
+        journalLineCount = lineCount;
+        liveKeys.clear();
+        for (EspDevice device : devices) liveKeys.add(device.getAddressKey());
+    }
+
+    private static List<EspDevice> replay(File file, int[] lineCountOut) {
+        Map<String, EspDevice> devices = new LinkedHashMap<>();
+        if (!file.exists()) return new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() < 2 || line.charAt(1) != '\t') continue;
+                lineCountOut[0]++;
+                String payload = line.substring(2);
+                try {
+                    if (line.charAt(0) == OP_UPSERT) {
+                        EspDevice device = EspDevice.fromJson(new JSONObject(payload));
+                        devices.put(device.getAddressKey(), device);
+                    } else if (line.charAt(0) == OP_REMOVE) {
+                        devices.remove(payload);
+                    }
+                } catch (JSONException e) {
+                    Log.w(TAG, "replay: Skipping malformed journal line: " + line);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "replay: Error reading device journal " + file.getAbsolutePath(), e);
+        }
+        return new ArrayList<>(devices.values());
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.mybasicapp.persistence;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.mybasicapp.model.DiscoveredService;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Process-wide cache of resolved NSD services (name, host, port, type, last seen), persisted to a
+ * small JSON file so the Devices tab can show previously found sensors immediately while a new
+ * discovery revalidates them in the background.
+ * <p>
+ * Entries older than {@link #DEFAULT_TTL_MS} are treated as gone and dropped on the next write;
+ * entries a complete discovery run for their type didn't find are dropped with {@link #removeNotSeenSince}.
+ * The cache also answers "{@code <service name>.local}" lookups so HTTP clients can skip mDNS
+ * hostname resolution for devices that were recently resolved (ESP firmware registers its mDNS
+ * hostname under the same name as its service).
+ */
+public class DiscoveryCache {
+    private static final String TAG = "DiscoveryCache_DBG";
+
+    private static final String CACHE_FILE_NAME = "discovery_cache.json";
+    public static final long DEFAULT_TTL_MS = 24L * 60 * 60 * 1000; // A day
+
+    /** One cached service. Immutable. */
+    public static final class Entry {
+        @NonNull public final DiscoveredService service;
+        public final long lastSeenMs;
+
+        Entry(@NonNull DiscoveredService service, long lastSeenMs) {
+            this.service = service;
+            this.lastSeenMs = lastSeenMs;
+        }
+    }
+
+    private static volatile DiscoveryCache instance;
+
+    private final File cacheFile;
+    private final long ttlMs;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(); // Guarded by "this"
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "DiscoveryCache");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean savePending = new AtomicBoolean(false);
+
+    @NonNull
+    public static DiscoveryCache getInstance(@NonNull Context context) {
+        if (instance == null) {
+            synchronized (DiscoveryCache.class) {
+                if (instance == null) {
+                    Context appContext = context.getApplicationContext();
+                    instance = new DiscoveryCache(new File(appContext.getFilesDir(), CACHE_FILE_NAME), DEFAULT_TTL_MS);
+                }
+            }
+        }
+        return instance;
+    }
+
+    DiscoveryCache(@NonNull File cacheFile, long ttlMs) {
+        this.cacheFile = cacheFile;
+        this.ttlMs = ttlMs;
+        load(); // Small file (one line per sensor); read synchronously so the first query sees it
+    }
+
+    /** Records a freshly resolved service (or refreshes its last-seen time). Ignores services without a host. */
+    public void put(@NonNull DiscoveredService service) {
+        if (!service.isValid()) return;
+        synchronized (this) {
+            String key = keyOf(service.getServiceName(), service.getType());
+            entries.remove(key); // Re-insert so iteration order is least to most recently seen
+            entries.put(key, new Entry(service, System.currentTimeMillis()));
+        }
+        scheduleSave();
+    }
+
+    /** Non-expired entries, most recently seen first. */
+    @NonNull
+    public List<Entry> getFreshEntries() {
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        List<Entry> fresh = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                if (entry.lastSeenMs >= cutoff) fresh.add(entry);
+            }
+        }
+        Collections.reverse(fresh);
+        return fresh;
+    }
+
+    /**
+     * Cached IP for an mDNS hostname such as "mrcoopersesp.local", or null if unknown or expired.
+     */
+    @Nullable
+    public String lookupHostAddress(@Nullable String hostname) {
+        if (hostname == null) return null;
+        String host = hostname.toLowerCase(Locale.ROOT);
+        if (host.endsWith(".")) host = host.substring(0, host.length() - 1);
+        if (!host.endsWith(".local")) return null;
+        String serviceName = host.substring(0, host.length() - ".local".length());
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                if (entry.lastSeenMs >= cutoff && entry.service.getServiceName().equalsIgnoreCase(serviceName)) {
+                    return entry.service.getHostAddress();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops entries of {@code type} last seen before {@code sinceMs} (wall clock), e.g. those a
+     * complete discovery run for that type didn't find. Returns the dropped entries.
+     */
+    @NonNull
+    public List<Entry> removeNotSeenSince(@NonNull String type, long sinceMs) {
+        String wantedType = bareType(type);
+        List<Entry> removed = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.lastSeenMs < sinceMs && bareType(entry.service.getType()).equals(wantedType)) {
+                    iterator.remove();
+                    removed.add(entry);
+                }
+            }
+        }
+        if (!removed.isEmpty()) {
+            Log.d(TAG, "Dropped " + removed.size() + " services not seen since " + sinceMs);
+            scheduleSave();
+        }
+        return removed;
+    }
+
+    /** Drops cached addresses for this hostname, e.g. after connecting to the cached address failed. */
+    public void invalidateHost(@Nullable String hostname) {
+        if (hostname == null) return;
+        String serviceName = hostname.toLowerCase(Locale.ROOT).replaceFirst("\\.$", "").replaceFirst("\\.local$", "");
+        boolean removed = false;
+        synchronized (this) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().service.getServiceName().equalsIgnoreCase(serviceName)) {
+                    iterator.remove();
+                    removed = true;
+                }
+            }
+        }
+        if (removed) {
+            Log.d(TAG, "Invalidated cached address for " + hostname);
+            scheduleSave();
+        }
+    }
+
+    private static String keyOf(String serviceName, String type) {
+        String normalizedType = type != null ? type.replaceFirst("^\\.", "").replaceFirst("\\.$", "") : "";
+        return serviceName.toLowerCase(Locale.ROOT) + "|" + normalizedType.toLowerCase(Locale.ROOT);
+    }
+
+    /** "_http._tcp" for NsdManager's "._http._tcp." and the querier's "_http._tcp.local". */
+    private static String bareType(String type) {
+        if (type == null) return "";
+        return type.toLowerCase(Locale.ROOT).replaceFirst("^\\.", "").replaceFirst("\\.$", "").replaceFirst("\\.local$", "");
+    }
+
+    private void scheduleSave() {
+        // Bursts of resolves during a scan collapse into one write
+        if (savePending.compareAndSet(false, true)) {
+            ioExecutor.execute(() -> {
+                savePending.set(false);
+                save();
+            });
+        }
+    }
+
+    private void save() {
+        JSONArray array = new JSONArray();
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        synchronized (this) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.lastSeenMs < cutoff) {
+                    iterator.remove();
+                    continue;
+                }
+                try {
+                    JSONObject json = new JSONObject();
+                    json.put("name", entry.service.getServiceName());
+                    json.put("host", entry.service.getHostAddress());
+                    json.put("port", entry.service.getPort());
+                    json.put("type", entry.service.getType());
+                    json.put("lastSeen", entry.lastSeenMs);
+                    array.put(json);
+                } catch (JSONException e) {
+                    Log.e(TAG, "save: Error serializing " + entry.service, e);
+                }
+            }
+        }
+        File tempFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tempFile, false);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+            writer.write(array.toString());
+            writer.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "save: Error writing " + tempFile.getAbsolutePath(), e);
+            return;
+        }
+        if (!tempFile.renameTo(cacheFile)) {
+            Log.e(TAG, "save: Could not replace " + cacheFile.getAbsolutePath());
+        }
+    }
+
+    private void load() {
+        if (!cacheFile.exists()) return;
+        StringBuilder content = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), StandardCharsets.UTF_8))) {
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) content.append(buffer, 0, read);
+        } catch (IOException e) {
+            Log.e(TAG, "load: Error reading " + cacheFile.getAbsolutePath(), e);
+            return;
+        }
+        try {
+            JSONArray array = new JSONArray(content.toString());
+            synchronized (this) {
+                for (int i = 0; i < array.length(); i++) {
+                    JSONObject json = array.getJSONObject(i);
+                    DiscoveredService service = new DiscoveredService(json.getString("name"), json.optString("host", null),
+                            json.optInt("port", 80), json.optString("type", ""));
+                    entries.put(keyOf(service.getServiceName(), service.getType()), new Entry(service, json.optLong("lastSeen", 0)));
+                }
+            }
+            Log.d(TAG, "Loaded " + entries.size() + " cached services.");
+        } catch (JSONException e) {
+            Log.e(TAG, "load: Corrupt discovery cache, starting empty.", e);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.mybasicapp.persistence;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.mybasicapp.model.PendingConfigChange;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Write-ahead log for {@link com.example.mybasicapp.network.PendingConfigQueue}. A change is
+ * appended and fsynced before {@link #appendQueued} returns, and a done record is appended once the
+ * device accepted it, so changes queued for an offline device survive an app restart:
+ * <pre>
+ *   Q&lt;TAB&gt;{"address":"...","field":"...","value":75.0,"seq":12,...}   queued
+ *   D&lt;TAB&gt;{"key":"...","field":"...","seq":12}                        written or dropped
+ * </pre>
+ * Replay keeps, per device and field, the queued change with the highest seq unless a done record
+ * covers it. Compacted like {@link DeviceJournalStore}. All writes happen on one background thread, in order.
+ */
+public class PendingConfigJournal {
+    private static final String TAG = "PendingConfigJournal_DBG";
+
+    private static final char OP_QUEUED = 'Q';
+    private static final char OP_DONE = 'D';
+    private static final int COMPACTION_SLACK_LINES = 64;
+
+    private final File journalFile;
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "PendingConfigJournal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only touched on ioExecutor after load()
+    private int journalLineCount = 0;
+    private int liveCount = 0;
+
+    public PendingConfigJournal(@NonNull File journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    /** Replays the journal. Call once, before anything is appended. Malformed lines are skipped. */
+    @NonNull
+    public List<PendingConfigChange> load() {
+        final int[] lineCount = new int[1];
+        final List<PendingConfigChange> changes = replay(journalFile, lineCount);
+        ioExecutor.execute(() -> {
+            journalLineCount = lineCount[0];
+            liveCount = changes.size();
+        });
+        Log.d(TAG, "Loaded " + changes.size() + " pending config changes from " + lineCount[0] + " journal lines.");
+        return changes;
+    }
+
+    /**
+     * Records a change that replaces any earlier one for the same device and field, and waits until
+     * it is on disk. Blocks on file I/O; don't call on the main thread.
+     * @return False if the write failed or was interrupted; the change then only lives in memory.
+     */
+    public boolean appendQueued(@NonNull PendingConfigChange change) {
+        final String line = OP_QUEUED + "\t" + change.toJson().toString();
+        Future<Boolean> written = ioExecutor.submit(() -> {
+            liveCount++; // Upper bound; compaction recounts
+            return append(line);
+        });
+        try {
+            return written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // The write still happens, we just don't wait for it
+            return false;
+        } catch (ExecutionException | RejectedExecutionException e) {
+            Log.e(TAG, "appendQueued: Journal write did not run", e);
+            return false;
+        }
+    }
+
+    /** Records that {@code change} (and anything older for the same field) no longer needs sending. */
+    public void appendDone(@NonNull PendingConfigChange change) {
+        JSONObject payload = new JSONObject();
+        try {
+            payload.put("key", change.addressKey);
+            payload.put("field", change.field);
+            payload.put("seq", change.seq);
+        } catch (JSONException e) {
+            return; // Fixed keys; not expected
+        }
+        final String line = OP_DONE + "\t" + payload.toString();
+        ioExecutor.execute(() -> {
+            liveCount = Math.max(0, liveCount - 1);
+            append(line);
+        });
+    }
+
+    /**
+     * Stops the I/O thread once the writes already handed to it are done. Doesn't wait for them, so
+     * it is safe on the main thread; queued changes are on disk already (see {@link #appendQueued}).
+     */
+    public void close() {
+        ioExecutor.shutdown();
+    }
+
+    /** @return Whether the line reached the disk. */
+    private boolean append(String line) {
+        boolean written = false;
+        try (FileOutputStream fos = new FileOutputStream(journalFile, true);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+            writer.write(line);
+            writer.write('\n');
+            writer.flush();
+            fos.getFD().sync();
+            journalLineCount++;
+            written = true;
+        } catch (IOException e) {
+            Log.e(TAG, "append: Error writing pending config journal " + journalFile.getAbsolutePath(), e);
+        }
+        if (journalLineCount > 2 * liveCount + COMPACTION_SLACK_LINES) {
+            Log.d(TAG, "Journal has " + journalLineCount + " lines for " + liveCount + " pending changes, compacting.");
+            compact(replay(journalFile, new int[1]));
+        }
+        return written;
+    }
+
+    private void compact(List<PendingConfigChange> changes) {
+        File tempFile = new File(journalFile.getParentFile(), journalFile.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tempFile, false);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+            for (PendingConfigChange change : changes) {
+                writer.write(OP_QUEUED);
+                writer.write('\t');
+                writer.write(change.toJson().toString());
+                writer.write('\n');
+            }
+            writer.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "compact: Error writing " + tempFile.getAbsolutePath(), e);
+            return;
+        }
+        if (!tempFile.renameTo(journalFile)) {
+            Log.e(TAG, "compact: Could not replace journal with compacted file.");
+            return;
+        }
+        journalLineCount = changes.size();
+        liveCount = changes.size();
+    }
+
+    private static List<PendingConfigChange> replay(File file, int[] lineCountOut) {
+        Map<String, PendingConfigChange> changes = new LinkedHashMap<>(); // Keyed by address key + field
+        if (!file.exists()) return new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() < 2 || line.charAt(1) != '\t') continue;
+                lineCountOut[0]++;
+                try {
+                    JSONObject payload = new JSONObject(line.substring(2));
+                    if (line.charAt(0) == OP_QUEUED) {
+                        PendingConfigChange change = PendingConfigChange.fromJson(payload);
+                        String slot = change.addressKey + "\n" + change.field;
+                        PendingConfigChange existing = changes.get(slot);
+                        if (existing == null || existing.seq < change.seq) changes.put(slot, change);
+                    } else if (line.charAt(0) == OP_DONE) {
+                        String slot = payload.getString("key") + "\n" + payload.getString("field");
+                        PendingConfigChange existing = changes.get(slot);
+                        if (existing != null && existing.seq <= payload.getLong("seq")) changes.remove(slot);
+                    }
+                } catch (JSONException e) {
+                    Log.w(TAG, "replay: Skipping malformed journal line: " + line);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "replay: Error reading pending config journal " + file.getAbsolutePath(), e);
+        }
+        return new ArrayList<>(changes.values());
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.mybasicapp.persistence;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Write-behind layer over {@link SharedPreferences} for values that change far more often than
+ * they need to hit disk (e.g. the last sensor sample).
+ * <p>
+ * Writes only update an in-memory map of pending values. The map is committed as a single
+ * {@code edit().apply()} at most once per {@code minFlushIntervalMs}, so the number of XML
+ * rewrites does not grow with the write rate. Call {@link #flush()} when the process is going
+ * to the background or the owner is being cleared so nothing pending is lost.
+ */
+public class WriteBehindPreferences {
+    private static final String TAG = "WriteBehindPrefs_DBG";
+
+    /** Marks a key whose pending write is a removal. */
+    private static final Object REMOVED = new Object();
+
+    private final SharedPreferences sharedPreferences;
+    private final long minFlushIntervalMs;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, Object> pendingWrites = new HashMap<>();
+    private long lastFlushAtMs = 0;
+    private boolean flushScheduled = false;
+
+    private final Runnable flushRunnable = this::flush;
+
+    public WriteBehindPreferences(@NonNull SharedPreferences sharedPreferences, long minFlushIntervalMs) {
+        this.sharedPreferences = sharedPreferences;
+        this.minFlushIntervalMs = minFlushIntervalMs;
+    }
+
+    /**
+     * Stages a string value. A null value removes the key. Later writes to the same key
+     * replace earlier ones that have not been flushed yet.
+     */
+    public void putString(@NonNull String key, @Nullable String value) {
+        synchronized (pendingWrites) {
+            pendingWrites.put(key, value != null ? value : REMOVED);
+        }
+        scheduleFlush();
+    }
+
+    /** Reads a value, seeing staged writes before they reach disk. */
+    @Nullable
+    public String getString(@NonNull String key, @Nullable String defaultValue) {
+        synchronized (pendingWrites) {
+            Object pending = pendingWrites.get(key);
+            if (pending == REMOVED) return defaultValue;
+            if (pending != null) return (String) pending;
+        }
+        return sharedPreferences.getString(key, defaultValue);
+    }
+
+    /** Commits all staged writes in one editor transaction. Safe to call from any thread. */
+    public void flush() {
+        Map<String, Object> toWrite;
+        synchronized (pendingWrites) {
+            handler.removeCallbacks(flushRunnable);
+            flushScheduled = false;
+            lastFlushAtMs = SystemClock.uptimeMillis();
+            if (pendingWrites.isEmpty()) return;
+            toWrite = new HashMap<>(pendingWrites);
+            pendingWrites.clear();
+        }
+        SharedPreferences.Editor editor = sharedPreferences.edit();
+        for (Map.Entry<String, Object> entry : toWrite.entrySet()) {
+            if (entry.getValue() == REMOVED) {
+                editor.remove(entry.getKey());
+            } else {
+                editor.putString(entry.getKey(), (String) entry.getValue());
+            }
+        }
+        editor.apply();
+        Log.v(TAG, "Flushed " + toWrite.size() + " pending preference writes.");
+    }
+
+    private void scheduleFlush() {
+        synchronized (pendingWrites) {
+            if (flushScheduled) return;
+            flushScheduled = true;
+            long sinceLastFlush = SystemClock.uptimeMillis() - lastFlushAtMs;
+            handler.postDelayed(flushRunnable, Math.max(0, minFlushIntervalMs - sinceLastFlush));
+        }
+    }
+}
@@ -1,31 +1,54 @@
 package com.example.mybasicapp.viewmodels;
 
 import android.app.Application;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.content.res.Configuration;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
 
+import com.example.mybasicapp.model.DeviceRegistry;
+import com.example.mybasicapp.model.DeviceStatus;
 import com.example.mybasicapp.model.EspDevice; // We will create this POJO next
+import com.example.mybasicapp.network.DeviceConfigRepository;
+import com.example.mybasicapp.network.DeviceHealthProber;
+import com.example.mybasicapp.network.ConfigTransaction;
+import com.example.mybasicapp.network.EspConfigClient;
+import com.example.mybasicapp.network.PendingConfigQueue;
+import com.example.mybasicapp.persistence.DeviceJournalStore;
+import com.example.mybasicapp.persistence.PendingConfigJournal;
+import com.example.mybasicapp.persistence.WriteBehindPreferences;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class AppViewModel extends AndroidViewModel {
     private static final String TAG = "AppViewModel_DBG";
 
     // SharedPreferences for AppViewModel specific data (distinct from service or fragment prefs if needed)
     private static final String PREFS_APP_VIEW_MODEL = "AppViewModelPrefs";
-    private static final String PREF_ESP_DEVICES_LIST = "esp_devices_list_v2"; // Changed key to avoid conflict with old format
+    private static final String PREF_ESP_DEVICES_LIST = "esp_devices_list_v2"; // Legacy, migrated into DEVICE_JOURNAL_FILE
+    private static final String DEVICE_JOURNAL_FILE = "esp_devices.journal";
+    private static final String PENDING_CONFIG_JOURNAL_FILE = "pending_config.journal";
     private static final String PREF_ACTIVE_ESP_ADDRESS = "active_esp_address_v2";
     private static final String PREF_LAST_SERVICE_STATUS = "last_service_status";
     private static final String PREF_LAST_SENSOR_JSON_DATA = "last_sensor_json_data";
@@ -37,14 +60,72 @@ public class AppViewModel extends AndroidViewModel {
     private final MutableLiveData<String> lastSensorJsonDataLiveData = new MutableLiveData<>(); // To hold raw JSON from ESP
 
     private final SharedPreferences sharedPreferences;
+    // Devices are indexed by canonical address; the journal persists only the records that change
+    private final DeviceRegistry deviceRegistry = new DeviceRegistry();
+    private final DeviceJournalStore deviceStore;
+    // Batched (~1/s) per-device health results; keyed by EspDevice.getAddressKey()
+    private final MutableLiveData<Map<String, DeviceStatus>> deviceStatusesLiveData = new MutableLiveData<>(Collections.emptyMap());
+    private final DeviceHealthProber deviceHealthProber;
+    private boolean healthProbingRequested = false; // By a visible screen; guarded by "this"
+    // One cached /get_config per ESP, shared by the config screens
+    private final DeviceConfigRepository deviceConfigRepository;
+    private final LiveData<DeviceConfigRepository.ConfigState> activeDeviceConfigLiveData;
+    // Threshold/calibration changes for unreachable ESPs, written when the health check sees them again
+    private final PendingConfigJournal pendingConfigJournal;
+    private final PendingConfigQueue pendingConfigQueue;
+    // Loads, queues and supersedes for pendingConfigQueue, in order and off the main thread (they wait for the journal)
+    private final ExecutorService pendingConfigExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "PendingConfigQueue");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Frequently changing values (status, samples) are staged here and written at most once per interval
+    private static final long PREFS_FLUSH_INTERVAL_MS = 5000;
+    private final WriteBehindPreferences writeBehindPrefs;
+
+    // Flushes staged values when the app's UI goes to the background
+    private final ComponentCallbacks2 backgroundFlushCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+                Log.d(TAG, "onTrimMemory(" + level + "): Flushing pending preference writes.");
+                writeBehindPrefs.flush();
+            }
+        }
+        @Override public void onConfigurationChanged(@NonNull Configuration newConfig) {}
+        @Override public void onLowMemory() { writeBehindPrefs.flush(); }
+    };
 
     public AppViewModel(@NonNull Application application) {
         super(application);
         sharedPreferences = application.getSharedPreferences(PREFS_APP_VIEW_MODEL, Context.MODE_PRIVATE);
-        loadEspDevicesFromPrefs();
+        writeBehindPrefs = new WriteBehindPreferences(sharedPreferences, PREFS_FLUSH_INTERVAL_MS);
+        application.registerComponentCallbacks(backgroundFlushCallbacks);
+        deviceStore = new DeviceJournalStore(new File(application.getFilesDir(), DEVICE_JOURNAL_FILE));
+        deviceHealthProber = new DeviceHealthProber(application, this::onDeviceStatusesUpdated);
+        EspConfigClient espConfigClient = new EspConfigClient(application);
+        deviceConfigRepository = new DeviceConfigRepository(espConfigClient, DeviceConfigRepository.DEFAULT_TTL_MS);
+        pendingConfigJournal = new PendingConfigJournal(new File(application.getFilesDir(), PENDING_CONFIG_JOURNAL_FILE));
+        pendingConfigQueue = new PendingConfigQueue(espConfigClient, pendingConfigJournal, new PendingConfigQueue.Listener() {
+            @Override
+            public void onPendingCountChanged(int pendingChanges) {
+                updateHealthProbing(); // Keep probing while something waits for a device to come back
+            }
+
+            @Override
+            public void onChangesDelivered(@NonNull String address, @NonNull Set<String> fields) {
+                invalidateDeviceConfig(address); // Thread-safe; observers get the delivered values
+            }
+        });
+        activeDeviceConfigLiveData = Transformations.switchMap(activeEspAddressLiveData, address ->
+                address == null || address.isEmpty()
+                        ? new MutableLiveData<>(DeviceConfigRepository.ConfigState.EMPTY)
+                        : deviceConfigRepository.observe(address));
+        loadEspDevices();
         loadActiveEspAddressFromPrefs();
         loadLastServiceStatusFromPrefs();
         loadLastSensorDataFromPrefs();
+        pendingConfigExecutor.execute(pendingConfigQueue::load); // Reports changes from an earlier session, which starts probing
     }
 
     // --- ESP Devices List ---
@@ -53,24 +134,10 @@ public class AppViewModel extends AndroidViewModel {
     }
 
     public void addEspDevice(EspDevice device) {
-        List<EspDevice> currentList = espDevicesLiveData.getValue();
-        if (currentList == null) {
-            currentList = new ArrayList<>();
-        }
-        // Avoid duplicates based on address
-        boolean exists = false;
-        for (EspDevice existingDevice : currentList) {
-            if (existingDevice.getAddress().equalsIgnoreCase(device.getAddress())) {
-                exists = true;
-                break;
-            }
-        }
-        if (!exists) {
-            currentList.add(device);
-            espDevicesLiveData.setValue(new ArrayList<>(currentList)); // Post a new list to trigger observers
-            saveEspDevicesToPrefs();
+        if (deviceRegistry.add(device)) {
+            publishDeviceSnapshot();
             // If this is the first device added and no active ESP, make it active
-            if (currentList.size() == 1 && (activeEspAddressLiveData.getValue() == null || activeEspAddressLiveData.getValue().isEmpty())) {
+            if (deviceRegistry.size() == 1 && (activeEspAddressLiveData.getValue() == null || activeEspAddressLiveData.getValue().isEmpty())) {
                 setActiveEspAddress(device.getAddress());
             }
         } else {
@@ -79,62 +146,46 @@ public class AppViewModel extends AndroidViewModel {
     }
 
     public void updateEspDevice(int index, EspDevice device) {
-        List<EspDevice> currentList = espDevicesLiveData.getValue();
-        if (currentList != null && index >= 0 && index < currentList.size()) {
-            // Check if new address conflicts with an existing different device
-            for (int i=0; i < currentList.size(); i++) {
-                if (i != index && currentList.get(i).getAddress().equalsIgnoreCase(device.getAddress())) {
-                    Log.w(TAG, "Cannot update device at index " + index + ": new address " + device.getAddress() + " conflicts with existing device.");
-                    // Optionally notify UI about the conflict
-                    return;
-                }
+        List<EspDevice> currentList = deviceRegistry.getSnapshot();
+        if (index >= 0 && index < currentList.size()) {
+            String oldAddress = currentList.get(index).getAddress();
+            if (!deviceRegistry.update(oldAddress, device)) {
+                Log.w(TAG, "Cannot update device at index " + index + ": new address " + device.getAddress() + " conflicts with existing device.");
+                // Optionally notify UI about the conflict
+                return;
+            }
+            publishDeviceSnapshot();
+            // Keep the active selection on the edited device if its address changed
+            String active = activeEspAddressLiveData.getValue();
+            if (active != null && EspDevice.canonicalAddress(active).equals(EspDevice.canonicalAddress(oldAddress))
+                    && !deviceRegistry.contains(active)) {
+                setActiveEspAddress(device.getAddress());
             }
-            currentList.set(index, device);
-            espDevicesLiveData.setValue(new ArrayList<>(currentList));
-            saveEspDevicesToPrefs();
         }
     }
 
 
     public void removeEspDevice(EspDevice deviceToRemove) {
-        List<EspDevice> currentList = espDevicesLiveData.getValue();
-        if (currentList != null) {
-            boolean removed = currentList.removeIf(espDevice -> espDevice.getAddress().equalsIgnoreCase(deviceToRemove.getAddress()));
-            if (removed) {
-                espDevicesLiveData.setValue(new ArrayList<>(currentList));
-                saveEspDevicesToPrefs();
-                // If the removed device was the active one, clear active or select another
-                if (Objects.equals(activeEspAddressLiveData.getValue(), deviceToRemove.getAddress())) {
-                    setActiveEspAddress(currentList.isEmpty() ? null : currentList.get(0).getAddress());
-                }
+        if (deviceRegistry.remove(deviceToRemove.getAddress())) {
+            String removedAddress = deviceToRemove.getAddress();
+            pendingConfigExecutor.execute(() -> pendingConfigQueue.discard(removedAddress));
+            List<EspDevice> currentList = publishDeviceSnapshot();
+            // If the removed device was the active one, clear active or select another
+            String active = activeEspAddressLiveData.getValue();
+            if (active != null && !deviceRegistry.contains(active)) {
+                setActiveEspAddress(currentList.isEmpty() ? null : currentList.get(0).getAddress());
             }
         }
     }
     
     public void setEspDevicesList(List<EspDevice> newDevicesList) {
-        // Ensure no duplicate addresses in the new list
-        List<EspDevice> uniqueList = new ArrayList<>();
-        List<String> addresses = new ArrayList<>();
-        for (EspDevice device : newDevicesList) {
-            if (!addresses.contains(device.getAddress().toLowerCase())) {
-                uniqueList.add(device);
-                addresses.add(device.getAddress().toLowerCase());
-            }
-        }
-        espDevicesLiveData.setValue(uniqueList);
-        saveEspDevicesToPrefs();
+        deviceRegistry.replaceAll(newDevicesList, true); // Drops duplicate addresses, first one wins
+        List<EspDevice> uniqueList = publishDeviceSnapshot();
 
         // Check if current active ESP is still in the new list
         String currentActive = activeEspAddressLiveData.getValue();
         if (currentActive != null) {
-            boolean activeFound = false;
-            for (EspDevice device : uniqueList) {
-                if (device.getAddress().equalsIgnoreCase(currentActive)) {
-                    activeFound = true;
-                    break;
-                }
-            }
-            if (!activeFound) {
+            if (!deviceRegistry.contains(currentActive)) {
                 setActiveEspAddress(uniqueList.isEmpty() ? null : uniqueList.get(0).getAddress());
             }
         } else if (!uniqueList.isEmpty()) {
@@ -143,18 +194,128 @@ public class AppViewModel extends AndroidViewModel {
     }
 
 
-    private void saveEspDevicesToPrefs() {
-        List<EspDevice> currentList = espDevicesLiveData.getValue();
-        if (currentList == null) return;
-        JSONArray jsonArray = new JSONArray();
-        for (EspDevice device : currentList) {
-            jsonArray.put(device.toJson());
+    // Immutable snapshot, observers need no copy
+    private List<EspDevice> publishDeviceSnapshot() {
+        List<EspDevice> snapshot = deviceRegistry.getSnapshot();
+        espDevicesLiveData.setValue(snapshot);
+        deviceHealthProber.setDevices(snapshot);
+        return snapshot;
+    }
+
+    // --- Device Health (Devices tab status rows) ---
+    public LiveData<Map<String, DeviceStatus>> getDeviceStatusesLiveData() {
+        return deviceStatusesLiveData;
+    }
+
+    /** Starts probing all saved devices. Call while a screen showing device status is visible. */
+    public synchronized void startDeviceHealthProbing() {
+        healthProbingRequested = true;
+        updateHealthProbing();
+    }
+
+    /** Probing continues in the background while config changes are queued for offline devices. */
+    public synchronized void stopDeviceHealthProbing() {
+        healthProbingRequested = false;
+        updateHealthProbing();
+    }
+
+    private synchronized void updateHealthProbing() {
+        if (healthProbingRequested || pendingConfigQueue.getPendingCount() > 0) {
+            deviceHealthProber.start();
+        } else {
+            deviceHealthProber.stop();
+        }
+    }
+
+    // Main thread, batched by the prober
+    private void onDeviceStatusesUpdated(@NonNull Map<String, DeviceStatus> statuses) {
+        deviceStatusesLiveData.setValue(statuses);
+        pendingConfigQueue.onDeviceStatuses(statuses);
+    }
+
+    // --- Device Config (cached /get_config of the active ESP) ---
+    /** Config of the active ESP; cached values are delivered at once and revalidated after the TTL. */
+    public LiveData<DeviceConfigRepository.ConfigState> getActiveDeviceConfigLiveData() {
+        return activeDeviceConfigLiveData;
+    }
+
+    /** Refetches the active ESP's config; without {@code force} only if the cached one is older than the TTL. */
+    public void refreshActiveDeviceConfig(boolean force) {
+        String address = activeEspAddressLiveData.getValue();
+        if (address != null && !address.isEmpty()) deviceConfigRepository.refresh(address, force);
+    }
+
+    /** Call after writing config to a device so observers get the new values. */
+    public void invalidateDeviceConfig(String address) {
+        if (address != null && !address.isEmpty()) deviceConfigRepository.invalidate(address);
+    }
+
+    // --- Pending Config (changes for unreachable ESPs) ---
+    // All of these return right away; the work runs on pendingConfigExecutor in call order.
+
+    public interface QueuedFieldsCallback {
+        /** On the pending-config thread, once the fields are in the journal. */
+        void onQueued(@NonNull Set<String> fields);
+    }
+
+    /**
+     * Queues the threshold/calibration values a transaction failed to write because the device was
+     * unreachable; they are written when it is seen online again. Any thread.
+     * @param callback Gets the fields that were queued (Wi-Fi settings never are).
+     */
+    public void queueUnappliedConfig(String address, ConfigTransaction transaction, Set<String> appliedFields,
+                                     @NonNull QueuedFieldsCallback callback) {
+        Set<String> applied = new LinkedHashSet<>(appliedFields);
+        pendingConfigExecutor.execute(() ->
+                callback.onQueued(pendingConfigQueue.enqueueUnapplied(address, transaction, applied)));
+    }
+
+    /** Queues one value for an unreachable device, e.g. from a fleet rollout. Any thread. */
+    public void queueConfigChange(String address, String field, double value) {
+        pendingConfigExecutor.execute(() -> pendingConfigQueue.enqueue(address, field, value));
+    }
+
+    /** Call after writing fields directly so older queued values for them are dropped. Any thread. */
+    public void onConfigWritten(String address, Set<String> fields) {
+        if (address == null || address.isEmpty() || fields.isEmpty()) return;
+        List<String> written = new ArrayList<>(fields);
+        pendingConfigExecutor.execute(() -> pendingConfigQueue.supersede(address, written));
+    }
+
+    private void loadEspDevices() {
+        List<EspDevice> loadedList;
+        if (deviceStore.exists() && sharedPreferences.contains(PREF_ESP_DEVICES_LIST)) {
+            // An earlier migration never confirmed its snapshot, but later changes created the
+            // journal: keep the old devices, with the journal's versions taking precedence
+            Map<String, EspDevice> merged = new LinkedHashMap<>();
+            for (EspDevice device : loadLegacyEspDevicesFromPrefs()) merged.put(device.getAddressKey(), device);
+            for (EspDevice device : deviceStore.load()) merged.put(device.getAddressKey(), device);
+            loadedList = new ArrayList<>(merged.values());
+            migrateEspDevices(loadedList);
+        } else if (deviceStore.exists()) {
+            loadedList = deviceStore.load();
+        } else {
+            // First run after the journal was introduced: migrate the old JSON-in-prefs list once.
+            // The old list is only deleted once the snapshot is on disk; until then every launch
+            // migrates it again (see above).
+            loadedList = loadLegacyEspDevicesFromPrefs();
+            migrateEspDevices(loadedList);
         }
-        sharedPreferences.edit().putString(PREF_ESP_DEVICES_LIST, jsonArray.toString()).apply();
-        Log.d(TAG, "Saved ESP devices to prefs: " + jsonArray.toString());
+        deviceRegistry.replaceAll(loadedList, false);
+        deviceRegistry.setChangeListener(deviceStore); // Persist each change from here on
+        publishDeviceSnapshot();
+        Log.d(TAG, "Loaded ESP devices. Count: " + deviceRegistry.size());
     }
 
-    private void loadEspDevicesFromPrefs() {
+    private void migrateEspDevices(List<EspDevice> devices) {
+        deviceStore.writeSnapshot(devices, () -> {
+            if (!sharedPreferences.edit().remove(PREF_ESP_DEVICES_LIST).commit()) {
+                Log.w(TAG, "Could not remove the migrated legacy ESP device list from prefs.");
+            }
+        });
+    }
+
+    private List<EspDevice> loadLegacyEspDevicesFromPrefs() {
         String jsonString = sharedPreferences.getString(PREF_ESP_DEVICES_LIST, "[]");
         List<EspDevice> loadedList = new ArrayList<>();
         try {
@@ -164,10 +325,12 @@ public class AppViewModel extends AndroidViewModel {
                 loadedList.add(EspDevice.fromJson(jsonObject));
             }
         } catch (JSONException e) {
-            Log.e(TAG, "Error loading ESP devices from prefs: " + e.getMessage(), e);
+            Log.e(TAG, "Error loading legacy ESP devices from prefs: " + e.getMessage(), e);
         }
-        espDevicesLiveData.setValue(loadedList);
-        Log.d(TAG, "Loaded ESP devices from prefs. Count: " + loadedList.size());
+        if (!loadedList.isEmpty()) {
+            Log.d(TAG, "Migrating " + loadedList.size() + " ESP devices from prefs to the device journal.");
+        }
+        return loadedList;
     }
 
     // --- Active ESP Address ---
@@ -190,11 +353,12 @@ public class AppViewModel extends AndroidViewModel {
     }
 
     private void saveActiveEspAddressToPrefs(String address) {
-        sharedPreferences.edit().putString(PREF_ACTIVE_ESP_ADDRESS, address).apply();
+        writeBehindPrefs.putString(PREF_ACTIVE_ESP_ADDRESS, address);
+        writeBehindPrefs.flush(); // User selection, rare; persist right away
     }
 
     private void loadActiveEspAddressFromPrefs() {
-        activeEspAddressLiveData.setValue(sharedPreferences.getString(PREF_ACTIVE_ESP_ADDRESS, null));
+        activeEspAddressLiveData.setValue(writeBehindPrefs.getString(PREF_ACTIVE_ESP_ADDRESS, null));
         Log.d(TAG, "Loaded active ESP address from prefs: " + activeEspAddressLiveData.getValue());
     }
 
@@ -209,11 +373,11 @@ public class AppViewModel extends AndroidViewModel {
     }
 
     private void saveLastServiceStatusToPrefs(String status) {
-        sharedPreferences.edit().putString(PREF_LAST_SERVICE_STATUS, status).apply();
+        writeBehindPrefs.putString(PREF_LAST_SERVICE_STATUS, status); // Coalesced, see PREFS_FLUSH_INTERVAL_MS
     }
 
     private void loadLastServiceStatusFromPrefs() {
-        lastServiceStatusLiveData.setValue(sharedPreferences.getString(PREF_LAST_SERVICE_STATUS, "Service status unknown."));
+        lastServiceStatusLiveData.setValue(writeBehindPrefs.getString(PREF_LAST_SERVICE_STATUS, "Service status unknown."));
     }
 
     // --- Last Sensor JSON Data ---
@@ -226,9 +390,24 @@ public class AppViewModel extends AndroidViewModel {
         saveLastSensorDataToPrefs(jsonData);
     }
     private void saveLastSensorDataToPrefs(String jsonData) {
-        sharedPreferences.edit().putString(PREF_LAST_SENSOR_JSON_DATA, jsonData).apply();
+        writeBehindPrefs.putString(PREF_LAST_SENSOR_JSON_DATA, jsonData); // Coalesced, see PREFS_FLUSH_INTERVAL_MS
     }
     private void loadLastSensorDataFromPrefs() {
-        lastSensorJsonDataLiveData.setValue(sharedPreferences.getString(PREF_LAST_SENSOR_JSON_DATA, null));
+        lastSensorJsonDataLiveData.setValue(writeBehindPrefs.getString(PREF_LAST_SENSOR_JSON_DATA, null));
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        getApplication().unregisterComponentCallbacks(backgroundFlushCallbacks);
+        writeBehindPrefs.flush(); // Don't lose the last staged status/sample
+        deviceHealthProber.stop();
+        deviceConfigRepository.shutdown();
+        // Queued changes stay on disk for the next session; the journal closes after queueing still under way
+        pendingConfigExecutor.execute(pendingConfigJournal::close);
+        pendingConfigExecutor.shutdown();
+        deviceRegistry.setChangeListener(null);
+        deviceStore.close(); // Queued journal writes still complete
+        Log.d(TAG, "onCleared: Flushed pending preference writes.");
     }
 }
\ No newline at end of file
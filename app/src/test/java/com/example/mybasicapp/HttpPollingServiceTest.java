@@ -0,0 +1,221 @@
+package com.example.mybasicapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.Manifest;
+import android.app.Application;
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.example.mybasicapp.metrics.CallPhaseStats;
+import com.example.mybasicapp.metrics.EndpointStats;
+import com.example.mybasicapp.metrics.RequestMetrics;
+import com.example.mybasicapp.network.PollScheduler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Budgets for the polling path as it runs in the app: {@link HttpPollingService} with its real
+ * OkHttp client (LocalHostnameDns, MetricsInterceptor, CallTimingListener) and AppLog, polling a
+ * local {@link MockWebServer}. The scheduler runs on the main looper in virtual time, so the
+ * checks are counts and virtual-time latencies, not wall-clock timings that vary with the machine.
+ * Allocations per sample and heap are checked by :core's SamplePathBudgetTest, absolute timings by
+ * the JMH benchmarks.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class HttpPollingServiceTest {
+    private static final long INTERVAL_MS = HttpPollingService.POLLING_INTERVAL_MS;
+    private static final long STEP_MS = 100;          // Virtual time per looper step
+    private static final long WAIT_TIMEOUT_MS = 5000; // Real time allowed for one local HTTP call
+    private static final String QUIET = "{\"db_calibrated\":45.0,\"rms\":0.01,\"status\":\"ok\",\"error\":null}";
+    private static final String LOUD = "{\"db_calibrated\":85.0,\"rms\":0.30,\"status\":\"ok\",\"error\":null}";
+
+    private final Application app = RuntimeEnvironment.getApplication();
+    private MockWebServer server;
+    private HttpUrl url;
+    private volatile int responseCode = 200;
+    private volatile String body = QUIET;
+    private volatile long firstLoudServedAtMs = -1; // Virtual time
+    private ServiceController<HttpPollingService> controller;
+    private HttpPollingService service;
+
+    @Before
+    public void setUp() throws IOException {
+        RequestMetrics.getInstance().reset();
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String responseBody = body;
+                // The virtual clock stands still while a poll is in flight, so this is the poll's start
+                if (LOUD.equals(responseBody) && firstLoudServedAtMs < 0) firstLoudServedAtMs = SystemClock.uptimeMillis();
+                return new MockResponse().setResponseCode(responseCode).setBody(responseBody);
+            }
+        });
+        server.start(); // Any free port
+        url = server.url("/");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (controller != null) controller.destroy();
+        server.shutdown();
+    }
+
+    @Test
+    public void healthyDevice_isPolledOncePerIntervalOverOneConnection() throws InterruptedException {
+        int polls = 24; // One minute
+        startPolling();
+        advance((polls - 1) * INTERVAL_MS);
+
+        assertEquals("Requests", polls, server.getRequestCount());
+        PollScheduler.Stats stats = service.getPollStats();
+        assertEquals("Failed polls", 0, stats.failed);
+        assertEquals("Missed deadlines", 0, stats.missedDeadlines);
+
+        EndpointStats.Snapshot device = deviceSnapshot();
+        assertEquals("Successes recorded by MetricsInterceptor", polls, device.successes);
+        assertEquals("Errors recorded by MetricsInterceptor", 0, device.getRequests() - device.successes);
+        CallPhaseStats.Snapshot phases = phaseSnapshot();
+        assertEquals("Calls timed by CallTimingListener", polls, phases.calls);
+        // Keep-alive: one TCP connect for the whole minute, not one per poll
+        assertTrue("Reused connections " + phases.reusedConnections, phases.reusedConnections >= polls - 1);
+    }
+
+    @Test
+    public void failingDevice_isBackedOffAndResumesWhenItRecovers() throws InterruptedException {
+        responseCode = 500;
+        startPolling();
+        advance(60_000 - STEP_MS);
+
+        // 24 polls a minute when healthy. Backoff doubles from one interval up to the maximum, half
+        // of it random: 6 polls in the first minute at the slowest, 10 at the fastest.
+        int failing = server.getRequestCount();
+        assertTrue("Polls to a failing device in one minute: " + failing, failing >= 6 && failing <= 10);
+        assertEquals(0, service.getPollStats().succeeded);
+
+        responseCode = 200;
+        advance(HttpPollingService.POLLING_MAX_BACKOFF_MS + 4 * INTERVAL_MS);
+        // The next poll (at most one maximum backoff away) succeeds, then the interval applies again
+        PollScheduler.Stats stats = service.getPollStats();
+        assertTrue("Successful polls after recovery: " + stats.succeeded, stats.succeeded >= 5);
+    }
+
+    @Test
+    public void loudReading_raisesAlertWithinOnePollInterval() throws InterruptedException {
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        app.getSharedPreferences(HttpPollingService.PREFS_HOME_FRAGMENT, Context.MODE_PRIVATE).edit()
+                .putBoolean(HttpPollingService.PREF_APP_ALERTS_ENABLED, true)
+                .putInt(HttpPollingService.PREF_APP_ALERT_LEVEL_DB, 70)
+                .commit();
+        startPolling();
+        advance(3 * INTERVAL_MS + INTERVAL_MS / 2);
+        assertEquals("Alerts while quiet", 0, alertNotificationCount());
+
+        body = LOUD;
+        long loudAtMs = SystemClock.uptimeMillis();
+        advance(INTERVAL_MS);
+
+        assertTrue("No poll saw the loud reading", firstLoudServedAtMs >= 0);
+        assertTrue("Alert latency " + (firstLoudServedAtMs - loudAtMs) + " ms",
+                firstLoudServedAtMs - loudAtMs <= INTERVAL_MS);
+        awaitAlertNotification();
+    }
+
+    private void startPolling() throws InterruptedException {
+        Intent intent = new Intent(app, HttpPollingService.class)
+                .setAction(HttpPollingService.ACTION_START_POLLING)
+                .putExtra(HttpPollingService.EXTRA_BASE_URL, "http://" + url.host() + ":" + url.port());
+        controller = Robolectric.buildService(HttpPollingService.class, intent).create().startCommand(0, 1);
+        service = controller.get();
+        advance(0); // The first poll is due right away
+    }
+
+    /**
+     * Moves virtual time forward in small steps. Each poll that falls due runs for real against the
+     * server and is waited for before time moves on, as if the network were instant.
+     */
+    private void advance(long ms) throws InterruptedException {
+        long endMs = SystemClock.uptimeMillis() + ms;
+        do {
+            long stepMs = Math.min(STEP_MS, endMs - SystemClock.uptimeMillis());
+            shadowOf(Looper.getMainLooper()).idleFor(stepMs, TimeUnit.MILLISECONDS);
+            awaitPollsFinished();
+        } while (SystemClock.uptimeMillis() < endMs);
+    }
+
+    private void awaitPollsFinished() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MS;
+        PollScheduler.Stats stats = service.getPollStats();
+        while (stats.started != stats.succeeded + stats.failed) {
+            if (System.currentTimeMillis() > deadline) fail("Poll did not finish: " + stats);
+            Thread.sleep(2);
+            stats = service.getPollStats();
+        }
+        shadowOf(Looper.getMainLooper()).idle(); // Deliver the broadcasts the poll sent
+    }
+
+    private void awaitAlertNotification() throws InterruptedException {
+        // Shown on the HTTP thread after the poll has finished
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MS;
+        while (alertNotificationCount() == 0) {
+            if (System.currentTimeMillis() > deadline) fail("No alert notification was shown");
+            Thread.sleep(2);
+        }
+        assertEquals(1, alertNotificationCount());
+    }
+
+    private int alertNotificationCount() {
+        NotificationManager manager = (NotificationManager) app.getSystemService(Context.NOTIFICATION_SERVICE);
+        int count = 0;
+        for (Notification notification : shadowOf(manager).getAllNotifications()) {
+            if (HttpPollingService.NOTIFICATION_CHANNEL_ID_MESSAGES.equals(notification.getChannelId())) count++;
+        }
+        return count;
+    }
+
+    private String deviceKey() {
+        return url.host() + ":" + url.port(); // As MetricsInterceptor keys it
+    }
+
+    private EndpointStats.Snapshot deviceSnapshot() {
+        for (EndpointStats.Snapshot snapshot : RequestMetrics.getInstance().getDeviceSnapshots()) {
+            if (snapshot.device.equals(deviceKey())) return snapshot;
+        }
+        fail("No request metrics for " + deviceKey());
+        return null;
+    }
+
+    private CallPhaseStats.Snapshot phaseSnapshot() {
+        for (CallPhaseStats.Snapshot snapshot : RequestMetrics.getInstance().getPhaseSnapshots()) {
+            if (snapshot.device.equals(deviceKey())) return snapshot;
+        }
+        fail("No call phase timings for " + deviceKey());
+        return null;
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.mybasicapp.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link ConfigFuture} with futures completed by hand in place of HTTP requests. A "request" here is
+ * a future whose canceller counts how often it was cancelled, as EspConfigClient's would cancel the call.
+ * Robolectric only provides android.util.Log.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class ConfigFutureTest {
+    private static final long WAIT_MS = 2000; // Real time allowed for the timeout thread
+
+    // --- thenCompose ---
+
+    @Test
+    public void cancellingChain_cancelsTheStepInFlight() {
+        ConfigFuture<String> first = new ConfigFuture<>();
+        AtomicInteger firstCancels = cancelCounter(first);
+        ConfigFuture<String> second = new ConfigFuture<>();
+        AtomicInteger secondCancels = cancelCounter(second);
+        ConfigFuture<String> chain = first.thenCompose(body -> second);
+
+        first.complete("ok");
+        assertTrue(chain.cancel());
+
+        assertEquals("Running step cancelled", 1, secondCancels.get());
+        assertTrue(second.isCancelled());
+        assertEquals("Finished step left alone", 0, firstCancels.get());
+        assertTrue(chain.getError() instanceof CancellationException);
+    }
+
+    @Test
+    public void cancellingChain_beforeTheStepStarts_cancelsUpstreamAndNeverStartsIt() {
+        ConfigFuture<String> first = new ConfigFuture<>();
+        AtomicInteger firstCancels = cancelCounter(first);
+        AtomicBoolean started = new AtomicBoolean();
+        ConfigFuture<String> chain = first.thenCompose(body -> {
+            started.set(true);
+            return ConfigFuture.completed("second");
+        });
+
+        chain.cancel();
+        first.complete("late"); // Ignored, the first step was cancelled
+
+        assertEquals(1, firstCancels.get());
+        assertTrue(first.isCancelled());
+        assertFalse("Second step started after cancel", started.get());
+    }
+
+    @Test
+    public void cancelledChain_cancelsAStepThatStartsAnyway() {
+        // The first step finished just before cancel(), so the second one starts; it must not run on
+        ConfigFuture<String> first = new ConfigFuture<>();
+        ConfigFuture<String> second = new ConfigFuture<>();
+        AtomicInteger secondCancels = cancelCounter(second);
+        AtomicReference<ConfigFuture<String>> chainRef = new AtomicReference<>();
+        ConfigFuture<String> chain = first.thenCompose(body -> {
+            chainRef.get().cancel();
+            return second;
+        });
+        chainRef.set(chain);
+
+        first.complete("ok");
+
+        assertTrue(chain.isCancelled());
+        assertEquals(1, secondCancels.get());
+    }
+
+    @Test
+    public void failedStep_failsTheChainWithoutStartingTheNext() {
+        ConfigFuture<String> first = new ConfigFuture<>();
+        AtomicBoolean started = new AtomicBoolean();
+        ConfigFuture<String> chain = first.thenCompose(body -> {
+            started.set(true);
+            return ConfigFuture.completed("second");
+        });
+        IOException failure = new IOException("refused");
+
+        first.fail(failure);
+
+        assertSame(failure, chain.getError());
+        assertFalse(started.get());
+    }
+
+    @Test
+    public void exceptionInThenApply_failsTheStage() {
+        ConfigFuture<Integer> parsed = ConfigFuture.completed("not a number").thenApply(Integer::parseInt);
+        assertTrue(parsed.getError() instanceof NumberFormatException);
+    }
+
+    // --- allOf ---
+
+    @Test
+    public void allOf_succeedsWithValuesInInputOrder() {
+        ConfigFuture<String> a = new ConfigFuture<>();
+        ConfigFuture<String> b = new ConfigFuture<>();
+        ConfigFuture<List<String>> all = ConfigFuture.allOf(Arrays.asList(a, b));
+
+        b.complete("b");
+        assertFalse(all.isDone());
+        a.complete("a");
+
+        assertEquals(Arrays.asList("a", "b"), all.getNow(null));
+    }
+
+    @Test
+    public void allOf_firstFailureCancelsTheSiblings() {
+        ConfigFuture<String> a = new ConfigFuture<>();
+        ConfigFuture<String> b = new ConfigFuture<>();
+        ConfigFuture<String> c = new ConfigFuture<>();
+        AtomicInteger aCancels = cancelCounter(a);
+        AtomicInteger bCancels = cancelCounter(b);
+        AtomicInteger cCancels = cancelCounter(c);
+        a.complete("a");
+        ConfigFuture<List<String>> all = ConfigFuture.allOf(Arrays.asList(a, b, c));
+        IOException failure = new IOException("device gone");
+
+        b.fail(failure);
+
+        assertSame("The first failure is reported", failure, all.getError());
+        assertTrue(c.isCancelled());
+        assertEquals(1, cCancels.get());
+        assertEquals("Completed sibling left alone", 0, aCancels.get());
+        assertEquals("Failed sibling not cancelled", 0, bCancels.get());
+    }
+
+    @Test
+    public void allOf_cancelCancelsEveryPendingFuture() {
+        ConfigFuture<String> a = new ConfigFuture<>();
+        ConfigFuture<String> b = new ConfigFuture<>();
+        AtomicInteger aCancels = cancelCounter(a);
+        AtomicInteger bCancels = cancelCounter(b);
+        ConfigFuture<List<String>> all = ConfigFuture.allOf(Arrays.asList(a, b));
+
+        all.cancel();
+
+        assertTrue(all.isCancelled());
+        assertEquals(1, aCancels.get());
+        assertEquals(1, bCancels.get());
+    }
+
+    @Test
+    public void allSettled_waitsForFailuresToo() {
+        ConfigFuture<String> a = new ConfigFuture<>();
+        ConfigFuture<String> b = new ConfigFuture<>();
+        ConfigFuture<List<ConfigFuture<String>>> all = ConfigFuture.allSettled(Arrays.asList(a, b));
+
+        a.fail(new IOException("timeout"));
+        assertFalse("A failure doesn't settle the rest", all.isDone());
+        assertFalse(b.isCancelled());
+        b.complete("b");
+
+        assertEquals(2, all.getNow(null).size());
+        assertTrue(all.getNow(null).get(0).getError() instanceof IOException);
+    }
+
+    // --- withTimeout ---
+
+    @Test
+    public void withTimeout_failsAndCancelsTheWorkWhenLate() throws InterruptedException {
+        ConfigFuture<String> request = new ConfigFuture<>();
+        CountDownLatch cancelled = new CountDownLatch(1);
+        request.setCanceller(cancelled::countDown);
+        ConfigFuture<String> timed = request.withTimeout(50);
+        CountDownLatch done = new CountDownLatch(1);
+        timed.whenComplete((value, error) -> done.countDown());
+
+        assertTrue("Timeout did not fire", done.await(WAIT_MS, TimeUnit.MILLISECONDS));
+        assertTrue("Request not cancelled", cancelled.await(WAIT_MS, TimeUnit.MILLISECONDS));
+        assertTrue(timed.getError() instanceof InterruptedIOException);
+        assertTrue(request.isCancelled());
+    }
+
+    @Test
+    public void withTimeout_passesOnAResultInTime() throws InterruptedException {
+        ConfigFuture<String> request = new ConfigFuture<>();
+        AtomicInteger cancels = cancelCounter(request);
+        ConfigFuture<String> timed = request.withTimeout(50);
+
+        request.complete("ok");
+        Thread.sleep(150); // Past the deadline; the timer must have been cancelled
+
+        assertEquals("ok", timed.getNow(null));
+        assertEquals(0, cancels.get());
+    }
+
+    @Test
+    public void withTimeout_cancelReachesTheRequest() {
+        ConfigFuture<String> request = new ConfigFuture<>();
+        AtomicInteger cancels = cancelCounter(request);
+        ConfigFuture<String> timed = request.withTimeout(60_000);
+
+        timed.cancel();
+
+        assertEquals(1, cancels.get());
+        assertTrue(timed.isCancelled());
+    }
+
+    // --- recover ---
+
+    @Test
+    public void recover_turnsAFailureIntoAValue() {
+        ConfigFuture<String> request = new ConfigFuture<>();
+        ConfigFuture<String> recovered = request.recover(error -> "fallback");
+
+        request.fail(new IOException("404"));
+
+        assertEquals("fallback", recovered.getNow(null));
+    }
+
+    @Test
+    public void recover_doesNotRecoverFromCancellation() {
+        ConfigFuture<String> request = new ConfigFuture<>();
+        AtomicBoolean called = new AtomicBoolean();
+        ConfigFuture<String> recovered = request.recover(error -> {
+            called.set(true);
+            return "fallback";
+        });
+
+        request.cancel();
+
+        assertTrue(recovered.isCancelled());
+        assertFalse("Recovered from a cancellation", called.get());
+    }
+
+    @Test
+    public void recover_cancelReachesTheRequest() {
+        ConfigFuture<String> request = new ConfigFuture<>();
+        AtomicInteger cancels = cancelCounter(request);
+        ConfigFuture<String> recovered = request.recover(error -> "fallback");
+
+        recovered.cancel();
+
+        assertEquals(1, cancels.get());
+        assertTrue(request.isCancelled());
+    }
+
+    @Test
+    public void recover_rethrowingKeepsTheFailure() {
+        ConfigFuture<String> request = new ConfigFuture<>();
+        ConfigFuture<String> recovered = request.recover(error -> {
+            throw error;
+        });
+        IOException failure = new IOException("500");
+
+        request.fail(failure);
+
+        assertSame(failure, recovered.getError());
+    }
+
+    // --- completion ---
+
+    @Test
+    public void completesOnce() {
+        ConfigFuture<String> future = new ConfigFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+        future.whenComplete((value, error) -> calls.incrementAndGet());
+
+        assertTrue(future.complete("first"));
+        assertFalse(future.complete("second"));
+        assertFalse(future.fail(new IOException()));
+        assertFalse(future.cancel());
+
+        assertEquals("first", future.getNow(null));
+        assertEquals(1, calls.get());
+    }
+
+    private static AtomicInteger cancelCounter(ConfigFuture<?> future) {
+        AtomicInteger cancels = new AtomicInteger();
+        future.setCanceller(cancels::incrementAndGet);
+        return cancels;
+    }
+}
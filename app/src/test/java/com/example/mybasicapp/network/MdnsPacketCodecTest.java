@@ -0,0 +1,365 @@
+package com.example.mybasicapp.network;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/** {@link MdnsPacketCodec} against hand-built packets, including malformed ones from the network. */
+public class MdnsPacketCodecTest {
+    private static final int HEADER_SIZE = 12;
+    private static final int FLAGS_RESPONSE = 0x8400; // Response, authoritative
+
+    // --- Name compression ---
+
+    @Test
+    public void compressedNames_areExpanded() throws Exception {
+        Packet packet = new Packet(FLAGS_RESPONSE, 0, 3);
+        int serviceType = packet.position();
+        packet.label("_http").label("_tcp");
+        int local = packet.position();
+        packet.name("local");
+        packet.recordHeader(MdnsPacketCodec.TYPE_PTR, MdnsPacketCodec.CLASS_IN, 4500);
+        int ptrData = packet.beginData();
+        int instance = packet.position();
+        packet.label("ESP Sensor").pointer(serviceType); // Instance name keeps its case
+        packet.endData(ptrData);
+
+        packet.pointer(instance);
+        packet.recordHeader(MdnsPacketCodec.TYPE_SRV, MdnsPacketCodec.CLASS_IN | 0x8000, 120); // Cache flush bit
+        int srvData = packet.beginData();
+        packet.u16(0).u16(0).u16(8080);
+        int host = packet.position();
+        packet.label("ESP-01").pointer(local);
+        packet.endData(srvData);
+
+        packet.pointer(host);
+        packet.recordHeader(MdnsPacketCodec.TYPE_A, MdnsPacketCodec.CLASS_IN, 120);
+        int aData = packet.beginData();
+        packet.bytes(192, 168, 1, 42);
+        packet.endData(aData);
+
+        List<MdnsPacketCodec.Record> records = new ArrayList<>();
+        assertEquals(3, parse(packet, records));
+
+        MdnsPacketCodec.Record ptr = records.get(0);
+        assertEquals(MdnsPacketCodec.TYPE_PTR, ptr.type);
+        assertEquals("_http._tcp.local", ptr.name);
+        assertEquals("ESP Sensor._http._tcp.local", ptr.target);
+        assertEquals(4500, ptr.ttlSeconds);
+
+        MdnsPacketCodec.Record srv = records.get(1);
+        assertEquals(MdnsPacketCodec.TYPE_SRV, srv.type);
+        assertEquals("esp sensor._http._tcp.local", srv.name);
+        assertEquals("esp-01.local", srv.target);
+        assertEquals(8080, srv.port);
+
+        MdnsPacketCodec.Record a = records.get(2);
+        assertEquals(MdnsPacketCodec.TYPE_A, a.type);
+        assertEquals("esp-01.local", a.name);
+        assertArrayEquals(new byte[]{(byte) 192, (byte) 168, 1, 42}, a.address);
+    }
+
+    @Test
+    public void pointerIntoQuestion_isFollowed() throws Exception {
+        Packet packet = new Packet(FLAGS_RESPONSE, 1, 1);
+        int question = packet.position();
+        packet.name("_http._tcp.local").u16(MdnsPacketCodec.TYPE_PTR).u16(MdnsPacketCodec.CLASS_IN);
+        packet.pointer(question);
+        packet.recordHeader(MdnsPacketCodec.TYPE_PTR, MdnsPacketCodec.CLASS_IN, 4500);
+        int data = packet.beginData();
+        packet.label("esp").pointer(question);
+        packet.endData(data);
+
+        List<MdnsPacketCodec.Record> records = new ArrayList<>();
+        assertEquals(1, parse(packet, records));
+        assertEquals("_http._tcp.local", records.get(0).name);
+        assertEquals("esp._http._tcp.local", records.get(0).target);
+    }
+
+    @Test
+    public void otherTypesAndClasses_areSkipped() throws Exception {
+        Packet packet = new Packet(FLAGS_RESPONSE, 0, 3);
+        packet.name("esp.local");
+        packet.recordHeader(MdnsPacketCodec.TYPE_TXT, MdnsPacketCodec.CLASS_IN, 120);
+        int txt = packet.beginData();
+        packet.bytes(0);
+        packet.endData(txt);
+        packet.name("esp.local");
+        packet.recordHeader(MdnsPacketCodec.TYPE_A, 3, 120); // CHAOS class
+        int chaos = packet.beginData();
+        packet.bytes(10, 0, 0, 1);
+        packet.endData(chaos);
+        packet.name("esp.local");
+        packet.recordHeader(MdnsPacketCodec.TYPE_A, MdnsPacketCodec.CLASS_IN, 120);
+        int a = packet.beginData();
+        packet.bytes(10, 0, 0, 2);
+        packet.endData(a);
+
+        List<MdnsPacketCodec.Record> records = new ArrayList<>();
+        assertEquals(1, parse(packet, records));
+        assertArrayEquals(new byte[]{10, 0, 0, 2}, records.get(0).address);
+    }
+
+    @Test
+    public void query_isNotParsedAsResponse() throws Exception {
+        Packet packet = new Packet(0, 1, 0);
+        packet.name("_http._tcp.local").u16(MdnsPacketCodec.TYPE_PTR).u16(MdnsPacketCodec.CLASS_IN);
+        assertEquals(-1, parse(packet, new ArrayList<>()));
+    }
+
+    // --- Truncated packets ---
+
+    @Test
+    public void truncatedHeader_isRejected() {
+        assertMalformed(new byte[HEADER_SIZE - 1], HEADER_SIZE - 1, "Packet shorter than header");
+    }
+
+    @Test
+    public void truncatedRecordHeader_isRejected() {
+        Packet packet = new Packet(FLAGS_RESPONSE, 0, 1);
+        packet.name("esp.local").u16(MdnsPacketCodec.TYPE_A).u16(MdnsPacketCodec.CLASS_IN); // No TTL or length
+        assertMalformed(packet, "Truncated record header");
+    }
+
+    @Test
+    public void truncatedRecordData_isRejected() {
+        Packet packet = new Packet(FLAGS_RESPONSE, 0, 1);
+        packet.name("esp.local");
+        packet.recordHeader(MdnsPacketCodec.TYPE_A, MdnsPacketCodec.CLASS_IN, 120);
+        packet.u16(4).bytes(192, 168); // Claims four bytes, has two
+        assertMalformed(packet, "Truncated record data");
+    }
+
+    @Test
+    public void truncatedLabel_isRejected() {
+        Packet packet = new Packet(FLAGS_RESPONSE, 0, 1);
+        packet.bytes(10).ascii("esp"); // Label claims ten bytes
+        assertMalformed(packet, "Label runs past packet end");
+    }
+
+    @Test
+    public void nameWithoutTerminator_isRejected() {
+        Packet packet = new Packet(FLAGS_RESPONSE, 0, 1);
+        packet.label("esp").label("local"); // Packet ends before the root label
+        assertMalformed(packet, "Name runs past packet end");
+    }
+
+    @Test
+    public void truncatedPointer_isRejected() {
+        Packet packet = new Packet(FLAGS_RESPONSE, 0, 1);
+        packet.label("esp").bytes(0xc0); // Second pointer byte missing
+        assertMalformed(packet, "Truncated name pointer");
+    }
+
+    @Test
+    public void pointerPastPacketEnd_isRejected() {
+        Packet packet = new Packet(FLAGS_RESPONSE, 0, 1);
+        packet.pointer(0x3fff);
+        assertMalformed(packet, "Name runs past packet end");
+    }
+
+    @Test
+    public void shortSrvRecord_isRejected() {
+        Packet packet = new Packet(FLAGS_RESPONSE, 0, 1);
+        packet.name("esp._http._tcp.local");
+        packet.recordHeader(MdnsPacketCodec.TYPE_SRV, MdnsPacketCodec.CLASS_IN, 120);
+        int data = packet.beginData();
+        packet.u16(0).u16(0).u16(80); // No target name
+        packet.endData(data);
+        assertMalformed(packet, "Short SRV record");
+    }
+
+    @Test
+    public void everyTruncationOfAValidResponse_isRejectedCleanly() throws Exception {
+        Packet packet = new Packet(FLAGS_RESPONSE, 0, 2);
+        int serviceType = packet.position();
+        packet.label("_http").label("_tcp");
+        int local = packet.position();
+        packet.name("local");
+        packet.recordHeader(MdnsPacketCodec.TYPE_PTR, MdnsPacketCodec.CLASS_IN, 4500);
+        int ptrData = packet.beginData();
+        int instance = packet.position();
+        packet.label("esp").pointer(serviceType);
+        packet.endData(ptrData);
+        packet.pointer(instance);
+        packet.recordHeader(MdnsPacketCodec.TYPE_SRV, MdnsPacketCodec.CLASS_IN, 120);
+        int srvData = packet.beginData();
+        packet.u16(0).u16(0).u16(80).label("esp").pointer(local);
+        packet.endData(srvData);
+
+        byte[] full = packet.toByteArray();
+        assertEquals(2, MdnsPacketCodec.parseResponse(full, full.length, new ArrayList<>()));
+        for (int length = 0; length < full.length; length++) {
+            try {
+                MdnsPacketCodec.parseResponse(full, length, new ArrayList<>());
+                fail("Parsed a response cut to " + length + " of " + full.length + " bytes");
+            } catch (MdnsPacketCodec.MalformedPacketException expected) {
+                // Never an ArrayIndexOutOfBoundsException
+            }
+        }
+    }
+
+    // --- Pointer loops ---
+
+    @Test
+    public void pointerToItself_isRejected() {
+        Packet packet = new Packet(FLAGS_RESPONSE, 0, 1);
+        packet.pointer(packet.position());
+        assertMalformed(packet, "Name pointer loop");
+    }
+
+    @Test
+    public void pointersToEachOther_areRejected() {
+        Packet packet = new Packet(FLAGS_RESPONSE, 0, 1);
+        int first = packet.position();
+        packet.pointer(first + 2).pointer(first);
+        assertMalformed(packet, "Name pointer loop");
+    }
+
+    @Test
+    public void loopThroughLabels_isRejected() {
+        Packet packet = new Packet(FLAGS_RESPONSE, 0, 1);
+        int start = packet.position();
+        packet.label("a").pointer(start); // "a.a.a..." forever, short enough to stay under the name limit
+        assertMalformed(packet, "Name pointer loop");
+    }
+
+    @Test
+    public void pointerLoopInRecordData_isRejected() {
+        Packet packet = new Packet(FLAGS_RESPONSE, 0, 1);
+        packet.name("_http._tcp.local");
+        packet.recordHeader(MdnsPacketCodec.TYPE_PTR, MdnsPacketCodec.CLASS_IN, 4500);
+        int data = packet.beginData();
+        packet.pointer(packet.position());
+        packet.endData(data);
+        assertMalformed(packet, "Name pointer loop");
+    }
+
+    @Test
+    public void overlongName_isRejected() {
+        Packet packet = new Packet(FLAGS_RESPONSE, 0, 1);
+        char[] label = new char[63];
+        Arrays.fill(label, 'a');
+        for (int i = 0; i < 5; i++) packet.label(new String(label)); // 319 characters
+        packet.bytes(0);
+        assertMalformed(packet, "Name too long");
+    }
+
+    // --- Queries ---
+
+    @Test
+    public void writtenQuery_hasQuestionsAndUnicastBit() {
+        List<MdnsPacketCodec.Question> questions = Arrays.asList(
+                new MdnsPacketCodec.Question("_http._tcp.local", MdnsPacketCodec.TYPE_PTR),
+                new MdnsPacketCodec.Question("esp-01.local.", MdnsPacketCodec.TYPE_A));
+        byte[] buffer = new byte[512];
+        int length = MdnsPacketCodec.writeQuery(buffer, questions, 0, 2, true);
+
+        Packet expected = new Packet(0, 2, 0);
+        expected.name("_http._tcp.local").u16(MdnsPacketCodec.TYPE_PTR).u16(0x8001);
+        expected.name("esp-01.local").u16(MdnsPacketCodec.TYPE_A).u16(0x8001);
+        assertArrayEquals(expected.toByteArray(), Arrays.copyOf(buffer, length));
+    }
+
+    @Test
+    public void queryThatDoesNotFit_returnsMinusOne() {
+        List<MdnsPacketCodec.Question> questions = Collections.singletonList(
+                new MdnsPacketCodec.Question("_http._tcp.local", MdnsPacketCodec.TYPE_PTR));
+        assertEquals(-1, MdnsPacketCodec.writeQuery(new byte[HEADER_SIZE + 10], questions, 0, 1, false));
+        assertEquals(-1, MdnsPacketCodec.writeQuery(new byte[HEADER_SIZE - 1], questions, 0, 1, false));
+    }
+
+    private static int parse(Packet packet, List<MdnsPacketCodec.Record> out) throws MdnsPacketCodec.MalformedPacketException {
+        byte[] bytes = packet.toByteArray();
+        return MdnsPacketCodec.parseResponse(bytes, bytes.length, out);
+    }
+
+    private static void assertMalformed(Packet packet, String message) {
+        byte[] bytes = packet.toByteArray();
+        assertMalformed(bytes, bytes.length, message);
+    }
+
+    private static void assertMalformed(byte[] bytes, int length, String message) {
+        try {
+            MdnsPacketCodec.parseResponse(bytes, length, new ArrayList<>());
+            fail("Expected: " + message);
+        } catch (MdnsPacketCodec.MalformedPacketException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    /** Builds a packet byte by byte; positions are offsets from the start, for name pointers. */
+    private static final class Packet {
+        private byte[] buffer = new byte[64];
+        private int size = 0;
+
+        Packet(int flags, int questions, int answers) {
+            u16(0).u16(flags).u16(questions).u16(answers).u16(0).u16(0);
+        }
+
+        int position() {
+            return size;
+        }
+
+        Packet bytes(int... values) {
+            for (int value : values) {
+                if (size == buffer.length) buffer = Arrays.copyOf(buffer, size * 2);
+                buffer[size++] = (byte) value;
+            }
+            return this;
+        }
+
+        Packet u16(int value) {
+            return bytes(value >> 8 & 0xff, value & 0xff);
+        }
+
+        Packet ascii(String text) {
+            for (byte b : text.getBytes(StandardCharsets.US_ASCII)) bytes(b);
+            return this;
+        }
+
+        Packet label(String label) {
+            return bytes(label.length()).ascii(label);
+        }
+
+        /** Uncompressed name, with the root label. */
+        Packet name(String name) {
+            for (String label : name.split("\\.")) label(label);
+            return bytes(0);
+        }
+
+        Packet pointer(int offset) {
+            return bytes(0xc0 | offset >> 8, offset & 0xff);
+        }
+
+        /** Type, class and TTL; the data length follows with {@link #beginData}. */
+        Packet recordHeader(int type, int recordClass, long ttl) {
+            return u16(type).u16(recordClass).u16((int) (ttl >> 16)).u16((int) ttl & 0xffff);
+        }
+
+        /** Writes a placeholder data length. @return Its position, for {@link #endData}. */
+        int beginData() {
+            u16(0);
+            return size - 2;
+        }
+
+        /** Fills in the data length written by {@link #beginData}. */
+        void endData(int lengthAt) {
+            int length = size - lengthAt - 2;
+            buffer[lengthAt] = (byte) (length >> 8);
+            buffer[lengthAt + 1] = (byte) length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.mybasicapp.benchmarks;
+
+import com.example.mybasicapp.model.SensorReading;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Locale;
+
+/**
+ * The per-sample alert path: the threshold check on every reading, the whole ingest step
+ * (parse + check) and the notification text built for readings that do alert.
+ */
+@State(Scope.Thread)
+public class AlertBenchmark {
+    private static final int THRESHOLD_DB = 70;
+    private static final String HOST = "mrcoopersesp.local";
+
+    private SensorReading quiet;
+    private SensorReading loud;
+
+    @Setup
+    public void setUp() throws JSONException {
+        quiet = SensorReading.parse(Payloads.NORMAL);
+        loud = SensorReading.parse(Payloads.LOUD);
+    }
+
+    @Benchmark
+    public void evaluate(Blackhole blackhole) {
+        blackhole.consume(quiet.exceeds(THRESHOLD_DB));
+        blackhole.consume(loud.exceeds(THRESHOLD_DB));
+    }
+
+    @Benchmark
+    public boolean ingestQuiet() throws JSONException {
+        return SensorReading.parse(Payloads.NORMAL).exceeds(THRESHOLD_DB);
+    }
+
+    @Benchmark
+    public boolean ingestLoud() throws JSONException {
+        return SensorReading.parse(Payloads.LOUD).exceeds(THRESHOLD_DB);
+    }
+
+    /** Same format call HttpPollingService makes for each alerting sample. */
+    @Benchmark
+    public String formatAlert() {
+        return String.format(Locale.US, "Loud Noise: %.1f dB detected on %s (App Alert >= %d dB)",
+                loud.dbCalibrated, HOST, THRESHOLD_DB);
+    }
+
+    /** Same text without the formatter, as a baseline for {@link #formatAlert()}. */
+    @Benchmark
+    public String concatAlert() {
+        return "Loud Noise: " + (Math.round(loud.dbCalibrated * 10) / 10.0) + " dB detected on " + HOST
+                + " (App Alert >= " + THRESHOLD_DB + " dB)";
+    }
+}
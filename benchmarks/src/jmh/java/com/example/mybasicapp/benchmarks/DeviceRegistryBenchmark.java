@@ -0,0 +1,79 @@
+package com.example.mybasicapp.benchmarks;
+
+import com.example.mybasicapp.model.DeviceRegistry;
+import com.example.mybasicapp.model.EspDevice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Registry lookups by raw address (canonicalized on every call), hashing devices into sets,
+ * snapshot reads and poll-URL building, for a small home setup and a large fleet.
+ */
+@State(Scope.Thread)
+public class DeviceRegistryBenchmark {
+    @Param({"8", "2000"})
+    public int deviceCount;
+
+    private DeviceRegistry registry;
+    private String[] lookupAddresses; // Mixed case and schemes, as typed by users or taken from URLs
+    private EspDevice[] devices;
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        List<EspDevice> list = new ArrayList<>(deviceCount);
+        lookupAddresses = new String[deviceCount];
+        for (int i = 0; i < deviceCount; i++) {
+            String address = "10.0." + (i / 250) + "." + (i % 250 + 2);
+            list.add(new EspDevice("Sensor " + i, i % 2 == 0 ? address : "esp-" + i + ".local"));
+            lookupAddresses[i] = i % 3 == 0 ? "http://" + list.get(i).getAddress().toUpperCase(Locale.ROOT)
+                    : list.get(i).getAddress();
+        }
+        registry = new DeviceRegistry();
+        registry.replaceAll(list, false);
+        devices = list.toArray(new EspDevice[0]);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == deviceCount ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public EspDevice lookup() {
+        return registry.get(lookupAddresses[nextIndex()]);
+    }
+
+    @Benchmark
+    public String canonicalAddress() {
+        return EspDevice.canonicalAddress(lookupAddresses[nextIndex()]);
+    }
+
+    @Benchmark
+    public int hashIntoSet() {
+        Set<EspDevice> set = new HashSet<>(deviceCount * 2);
+        for (EspDevice device : devices) set.add(device);
+        return set.size();
+    }
+
+    @Benchmark
+    public int snapshot() {
+        return registry.getSnapshot().size();
+    }
+
+    @Benchmark
+    public String pollUrl() {
+        return devices[nextIndex()].getHttpBaseUrl() + "/";
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.mybasicapp.benchmarks;
+
+import com.example.mybasicapp.logging.EventRing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Recording one poll in the binary {@link EventRing}, which HttpPollingService does for every
+ * response, against building the debug line the service used to concatenate for every response
+ * (discarded in release builds anyway). Also the bug-report export of a full ring.
+ */
+@State(Scope.Thread)
+public class EventRingBenchmark {
+    private static final int DEVICES = 200;
+    private static final EventRing.Type POLL_OK = EventRing.define("poll_ok", "http", "bytes");
+
+    private final EventRing ring = new EventRing(EventRing.DEFAULT_CAPACITY);
+    private String[] hosts;
+    private String[] urls;
+    private final String body = Payloads.NORMAL;
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        hosts = new String[DEVICES];
+        urls = new String[DEVICES];
+        for (int i = 0; i < DEVICES; i++) {
+            hosts[i] = "esp-" + i + ".local";
+            urls[i] = "http://" + hosts[i] + "/";
+        }
+        for (int i = 0; i < EventRing.DEFAULT_CAPACITY; i++) {
+            ring.record(POLL_OK, hosts[i % DEVICES], 200, body.length());
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        int index = next;
+        next = index + 1 == DEVICES ? 0 : index + 1;
+        ring.record(POLL_OK, hosts[index], 200, body.length());
+    }
+
+    @Benchmark
+    public String concatenatedDebugLine() {
+        int index = next;
+        next = index + 1 == DEVICES ? 0 : index + 1;
+        return "HTTP poll " + urls[index] + " onResponse (" + 200 + "): " + body.substring(0, Math.min(body.length(), 100));
+    }
+
+    @Benchmark
+    public int exportFullRing() throws IOException {
+        StringWriter out = new StringWriter(512 * 1024);
+        ring.writeTo(out);
+        return out.getBuffer().length();
+    }
+}
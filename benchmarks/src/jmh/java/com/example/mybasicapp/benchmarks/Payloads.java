@@ -0,0 +1,12 @@
+package com.example.mybasicapp.benchmarks;
+
+/** Response bodies shaped like what the ESP firmware sends from {@code GET /}. */
+final class Payloads {
+    static final String NORMAL = "{\"db_calibrated\":58.3,\"rms\":0.0123,\"status\":\"ok\",\"error\":\"\"}";
+    static final String LOUD = "{\"db_calibrated\":81.7,\"rms\":0.3391,\"status\":\"ok\",\"error\":\"null\"}";
+    static final String SENSOR_ERROR = "{\"db_calibrated\":-999,\"rms\":0,\"status\":\"fault\",\"error\":\"I2S read failed\"}";
+    static final String MINIMAL = "{\"db_calibrated\":62.0}";
+
+    private Payloads() {
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.mybasicapp.benchmarks;
+
+import com.example.mybasicapp.model.SensorReading;
+import com.example.mybasicapp.simulator.FleetSimulator;
+import com.example.mybasicapp.simulator.SimulatorConfig;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * One full poll as the collector does it (HTTP GET over loopback, then parse and alert check)
+ * against an in-process simulated ESP with no injected latency, so the result is client-side and
+ * parsing cost rather than network time.
+ */
+@State(Scope.Benchmark)
+public class PollRoundTripBenchmark {
+    private FleetSimulator fleet;
+    private HttpClient http;
+    private HttpRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        fleet = new FleetSimulator(SimulatorConfig.parse("--devices", "1", "--base-port", "18980",
+                "--latency-ms", "0", "--jitter-ms", "0", "--seed", "1"));
+        fleet.start();
+        http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder(URI.create("http://" + fleet.getAddresses().get(0) + "/"))
+                .timeout(Duration.ofSeconds(3))
+                .GET()
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        fleet.stop();
+    }
+
+    @Benchmark
+    public boolean poll() throws IOException, InterruptedException, JSONException {
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        return SensorReading.parse(response.body()).exceeds(70);
+    }
+}
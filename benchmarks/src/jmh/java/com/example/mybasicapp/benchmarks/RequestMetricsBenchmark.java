@@ -0,0 +1,53 @@
+package com.example.mybasicapp.benchmarks;
+
+import com.example.mybasicapp.metrics.EndpointStats;
+import com.example.mybasicapp.metrics.RequestMetrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Recording one request and its phase timings in {@link RequestMetrics}, which the HTTP clients do
+ * for every poll and config call, and the snapshot the diagnostics screen takes every refresh.
+ */
+@State(Scope.Thread)
+public class RequestMetricsBenchmark {
+    private static final int DEVICES = 200;
+
+    private final RequestMetrics metrics = RequestMetrics.getInstance();
+    private String[] deviceKeys;
+    private final long[] phaseMs = {-1, -1, 0, 38, 1}; // Reused connection: no DNS or connect
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        metrics.reset();
+        deviceKeys = new String[DEVICES];
+        for (int i = 0; i < DEVICES; i++) {
+            deviceKeys[i] = "10.0.0." + (i + 2);
+            metrics.record(deviceKeys[i], "/", EndpointStats.Outcome.SUCCESS, 20, 0, 60);
+            metrics.record(deviceKeys[i], "/get_config", EndpointStats.Outcome.SUCCESS, 35, 0, 90);
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        int index = next;
+        next = index + 1 == DEVICES ? 0 : index + 1;
+        metrics.record(deviceKeys[index], "/", EndpointStats.Outcome.SUCCESS, 5 + index % 200, 0, 60);
+    }
+
+    @Benchmark
+    public void recordPhases() {
+        int index = next;
+        next = index + 1 == DEVICES ? 0 : index + 1;
+        metrics.recordPhases(deviceKeys[index], phaseMs, true);
+    }
+
+    @Benchmark
+    public int deviceSnapshots() {
+        return metrics.getDeviceSnapshots().size();
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.mybasicapp.benchmarks;
+
+import com.example.mybasicapp.model.SensorReading;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of turning one poll response into a {@link SensorReading}. Runs once per sample in
+ * HttpPollingService, DeviceHealthProber and every collector poller.
+ */
+@State(Scope.Thread)
+public class SensorReadingBenchmark {
+    @Param({"NORMAL", "LOUD", "SENSOR_ERROR", "MINIMAL"})
+    public String payload;
+
+    private String body;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        body = (String) Payloads.class.getDeclaredField(payload).get(null);
+    }
+
+    @Benchmark
+    public SensorReading parse() throws JSONException {
+        return SensorReading.parse(body);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.mybasicapp.benchmarks;
+
+import com.example.mybasicapp.model.EspDevice;
+import com.example.mybasicapp.model.PendingConfigChange;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Encoding and decoding of the journal lines written by DeviceJournalStore ({@code U\t{device}})
+ * and PendingConfigJournal ({@code Q\t{change}}). Each registry edit or queued config change
+ * writes one line; app start replays all of them.
+ */
+@State(Scope.Thread)
+public class SerializationBenchmark {
+    private EspDevice device;
+    private PendingConfigChange change;
+    private String deviceLine;
+    private String changeLine;
+
+    @Setup
+    public void setUp() {
+        device = new EspDevice("Living room", "mrcoopersesp.local");
+        change = new PendingConfigChange("mrcoopersesp.local", "threshold_db_calibrated", 72.5, 1234, 1_700_000_000_000L);
+        deviceLine = encodeDevice();
+        changeLine = encodeChange();
+    }
+
+    @Benchmark
+    public String encodeDevice() {
+        return "U\t" + device.toJson();
+    }
+
+    @Benchmark
+    public EspDevice decodeDevice() throws JSONException {
+        return EspDevice.fromJson(new JSONObject(deviceLine.substring(2)));
+    }
+
+    @Benchmark
+    public String encodeChange() {
+        return "Q\t" + change.toJson();
+    }
+
+    @Benchmark
+    public PendingConfigChange decodeChange() throws JSONException {
+        return PendingConfigChange.fromJson(new JSONObject(changeLine.substring(2)));
+    }
+}
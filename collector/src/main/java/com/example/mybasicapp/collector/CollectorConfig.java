@@ -0,0 +1,67 @@
+package com.example.mybasicapp.collector;
+
+import java.nio.file.Path;
+
+/** Command-line settings of the collector. Immutable after {@link #parse}. */
+final class CollectorConfig {
+    static final String USAGE = String.join("\n",
+            "Usage: collector --devices <file> [options]",
+            "  --devices <file>        JSON array of {\"name\": .., \"address\": ..}, as exported by the app",
+            "  --out <dir>             Where readings and alerts are written (default: collector-data)",
+            "  --interval-ms <n>       Poll interval per device (default: 2500)",
+            "  --timeout-ms <n>        Per-request timeout (default: 3000)",
+            "  --alert-db <n>          Alert when a device reports at least this level (default: 70)",
+            "  --alert-cooldown-ms <n> Minimum time between alerts for one device (default: 60000)");
+
+    final Path devicesFile;
+    final Path outputDir;
+    final long pollIntervalMs;
+    final long requestTimeoutMs;
+    final double alertThresholdDb;
+    final long alertCooldownMs;
+
+    private CollectorConfig(Path devicesFile, Path outputDir, long pollIntervalMs, long requestTimeoutMs,
+                            double alertThresholdDb, long alertCooldownMs) {
+        this.devicesFile = devicesFile;
+        this.outputDir = outputDir;
+        this.pollIntervalMs = pollIntervalMs;
+        this.requestTimeoutMs = requestTimeoutMs;
+        this.alertThresholdDb = alertThresholdDb;
+        this.alertCooldownMs = alertCooldownMs;
+    }
+
+    /** @throws IllegalArgumentException with a message for the user on bad or missing arguments. */
+    static CollectorConfig parse(String[] args) {
+        Path devicesFile = null;
+        Path outputDir = Path.of("collector-data");
+        long pollIntervalMs = 2500;
+        long requestTimeoutMs = 3000;
+        double alertThresholdDb = 70;
+        long alertCooldownMs = 60_000;
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--devices" -> devicesFile = Path.of(value);
+                    case "--out" -> outputDir = Path.of(value);
+                    case "--interval-ms" -> pollIntervalMs = positive(option, Long.parseLong(value));
+                    case "--timeout-ms" -> requestTimeoutMs = positive(option, Long.parseLong(value));
+                    case "--alert-db" -> alertThresholdDb = Double.parseDouble(value);
+                    case "--alert-cooldown-ms" -> alertCooldownMs = Math.max(0, Long.parseLong(value));
+                    default -> throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for " + option + ": " + value);
+            }
+        }
+        if (devicesFile == null) throw new IllegalArgumentException("--devices is required");
+        return new CollectorConfig(devicesFile, outputDir, pollIntervalMs, requestTimeoutMs, alertThresholdDb, alertCooldownMs);
+    }
+
+    private static long positive(String option, long value) {
+        if (value <= 0) throw new IllegalArgumentException(option + " must be positive");
+        return value;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.mybasicapp.collector;
+
+import com.example.mybasicapp.model.DeviceRegistry;
+import com.example.mybasicapp.model.EspDevice;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Headless collector: polls every ESP in a device list, stores readings and raises alerts,
+ * using the same device model and sensor parsing as the Android app. Meant for a small always-on
+ * Linux machine on the sensors' network. {@code *.local} names resolve through the system
+ * resolver, so the host needs mDNS support (e.g. nss-mdns) or the list should use IP addresses.
+ * With thousands of devices, raise the open file limit ({@code ulimit -n}) accordingly.
+ */
+public final class CollectorMain {
+    private static final System.Logger LOG = System.getLogger("CollectorMain");
+
+    private CollectorMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CollectorConfig config;
+        try {
+            config = CollectorConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(CollectorConfig.USAGE);
+            System.exit(2);
+            return;
+        }
+        List<EspDevice> devices = loadDevices(config.devicesFile);
+        if (devices.isEmpty()) {
+            System.err.println("No devices in " + config.devicesFile);
+            System.exit(1);
+            return;
+        }
+
+        ReadingStore store = new ReadingStore(config.outputDir);
+        FleetCollector collector = new FleetCollector(config, store);
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                collector.stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                store.close(); // Flushes queued readings
+                stopped.countDown();
+            }
+        }, "CollectorShutdown"));
+        collector.start(devices);
+        collector.awaitTermination();
+        stopped.await();
+    }
+
+    /** Same JSON format the app used to store its device list; duplicate addresses are dropped. */
+    private static List<EspDevice> loadDevices(Path file) throws IOException {
+        List<EspDevice> devices = new ArrayList<>();
+        try {
+            JSONArray array = new JSONArray(Files.readString(file, StandardCharsets.UTF_8));
+            for (int i = 0; i < array.length(); i++) {
+                devices.add(EspDevice.fromJson(array.getJSONObject(i)));
+            }
+        } catch (JSONException e) {
+            throw new IOException("Invalid device list " + file + ": " + e.getMessage(), e);
+        }
+        DeviceRegistry registry = new DeviceRegistry();
+        registry.replaceAll(devices, false);
+        if (registry.size() < devices.size()) {
+            LOG.log(System.Logger.Level.WARNING, "Ignored " + (devices.size() - registry.size()) + " duplicate device addresses.");
+        }
+        return registry.getSnapshot();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.mybasicapp.collector;
+
+import com.example.mybasicapp.model.AlertRule;
+import com.example.mybasicapp.model.DeviceStatus;
+import com.example.mybasicapp.model.EspDevice;
+import com.example.mybasicapp.model.SensorReading;
+import com.example.mybasicapp.network.RetryPolicy;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Polls one device until interrupted. Meant to run on its own virtual thread: the blocking
+ * {@link HttpClient#send} and sleeps park the virtual thread, not a carrier, so one poller per
+ * device scales to thousands of devices.
+ * <p>
+ * Same endpoint and parsing as the app's HttpPollingService. Unreachable devices are polled with
+ * jittered exponential backoff (up to {@link #MAX_BACKOFF_MS}) instead of every interval.
+ */
+final class DevicePoller implements Runnable {
+    private static final System.Logger LOG = System.getLogger("DevicePoller");
+
+    private static final String DATA_ENDPOINT = "/"; // Same endpoint HttpPollingService reads mic data from
+    private static final long MAX_BACKOFF_MS = 60_000;
+
+    private final EspDevice device;
+    private final HttpClient http;
+    private final CollectorConfig config;
+    private final ReadingStore store;
+    private final Map<String, DeviceStatus> statuses;
+    private final URI uri;
+    private final RetryPolicy offlineBackoff;
+    private final AlertRule alertRule; // Same rule as the app's HttpPollingService
+
+    DevicePoller(EspDevice device, HttpClient http, CollectorConfig config, ReadingStore store, Map<String, DeviceStatus> statuses) {
+        this.device = device;
+        this.http = http;
+        this.config = config;
+        this.store = store;
+        this.statuses = statuses;
+        this.uri = URI.create(device.getHttpBaseUrl() + DATA_ENDPOINT);
+        this.offlineBackoff = new RetryPolicy(Integer.MAX_VALUE, config.pollIntervalMs, MAX_BACKOFF_MS, 0, true);
+        this.alertRule = new AlertRule(config.alertCooldownMs);
+    }
+
+    @Override
+    public void run() {
+        try {
+            // Spread the fleet's first polls over one interval instead of starting them all at once
+            Thread.sleep(ThreadLocalRandom.current().nextLong(config.pollIntervalMs));
+            int failures = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                failures = pollOnce() ? 0 : failures + 1;
+                Thread.sleep(failures == 0 ? config.pollIntervalMs
+                        : Math.max(config.pollIntervalMs, offlineBackoff.backoffMs(failures)));
+            }
+        } catch (InterruptedException e) {
+            // Collector is stopping
+        }
+    }
+
+    /** @return False if the device could not be read. */
+    private boolean pollOnce() throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(config.requestTimeoutMs))
+                .GET()
+                .build();
+        long startNanos = System.nanoTime();
+        String key = device.getAddressKey();
+        try {
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            long latencyMs = (System.nanoTime() - startNanos) / 1_000_000;
+            if (response.statusCode() / 100 != 2) {
+                recordFailure(key, "HTTP " + response.statusCode());
+                return false;
+            }
+            SensorReading reading = SensorReading.parse(response.body());
+            long now = System.currentTimeMillis();
+            statuses.put(key, DeviceStatus.afterSuccess(key, statuses.get(key), reading.dbCalibrated, latencyMs));
+            store.recordReading(device, now, reading, latencyMs);
+            checkAlert(now, reading);
+            return true;
+        } catch (IOException | JSONException e) {
+            recordFailure(key, String.valueOf(e.getMessage()));
+            return false;
+        }
+    }
+
+    private void recordFailure(String key, String reason) {
+        DeviceStatus next = DeviceStatus.afterFailure(key, statuses.get(key));
+        statuses.put(key, next);
+        if (next.consecutiveFailures == 1) {
+            LOG.log(System.Logger.Level.INFO, device.getAddress() + " went offline: " + reason);
+        }
+    }
+
+    private void checkAlert(long now, SensorReading reading) {
+        if (!alertRule.shouldAlert(reading, config.alertThresholdDb, now)) return;
+        LOG.log(System.Logger.Level.WARNING, String.format("Loud noise: %.1f dB on %s (%s)",
+                reading.dbCalibrated, device.getName(), device.getAddress()));
+        store.recordAlert(device, now, reading, config.alertThresholdDb);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.mybasicapp.collector;
+
+import com.example.mybasicapp.model.DeviceStatus;
+import com.example.mybasicapp.model.EspDevice;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs one {@link DevicePoller} per device, each on its own virtual thread, and logs a fleet
+ * summary every {@link #SUMMARY_INTERVAL_MS}. All pollers share one HTTP client (and its
+ * connection pool) and one {@link ReadingStore}.
+ */
+final class FleetCollector {
+    private static final System.Logger LOG = System.getLogger("FleetCollector");
+
+    private static final long SUMMARY_INTERVAL_MS = 60_000;
+
+    private final CollectorConfig config;
+    private final ReadingStore store;
+    private final HttpClient http;
+    private final Map<String, DeviceStatus> statuses = new ConcurrentHashMap<>(); // Address key -> latest status
+    private final ExecutorService pollers = Executors.newVirtualThreadPerTaskExecutor();
+
+    FleetCollector(CollectorConfig config, ReadingStore store) {
+        this.config = config;
+        this.store = store;
+        this.http = HttpClient.newBuilder()
+                // The ESP web server speaks plain HTTP/1.1; skip the h2c upgrade attempt
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(Math.min(config.requestTimeoutMs, 2000)))
+                .build();
+    }
+
+    void start(List<EspDevice> devices) {
+        LOG.log(System.Logger.Level.INFO, "Polling " + devices.size() + " devices every " + config.pollIntervalMs
+                + " ms, alerting at " + config.alertThresholdDb + " dB.");
+        for (EspDevice device : devices) {
+            pollers.submit(new DevicePoller(device, http, config, store, statuses));
+        }
+        pollers.submit(() -> logSummaries(devices.size()));
+    }
+
+    /** Interrupts every poller and waits briefly for them to finish. */
+    void stop() throws InterruptedException {
+        pollers.shutdownNow();
+        if (!pollers.awaitTermination(5, TimeUnit.SECONDS)) {
+            LOG.log(System.Logger.Level.WARNING, "Some pollers did not stop within 5 s.");
+        }
+    }
+
+    void awaitTermination() throws InterruptedException {
+        while (!pollers.awaitTermination(1, TimeUnit.HOURS)) {
+            // Runs until stop()
+        }
+    }
+
+    private void logSummaries(int total) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(SUMMARY_INTERVAL_MS);
+                int online = 0;
+                for (DeviceStatus status : statuses.values()) {
+                    if (status.online) online++;
+                }
+                LOG.log(System.Logger.Level.INFO, "Online " + online + "/" + total + ", readings dropped: " + store.getDroppedReadings());
+            }
+        } catch (InterruptedException e) {
+            // Collector is stopping
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.mybasicapp.collector;
+
+import com.example.mybasicapp.model.EspDevice;
+import com.example.mybasicapp.model.SensorReading;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only storage for readings and alerts. Pollers only enqueue; one writer thread drains the
+ * queue in batches, so thousands of devices share a handful of file handles and one flush per batch.
+ * <ul>
+ *   <li>{@code readings-YYYY-MM-DD.csv} (UTC day): one row per successful poll.</li>
+ *   <li>{@code alerts.log}: one line per alert.</li>
+ * </ul>
+ * The queue is bounded; if the disk can't keep up, readings are dropped and counted rather than
+ * stalling the pollers. Alerts are never dropped.
+ */
+final class ReadingStore implements AutoCloseable {
+    private static final System.Logger LOG = System.getLogger("ReadingStore");
+
+    private static final int QUEUE_CAPACITY = 200_000;
+    private static final int MAX_BATCH = 1024;
+    private static final String CSV_HEADER = "time_utc,address,name,db_calibrated,rms,error,latency_ms";
+
+    private record Entry(boolean alert, long timeMs, String text) {
+    }
+
+    private static final Entry CLOSE = new Entry(false, 0, null);
+
+    private final Path outputDir;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong droppedReadings = new AtomicLong();
+    private final Thread writerThread;
+
+    // Only touched on writerThread
+    private LocalDate readingsDay;
+    private BufferedWriter readingsWriter;
+    private BufferedWriter alertsWriter;
+
+    ReadingStore(Path outputDir) throws IOException {
+        this.outputDir = outputDir;
+        Files.createDirectories(outputDir);
+        writerThread = Thread.ofPlatform().name("ReadingStore").start(this::drain);
+    }
+
+    void recordReading(EspDevice device, long timeMs, SensorReading reading, long latencyMs) {
+        String row = String.join(",",
+                Instant.ofEpochMilli(timeMs).toString(),
+                device.getAddress(),
+                quote(device.getName()),
+                reading.hasDb() ? String.format(Locale.US, "%.1f", reading.dbCalibrated) : "",
+                Double.isNaN(reading.rms) ? "" : String.format(Locale.US, "%.4f", reading.rms),
+                reading.error != null ? quote(reading.error) : "",
+                Long.toString(latencyMs));
+        if (!queue.offer(new Entry(false, timeMs, row))) droppedReadings.incrementAndGet();
+    }
+
+    void recordAlert(EspDevice device, long timeMs, SensorReading reading, double thresholdDb) {
+        String line = String.format(Locale.US, "%s %s (%s) %.1f dB >= %.1f dB",
+                Instant.ofEpochMilli(timeMs), device.getName(), device.getAddress(), reading.dbCalibrated, thresholdDb);
+        Entry entry = new Entry(true, timeMs, line);
+        if (queue.offer(entry)) return; // Also while the poller is being interrupted for shutdown
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Shutting down with a full queue; the alert was already logged by the caller
+        }
+    }
+
+    long getDroppedReadings() {
+        return droppedReadings.get();
+    }
+
+    /**
+     * Writes what is queued, then closes the files. If interrupted while waiting, the writer still
+     * finishes on its own and the interrupt is kept for the caller.
+     */
+    @Override
+    public void close() {
+        try {
+            queue.put(CLOSE);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        boolean closing = false;
+        while (!closing) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            for (Entry entry : batch) {
+                if (entry == CLOSE) {
+                    closing = true;
+                    continue;
+                }
+                write(entry);
+            }
+            batch.clear();
+            flush();
+        }
+        closeWriters();
+    }
+
+    private void write(Entry entry) {
+        try {
+            if (entry.alert()) {
+                if (alertsWriter == null) alertsWriter = open(outputDir.resolve("alerts.log"), null);
+                alertsWriter.write(entry.text());
+                alertsWriter.newLine();
+            } else {
+                LocalDate day = Instant.ofEpochMilli(entry.timeMs()).atZone(ZoneOffset.UTC).toLocalDate();
+                if (!day.equals(readingsDay)) {
+                    if (readingsWriter != null) readingsWriter.close();
+                    readingsWriter = open(outputDir.resolve("readings-" + day + ".csv"), CSV_HEADER);
+                    readingsDay = day;
+                }
+                readingsWriter.write(entry.text());
+                readingsWriter.newLine();
+            }
+        } catch (IOException e) {
+            LOG.log(System.Logger.Level.ERROR, "Could not write to " + outputDir, e);
+        }
+    }
+
+    private static BufferedWriter open(Path file, String header) throws IOException {
+        boolean isNew = !Files.exists(file);
+        BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (isNew && header != null) {
+            writer.write(header);
+            writer.newLine();
+        }
+        return writer;
+    }
+
+    private void flush() {
+        try {
+            if (readingsWriter != null) readingsWriter.flush();
+            if (alertsWriter != null) alertsWriter.flush();
+        } catch (IOException e) {
+            LOG.log(System.Logger.Level.ERROR, "Could not flush " + outputDir, e);
+        }
+    }
+
+    private void closeWriters() {
+        try {
+            if (readingsWriter != null) readingsWriter.close();
+            if (alertsWriter != null) alertsWriter.close();
+        } catch (IOException e) {
+            LOG.log(System.Logger.Level.ERROR, "Could not close " + outputDir, e);
+        }
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.mybasicapp.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mybasicapp.model.DeviceStatus;
+import com.example.mybasicapp.model.EspDevice;
+import com.example.mybasicapp.simulator.FleetSimulator;
+import com.example.mybasicapp.simulator.SimulatorConfig;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link DevicePoller}s polling a {@link FleetSimulator} on localhost for a second and a half, as
+ * {@link FleetCollector} runs them, and what they leave in the {@link ReadingStore}. A threshold of
+ * 0 dB makes every valid simulated reading loud, so the alerts follow from the shared AlertRule
+ * alone.
+ */
+public class DevicePollerTest {
+    private static final int DEVICES = 4;
+    private static final long POLL_INTERVAL_MS = 50;
+    private static final long RUN_MS = 1500;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private FleetSimulator fleet;
+    private final Map<String, DeviceStatus> statuses = new ConcurrentHashMap<>();
+
+    @After
+    public void stopFleet() {
+        if (fleet != null) fleet.stop();
+    }
+
+    @Test
+    public void loudDevices_alertOnceWithinTheCooldown() throws Exception {
+        List<EspDevice> devices = startFleet(18180);
+        Path out = poll(devices, "--alert-db", "0", "--alert-cooldown-ms", "60000");
+
+        Map<String, Integer> readings = countByAddress(out, "readings-");
+        Map<String, Integer> alerts = countByAddress(out, "alerts.log");
+        for (EspDevice device : devices) {
+            // A second loud reading within the cooldown must not alert again
+            assertTrue("Few readings from " + device.getAddress() + ": " + readings.get(device.getAddress()),
+                    readings.getOrDefault(device.getAddress(), 0) >= 2);
+            assertEquals("Alerts for " + device.getAddress(), Integer.valueOf(1), alerts.get(device.getAddress()));
+            assertTrue(statuses.get(device.getAddressKey()).online);
+        }
+    }
+
+    @Test
+    public void withoutCooldown_everyLoudReadingAlerts() throws Exception {
+        List<EspDevice> devices = startFleet(18190);
+        Path out = poll(devices, "--alert-db", "0", "--alert-cooldown-ms", "0");
+
+        Map<String, Integer> readings = countByAddress(out, "readings-");
+        Map<String, Integer> alerts = countByAddress(out, "alerts.log");
+        for (EspDevice device : devices) {
+            assertTrue(readings.getOrDefault(device.getAddress(), 0) >= 2);
+            assertEquals("Alerts for " + device.getAddress(), readings.get(device.getAddress()), alerts.get(device.getAddress()));
+        }
+    }
+
+    @Test
+    public void quietDevices_neverAlert() throws Exception {
+        List<EspDevice> devices = startFleet(18200);
+        Path out = poll(devices, "--alert-db", "200");
+
+        assertFalse(countByAddress(out, "readings-").isEmpty());
+        assertTrue(countByAddress(out, "alerts.log").isEmpty());
+    }
+
+    @Test
+    public void sensorErrors_areRecordedButNeverAlert() throws Exception {
+        List<EspDevice> devices = startFleet(18210, "--sensor-error-rate", "1");
+        Path out = poll(devices, "--alert-db", "0", "--alert-cooldown-ms", "0");
+
+        assertEquals(DEVICES, countByAddress(out, "readings-").size());
+        assertTrue(countByAddress(out, "alerts.log").isEmpty());
+        for (String row : lines(out, "readings-")) {
+            if (!row.startsWith("time_utc")) assertTrue(row, row.contains("\"I2S read failed\""));
+        }
+    }
+
+    @Test
+    public void failingDevices_recordNothingAndGoOffline() throws Exception {
+        List<EspDevice> devices = startFleet(18220, "--error-rate", "1");
+        Path out = poll(devices, "--alert-db", "0");
+
+        assertTrue(countByAddress(out, "readings-").isEmpty());
+        assertTrue(countByAddress(out, "alerts.log").isEmpty());
+        for (EspDevice device : devices) {
+            DeviceStatus status = statuses.get(device.getAddressKey());
+            assertFalse(status.online);
+            assertTrue(status.consecutiveFailures >= 1);
+        }
+    }
+
+    private List<EspDevice> startFleet(int basePort, String... extraArgs) throws IOException {
+        List<String> args = new ArrayList<>(List.of("--devices", Integer.toString(DEVICES),
+                "--base-port", Integer.toString(basePort), "--latency-ms", "0", "--jitter-ms", "0", "--seed", "1"));
+        args.addAll(List.of(extraArgs));
+        fleet = new FleetSimulator(SimulatorConfig.parse(args.toArray(new String[0])));
+        fleet.start();
+        List<EspDevice> devices = new ArrayList<>();
+        for (String address : fleet.getAddresses()) devices.add(new EspDevice(address));
+        return devices;
+    }
+
+    /** Runs one poller per device for {@link #RUN_MS}, then stops them and closes the store. */
+    private Path poll(List<EspDevice> devices, String... options) throws Exception {
+        Path out = folder.newFolder().toPath();
+        List<String> args = new ArrayList<>(List.of("--devices", "unused.json", "--out", out.toString(),
+                "--interval-ms", Long.toString(POLL_INTERVAL_MS), "--timeout-ms", "1000"));
+        args.addAll(List.of(options));
+        CollectorConfig config = CollectorConfig.parse(args.toArray(new String[0]));
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        ExecutorService pollers = Executors.newVirtualThreadPerTaskExecutor();
+        try (ReadingStore store = new ReadingStore(out)) {
+            for (EspDevice device : devices) {
+                pollers.submit(new DevicePoller(device, http, config, store, statuses));
+            }
+            Thread.sleep(RUN_MS);
+            pollers.shutdownNow();
+            assertTrue("Pollers did not stop", pollers.awaitTermination(5, TimeUnit.SECONDS));
+        }
+        return out;
+    }
+
+    /** Lines per device address in the output files whose name starts with {@code prefix}. */
+    private static Map<String, Integer> countByAddress(Path out, String prefix) throws IOException {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String line : lines(out, prefix)) {
+            if (line.startsWith("time_utc")) continue; // CSV header
+            // Readings: "time,address,..."; alerts: "time name (address) ..."
+            String address = line.contains("(")
+                    ? line.substring(line.indexOf('(') + 1, line.indexOf(')'))
+                    : line.split(",")[1];
+            counts.merge(address, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static List<String> lines(Path out, String prefix) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (Stream<Path> files = Files.list(out)) {
+            for (Path file : (Iterable<Path>) files.filter(f -> f.getFileName().toString().startsWith(prefix))::iterator) {
+                lines.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.mybasicapp.logging;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fixed-size binary ring of recent events, for bug reports. An event is four longs (time, type and
+ * key ids, two numeric fields) written into one preallocated array: no strings are built and
+ * nothing is allocated when recording, so it can stay on in release builds and on per-poll paths.
+ * Text is only produced by {@link #writeTo}.
+ * <p>
+ * Event types are declared once with {@link #define}; keys (usually a device address key) are
+ * interned to small ids, at most {@link #MAX_KEYS} of them, later ones are written as "(other)".
+ * Thread-safe.
+ */
+public final class EventRing {
+    public static final int DEFAULT_CAPACITY = 4096; // Events; 128 KB
+    static final int MAX_TYPES = 256;
+    static final int MAX_KEYS = 1024;
+    private static final int SLOT_LONGS = 4;
+    private static final int NO_KEY = 0;
+    private static final int OTHER_KEY = 1;
+
+    /** Kind of event, with names for its two numeric fields (null if unused). */
+    public static final class Type {
+        final int id;
+        @NonNull final String name;
+        @Nullable final String fieldA;
+        @Nullable final String fieldB;
+
+        Type(int id, @NonNull String name, @Nullable String fieldA, @Nullable String fieldB) {
+            this.id = id;
+            this.name = name;
+            this.fieldA = fieldA;
+            this.fieldB = fieldB;
+        }
+
+        /** Same text {@link #writeTo} produces for the event, without the timestamp. */
+        @NonNull
+        public String format(@Nullable String key, long a, long b) {
+            StringBuilder sb = new StringBuilder(name);
+            if (key != null) sb.append(' ').append(key);
+            if (fieldA != null) sb.append(' ').append(fieldA).append('=').append(a);
+            if (fieldB != null) sb.append(' ').append(fieldB).append('=').append(b);
+            return sb.toString();
+        }
+    }
+
+    private static final Type[] types = new Type[MAX_TYPES]; // Guarded by EventRing.class
+    private static int typeCount = 0;
+    private static final Map<String, Integer> keyIds = new ConcurrentHashMap<>();
+    private static final String[] keyNames = new String[MAX_KEYS];
+
+    static {
+        keyNames[NO_KEY] = null;
+        keyNames[OTHER_KEY] = "(other)";
+    }
+
+    private static final EventRing INSTANCE = new EventRing(DEFAULT_CAPACITY);
+
+    private final long[] slots;
+    private final int mask;
+    private long written = 0; // Guarded by this; events ever recorded
+
+    @NonNull
+    public static EventRing getInstance() {
+        return INSTANCE;
+    }
+
+    /** @param capacity Events kept; rounded up to a power of two. */
+    public EventRing(int capacity) {
+        int events = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new long[events * SLOT_LONGS];
+        this.mask = events - 1;
+    }
+
+    /**
+     * Declares an event type; meant for static final fields. Declaring the same name again returns
+     * the existing type.
+     * @param fieldA Name of the first numeric field, or null if the event has none.
+     * @param fieldB Name of the second numeric field, or null.
+     */
+    @NonNull
+    public static synchronized Type define(@NonNull String name, @Nullable String fieldA, @Nullable String fieldB) {
+        for (int i = 0; i < typeCount; i++) {
+            if (types[i].name.equals(name)) return types[i];
+        }
+        if (typeCount == MAX_TYPES) throw new IllegalStateException("More than " + MAX_TYPES + " event types");
+        Type type = new Type(typeCount, name, fieldA, fieldB);
+        types[typeCount++] = type;
+        return type;
+    }
+
+    public void record(@NonNull Type type, @Nullable String key, long a, long b) {
+        long packed = ((long) type.id << 32) | keyId(key);
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            int base = (int) (written & mask) * SLOT_LONGS;
+            slots[base] = now;
+            slots[base + 1] = packed;
+            slots[base + 2] = a;
+            slots[base + 3] = b;
+            written++;
+        }
+    }
+
+    public synchronized int size() {
+        return (int) Math.min(written, mask + 1);
+    }
+
+    public synchronized long getWrittenCount() {
+        return written;
+    }
+
+    public synchronized void clear() {
+        written = 0;
+    }
+
+    /** Writes the kept events as text, oldest first, one per line. */
+    public void writeTo(@NonNull Writer out) throws IOException {
+        long[] copy;
+        long count;
+        synchronized (this) {
+            copy = slots.clone();
+            count = written;
+        }
+        long kept = Math.min(count, mask + 1);
+        if (count > kept) out.write("... " + (count - kept) + " older events were overwritten ...\n");
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
+        Date date = new Date();
+        Type[] knownTypes;
+        synchronized (EventRing.class) {
+            knownTypes = types.clone();
+        }
+        for (long seq = count - kept; seq < count; seq++) {
+            int base = (int) (seq & mask) * SLOT_LONGS;
+            date.setTime(copy[base]);
+            Type type = knownTypes[(int) (copy[base + 1] >>> 32)];
+            String key = keyNames[(int) copy[base + 1]];
+            out.write('[');
+            out.write(format.format(date));
+            out.write("] ");
+            out.write(type.format(key, copy[base + 2], copy[base + 3]));
+            out.write('\n');
+        }
+    }
+
+    private static int keyId(@Nullable String key) {
+        if (key == null) return NO_KEY;
+        Integer id = keyIds.get(key);
+        if (id != null) return id;
+        synchronized (keyNames) {
+            id = keyIds.get(key);
+            if (id != null) return id;
+            int next = keyIds.size() + 2; // After NO_KEY and OTHER_KEY
+            if (next >= MAX_KEYS) return OTHER_KEY;
+            keyNames[next] = key;
+            keyIds.put(key, next); // Published after keyNames, so readers that find the id also see the name
+            return next;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.mybasicapp.metrics;
+
+/** Phases of one HTTP call, as reported by the HTTP client's event callbacks. */
+public enum CallPhase {
+    DNS("dns"),           // Name resolution; for *.local names, the discovery cache or our own mDNS query
+    CONNECT("connect"),   // TCP connect, only when no pooled connection could be reused
+    REQUEST("request"),   // Writing the request headers and body
+    SERVER("server"),     // Request written until the response headers start: the ESP's processing time
+    RESPONSE("response"); // Reading the response headers and body
+
+    public final String label;
+
+    CallPhase(String label) {
+        this.label = label;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.mybasicapp.metrics;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Per-device phase timings of HTTP calls: one {@link LatencyHistogram} per {@link CallPhase},
+ * allocated the first time the phase is seen, plus how often a pooled connection was reused.
+ * Thread-safe.
+ */
+public final class CallPhaseStats {
+    private static final CallPhase[] PHASES = CallPhase.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[PHASES.length];
+    private long calls = 0;
+    private long reusedConnections = 0;
+
+    /**
+     * @param phaseMs Duration per phase, indexed by {@link CallPhase#ordinal()}; negative if the phase did not happen.
+     */
+    public synchronized void record(@NonNull long[] phaseMs, boolean connectionReused) {
+        calls++;
+        if (connectionReused) reusedConnections++;
+        for (int i = 0; i < PHASES.length; i++) {
+            if (phaseMs[i] < 0) continue;
+            if (histograms[i] == null) histograms[i] = new LatencyHistogram();
+            histograms[i].record(phaseMs[i]);
+        }
+    }
+
+    @NonNull
+    public synchronized Snapshot snapshot(@NonNull String device) {
+        long[] p50 = new long[PHASES.length];
+        long[] p95 = new long[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) {
+            p50[i] = histograms[i] != null ? histograms[i].valueAtPercentile(50) : -1;
+            p95[i] = histograms[i] != null ? histograms[i].valueAtPercentile(95) : -1;
+        }
+        return new Snapshot(device, calls, reusedConnections, p50, p95);
+    }
+
+    /** Immutable percentiles of a {@link CallPhaseStats}. */
+    public static final class Snapshot {
+        @NonNull public final String device;
+        public final long calls;
+        public final long reusedConnections;
+        private final long[] p50;
+        private final long[] p95;
+
+        Snapshot(@NonNull String device, long calls, long reusedConnections, long[] p50, long[] p95) {
+            this.device = device;
+            this.calls = calls;
+            this.reusedConnections = reusedConnections;
+            this.p50 = p50;
+            this.p95 = p95;
+        }
+
+        /** @return -1 if the phase never happened (e.g. CONNECT when every call reused a connection). */
+        public long p50Ms(@NonNull CallPhase phase) {
+            return p50[phase.ordinal()];
+        }
+
+        /** @return -1 if the phase never happened. */
+        public long p95Ms(@NonNull CallPhase phase) {
+            return p95[phase.ordinal()];
+        }
+
+        /** Share of calls that reused a pooled connection, 0 to 1. */
+        public double getReuseRate() {
+            return calls == 0 ? 0 : (double) reusedConnections / calls;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.mybasicapp.metrics;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Timeline of one HTTP call, kept for sampled and slow calls (see {@link RequestMetrics#addTrace}).
+ * Phase durations are always present; the individual client events only for sampled calls.
+ */
+public final class CallTrace {
+    @NonNull public final String device;
+    @NonNull public final String endpoint;
+    public final long startedAtMs; // Wall-clock time
+    public final long totalMs;
+    public final boolean connectionReused;
+    @Nullable public final String failure; // Null if the call succeeded
+    @NonNull public final List<String> events; // "+12.345 ms dnsEnd ..." lines; empty unless sampled
+    private final long[] phaseMs;
+
+    public CallTrace(@NonNull String device, @NonNull String endpoint, long startedAtMs, long totalMs, @NonNull long[] phaseMs,
+                     boolean connectionReused, @Nullable String failure, @Nullable List<String> events) {
+        this.device = device;
+        this.endpoint = endpoint;
+        this.startedAtMs = startedAtMs;
+        this.totalMs = totalMs;
+        this.phaseMs = phaseMs.clone();
+        this.connectionReused = connectionReused;
+        this.failure = failure;
+        this.events = events != null ? Collections.unmodifiableList(events) : Collections.emptyList();
+    }
+
+    /** @return -1 if the phase did not happen. */
+    public long phaseMs(@NonNull CallPhase phase) {
+        return phaseMs[phase.ordinal()];
+    }
+
+    /** One line of phases, e.g. "dns 1204, connect 18, request 0, server 35, response 2 ms". */
+    @NonNull
+    public String phasesSummary() {
+        StringBuilder builder = new StringBuilder();
+        for (CallPhase phase : CallPhase.values()) {
+            long ms = phaseMs(phase);
+            if (ms < 0) continue;
+            if (builder.length() > 0) builder.append(", ");
+            builder.append(phase.label).append(' ').append(ms);
+        }
+        return builder.append(" ms").toString();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder()
+                .append(new SimpleDateFormat("HH:mm:ss.SSS", Locale.US).format(new Date(startedAtMs)))
+                .append(' ').append(device).append(endpoint)
+                .append(": ").append(totalMs).append(" ms (").append(phasesSummary())
+                .append(connectionReused ? ", reused connection" : ", new connection").append(')');
+        if (failure != null) builder.append(" failed: ").append(failure);
+        for (String event : events) builder.append("\n  ").append(event);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.mybasicapp.metrics;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Request counters and latency histogram for one endpoint of one device. Thread-safe; recorded
+ * from HTTP callback threads, read through {@link #snapshot}.
+ */
+public final class EndpointStats {
+    /** How a request ended. */
+    public enum Outcome {
+        SUCCESS,       // 2xx/3xx
+        HTTP_ERROR,    // The device answered with 4xx/5xx
+        TIMEOUT,       // Connect, read or call timeout
+        NETWORK_ERROR  // Any other I/O failure (refused, reset, unknown host, ...)
+    }
+
+    private final LatencyHistogram latency = new LatencyHistogram(); // Only requests the device answered
+    private long successes = 0;
+    private long httpErrors = 0;
+    private long timeouts = 0;
+    private long networkErrors = 0;
+    private long bytesSent = 0;
+    private long bytesReceived = 0;
+
+    /**
+     * @param latencyMs Time until the response headers arrived, or until the failure.
+     *                  Only answered requests go into the histogram, so timeouts don't mask device latency.
+     */
+    public synchronized void record(@NonNull Outcome outcome, long latencyMs, long sent, long received) {
+        switch (outcome) {
+            case SUCCESS:
+                successes++;
+                latency.record(latencyMs);
+                break;
+            case HTTP_ERROR:
+                httpErrors++;
+                latency.record(latencyMs);
+                break;
+            case TIMEOUT:
+                timeouts++;
+                break;
+            case NETWORK_ERROR:
+                networkErrors++;
+                break;
+        }
+        bytesSent += Math.max(0, sent);
+        bytesReceived += Math.max(0, received);
+    }
+
+    @NonNull
+    public synchronized Snapshot snapshot(@NonNull String device, @NonNull String endpoint) {
+        return new Snapshot(device, endpoint, latency.copy(), successes, httpErrors, timeouts, networkErrors, bytesSent, bytesReceived);
+    }
+
+    /** Merges several endpoints into one snapshot with a single histogram copy, for per-device totals. */
+    @NonNull
+    static Snapshot merge(@NonNull String device, @NonNull String endpoint, @NonNull Iterable<EndpointStats> parts) {
+        LatencyHistogram merged = new LatencyHistogram();
+        long successes = 0, httpErrors = 0, timeouts = 0, networkErrors = 0, bytesSent = 0, bytesReceived = 0;
+        for (EndpointStats part : parts) {
+            synchronized (part) {
+                merged.add(part.latency);
+                successes += part.successes;
+                httpErrors += part.httpErrors;
+                timeouts += part.timeouts;
+                networkErrors += part.networkErrors;
+                bytesSent += part.bytesSent;
+                bytesReceived += part.bytesReceived;
+            }
+        }
+        return new Snapshot(device, endpoint, merged, successes, httpErrors, timeouts, networkErrors, bytesSent, bytesReceived);
+    }
+
+    /** Immutable copy of an {@link EndpointStats}, or of several merged (e.g. all endpoints of a device). */
+    public static final class Snapshot {
+        @NonNull public final String device;   // Address key, host[:port]
+        @NonNull public final String endpoint; // URL path, or "*" for a merged snapshot
+        public final long successes;
+        public final long httpErrors;
+        public final long timeouts;
+        public final long networkErrors;
+        public final long bytesSent;
+        public final long bytesReceived;
+        private final LatencyHistogram latency;
+
+        Snapshot(@NonNull String device, @NonNull String endpoint, LatencyHistogram latency, long successes, long httpErrors,
+                 long timeouts, long networkErrors, long bytesSent, long bytesReceived) {
+            this.device = device;
+            this.endpoint = endpoint;
+            this.latency = latency;
+            this.successes = successes;
+            this.httpErrors = httpErrors;
+            this.timeouts = timeouts;
+            this.networkErrors = networkErrors;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+        }
+
+        public long getRequests() {
+            return successes + httpErrors + timeouts + networkErrors;
+        }
+
+        /** Share of requests that did not succeed, 0 to 1. */
+        public double getErrorRate() {
+            long requests = getRequests();
+            return requests == 0 ? 0 : (double) (requests - successes) / requests;
+        }
+
+        public long p50Ms() {
+            return latency.valueAtPercentile(50);
+        }
+
+        public long p95Ms() {
+            return latency.valueAtPercentile(95);
+        }
+
+        public long p99Ms() {
+            return latency.valueAtPercentile(99);
+        }
+
+        public long maxMs() {
+            return latency.getMaxMs();
+        }
+
+        public double meanMs() {
+            return latency.getMeanMs();
+        }
+    }
+}
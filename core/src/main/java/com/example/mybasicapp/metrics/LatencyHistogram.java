@@ -0,0 +1,86 @@
+package com.example.mybasicapp.metrics;
+
+/**
+ * Fixed-memory, log-linear histogram of latencies in milliseconds (HdrHistogram-style). Values
+ * below 16 ms get a bucket each; above that, every power of two is split into 16 equal buckets,
+ * so a reported percentile is at most 1/16 (6.25%) above the true value. Values from 2^17 ms
+ * (~131 s) up share the last bucket. 224 counters, whatever the number of samples.
+ * <p>
+ * Not thread-safe; {@link EndpointStats} synchronizes access.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // 16
+    private static final int MAX_EXPONENT = 16;                   // Largest tracked value is 2^17 - 1 ms
+    private static final long MAX_TRACKED_MS = (1L << (MAX_EXPONENT + 1)) - 1;
+    static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS; // 224
+
+    private final int[] counts = new int[BUCKET_COUNT];
+    private long count = 0;
+    private long sumMs = 0;
+    private long maxMs = 0;
+
+    public void record(long valueMs) {
+        long value = Math.max(0, valueMs);
+        counts[bucketOf(Math.min(value, MAX_TRACKED_MS))]++;
+        count++;
+        sumMs += value;
+        if (value > maxMs) maxMs = value;
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) counts[i] += other.counts[i];
+        count += other.count;
+        sumMs += other.sumMs;
+        maxMs = Math.max(maxMs, other.maxMs);
+    }
+
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.add(this);
+        return copy;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMaxMs() {
+        return maxMs;
+    }
+
+    /** @return Mean latency, or 0 if nothing was recorded. */
+    public double getMeanMs() {
+        return count == 0 ? 0 : (double) sumMs / count;
+    }
+
+    /**
+     * @param percentile 0 to 100, e.g. 99 for p99.
+     * @return Upper bound of the bucket holding that percentile (never above the max seen), or 0 if empty.
+     */
+    public long valueAtPercentile(double percentile) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upperBoundOf(i), maxMs);
+        }
+        return maxMs;
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BUCKET_BITS
+        int subBucket = (int) (value >> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (SUB_BUCKETS + subBucket) * width + width - 1;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.mybasicapp.metrics;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Process-wide request statistics per device and endpoint, fed by the HTTP clients (in the app,
+ * through MetricsInterceptor and CallTimingListener) and read by the diagnostics screen. Memory is
+ * bounded: one {@link EndpointStats} per device and endpoint, at most {@link #MAX_ENDPOINTS_PER_DEVICE}
+ * endpoints per device (further paths are counted under {@link #OTHER_ENDPOINT}), one
+ * {@link CallPhaseStats} per device and the last {@link #MAX_TRACES} call traces.
+ */
+public final class RequestMetrics {
+    public static final String ALL_ENDPOINTS = "*";
+    public static final String OTHER_ENDPOINT = "(other)";
+    private static final int MAX_ENDPOINTS_PER_DEVICE = 16;
+    private static final int MAX_TRACES = 50;
+    private static final double DEFAULT_TRACE_SAMPLE_RATE = 0.01;
+
+    private static final RequestMetrics INSTANCE = new RequestMetrics();
+
+    // Device address key -> endpoint path -> stats
+    private final Map<String, Map<String, EndpointStats>> statsByDevice = new ConcurrentHashMap<>();
+    private final Map<String, CallPhaseStats> phasesByDevice = new ConcurrentHashMap<>();
+    private final ArrayDeque<CallTrace> traces = new ArrayDeque<>(MAX_TRACES); // Guarded by itself, newest last
+    private volatile double traceSampleRate = DEFAULT_TRACE_SAMPLE_RATE;
+
+    @NonNull
+    public static RequestMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param device   Address key of the device (lower-case host, plus ":port" if not 80).
+     * @param endpoint URL path, e.g. "/" or "/get_config".
+     */
+    public void record(@NonNull String device, @NonNull String endpoint, @NonNull EndpointStats.Outcome outcome,
+                       long latencyMs, long bytesSent, long bytesReceived) {
+        Map<String, EndpointStats> byEndpoint = statsByDevice.computeIfAbsent(device, k -> new ConcurrentHashMap<>());
+        EndpointStats stats = byEndpoint.get(endpoint);
+        if (stats == null) {
+            String key = byEndpoint.size() < MAX_ENDPOINTS_PER_DEVICE ? endpoint : OTHER_ENDPOINT;
+            stats = byEndpoint.computeIfAbsent(key, k -> new EndpointStats());
+        }
+        stats.record(outcome, latencyMs, bytesSent, bytesReceived);
+    }
+
+    /** Phase timings of one finished call; see {@link CallPhaseStats#record}. */
+    public void recordPhases(@NonNull String device, @NonNull long[] phaseMs, boolean connectionReused) {
+        phasesByDevice.computeIfAbsent(device, k -> new CallPhaseStats()).record(phaseMs, connectionReused);
+    }
+
+    /** Whether the next call should keep a full event trace. Decided per call, when it starts. */
+    public boolean shouldSampleTrace() {
+        double rate = traceSampleRate;
+        return rate > 0 && (rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /** @param rate 0 (only slow calls are traced) to 1 (every call). */
+    public void setTraceSampleRate(double rate) {
+        traceSampleRate = Math.max(0, Math.min(1, rate));
+    }
+
+    /** Keeps the trace, evicting the oldest once {@link #MAX_TRACES} are held. */
+    public void addTrace(@NonNull CallTrace trace) {
+        synchronized (traces) {
+            if (traces.size() == MAX_TRACES) traces.removeFirst();
+            traces.addLast(trace);
+        }
+    }
+
+    /** Newest first. */
+    @NonNull
+    public List<CallTrace> getRecentTraces() {
+        List<CallTrace> recent;
+        synchronized (traces) {
+            recent = new ArrayList<>(traces);
+        }
+        Collections.reverse(recent);
+        return recent;
+    }
+
+    /** One snapshot per device that completed at least one call, sorted by device. */
+    @NonNull
+    public List<CallPhaseStats.Snapshot> getPhaseSnapshots() {
+        List<CallPhaseStats.Snapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, CallPhaseStats> device : phasesByDevice.entrySet()) {
+            snapshots.add(device.getValue().snapshot(device.getKey()));
+        }
+        Collections.sort(snapshots, (a, b) -> a.device.compareTo(b.device));
+        return snapshots;
+    }
+
+    /** One snapshot per device and endpoint, sorted by device, then endpoint. */
+    @NonNull
+    public List<EndpointStats.Snapshot> getEndpointSnapshots() {
+        List<EndpointStats.Snapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, Map<String, EndpointStats>> device : statsByDevice.entrySet()) {
+            for (Map.Entry<String, EndpointStats> endpoint : device.getValue().entrySet()) {
+                snapshots.add(endpoint.getValue().snapshot(device.getKey(), endpoint.getKey()));
+            }
+        }
+        Collections.sort(snapshots, (a, b) -> {
+            int byDevice = a.device.compareTo(b.device);
+            return byDevice != 0 ? byDevice : a.endpoint.compareTo(b.endpoint);
+        });
+        return snapshots;
+    }
+
+    /** One snapshot per device with all its endpoints merged ({@link #ALL_ENDPOINTS}), sorted by device. */
+    @NonNull
+    public List<EndpointStats.Snapshot> getDeviceSnapshots() {
+        List<EndpointStats.Snapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, Map<String, EndpointStats>> device : statsByDevice.entrySet()) {
+            snapshots.add(EndpointStats.merge(device.getKey(), ALL_ENDPOINTS, device.getValue().values()));
+        }
+        Collections.sort(snapshots, (a, b) -> a.device.compareTo(b.device));
+        return snapshots;
+    }
+
+    public void reset() {
+        statsByDevice.clear();
+        phasesByDevice.clear();
+        synchronized (traces) {
+            traces.clear();
+        }
+    }
+
+    /**
+     * Per-endpoint rows followed by per-device totals (endpoint "*"), as CSV. Only the totals carry
+     * the p95 of each {@link CallPhase} and the connection reuse rate; empty where not measured.
+     */
+    public void writeCsv(@NonNull Writer writer) throws IOException {
+        StringBuilder header = new StringBuilder("device,endpoint,requests,successes,http_errors,timeouts,network_errors,error_rate,"
+                + "p50_ms,p95_ms,p99_ms,max_ms,mean_ms,bytes_sent,bytes_received");
+        for (CallPhase phase : CallPhase.values()) header.append(',').append(phase.label).append("_p95_ms");
+        writer.write(header.append(",connection_reuse\n").toString());
+        for (EndpointStats.Snapshot snapshot : getEndpointSnapshots()) writeCsvRow(writer, snapshot, null);
+        Map<String, CallPhaseStats.Snapshot> phases = new HashMap<>();
+        for (CallPhaseStats.Snapshot snapshot : getPhaseSnapshots()) phases.put(snapshot.device, snapshot);
+        for (EndpointStats.Snapshot snapshot : getDeviceSnapshots()) writeCsvRow(writer, snapshot, phases.get(snapshot.device));
+    }
+
+    private static void writeCsvRow(Writer writer, EndpointStats.Snapshot s, CallPhaseStats.Snapshot phases) throws IOException {
+        StringBuilder row = new StringBuilder(String.format(Locale.US, "%s,%s,%d,%d,%d,%d,%d,%.4f,%d,%d,%d,%d,%.1f,%d,%d",
+                s.device, s.endpoint, s.getRequests(), s.successes, s.httpErrors, s.timeouts, s.networkErrors,
+                s.getErrorRate(), s.p50Ms(), s.p95Ms(), s.p99Ms(), s.maxMs(), s.meanMs(), s.bytesSent, s.bytesReceived));
+        for (CallPhase phase : CallPhase.values()) {
+            row.append(',');
+            if (phases != null && phases.p95Ms(phase) >= 0) row.append(phases.p95Ms(phase));
+        }
+        row.append(',');
+        if (phases != null) row.append(String.format(Locale.US, "%.4f", phases.getReuseRate()));
+        writer.write(row.append('\n').toString());
+    }
+}
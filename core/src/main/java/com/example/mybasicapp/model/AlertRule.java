@@ -0,0 +1,43 @@
+package com.example.mybasicapp.model;
+
+import androidx.annotation.NonNull;
+
+/**
+ * When a device's readings raise a noise alert: as soon as the level crosses the threshold (see
+ * {@link SensorReading#exceeds}), and while it stays above it again only after the cooldown. A
+ * reading below the threshold, an invalid one, or one with an error re-arms the rule.
+ * <p>
+ * One instance per device. Used by the app's polling service and by the headless collector, so both
+ * alert on the same readings. Thread-safe; the threshold is passed per reading so it can change.
+ */
+public final class AlertRule {
+    private final long cooldownMs;
+
+    // Guarded by "this"
+    private boolean aboveThreshold = false;
+    private long lastAlertMs = 0;
+
+    /** @param cooldownMs Minimum time between alerts while the level stays above the threshold. */
+    public AlertRule(long cooldownMs) {
+        this.cooldownMs = Math.max(0, cooldownMs);
+    }
+
+    /**
+     * Feeds one reading to the rule.
+     * @param nowMs Time of the reading, from any clock that doesn't go backwards.
+     * @return True if this reading should raise an alert.
+     */
+    public synchronized boolean shouldAlert(@NonNull SensorReading reading, double thresholdDb, long nowMs) {
+        boolean exceeds = reading.exceeds(thresholdDb);
+        boolean alert = exceeds && (!aboveThreshold || nowMs - lastAlertMs >= cooldownMs);
+        if (alert) lastAlertMs = nowMs;
+        aboveThreshold = exceeds;
+        return alert;
+    }
+
+    /** Forgets the device's history, e.g. when a different device is polled; the next loud reading alerts. */
+    public synchronized void reset() {
+        aboveThreshold = false;
+        lastAlertMs = 0;
+    }
+}
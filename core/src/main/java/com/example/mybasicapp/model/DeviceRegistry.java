@@ -0,0 +1,165 @@
+package com.example.mybasicapp.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ordered set of {@link EspDevice}s keyed by {@link EspDevice#getAddressKey()}.
+ * <p>
+ * Lookups by address are O(1). Every mutation publishes a new immutable snapshot list
+ * (copy-on-write), so readers such as LiveData observers and adapters can hold on to a
+ * snapshot without copying or locking. Devices are copied on the way in; treat the devices in a
+ * snapshot as read-only and go through {@link #update} to change them.
+ * <p>
+ * An optional {@link ChangeListener} receives each individual change so persistence can
+ * write only the affected records.
+ */
+public class DeviceRegistry {
+
+    public interface ChangeListener {
+        /** A device was added, or replaced in place (same address key). */
+        void onDeviceUpserted(@NonNull EspDevice device);
+        /** The device with this address key was removed. */
+        void onDeviceRemoved(@NonNull String addressKey);
+        /** Order or membership changed in a way single-record changes can't describe (bulk replace, address edit). */
+        void onDevicesReplaced(@NonNull List<EspDevice> snapshot);
+    }
+
+    private final Map<String, EspDevice> devicesByKey = new LinkedHashMap<>();
+    private volatile List<EspDevice> snapshot = Collections.emptyList();
+    @Nullable
+    private ChangeListener changeListener;
+
+    public void setChangeListener(@Nullable ChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /** Current immutable snapshot, in insertion order. */
+    @NonNull
+    public List<EspDevice> getSnapshot() {
+        return snapshot;
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    @Nullable
+    public synchronized EspDevice get(@Nullable String address) {
+        String key = EspDevice.canonicalAddress(address);
+        return key != null ? devicesByKey.get(key) : null;
+    }
+
+    public synchronized boolean contains(@Nullable String address) {
+        String key = EspDevice.canonicalAddress(address);
+        return key != null && devicesByKey.containsKey(key);
+    }
+
+    /**
+     * Adds a device if no device with the same address exists.
+     * @return true if it was added.
+     */
+    public boolean add(@NonNull EspDevice device) {
+        EspDevice copy = copyOf(device);
+        ChangeListener listener;
+        synchronized (this) {
+            if (devicesByKey.containsKey(copy.getAddressKey())) return false;
+            devicesByKey.put(copy.getAddressKey(), copy);
+            publishSnapshot();
+            listener = changeListener;
+        }
+        if (listener != null) listener.onDeviceUpserted(copy);
+        return true;
+    }
+
+    /**
+     * Replaces the device stored under {@code existingAddress} with {@code updated}, keeping its position.
+     * @return false if there is no such device or the new address belongs to a different device.
+     */
+    public boolean update(@NonNull String existingAddress, @NonNull EspDevice updated) {
+        String oldKey = EspDevice.canonicalAddress(existingAddress);
+        EspDevice copy = copyOf(updated);
+        ChangeListener listener;
+        boolean addressChanged;
+        List<EspDevice> published;
+        synchronized (this) {
+            if (!devicesByKey.containsKey(oldKey)) return false;
+            addressChanged = !oldKey.equals(copy.getAddressKey());
+            if (addressChanged) {
+                if (devicesByKey.containsKey(copy.getAddressKey())) return false;
+                // Rebuild to keep the edited device at the same position under its new key
+                Map<String, EspDevice> reordered = new LinkedHashMap<>();
+                for (Map.Entry<String, EspDevice> entry : devicesByKey.entrySet()) {
+                    if (entry.getKey().equals(oldKey)) {
+                        reordered.put(copy.getAddressKey(), copy);
+                    } else {
+                        reordered.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                devicesByKey.clear();
+                devicesByKey.putAll(reordered);
+            } else {
+                devicesByKey.put(oldKey, copy);
+            }
+            published = publishSnapshot();
+            listener = changeListener;
+        }
+        if (listener != null) {
+            if (addressChanged) listener.onDevicesReplaced(published);
+            else listener.onDeviceUpserted(copy);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the device with this address.
+     * @return true if a device was removed.
+     */
+    public boolean remove(@NonNull String address) {
+        String key = EspDevice.canonicalAddress(address);
+        ChangeListener listener;
+        synchronized (this) {
+            if (devicesByKey.remove(key) == null) return false;
+            publishSnapshot();
+            listener = changeListener;
+        }
+        if (listener != null) listener.onDeviceRemoved(key);
+        return true;
+    }
+
+    /**
+     * Replaces the whole registry. Later duplicates (same address) are dropped, first one wins.
+     * @param notifyListener false when loading from storage, so the listener doesn't write back what it just read.
+     */
+    public void replaceAll(@NonNull List<EspDevice> devices, boolean notifyListener) {
+        ChangeListener listener;
+        List<EspDevice> published;
+        synchronized (this) {
+            devicesByKey.clear();
+            for (EspDevice device : devices) {
+                if (!devicesByKey.containsKey(device.getAddressKey())) {
+                    devicesByKey.put(device.getAddressKey(), copyOf(device));
+                }
+            }
+            published = publishSnapshot();
+            listener = notifyListener ? changeListener : null;
+        }
+        if (listener != null) listener.onDevicesReplaced(published);
+    }
+
+    private List<EspDevice> publishSnapshot() {
+        List<EspDevice> next = Collections.unmodifiableList(new ArrayList<>(devicesByKey.values()));
+        snapshot = next;
+        return next;
+    }
+
+    private static EspDevice copyOf(EspDevice device) {
+        return new EspDevice(device.getName(), device.getAddress());
+    }
+}
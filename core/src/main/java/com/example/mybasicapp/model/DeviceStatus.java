@@ -0,0 +1,91 @@
+package com.example.mybasicapp.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Immutable health snapshot for one device, produced by the app's DeviceHealthProber and by the
+ * collector's pollers. A new instance is created per probe result, so instances can be shared with
+ * the UI thread and compared with {@link #equals}.
+ */
+public final class DeviceStatus {
+    public static final double UNKNOWN_DB = Double.NaN;
+
+    private static final double LATENCY_SMOOTHING = 0.3; // Weight of the newest sample
+
+    @NonNull public final String addressKey;
+    public final boolean online;
+    public final double lastDb;              // Last db_calibrated reading, UNKNOWN_DB if never read
+    public final long lastSeenMs;            // Wall-clock time of the last successful probe, 0 if never
+    public final long rollingLatencyMs;      // Smoothed request latency, -1 if never measured
+    public final int consecutiveFailures;
+
+    public DeviceStatus(@NonNull String addressKey, boolean online, double lastDb, long lastSeenMs,
+                        long rollingLatencyMs, int consecutiveFailures) {
+        this.addressKey = addressKey;
+        this.online = online;
+        this.lastDb = lastDb;
+        this.lastSeenMs = lastSeenMs;
+        this.rollingLatencyMs = rollingLatencyMs;
+        this.consecutiveFailures = consecutiveFailures;
+    }
+
+    /** Status after a successful probe. Latency is smoothed with the previous value; a missing dB keeps the last one. */
+    @NonNull
+    public static DeviceStatus afterSuccess(@NonNull String addressKey, @Nullable DeviceStatus previous, double db, long latencyMs) {
+        long smoothedLatency = previous == null || previous.rollingLatencyMs < 0
+                ? latencyMs
+                : Math.round(LATENCY_SMOOTHING * latencyMs + (1 - LATENCY_SMOOTHING) * previous.rollingLatencyMs);
+        double lastDb = Double.isNaN(db) && previous != null ? previous.lastDb : db;
+        return new DeviceStatus(addressKey, true, lastDb, System.currentTimeMillis(), smoothedLatency, 0);
+    }
+
+    /** Status after a failed probe; what was last known about the device is kept. */
+    @NonNull
+    public static DeviceStatus afterFailure(@NonNull String addressKey, @Nullable DeviceStatus previous) {
+        return previous == null
+                ? new DeviceStatus(addressKey, false, UNKNOWN_DB, 0, -1, 1)
+                : new DeviceStatus(addressKey, false, previous.lastDb, previous.lastSeenMs, previous.rollingLatencyMs, previous.consecutiveFailures + 1);
+    }
+
+    public boolean hasBeenSeen() {
+        return lastSeenMs > 0;
+    }
+
+    public boolean hasDb() {
+        return !Double.isNaN(lastDb);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DeviceStatus that = (DeviceStatus) o;
+        return online == that.online
+                && Double.compare(lastDb, that.lastDb) == 0
+                && lastSeenMs == that.lastSeenMs
+                && rollingLatencyMs == that.rollingLatencyMs
+                && consecutiveFailures == that.consecutiveFailures
+                && addressKey.equals(that.addressKey);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = addressKey.hashCode();
+        result = 31 * result + (online ? 1 : 0);
+        long dbBits = Double.doubleToLongBits(lastDb);
+        result = 31 * result + (int) (dbBits ^ (dbBits >>> 32));
+        result = 31 * result + (int) (lastSeenMs ^ (lastSeenMs >>> 32));
+        result = 31 * result + (int) (rollingLatencyMs ^ (rollingLatencyMs >>> 32));
+        result = 31 * result + consecutiveFailures;
+        return result;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "DeviceStatus{" + addressKey + ", online=" + online + ", lastDb=" + lastDb +
+                ", lastSeenMs=" + lastSeenMs + ", latencyMs=" + rollingLatencyMs +
+                ", failures=" + consecutiveFailures + '}';
+    }
+}
@@ -4,16 +4,19 @@ import androidx.annotation.NonNull; // Import for @NonNull annotation
 
 import org.json.JSONException;
 import org.json.JSONObject;
+import java.util.Locale;
 import java.util.Objects;
 
 public class EspDevice {
     private String name; // User-defined name for easier identification
     private String address; // IP address or hostname (e.g., "192.168.1.100", "mrcoopersesp.local")
+    private String addressKey; // Canonical (lower-case) address, computed once; used for equality and lookups
 
     // Constructor taking only address, name defaults to address
     public EspDevice(@NonNull String address) {
         Objects.requireNonNull(address, "Address cannot be null");
-        this.address = address.replaceFirst("^(http://|https://)", ""); // Normalize
+        this.address = stripScheme(address);
+        this.addressKey = canonicalAddress(this.address);
         this.name = this.address; // Default name to normalized address
     }
 
@@ -22,7 +25,8 @@ public class EspDevice {
         Objects.requireNonNull(name, "Name cannot be null");
         Objects.requireNonNull(address, "Address cannot be null");
         this.name = name;
-        this.address = address.replaceFirst("^(http://|https://)", ""); // Normalize
+        this.address = stripScheme(address);
+        this.addressKey = canonicalAddress(this.address);
     }
 
     public String getName() {
@@ -40,12 +44,38 @@ public class EspDevice {
 
     /**
      * Sets the address for the ESP device.
-     * The address will be normalized by removing "http://" or "https://" prefixes.
+     * The address will be normalized by removing an "http://" or "https://" prefix, in any case.
      * @param address The IP address or hostname. Cannot be null.
      */
     public void setAddress(@NonNull String address) {
         Objects.requireNonNull(address, "Address cannot be null");
-        this.address = address.replaceFirst("^(http://|https://)", ""); // Normalize
+        this.address = stripScheme(address);
+        this.addressKey = canonicalAddress(this.address);
+    }
+
+    /**
+     * Returns the canonical form of this device's address (lower-case, no schema), suitable as a map key.
+     */
+    public String getAddressKey() {
+        return addressKey;
+    }
+
+    /**
+     * Canonicalizes an address the same way {@link #getAddressKey()} does, so lookups by a raw
+     * address (e.g. from AppViewModel's active address) match stored devices.
+     * @param address IP address or hostname, with or without "http://" / "https://". May be null.
+     * @return The canonical key, or null if address is null.
+     */
+    public static String canonicalAddress(String address) {
+        if (address == null) return null;
+        return stripScheme(address).toLowerCase(Locale.ROOT);
+    }
+
+    /** Drops a leading "http://" or "https://" in any case; the rest keeps its case. */
+    private static String stripScheme(String address) {
+        if (address.regionMatches(true, 0, "http://", 0, 7)) return address.substring(7);
+        if (address.regionMatches(true, 0, "https://", 0, 8)) return address.substring(8);
+        return address;
     }
 
     /**
@@ -99,13 +129,13 @@ public class EspDevice {
         EspDevice espDevice = (EspDevice) o;
         // Two EspDevice objects are considered equal if their addresses are the same (case-insensitive).
         // Name is for display and user convenience, address is the unique identifier.
-        return address.equalsIgnoreCase(espDevice.address);
+        return addressKey.equals(espDevice.addressKey);
     }
 
     @Override
     public int hashCode() {
-        // Hash code based on the address (case-insensitive).
-        return Objects.hash(address.toLowerCase());
+        // Hash code based on the address (case-insensitive), via the precomputed canonical key.
+        return addressKey.hashCode();
     }
 
     @NonNull
@@ -0,0 +1,51 @@
+package com.example.mybasicapp.model;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Objects;
+
+/**
+ * One config value waiting to be written to a device that was unreachable. Immutable.
+ * A later edit of the same field on the same device replaces the change with a higher {@link #seq},
+ * so only the newest value is ever sent.
+ */
+public final class PendingConfigChange {
+    @NonNull public final String address;   // As entered, used to reach the device
+    @NonNull public final String addressKey; // EspDevice.canonicalAddress(address)
+    @NonNull public final String field;     // A ConfigTransaction.FIELD_* name
+    public final double value;
+    public final long seq;                  // Increases with every queued change; tells superseded ones apart
+    public final long queuedAtMs;           // Wall-clock time the change was queued
+
+    public PendingConfigChange(@NonNull String address, @NonNull String field, double value, long seq, long queuedAtMs) {
+        this.address = address;
+        this.addressKey = EspDevice.canonicalAddress(address);
+        this.field = field;
+        this.value = value;
+        this.seq = seq;
+        this.queuedAtMs = queuedAtMs;
+    }
+
+    public JSONObject toJson() {
+        JSONObject jsonObject = new JSONObject();
+        try {
+            jsonObject.put("address", address);
+            jsonObject.put("field", field);
+            jsonObject.put("value", value);
+            jsonObject.put("seq", seq);
+            jsonObject.put("queued_at", queuedAtMs);
+        } catch (JSONException e) {
+            // Fixed keys and finite values; not expected
+        }
+        return jsonObject;
+    }
+
+    public static PendingConfigChange fromJson(@NonNull JSONObject jsonObject) throws JSONException {
+        Objects.requireNonNull(jsonObject, "Input JSONObject cannot be null");
+        return new PendingConfigChange(jsonObject.getString("address"), jsonObject.getString("field"),
+                jsonObject.getDouble("value"), jsonObject.getLong("seq"), jsonObject.optLong("queued_at", 0));
+    }
+}
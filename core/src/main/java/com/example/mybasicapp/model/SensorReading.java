@@ -0,0 +1,54 @@
+package com.example.mybasicapp.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * One sample from an ESP's data endpoint ({@code GET /}), which sends
+ * {@code {"db_calibrated": .., "rms": .., "status": "..", "error": ".."}}. Immutable.
+ * <p>
+ * Shared by the app's polling service and health prober and by the headless collector, so all of
+ * them agree on what counts as a valid reading and when it should raise an alert.
+ */
+public final class SensorReading {
+    private static final double MISSING = -999.0; // What the firmware and older parsing used for "no value"
+
+    public final double dbCalibrated; // DeviceStatus.UNKNOWN_DB if absent
+    public final double rms;          // NaN if absent
+    @Nullable public final String status;
+    @Nullable public final String error; // Null when the ESP reports none ("", "null" or missing)
+
+    private SensorReading(double dbCalibrated, double rms, @Nullable String status, @Nullable String error) {
+        this.dbCalibrated = dbCalibrated;
+        this.rms = rms;
+        this.status = status;
+        this.error = error;
+    }
+
+    @NonNull
+    public static SensorReading parse(@NonNull String json) throws JSONException {
+        JSONObject object = new JSONObject(json);
+        double db = object.optDouble("db_calibrated", MISSING);
+        double rms = object.optDouble("rms", Double.NaN);
+        String status = object.has("status") && !object.isNull("status") ? object.optString("status") : null;
+        String error = object.has("error") && !object.isNull("error") ? object.optString("error") : null;
+        if (error != null && (error.isEmpty() || "null".equalsIgnoreCase(error))) error = null;
+        return new SensorReading(db == MISSING || Double.isNaN(db) ? DeviceStatus.UNKNOWN_DB : db, rms, status, error);
+    }
+
+    public boolean hasDb() {
+        return !Double.isNaN(dbCalibrated);
+    }
+
+    public boolean hasError() {
+        return error != null;
+    }
+
+    /** Alert condition: a valid level at or above the threshold, with no error reported by the ESP. */
+    public boolean exceeds(double thresholdDb) {
+        return hasDb() && !hasError() && dbCalibrated >= thresholdDb;
+    }
+}
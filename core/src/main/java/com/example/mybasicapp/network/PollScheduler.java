@@ -0,0 +1,275 @@
+package com.example.mybasicapp.network;
+
+import androidx.annotation.NonNull;
+
+import com.example.mybasicapp.metrics.LatencyHistogram;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Decides when each polled device is read next.
+ * <ul>
+ *   <li>Fixed rate: a device falls due every interval counted from its previous due time, not from
+ *   when its last response arrived, so slow responses don't stretch the period.</li>
+ *   <li>At most one poll per device is in flight. Every due time that passes while the device's
+ *   previous poll is still queued or running is skipped and counted as a missed deadline.</li>
+ *   <li>At most {@code maxInFlight} polls run at once across all devices. Due devices wait in
+ *   FIFO order; the wait from due time to start is recorded as queueing delay.</li>
+ *   <li>After a failure, the device is next due after a jittered exponential backoff of at least
+ *   one interval (up to {@code maxBackoffMs}), like the collector's DevicePoller.</li>
+ * </ul>
+ * Time comes from a {@link Timer}: the app's HttpPollingService uses a Handler on the main looper,
+ * the simulator's SchedulerSimulation a virtual clock, so an hour of fleet behaviour runs in seconds.
+ * <p>
+ * Thread-safe. Polls are started outside the lock and may complete on any thread.
+ */
+public final class PollScheduler {
+
+    /** Clock and timer the scheduler runs on. */
+    public interface Timer {
+        /** Monotonic milliseconds; only differences are used. */
+        long nowMs();
+
+        /** Runs the task once after the delay, never synchronously from this call. */
+        @NonNull
+        Cancellable schedule(@NonNull Runnable task, long delayMs);
+    }
+
+    public interface Cancellable {
+        void cancel();
+    }
+
+    /** Starts reading one device. Must not block; {@code completion} is called once, when the poll ends. */
+    public interface PollTask {
+        void poll(@NonNull String key, @NonNull Completion completion);
+    }
+
+    public interface Completion {
+        void finish(boolean success);
+    }
+
+    /** Counters since the scheduler was created. */
+    public static final class Stats {
+        public final int devices;
+        public final long started;
+        public final long succeeded;
+        public final long failed;
+        public final long missedDeadlines;
+        public final int peakInFlight;
+        public final int peakQueued;
+        private final LatencyHistogram queueDelay;
+
+        Stats(int devices, long started, long succeeded, long failed, long missedDeadlines, int peakInFlight,
+              int peakQueued, LatencyHistogram queueDelay) {
+            this.devices = devices;
+            this.started = started;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.missedDeadlines = missedDeadlines;
+            this.peakInFlight = peakInFlight;
+            this.peakQueued = peakQueued;
+            this.queueDelay = queueDelay;
+        }
+
+        /** Time from due to start, in ms, at the given percentile (0 to 100). */
+        public long queueDelayAtPercentile(double percentile) {
+            return queueDelay.valueAtPercentile(percentile);
+        }
+
+        public long getMaxQueueDelayMs() {
+            return queueDelay.getMaxMs();
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "devices=" + devices + ", started=" + started + ", ok=" + succeeded + ", failed=" + failed
+                    + ", missed=" + missedDeadlines + ", peakInFlight=" + peakInFlight + ", peakQueued=" + peakQueued
+                    + ", queueDelay p50/p99/max=" + queueDelayAtPercentile(50) + "/" + queueDelayAtPercentile(99)
+                    + "/" + getMaxQueueDelayMs() + " ms";
+        }
+    }
+
+    private final class Target implements Runnable {
+        final String key;
+        final long intervalMs;
+        final RetryPolicy backoff;
+        long dueMs;
+        int failures = 0;
+        boolean removed = false;
+        Cancellable pending; // Timer for the next due time; null while queued or in flight
+
+        Target(String key, long intervalMs, long maxBackoffMs) {
+            this.key = key;
+            this.intervalMs = intervalMs;
+            this.backoff = new RetryPolicy(Integer.MAX_VALUE, intervalMs, Math.max(intervalMs, maxBackoffMs), 0, true);
+        }
+
+        @Override
+        public void run() {
+            onDue(this);
+        }
+    }
+
+    private final class PollCompletion implements Completion {
+        private final Target target;
+        private boolean finished = false; // Guarded by PollScheduler.this
+
+        PollCompletion(Target target) {
+            this.target = target;
+        }
+
+        @Override
+        public void finish(boolean success) {
+            onFinished(this, success);
+        }
+    }
+
+    private final Timer timer;
+    private final PollTask task;
+    private final int maxInFlight;
+    private final long maxBackoffMs;
+    private final Random random;
+
+    // Guarded by this
+    private final Map<String, Target> targets = new HashMap<>();
+    private final ArrayDeque<Target> ready = new ArrayDeque<>(); // Due, waiting for an in-flight slot
+    private int inFlight = 0;
+    private long started = 0;
+    private long succeeded = 0;
+    private long failed = 0;
+    private long missedDeadlines = 0;
+    private int peakInFlight = 0;
+    private int peakQueued = 0;
+    private final LatencyHistogram queueDelay = new LatencyHistogram();
+
+    /**
+     * @param maxInFlight  Polls allowed at once across all devices, at least 1.
+     * @param maxBackoffMs Longest wait after repeated failures; a device is never polled less often than this.
+     * @param random       Backoff jitter; pass a seeded one for repeatable runs.
+     */
+    public PollScheduler(@NonNull Timer timer, @NonNull PollTask task, int maxInFlight, long maxBackoffMs, @NonNull Random random) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be at least 1");
+        this.timer = timer;
+        this.task = task;
+        this.maxInFlight = maxInFlight;
+        this.maxBackoffMs = maxBackoffMs;
+        this.random = random;
+    }
+
+    /**
+     * Starts polling a device, replacing any earlier entry with the same key.
+     * @param initialDelayMs Delay before the first poll; spread these over one interval when adding many devices.
+     */
+    public synchronized void add(@NonNull String key, long intervalMs, long initialDelayMs) {
+        if (intervalMs <= 0) throw new IllegalArgumentException("intervalMs must be positive");
+        remove(key);
+        Target target = new Target(key, intervalMs, maxBackoffMs);
+        target.dueMs = timer.nowMs() + Math.max(0, initialDelayMs);
+        targets.put(key, target);
+        target.pending = timer.schedule(target, Math.max(0, initialDelayMs));
+    }
+
+    /** Stops polling a device. A poll already in flight finishes but is not followed by another. */
+    public synchronized void remove(@NonNull String key) {
+        Target target = targets.remove(key);
+        if (target == null) return;
+        target.removed = true;
+        if (target.pending != null) {
+            target.pending.cancel();
+            target.pending = null;
+        }
+        ready.remove(target);
+    }
+
+    public synchronized void removeAll() {
+        for (String key : new ArrayList<>(targets.keySet())) remove(key);
+    }
+
+    public synchronized boolean isPolling(@NonNull String key) {
+        return targets.containsKey(key);
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    @NonNull
+    public synchronized Stats getStats() {
+        return new Stats(targets.size(), started, succeeded, failed, missedDeadlines, peakInFlight, peakQueued,
+                queueDelay.copy());
+    }
+
+    private void onDue(Target target) {
+        List<PollCompletion> toStart;
+        synchronized (this) {
+            if (target.removed) return;
+            target.pending = null;
+            ready.add(target);
+            peakQueued = Math.max(peakQueued, ready.size());
+            toStart = takeReady();
+        }
+        start(toStart);
+    }
+
+    private void onFinished(PollCompletion completion, boolean success) {
+        List<PollCompletion> toStart;
+        synchronized (this) {
+            if (completion.finished) return;
+            completion.finished = true;
+            inFlight--;
+            if (success) succeeded++;
+            else failed++;
+            Target target = completion.target;
+            if (!target.removed) scheduleNext(target, success);
+            toStart = takeReady();
+        }
+        start(toStart);
+    }
+
+    /** Called with the lock held, when the target's poll has ended. */
+    private void scheduleNext(Target target, boolean success) {
+        long now = timer.nowMs();
+        long next = target.dueMs + target.intervalMs;
+        if (next <= now) {
+            // Due times that passed while queued or in flight are skipped, not made up in a burst
+            long skipped = (now - next) / target.intervalMs + 1;
+            missedDeadlines += skipped;
+            next += skipped * target.intervalMs;
+        }
+        target.failures = success ? 0 : target.failures + 1;
+        if (target.failures > 0) {
+            next = Math.max(next, now + target.backoff.backoffMs(target.failures, random));
+        }
+        target.dueMs = next;
+        target.pending = timer.schedule(target, next - now);
+    }
+
+    /** Called with the lock held; claims in-flight slots for the longest-waiting due devices. */
+    private List<PollCompletion> takeReady() {
+        if (ready.isEmpty() || inFlight >= maxInFlight) return null;
+        List<PollCompletion> toStart = new ArrayList<>(Math.min(ready.size(), maxInFlight - inFlight));
+        long now = timer.nowMs();
+        while (inFlight < maxInFlight && !ready.isEmpty()) {
+            Target target = ready.poll();
+            inFlight++;
+            started++;
+            queueDelay.record(now - target.dueMs);
+            toStart.add(new PollCompletion(target));
+        }
+        peakInFlight = Math.max(peakInFlight, inFlight);
+        return toStart;
+    }
+
+    private void start(List<PollCompletion> toStart) {
+        if (toStart == null) return;
+        for (PollCompletion completion : toStart) {
+            task.poll(completion.target.key, completion);
+        }
+    }
+}
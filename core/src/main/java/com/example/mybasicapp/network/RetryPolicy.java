@@ -0,0 +1,88 @@
+package com.example.mybasicapp.network;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * When and how soon a failed ESP request is tried again: capped exponential backoff with jitter,
+ * a maximum number of attempts and a total deadline measured from the first attempt.
+ * <p>
+ * Idempotent requests (reads, and writes of an absolute value) are retried after any network error
+ * and after transient HTTP statuses. Other requests are only retried when the failure proves the
+ * request never reached the device, e.g. the connection was refused or timed out while connecting.
+ * Immutable.
+ */
+public final class RetryPolicy {
+
+    /** Single attempt, for callers that handle failures themselves. */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0, 0, false);
+    /** GET requests. */
+    public static final RetryPolicy READ = new RetryPolicy(4, 250, 4_000, 20_000, true);
+    /** POSTs that set a value outright (threshold, calibration, config JSON without Wi-Fi credentials); repeating them is harmless. */
+    public static final RetryPolicy IDEMPOTENT_WRITE = new RetryPolicy(3, 500, 4_000, 25_000, true);
+    /** POSTs with side effects beyond the stored value, e.g. Wi-Fi credentials that make the ESP reconnect. */
+    public static final RetryPolicy UNSAFE_WRITE = new RetryPolicy(3, 500, 4_000, 25_000, false);
+
+    public final int maxAttempts;
+    public final long baseDelayMs;  // Backoff before the first retry, doubled for each further one
+    public final long maxDelayMs;   // Cap on a single backoff
+    public final long deadlineMs;   // Total budget across attempts and backoffs; 0 for none
+    public final boolean idempotent;
+
+    public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs, long deadlineMs, boolean idempotent) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMs = Math.max(0, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+        this.deadlineMs = Math.max(0, deadlineMs);
+        this.idempotent = idempotent;
+    }
+
+    /** Whether a request that failed with {@code e} may be sent again. */
+    public boolean isRetryable(@NonNull IOException e) {
+        if (idempotent) return true;
+        return failedBeforeSending(e);
+    }
+
+    /** Whether a request answered with {@code httpCode} may be sent again. Only idempotent requests are. */
+    public boolean isRetryable(int httpCode) {
+        if (!idempotent) return false;
+        // Busy or rebooting ESP, or the AP dropping the exchange; other errors will not change on retry
+        return httpCode == 408 || httpCode == 429 || httpCode == 502 || httpCode == 503 || httpCode == 504;
+    }
+
+    /**
+     * Backoff before the next attempt. Half of the exponential delay is fixed so retries do back off;
+     * the other half is random so devices configured together don't retry in lockstep against the AP.
+     * @param failedAttempts Attempts made so far, at least 1.
+     */
+    public long backoffMs(int failedAttempts) {
+        return backoffMs(failedAttempts, ThreadLocalRandom.current());
+    }
+
+    /** Same as {@link #backoffMs(int)} with a given random source, e.g. a seeded one for repeatable simulations. */
+    public long backoffMs(int failedAttempts, @NonNull Random random) {
+        int exponent = Math.min(Math.max(0, failedAttempts - 1), 20); // Avoid overflow; the cap applies long before
+        long delay = Math.min(maxDelayMs, baseDelayMs << exponent);
+        long half = delay / 2;
+        // nextDouble rather than nextLong(bound), which Random only has from API 35
+        return half + (long) (random.nextDouble() * (delay - half + 1));
+    }
+
+    /** Connection-level failures; the request body never left the phone. */
+    private static boolean failedBeforeSending(IOException e) {
+        if (e instanceof ConnectException || e instanceof NoRouteToHostException || e instanceof UnknownHostException) {
+            return true;
+        }
+        // Socket.connect() reports its timeout as "connect timed out"; read timeouts may follow a delivered request
+        return e instanceof SocketTimeoutException && e.getMessage() != null
+                && e.getMessage().toLowerCase(Locale.ROOT).contains("connect");
+    }
+}
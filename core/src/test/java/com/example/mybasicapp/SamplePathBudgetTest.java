@@ -0,0 +1,121 @@
+package com.example.mybasicapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.example.mybasicapp.logging.EventRing;
+import com.example.mybasicapp.metrics.EndpointStats;
+import com.example.mybasicapp.metrics.RequestMetrics;
+import com.example.mybasicapp.model.AlertRule;
+import com.example.mybasicapp.model.SensorReading;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Locale;
+
+/**
+ * Memory budgets for the work done per polled sample once its body has arrived, as both the app's
+ * HttpPollingService and the collector do it: parse the reading, record the request in
+ * {@link RequestMetrics}, log a poll event to the {@link EventRing} and run the {@link AlertRule}.
+ * A change that makes a sample allocate more, or makes the per-device state grow with the number
+ * of samples, fails {@code :core:test} and so {@code check}. The test JVM's heap is capped in
+ * core/build.gradle, so the peak heap of the run is bounded as well.
+ * <p>
+ * Throughput (samples per core-second) is not checked here; wall-clock rates vary too much between
+ * machines for a build gate. SensorReadingBenchmark and AlertBenchmark measure it with JMH.
+ */
+public class SamplePathBudgetTest {
+    private static final int DEVICES = 50;
+    private static final int WARMUP_SAMPLES = 50_000;
+    private static final int MEASURED_SAMPLES = 200_000;
+    private static final double THRESHOLD_DB = 70;
+
+    // Measured 1.2 KB per sample on JDK 17 (G1 and Serial), nearly all of it org.json's parse
+    private static final long MAX_ALLOCATED_BYTES_PER_SAMPLE = 2_500;
+    // Live heap added by the metrics, event ring and alert rules over the measured run; under 1 KB measured
+    private static final long MAX_RETAINED_HEAP_BYTES = 1024 * 1024;
+
+    private static final EventRing.Type EVENT_POLL_OK = EventRing.define("test_poll_ok", "http", "bytes");
+
+    private final RequestMetrics metrics = new RequestMetrics();
+    private final EventRing events = new EventRing(EventRing.DEFAULT_CAPACITY);
+    private final AlertRule[] rules = new AlertRule[DEVICES];
+    private final String[] deviceKeys = new String[DEVICES];
+    private final String[] bodies = new String[64];
+    private long alerts = 0;
+
+    public SamplePathBudgetTest() {
+        for (int i = 0; i < DEVICES; i++) {
+            rules[i] = new AlertRule(60_000);
+            deviceKeys[i] = "esp-" + i + ".local";
+        }
+        // Bodies as the firmware sends them, some of them above the threshold
+        for (int i = 0; i < bodies.length; i++) {
+            double db = 40 + (i * 37 % 50);
+            bodies[i] = String.format(Locale.ROOT,
+                    "{\"db_calibrated\":%.2f,\"rms\":%.4f,\"status\":\"ok\",\"error\":null}", db, db / 1000);
+        }
+    }
+
+    @Test
+    public void sample_staysWithinAllocationBudget() throws JSONException {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue("Per-thread allocation counters not available",
+                threads instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported());
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        runSamples(0, WARMUP_SAMPLES); // Let the JIT compile the path first
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        runSamples(WARMUP_SAMPLES, MEASURED_SAMPLES);
+        long perSample = (allocations.getThreadAllocatedBytes(threadId) - before) / MEASURED_SAMPLES;
+
+        assertTrue("Allocated " + perSample + " B per sample, budget " + MAX_ALLOCATED_BYTES_PER_SAMPLE,
+                perSample <= MAX_ALLOCATED_BYTES_PER_SAMPLE);
+        assertTrue("The loud bodies should have alerted", alerts > 0);
+    }
+
+    @Test
+    public void heldState_doesNotGrowWithSamples() throws JSONException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        runSamples(0, WARMUP_SAMPLES); // Every device, endpoint and ring slot now exists
+        long baseline = liveHeapBytes(memory);
+        runSamples(WARMUP_SAMPLES, MEASURED_SAMPLES);
+        long retained = liveHeapBytes(memory) - baseline;
+
+        assertTrue("Heap grew by " + retained + " B over " + MEASURED_SAMPLES + " samples, budget " + MAX_RETAINED_HEAP_BYTES,
+                retained <= MAX_RETAINED_HEAP_BYTES);
+        EndpointStats.Snapshot first = metrics.getDeviceSnapshots().get(0);
+        assertEquals("Samples recorded for one device", (WARMUP_SAMPLES + MEASURED_SAMPLES) / DEVICES, first.successes);
+        assertEquals("Event ring stays at capacity", EventRing.DEFAULT_CAPACITY, events.size());
+    }
+
+    private void runSamples(int from, int count) throws JSONException {
+        for (int i = from; i < from + count; i++) {
+            int device = i % DEVICES;
+            String body = bodies[(i / DEVICES) % bodies.length];
+            SensorReading reading = SensorReading.parse(body);
+            metrics.record(deviceKeys[device], "/", EndpointStats.Outcome.SUCCESS, 12, 0, body.length());
+            events.record(EVENT_POLL_OK, deviceKeys[device], 200, body.length());
+            // One poll every 2.5 s per device
+            if (rules[device].shouldAlert(reading, THRESHOLD_DB, (i / DEVICES) * 2_500L)) alerts++;
+        }
+    }
+
+    /** Heap in use after a full collection, i.e. what is still referenced. */
+    private static long liveHeapBytes(MemoryMXBean memory) {
+        long used = Long.MAX_VALUE;
+        // System.gc() is a request; take the lowest of a few readings
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+}
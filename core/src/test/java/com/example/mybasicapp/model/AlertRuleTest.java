@@ -0,0 +1,81 @@
+package com.example.mybasicapp.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+public class AlertRuleTest {
+    private static final double THRESHOLD_DB = 70;
+    private static final long COOLDOWN_MS = 60_000;
+    private static final long POLL_MS = 2_500;
+
+    private final AlertRule rule = new AlertRule(COOLDOWN_MS);
+
+    @Test
+    public void quietReadings_neverAlert() throws JSONException {
+        for (long t = 0; t < 10 * COOLDOWN_MS; t += POLL_MS) {
+            assertFalse(rule.shouldAlert(reading(55), THRESHOLD_DB, t));
+        }
+    }
+
+    @Test
+    public void crossingTheThreshold_alertsRightAway() throws JSONException {
+        assertFalse(rule.shouldAlert(reading(69.9), THRESHOLD_DB, 0));
+        assertTrue("At the threshold counts", rule.shouldAlert(reading(70), THRESHOLD_DB, POLL_MS));
+    }
+
+    @Test
+    public void stayingLoud_alertsOncePerCooldown() throws JSONException {
+        int alerts = 0;
+        for (long t = 0; t < 5 * COOLDOWN_MS; t += POLL_MS) {
+            if (rule.shouldAlert(reading(85), THRESHOLD_DB, t)) alerts++;
+        }
+        assertEquals("Alerts over five cooldowns", 5, alerts);
+    }
+
+    @Test
+    public void droppingBelowAndCrossingAgain_alertsWithinTheCooldown() throws JSONException {
+        assertTrue(rule.shouldAlert(reading(85), THRESHOLD_DB, 0));
+        assertFalse(rule.shouldAlert(reading(85), THRESHOLD_DB, POLL_MS));
+        assertFalse(rule.shouldAlert(reading(60), THRESHOLD_DB, 2 * POLL_MS));
+        assertTrue("A new crossing is a new event", rule.shouldAlert(reading(85), THRESHOLD_DB, 3 * POLL_MS));
+    }
+
+    @Test
+    public void errorOrMissingLevel_rearmsAndNeverAlerts() throws JSONException {
+        assertTrue(rule.shouldAlert(reading(85), THRESHOLD_DB, 0));
+        SensorReading failed = SensorReading.parse("{\"db_calibrated\":90.0,\"error\":\"mic timeout\"}");
+        assertFalse("A reading with an error is not an alert", rule.shouldAlert(failed, THRESHOLD_DB, POLL_MS));
+        SensorReading noLevel = SensorReading.parse("{\"status\":\"ok\"}");
+        assertFalse(rule.shouldAlert(noLevel, THRESHOLD_DB, 2 * POLL_MS));
+        assertTrue("Loud again after the gap", rule.shouldAlert(reading(85), THRESHOLD_DB, 3 * POLL_MS));
+    }
+
+    @Test
+    public void loweredThreshold_appliesToTheNextReading() throws JSONException {
+        assertFalse(rule.shouldAlert(reading(65), THRESHOLD_DB, 0));
+        assertTrue(rule.shouldAlert(reading(65), 60, POLL_MS));
+    }
+
+    @Test
+    public void reset_forgetsTheCooldown() throws JSONException {
+        assertTrue(rule.shouldAlert(reading(85), THRESHOLD_DB, 0));
+        rule.reset();
+        assertTrue(rule.shouldAlert(reading(85), THRESHOLD_DB, POLL_MS));
+    }
+
+    @Test
+    public void zeroCooldown_alertsOnEveryLoudReading() throws JSONException {
+        AlertRule everyTime = new AlertRule(0);
+        for (long t = 0; t < 10 * POLL_MS; t += POLL_MS) {
+            assertTrue(everyTime.shouldAlert(reading(85), THRESHOLD_DB, t));
+        }
+    }
+
+    private static SensorReading reading(double db) throws JSONException {
+        return SensorReading.parse("{\"db_calibrated\":" + db + ",\"rms\":0.1,\"status\":\"ok\",\"error\":null}");
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.mybasicapp.simulator;
+
+import java.util.Random;
+
+/**
+ * Uncalibrated sound level of one simulated room. The ambient level drifts around a per-device
+ * base (mean-reverting random walk); loud events (a door, a shout, music) start at random, jump
+ * 20-45 dB above ambient and decay over a few seconds. Advanced lazily from the time of each sample,
+ * so devices polled at different rates still see a continuous trace.
+ */
+final class DbTrace {
+    private static final double REVERSION_PER_S = 0.2;  // How fast the level returns to ambient
+    private static final double WANDER_DB_PER_SQRT_S = 1.5;
+    private static final double EVENT_DECAY_S = 2.0;
+
+    private final Random random;
+    private final double ambientDb;
+    private final double eventRatePerS;
+    private double levelDb;
+    private double eventDb = 0; // Level of the current loud event above ambient, decays to 0
+    private long lastMs = -1;
+
+    DbTrace(Random random, double loudEventsPerMinute) {
+        this.random = random;
+        this.ambientDb = 35 + random.nextDouble() * 20;
+        this.eventRatePerS = loudEventsPerMinute / 60.0;
+        this.levelDb = ambientDb;
+    }
+
+    /** Not thread-safe; callers synchronize. */
+    double sample(long nowMs) {
+        double dt = lastMs < 0 ? 0 : Math.min(10, Math.max(0, (nowMs - lastMs) / 1000.0));
+        lastMs = nowMs;
+        levelDb += (ambientDb - levelDb) * Math.min(1, dt * REVERSION_PER_S)
+                + random.nextGaussian() * WANDER_DB_PER_SQRT_S * Math.sqrt(dt);
+        if (random.nextDouble() < 1 - Math.exp(-dt * eventRatePerS)) {
+            eventDb = Math.max(eventDb, 20 + random.nextDouble() * 25);
+        } else {
+            eventDb *= Math.exp(-dt / EVENT_DECAY_S);
+        }
+        // Levels add as energies, not as dB
+        double eventLevelDb = ambientDb + eventDb;
+        return 10 * Math.log10(Math.pow(10, levelDb / 10) + (eventDb > 0.5 ? Math.pow(10, eventLevelDb / 10) : 0));
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.mybasicapp.simulator;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts {@link SimulatorConfig#deviceCount} {@link SimulatedEsp}s on consecutive ports and,
+ * if configured, takes random devices offline for a while. Usable from the command line
+ * ({@link SimulatorMain}) or embedded, e.g. by benchmarks:
+ * <pre>
+ *   FleetSimulator fleet = new FleetSimulator(SimulatorConfig.parse("--devices", "1", "--latency-ms", "0", "--jitter-ms", "0"));
+ *   fleet.start();
+ *   String url = "http://" + fleet.getAddresses().get(0) + "/";
+ *   ...
+ *   fleet.stop();
+ * </pre>
+ */
+public final class FleetSimulator {
+    private static final System.Logger LOG = System.getLogger("FleetSimulator");
+
+    static {
+        // The JDK server writes headers and body separately; with Nagle on, loopback clients wait for
+        // the delayed ACK (~40 ms) on every request, which would swamp any injected latency
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final SimulatorConfig config;
+    private final FleetStats stats = new FleetStats();
+    private final Random random;
+    private final List<SimulatedEsp> devices = new ArrayList<>();
+    // Handlers sleep to inject latency, so they get their own threads rather than the server's dispatcher
+    private final ExecutorService handlerExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "SimulatedEspHandler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "FleetSimulator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public FleetSimulator(SimulatorConfig config) {
+        this.config = config;
+        this.random = new Random(config.seed);
+    }
+
+    /** Binds every device's port. If one port is taken, the devices already started are stopped again. */
+    public void start() throws IOException {
+        for (int i = 0; i < config.deviceCount; i++) {
+            String name = String.format(Locale.US, "Sim ESP %03d", i + 1);
+            SimulatedEsp device = new SimulatedEsp(name, config.basePort + i, config, stats, handlerExecutor,
+                    scheduler, new Random(random.nextLong()));
+            try {
+                device.goOnline();
+            } catch (IOException e) {
+                stop();
+                throw new IOException("Could not bind " + device.getAddress() + ": " + e.getMessage(), e);
+            }
+            devices.add(device);
+        }
+        if (config.outageEverySeconds > 0) {
+            for (SimulatedEsp device : devices) scheduleNextOutage(device);
+        }
+        LOG.log(System.Logger.Level.INFO, "Started " + devices.size() + " devices on " + config.bindAddress + ":"
+                + config.basePort + "-" + (config.basePort + devices.size() - 1) + " (seed " + config.seed + ").");
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+        for (SimulatedEsp device : devices) device.goOffline();
+        handlerExecutor.shutdownNow();
+    }
+
+    /** "host:port" of every device, in port order; the form EspDevice and the collector accept. */
+    public List<String> getAddresses() {
+        List<String> addresses = new ArrayList<>(devices.size());
+        for (SimulatedEsp device : devices) addresses.add(device.getAddress());
+        return Collections.unmodifiableList(addresses);
+    }
+
+    public FleetStats getStats() {
+        return stats;
+    }
+
+    /** Writes the device list as the JSON array of {"name", "address"} that the collector reads. */
+    public void writeDeviceList(Path file) throws IOException {
+        JSONArray array = new JSONArray();
+        for (SimulatedEsp device : devices) {
+            JSONObject json = new JSONObject();
+            json.put("name", device.name);
+            json.put("address", device.getAddress());
+            array.put(json);
+        }
+        Files.writeString(file, array.toString(2), StandardCharsets.UTF_8);
+    }
+
+    void logStatsEvery(long periodMs) {
+        scheduler.scheduleAtFixedRate(() -> {
+            int online = 0;
+            for (SimulatedEsp device : devices) {
+                if (device.isOnline()) online++;
+            }
+            LOG.log(System.Logger.Level.INFO, "Online " + online + "/" + devices.size() + ", " + stats);
+        }, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleNextOutage(SimulatedEsp device) {
+        // Exponentially distributed gaps, i.e. outages arrive independently at the configured mean rate
+        long delayMs = (long) (-Math.log(1 - random.nextDouble()) * config.outageEverySeconds * 1000);
+        scheduler.schedule(() -> {
+            // Between half and one and a half times the configured mean length
+            long durationMs = (long) (config.outageSeconds * 1000 * (0.5 + random.nextDouble()));
+            device.startOutage(durationMs);
+            scheduleNextOutage(device);
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+}
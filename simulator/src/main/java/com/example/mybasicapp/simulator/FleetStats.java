@@ -0,0 +1,22 @@
+package com.example.mybasicapp.simulator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Counters across all simulated devices, logged periodically by {@link FleetSimulator}. */
+public final class FleetStats {
+    final AtomicLong requests = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();   // Injected HTTP 500s
+    final AtomicLong dropped = new AtomicLong();  // Connections closed without a response
+    final AtomicLong outages = new AtomicLong();  // Including Wi-Fi reboots
+    final AtomicLong reboots = new AtomicLong();  // After /set_wifi_config
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    @Override
+    public String toString() {
+        return "requests=" + requests.get() + ", injected errors=" + errors.get() + ", dropped=" + dropped.get()
+                + ", outages=" + outages.get() + ", reboots=" + reboots.get();
+    }
+}
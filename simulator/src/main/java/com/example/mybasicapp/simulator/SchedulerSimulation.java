@@ -0,0 +1,226 @@
+package com.example.mybasicapp.simulator;
+
+import com.example.mybasicapp.network.PollScheduler;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Plays back a fleet of simulated devices against the app's {@link PollScheduler} in virtual time:
+ * no sockets and no sleeping, so an hour of polling thousands of devices takes a few seconds.
+ * Devices answer after a latency plus jitter, some requests fail or hang until the timeout, and
+ * devices can drop off the network for a while (every poll then times out).
+ * <p>
+ * Prints throughput, queueing delay and missed deadlines every {@code --report-every-min} of
+ * virtual time and at the end. Exits with status 1 if the scheduler ever ran two polls of one
+ * device at once or more polls than {@code --max-in-flight}. SchedulerSimulationTest runs it as part
+ * of {@code ./gradlew test}.
+ */
+public final class SchedulerSimulation {
+    static final String USAGE = String.join("\n",
+            "Usage: simulateScheduler [options]",
+            "  --devices <n>               Number of simulated devices (default: 2000)",
+            "  --minutes <n>               Virtual time to simulate (default: 60)",
+            "  --interval-ms <n>           Polling interval per device (default: 2500, as in the app)",
+            "  --max-in-flight <n>         Polls allowed at once (default: 64, OkHttp's default request limit)",
+            "  --max-backoff-ms <n>        Longest wait after repeated failures (default: 15000)",
+            "  --latency-ms <n>            Fixed response time (default: 40)",
+            "  --jitter-ms <n>             Extra random response time, 0..n (default: 60)",
+            "  --timeout-ms <n>            Time until a hung request fails (default: 10000, the app's read timeout)",
+            "  --error-rate <p>            Chance that a request fails after the normal response time (default: 0.01)",
+            "  --hang-rate <p>             Chance that a request hangs until the timeout (default: 0.002)",
+            "  --outage-every-s <n>        Mean time between outages per device, 0 = never (default: 1800)",
+            "  --outage-s <n>              Mean outage length (default: 60)",
+            "  --report-every-min <n>      Virtual minutes between progress lines (default: 10)",
+            "  --seed <n>                  Random seed, for repeatable runs (default: 1)");
+
+    private int deviceCount = 2000;
+    private long minutes = 60;
+    private long intervalMs = 2500;
+    private int maxInFlight = 64;
+    private long maxBackoffMs = 15_000;
+    private long latencyMs = 40;
+    private long jitterMs = 60;
+    private long timeoutMs = 10_000;
+    private double errorRate = 0.01;
+    private double hangRate = 0.002;
+    private double outageEverySeconds = 1800;
+    private double outageSeconds = 60;
+    private long reportEveryMinutes = 10;
+    private long seed = 1;
+
+    /** One simulated device; only touched on the simulation thread. */
+    private final class Device {
+        boolean polling = false;
+        long outageStartMs;
+        long outageEndMs = -1;
+
+        Device() {
+            outageStartMs = nextOutageStart(0);
+        }
+
+        /** @return How long the poll takes, negative if it fails. */
+        long respond(long nowMs) {
+            while (outageEverySeconds > 0 && nowMs >= outageStartMs) {
+                if (outageEndMs < outageStartMs) outageEndMs = outageStartMs + (long) exponential(outageSeconds * 1000);
+                if (nowMs < outageEndMs) return -timeoutMs;
+                outageStartMs = nextOutageStart(outageEndMs);
+            }
+            if (random.nextDouble() < hangRate) return -timeoutMs;
+            long responseMs = latencyMs + (jitterMs > 0 ? (long) (random.nextDouble() * (jitterMs + 1)) : 0);
+            return random.nextDouble() < errorRate ? -responseMs : responseMs;
+        }
+
+        private long nextOutageStart(long afterMs) {
+            return outageEverySeconds > 0 ? afterMs + (long) exponential(outageEverySeconds * 1000) : Long.MAX_VALUE;
+        }
+    }
+
+    private Random random;
+    private VirtualTimer timer;
+    private PollScheduler scheduler;
+    private Device[] devices;
+    private long overlappingPolls = 0;
+    private long overLimitPolls = 0;
+
+    private SchedulerSimulation() {
+    }
+
+    public static void main(String[] args) {
+        SchedulerSimulation simulation;
+        try {
+            simulation = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        boolean ok = simulation.run();
+        System.exit(ok ? 0 : 1);
+    }
+
+    /** @return False if a scheduler invariant was broken. */
+    boolean run() {
+        random = new Random(seed);
+        timer = new VirtualTimer();
+        scheduler = new PollScheduler(timer, this::poll, maxInFlight, maxBackoffMs, new Random(seed + 1));
+        devices = new Device[deviceCount];
+        for (int i = 0; i < deviceCount; i++) {
+            devices[i] = new Device();
+            // Spread first polls over one interval, as when the app adds a device list
+            scheduler.add(Integer.toString(i), intervalMs, (long) (random.nextDouble() * intervalMs));
+        }
+        System.out.printf(Locale.US, "Simulating %d devices every %d ms for %d min, at most %d in flight.%n",
+                deviceCount, intervalMs, minutes, maxInFlight);
+
+        long wallStartNanos = System.nanoTime();
+        long endMs = minutes * 60_000;
+        long reportMs = reportEveryMinutes * 60_000;
+        for (long t = Math.min(reportMs, endMs); ; t = Math.min(t + reportMs, endMs)) {
+            timer.runUntil(t);
+            report(t, scheduler.getStats());
+            if (t == endMs) break;
+        }
+        long wallMs = (System.nanoTime() - wallStartNanos) / 1_000_000;
+        PollScheduler.Stats stats = scheduler.getStats();
+        double virtualSeconds = endMs / 1000.0;
+        long slots = getSlots();
+        System.out.printf(Locale.US, "Done in %d ms wall time (%.0fx real time), %d events.%n",
+                wallMs, endMs / (double) Math.max(1, wallMs), timer.getEventsRun());
+        System.out.printf(Locale.US, "Throughput: %.1f polls/s (%.1f/s if every device met every interval).%n",
+                (stats.succeeded + stats.failed) / virtualSeconds, deviceCount * 1000.0 / intervalMs);
+        System.out.printf(Locale.US, "Queueing delay: p50 %d ms, p95 %d ms, p99 %d ms, max %d ms.%n",
+                stats.queueDelayAtPercentile(50), stats.queueDelayAtPercentile(95),
+                stats.queueDelayAtPercentile(99), stats.getMaxQueueDelayMs());
+        System.out.printf(Locale.US, "Missed deadlines: %d (%.2f%% of %d slots); failed polls: %d.%n",
+                stats.missedDeadlines, 100.0 * stats.missedDeadlines / Math.max(1, slots), slots, stats.failed);
+        System.out.printf(Locale.US, "Peak in flight %d/%d, peak queued %d.%n", stats.peakInFlight, maxInFlight, stats.peakQueued);
+        if (overlappingPolls > 0 || overLimitPolls > 0) {
+            System.out.println("FAILED: " + overlappingPolls + " polls overlapped one of the same device, "
+                    + overLimitPolls + " exceeded --max-in-flight.");
+            return false;
+        }
+        return true;
+    }
+
+    /** Polls started while the same device was still being polled. */
+    long getOverlappingPolls() {
+        return overlappingPolls;
+    }
+
+    /** Polls started while more than {@code --max-in-flight} were running. */
+    long getOverLimitPolls() {
+        return overLimitPolls;
+    }
+
+    PollScheduler.Stats getStats() {
+        return scheduler.getStats();
+    }
+
+    /** Polls the fleet would make if every device met every interval. */
+    long getSlots() {
+        return (long) (deviceCount * (minutes * 60_000 / (double) intervalMs));
+    }
+
+    private void poll(String key, PollScheduler.Completion completion) {
+        Device device = devices[Integer.parseInt(key)];
+        if (device.polling) overlappingPolls++;
+        if (scheduler.getInFlight() > maxInFlight) overLimitPolls++;
+        device.polling = true;
+        long result = device.respond(timer.nowMs());
+        timer.schedule(() -> {
+            device.polling = false;
+            completion.finish(result >= 0);
+        }, Math.abs(result));
+    }
+
+    private void report(long nowMs, PollScheduler.Stats stats) {
+        System.out.printf(Locale.US, "[%3d min] %s%n", nowMs / 60_000, stats);
+    }
+
+    private double exponential(double meanMs) {
+        return -meanMs * Math.log(1 - random.nextDouble());
+    }
+
+    static SchedulerSimulation parse(String... args) {
+        SchedulerSimulation s = new SchedulerSimulation();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--devices" -> s.deviceCount = (int) atLeast(option, Long.parseLong(value), 1);
+                    case "--minutes" -> s.minutes = atLeast(option, Long.parseLong(value), 1);
+                    case "--interval-ms" -> s.intervalMs = atLeast(option, Long.parseLong(value), 1);
+                    case "--max-in-flight" -> s.maxInFlight = (int) atLeast(option, Long.parseLong(value), 1);
+                    case "--max-backoff-ms" -> s.maxBackoffMs = atLeast(option, Long.parseLong(value), 0);
+                    case "--latency-ms" -> s.latencyMs = atLeast(option, Long.parseLong(value), 0);
+                    case "--jitter-ms" -> s.jitterMs = atLeast(option, Long.parseLong(value), 0);
+                    case "--timeout-ms" -> s.timeoutMs = atLeast(option, Long.parseLong(value), 1);
+                    case "--error-rate" -> s.errorRate = probability(option, Double.parseDouble(value));
+                    case "--hang-rate" -> s.hangRate = probability(option, Double.parseDouble(value));
+                    case "--outage-every-s" -> s.outageEverySeconds = Math.max(0, Double.parseDouble(value));
+                    case "--outage-s" -> s.outageSeconds = Math.max(0, Double.parseDouble(value));
+                    case "--report-every-min" -> s.reportEveryMinutes = atLeast(option, Long.parseLong(value), 1);
+                    case "--seed" -> s.seed = Long.parseLong(value);
+                    default -> throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for " + option + ": " + value);
+            }
+        }
+        return s;
+    }
+
+    private static long atLeast(String option, long value, long min) {
+        if (value < min) throw new IllegalArgumentException(option + " must be at least " + min);
+        return value;
+    }
+
+    private static double probability(String option, double value) {
+        if (value < 0 || value > 1) throw new IllegalArgumentException(option + " must be between 0 and 1");
+        return value;
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.mybasicapp.simulator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One simulated ESP on its own port, serving the same HTTP contract as the firmware:
+ * <ul>
+ *   <li>{@code GET /}: {@code {"db_calibrated", "rms", "status", "error"}}</li>
+ *   <li>{@code GET /get_config}: threshold, calibration offset and Wi-Fi SSID (never the password)</li>
+ *   <li>{@code POST /set_threshold}, {@code /set_calibration}, {@code /set_wifi_config}: form fields as sent by EspConfigClient</li>
+ *   <li>{@code POST /update_config_json}: any of those fields as one JSON object</li>
+ * </ul>
+ * Latency, jitter, HTTP errors and dropped connections are injected per request. During an
+ * {@linkplain #startOutage outage} the port is closed, so clients see the connection refused, like a
+ * device that lost power.
+ */
+final class SimulatedEsp {
+    private static final System.Logger LOG = System.getLogger("SimulatedEsp");
+
+    private static final String FIELD_THRESHOLD = "threshold_db_calibrated";
+    private static final String FIELD_CALIBRATION_OFFSET = "calibration_offset";
+    private static final String FIELD_WIFI_SSID = "wifi_ssid";
+    private static final String FIELD_WIFI_PASSWORD = "wifi_password";
+
+    final String name;
+    final int port;
+    private final SimulatorConfig config;
+    private final FleetStats stats;
+    private final Executor handlerExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final Random random;
+    private final DbTrace trace;
+
+    // Guarded by this
+    private HttpServer server; // Null while offline
+    private double thresholdDb = 70.0;
+    private double calibrationOffsetDb = 0.0;
+    private String wifiSsid = "HomeNetwork";
+    private String wifiPassword = "";
+
+    SimulatedEsp(String name, int port, SimulatorConfig config, FleetStats stats, Executor handlerExecutor,
+                 ScheduledExecutorService scheduler, Random random) {
+        this.name = name;
+        this.port = port;
+        this.config = config;
+        this.stats = stats;
+        this.handlerExecutor = handlerExecutor;
+        this.scheduler = scheduler;
+        this.random = random;
+        this.trace = new DbTrace(random, config.loudEventsPerMinute);
+    }
+
+    String getAddress() {
+        return config.bindAddress + ":" + port;
+    }
+
+    synchronized boolean isOnline() {
+        return server != null;
+    }
+
+    synchronized void goOnline() throws IOException {
+        if (server != null) return;
+        HttpServer created = HttpServer.create(new InetSocketAddress(config.bindAddress, port), 64);
+        created.createContext("/", this::handle);
+        created.setExecutor(handlerExecutor);
+        created.start();
+        server = created;
+    }
+
+    /** Closes the port; requests in flight are cut off. */
+    synchronized void goOffline() {
+        if (server == null) return;
+        server.stop(0);
+        server = null;
+    }
+
+    /** Goes offline now and back online after durationMs. */
+    void startOutage(long durationMs) {
+        if (!isOnline()) return;
+        goOffline();
+        stats.outages.incrementAndGet();
+        scheduler.schedule(this::endOutage, durationMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void endOutage() {
+        try {
+            goOnline();
+        } catch (IOException e) {
+            // Port still held (e.g. by a lingering socket); try again shortly
+            LOG.log(System.Logger.Level.DEBUG, name + " could not rebind port " + port + ": " + e.getMessage());
+            scheduler.schedule(this::endOutage, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            stats.requests.incrementAndGet();
+            long delayMs = config.latencyMs + (config.jitterMs > 0 ? (long) (random.nextDouble() * (config.jitterMs + 1)) : 0);
+            if (delayMs > 0) {
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (random.nextDouble() < config.dropRate) {
+                stats.dropped.incrementAndGet();
+                return; // Closing without response headers resets the connection
+            }
+            if (random.nextDouble() < config.errorRate) {
+                stats.errors.incrementAndGet();
+                send(exchange, 500, "text/plain", "Internal Server Error");
+                return;
+            }
+            route(exchange);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        boolean isGet = "GET".equals(method);
+        boolean isPost = "POST".equals(method);
+        switch (path) {
+            case "/" -> {
+                if (isGet) send(exchange, 200, "application/json", readingJson());
+                else send(exchange, 405, "text/plain", "Method Not Allowed");
+            }
+            case "/get_config" -> {
+                if (isGet) send(exchange, 200, "application/json", configJson());
+                else send(exchange, 405, "text/plain", "Method Not Allowed");
+            }
+            case "/set_threshold", "/set_calibration", "/set_wifi_config", "/update_config_json" -> {
+                if (!isPost) {
+                    send(exchange, 405, "text/plain", "Method Not Allowed");
+                    return;
+                }
+                String body = readBody(exchange);
+                Map<String, String> fields;
+                try {
+                    fields = "/update_config_json".equals(path) ? parseJsonFields(body) : parseForm(body);
+                } catch (JSONException e) {
+                    send(exchange, 400, "text/plain", "Invalid JSON");
+                    return;
+                }
+                String error = applyConfig(path, fields);
+                if (error != null) send(exchange, 400, "text/plain", error);
+                else send(exchange, 200, "text/plain", "OK");
+            }
+            default -> send(exchange, 404, "text/plain", "Not Found");
+        }
+    }
+
+    private synchronized String readingJson() {
+        if (random.nextDouble() < config.sensorErrorRate) {
+            return "{\"db_calibrated\":-999,\"rms\":0,\"status\":\"fault\",\"error\":\"I2S read failed\"}";
+        }
+        double rawDb = trace.sample(System.currentTimeMillis());
+        double rms = Math.pow(10, (rawDb - 120) / 20); // Relative to the mic's full scale, for display only
+        return String.format(Locale.US, "{\"db_calibrated\":%.1f,\"rms\":%.5f,\"status\":\"ok\",\"error\":\"\"}",
+                rawDb + calibrationOffsetDb, rms);
+    }
+
+    private synchronized String configJson() {
+        JSONObject json = new JSONObject();
+        json.put(FIELD_THRESHOLD, thresholdDb);
+        json.put(FIELD_CALIBRATION_OFFSET, calibrationOffsetDb);
+        json.put(FIELD_WIFI_SSID, wifiSsid);
+        return json.toString();
+    }
+
+    /** @return An error message for a 400 response, or null if the fields were applied. */
+    private String applyConfig(String path, Map<String, String> fields) {
+        boolean wifiChanged;
+        synchronized (this) {
+            Double threshold = null;
+            Double offset = null;
+            try {
+                if (fields.containsKey(FIELD_THRESHOLD)) threshold = Double.parseDouble(fields.get(FIELD_THRESHOLD));
+                if (fields.containsKey(FIELD_CALIBRATION_OFFSET)) offset = Double.parseDouble(fields.get(FIELD_CALIBRATION_OFFSET));
+            } catch (NumberFormatException e) {
+                return "Invalid number";
+            }
+            switch (path) {
+                case "/set_threshold" -> {
+                    if (threshold == null) return "Missing " + FIELD_THRESHOLD;
+                }
+                case "/set_calibration" -> {
+                    if (offset == null) return "Missing " + FIELD_CALIBRATION_OFFSET;
+                }
+                case "/set_wifi_config" -> {
+                    if (!fields.containsKey(FIELD_WIFI_SSID) || fields.get(FIELD_WIFI_SSID).isEmpty()) return "Missing " + FIELD_WIFI_SSID;
+                }
+                default -> {
+                    // update_config_json: any subset
+                }
+            }
+            if (threshold != null && (threshold < 0 || threshold > 140)) return "Threshold out of range";
+            if (offset != null && (offset < -50 || offset > 50)) return "Calibration offset out of range";
+            if (threshold != null) thresholdDb = threshold;
+            if (offset != null) calibrationOffsetDb = offset;
+            String ssid = fields.get(FIELD_WIFI_SSID);
+            wifiChanged = ssid != null && !ssid.isEmpty();
+            if (wifiChanged) {
+                wifiSsid = ssid;
+                wifiPassword = fields.getOrDefault(FIELD_WIFI_PASSWORD, "");
+            }
+        }
+        if (wifiChanged) {
+            // The firmware reboots to join the new network; the port closes once this response is sent
+            stats.reboots.incrementAndGet();
+            LOG.log(System.Logger.Level.INFO, name + " rebooting to join " + wifiSsid);
+            scheduler.schedule(() -> startOutage(5_000), 200, TimeUnit.MILLISECONDS);
+        }
+        return null;
+    }
+
+    private static void send(HttpExchange exchange, int code, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            in.transferTo(buffer);
+            return buffer.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Map<String, String> parseForm(String body) {
+        Map<String, String> fields = new HashMap<>();
+        for (String pair : body.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            fields.put(key, value);
+        }
+        return fields;
+    }
+
+    private static Map<String, String> parseJsonFields(String body) throws JSONException {
+        JSONObject json = new JSONObject(body);
+        Map<String, String> fields = new HashMap<>();
+        for (String key : json.keySet()) {
+            fields.put(key, String.valueOf(json.get(key)));
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.mybasicapp.simulator;
+
+import java.nio.file.Path;
+
+/** Command-line settings of the simulator. Immutable after {@link #parse}. */
+public final class SimulatorConfig {
+    static final String USAGE = String.join("\n",
+            "Usage: simulator [options]",
+            "  --devices <n>               Number of simulated ESPs (default: 50)",
+            "  --bind <address>            Address the devices listen on (default: 127.0.0.1)",
+            "  --base-port <port>          Port of the first device; the rest follow (default: 18080)",
+            "  --devices-out <file>        Device list for the app/collector (default: simulator-devices.json)",
+            "  --latency-ms <n>            Fixed delay before every response (default: 20)",
+            "  --jitter-ms <n>             Extra random delay, 0..n (default: 30)",
+            "  --error-rate <p>            Chance of an HTTP 500 per request (default: 0)",
+            "  --drop-rate <p>             Chance of closing the connection without a response (default: 0)",
+            "  --sensor-error-rate <p>     Chance that a reading reports a sensor error (default: 0)",
+            "  --outage-every-s <n>        Mean time between outages per device, 0 = never (default: 0)",
+            "  --outage-s <n>              Mean outage length; the device's port is closed meanwhile (default: 30)",
+            "  --loud-events-per-min <n>   Mean rate of loud events per device (default: 0.5)",
+            "  --seed <n>                  Random seed, for repeatable runs (default: random)");
+
+    public final int deviceCount;
+    public final String bindAddress;
+    public final int basePort;
+    public final Path devicesOut;
+    public final long latencyMs;
+    public final long jitterMs;
+    public final double errorRate;
+    public final double dropRate;
+    public final double sensorErrorRate;
+    public final double outageEverySeconds;
+    public final double outageSeconds;
+    public final double loudEventsPerMinute;
+    public final long seed;
+
+    private SimulatorConfig(int deviceCount, String bindAddress, int basePort, Path devicesOut, long latencyMs,
+                            long jitterMs, double errorRate, double dropRate, double sensorErrorRate,
+                            double outageEverySeconds, double outageSeconds, double loudEventsPerMinute, long seed) {
+        this.deviceCount = deviceCount;
+        this.bindAddress = bindAddress;
+        this.basePort = basePort;
+        this.devicesOut = devicesOut;
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.errorRate = errorRate;
+        this.dropRate = dropRate;
+        this.sensorErrorRate = sensorErrorRate;
+        this.outageEverySeconds = outageEverySeconds;
+        this.outageSeconds = outageSeconds;
+        this.loudEventsPerMinute = loudEventsPerMinute;
+        this.seed = seed;
+    }
+
+    /**
+     * Also used by benchmarks that embed the simulator, e.g. {@code parse("--devices", "1", "--latency-ms", "0")}.
+     * @throws IllegalArgumentException with a message for the user on bad arguments.
+     */
+    public static SimulatorConfig parse(String... args) {
+        int deviceCount = 50;
+        String bindAddress = "127.0.0.1";
+        int basePort = 18080;
+        Path devicesOut = Path.of("simulator-devices.json");
+        long latencyMs = 20;
+        long jitterMs = 30;
+        double errorRate = 0;
+        double dropRate = 0;
+        double sensorErrorRate = 0;
+        double outageEverySeconds = 0;
+        double outageSeconds = 30;
+        double loudEventsPerMinute = 0.5;
+        long seed = System.nanoTime();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--devices" -> deviceCount = (int) atLeast(option, Long.parseLong(value), 1);
+                    case "--bind" -> bindAddress = value;
+                    case "--base-port" -> basePort = (int) atLeast(option, Long.parseLong(value), 1);
+                    case "--devices-out" -> devicesOut = Path.of(value);
+                    case "--latency-ms" -> latencyMs = atLeast(option, Long.parseLong(value), 0);
+                    case "--jitter-ms" -> jitterMs = atLeast(option, Long.parseLong(value), 0);
+                    case "--error-rate" -> errorRate = probability(option, Double.parseDouble(value));
+                    case "--drop-rate" -> dropRate = probability(option, Double.parseDouble(value));
+                    case "--sensor-error-rate" -> sensorErrorRate = probability(option, Double.parseDouble(value));
+                    case "--outage-every-s" -> outageEverySeconds = Math.max(0, Double.parseDouble(value));
+                    case "--outage-s" -> outageSeconds = Math.max(0, Double.parseDouble(value));
+                    case "--loud-events-per-min" -> loudEventsPerMinute = Math.max(0, Double.parseDouble(value));
+                    case "--seed" -> seed = Long.parseLong(value);
+                    default -> throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for " + option + ": " + value);
+            }
+        }
+        if (basePort + deviceCount - 1 > 65535) {
+            throw new IllegalArgumentException("--base-port " + basePort + " leaves no room for " + deviceCount + " devices");
+        }
+        return new SimulatorConfig(deviceCount, bindAddress, basePort, devicesOut, latencyMs, jitterMs, errorRate,
+                dropRate, sensorErrorRate, outageEverySeconds, outageSeconds, loudEventsPerMinute, seed);
+    }
+
+    private static long atLeast(String option, long value, long min) {
+        if (value < min) throw new IllegalArgumentException(option + " must be at least " + min);
+        return value;
+    }
+
+    private static double probability(String option, double value) {
+        if (value < 0 || value > 1) throw new IllegalArgumentException(option + " must be between 0 and 1");
+        return value;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.mybasicapp.simulator;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs a simulated ESP fleet until killed. The written device list can be loaded by the collector
+ * ({@code --devices}) directly. To poll it from the app in the emulator, add devices as
+ * {@code 10.0.2.2:<port>} (the host's loopback); on a physical phone, run with
+ * {@code --bind 0.0.0.0} and use the computer's LAN address. Devices are not advertised over mDNS.
+ * With hundreds of devices, raise the open file limit ({@code ulimit -n}) accordingly.
+ */
+public final class SimulatorMain {
+    private static final long STATS_PERIOD_MS = 30_000;
+
+    private SimulatorMain() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        SimulatorConfig config;
+        try {
+            config = SimulatorConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(SimulatorConfig.USAGE);
+            System.exit(2);
+            return;
+        }
+        FleetSimulator fleet = new FleetSimulator(config);
+        try {
+            fleet.start();
+            fleet.writeDeviceList(config.devicesOut);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        System.out.println("Device list written to " + config.devicesOut.toAbsolutePath());
+        fleet.logStatsEvery(STATS_PERIOD_MS);
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            fleet.stop();
+            System.out.println("Stopped. " + fleet.getStats());
+            stopped.countDown();
+        }, "SimulatorShutdown"));
+        stopped.await();
+    }
+}
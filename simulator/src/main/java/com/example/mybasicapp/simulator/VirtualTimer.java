@@ -0,0 +1,59 @@
+package com.example.mybasicapp.simulator;
+
+import com.example.mybasicapp.network.PollScheduler;
+
+import java.util.PriorityQueue;
+
+/**
+ * {@link PollScheduler.Timer} on a virtual clock. Nothing runs until {@link #runUntil} is called;
+ * it then runs due tasks in time order (ties in scheduling order) and jumps the clock straight
+ * from one to the next. Single-threaded: tasks, and anything they schedule, run on the caller.
+ */
+final class VirtualTimer implements PollScheduler.Timer {
+    private static final class Event {
+        final long timeMs;
+        final long sequence;
+        final Runnable task;
+        boolean cancelled = false; // Left in the queue and skipped when reached
+
+        Event(long timeMs, long sequence, Runnable task) {
+            this.timeMs = timeMs;
+            this.sequence = sequence;
+            this.task = task;
+        }
+    }
+
+    private final PriorityQueue<Event> queue = new PriorityQueue<>((a, b) -> a.timeMs != b.timeMs
+            ? Long.compare(a.timeMs, b.timeMs) : Long.compare(a.sequence, b.sequence));
+    private long nowMs = 0;
+    private long nextSequence = 0;
+    private long eventsRun = 0;
+
+    @Override
+    public long nowMs() {
+        return nowMs;
+    }
+
+    @Override
+    public PollScheduler.Cancellable schedule(Runnable task, long delayMs) {
+        Event event = new Event(nowMs + Math.max(0, delayMs), nextSequence++, task);
+        queue.add(event);
+        return () -> event.cancelled = true;
+    }
+
+    /** Runs everything due up to and including {@code endMs}, then leaves the clock at {@code endMs}. */
+    void runUntil(long endMs) {
+        while (!queue.isEmpty() && queue.peek().timeMs <= endMs) {
+            Event event = queue.poll();
+            if (event.cancelled) continue;
+            nowMs = event.timeMs;
+            eventsRun++;
+            event.task.run();
+        }
+        nowMs = Math.max(nowMs, endMs);
+    }
+
+    long getEventsRun() {
+        return eventsRun;
+    }
+}
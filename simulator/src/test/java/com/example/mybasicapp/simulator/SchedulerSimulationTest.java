@@ -0,0 +1,65 @@
+package com.example.mybasicapp.simulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mybasicapp.network.PollScheduler;
+
+import org.junit.Test;
+
+/**
+ * An hour of the app's {@link PollScheduler} polling 2000 simulated devices, in virtual time, with
+ * the simulation's default failures, hangs and outages.
+ */
+public class SchedulerSimulationTest {
+    private static final int DEVICES = 2000;
+    private static final long MINUTES = 60;
+
+    @Test
+    public void fleetWithEnoughSlotsMeetsItsDeadlines() {
+        int maxInFlight = 128;
+        SchedulerSimulation simulation = simulate(maxInFlight);
+
+        assertInvariants(simulation, maxInFlight);
+        PollScheduler.Stats stats = simulation.getStats();
+        // Misses come from failures backing off and devices that are offline, not from queueing
+        double missedFraction = (double) stats.missedDeadlines / simulation.getSlots();
+        assertTrue("Missed " + stats.missedDeadlines + " of " + simulation.getSlots() + " deadlines",
+                missedFraction < 0.05);
+        assertTrue("p99 queueing delay " + stats.queueDelayAtPercentile(99) + " ms",
+                stats.queueDelayAtPercentile(99) < 2500);
+        assertEquals(DEVICES, stats.devices);
+    }
+
+    @Test
+    public void overloadedFleetNeverExceedsTheLimitOrOverlaps() {
+        int maxInFlight = 64; // Fewer slots than the fleet needs; polls queue and deadlines are missed
+        SchedulerSimulation simulation = simulate(maxInFlight);
+
+        assertInvariants(simulation, maxInFlight);
+        PollScheduler.Stats stats = simulation.getStats();
+        assertEquals(maxInFlight, stats.peakInFlight);
+        assertTrue("Expected missed deadlines under overload", stats.missedDeadlines > 0);
+        // The queue is bounded by the fleet: each device waits in it at most once
+        assertTrue("Peak queued " + stats.peakQueued, stats.peakQueued <= DEVICES);
+    }
+
+    private static SchedulerSimulation simulate(int maxInFlight) {
+        SchedulerSimulation simulation = SchedulerSimulation.parse(
+                "--devices", Integer.toString(DEVICES),
+                "--minutes", Long.toString(MINUTES),
+                "--max-in-flight", Integer.toString(maxInFlight),
+                "--report-every-min", Long.toString(MINUTES),
+                "--seed", "1");
+        simulation.run();
+        return simulation;
+    }
+
+    private static void assertInvariants(SchedulerSimulation simulation, int maxInFlight) {
+        assertEquals("Polls overlapping one of the same device", 0, simulation.getOverlappingPolls());
+        assertEquals("Polls over the in-flight limit", 0, simulation.getOverLimitPolls());
+        PollScheduler.Stats stats = simulation.getStats();
+        assertTrue("Peak in flight " + stats.peakInFlight, stats.peakInFlight <= maxInFlight);
+        assertTrue("Nothing was polled", stats.succeeded > 0);
+    }
+}